@@ -0,0 +1,117 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
+
+import javax.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookup table of the enabled FxCop rules, built once per analysis.
+ * Rules can be looked up both by their FxCop TypeName (the SonarQube rule key) and by their CheckId (the rule config key).
+ */
+public class FxCopActiveRules {
+
+  private final Map<String, Entry> entries;
+  private final List<String> ruleConfigKeys;
+
+  public FxCopActiveRules(String repositoryKey, List<ActiveRule> activeRules) {
+    this.entries = Maps.newHashMapWithExpectedSize(2 * activeRules.size());
+    ImmutableList.Builder<String> ruleConfigKeysBuilder = ImmutableList.builder();
+
+    for (ActiveRule activeRule : activeRules) {
+      String ruleKey = activeRule.getRuleKey();
+      String configKey = activeRule.getConfigKey();
+      Entry entry = new Entry(RuleKey.of(repositoryKey, ruleKey), activeRule);
+
+      entries.put(ruleKey, entry);
+      if (configKey != null) {
+        entries.put(configKey, entry);
+        ruleConfigKeysBuilder.add(configKey);
+      }
+    }
+
+    this.ruleConfigKeys = ruleConfigKeysBuilder.build();
+  }
+
+  /**
+   * @param key Either the FxCop TypeName or CheckId of a rule
+   * @return The enabled rule, or null if the rule is unknown or disabled
+   */
+  @Nullable
+  public Entry get(String key) {
+    return entries.get(key);
+  }
+
+  public boolean isActive(String key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * @return The TypeNames and CheckIds of all enabled rules
+   */
+  public Set<String> keys() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  public List<String> ruleConfigKeys() {
+    return ruleConfigKeys;
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  public static class Entry {
+
+    private final RuleKey ruleKey;
+    private final ActiveRule activeRule;
+    private final String severity;
+
+    private Entry(RuleKey ruleKey, ActiveRule activeRule) {
+      this.ruleKey = ruleKey;
+      this.activeRule = activeRule;
+      this.severity = activeRule.getSeverity() == null ? null : activeRule.getSeverity().name();
+    }
+
+    public RuleKey ruleKey() {
+      return ruleKey;
+    }
+
+    public ActiveRule activeRule() {
+      return activeRule;
+    }
+
+    @Nullable
+    public String severity() {
+      return severity;
+    }
+
+  }
+
+}
@@ -0,0 +1,568 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Identity and references of a .NET assembly, read from its PE and CLI metadata headers.
+ * <p>
+ * Only the few pages holding the headers, the module, assembly and assembly reference tables, and the referenced heap entries are read,
+ * with positional reads into a small heap buffer, so that reading the metadata of a large assembly does not require to read it entirely.
+ * The file is not mapped, and is closed once read, so that it is never kept locked for the FxCopCmd run or the next build.
+ */
+public class FxCopAssemblyMetadata {
+
+  private static final int DOS_SIGNATURE = 0x5A4D;
+  private static final int PE_SIGNATURE = 0x00004550;
+  private static final int PE32_MAGIC = 0x10B;
+  private static final int PE32_PLUS_MAGIC = 0x20B;
+  private static final int CLI_HEADER_DIRECTORY = 14;
+  private static final int METADATA_SIGNATURE = 0x424A5342;
+  private static final int SECTION_HEADER_SIZE = 40;
+  private static final int GUID_SIZE = 16;
+
+  private static final int MODULE_TABLE = 0x00;
+  private static final int ASSEMBLY_TABLE = 0x20;
+  private static final int ASSEMBLY_REF_TABLE = 0x23;
+
+  private final String mvid;
+  private final String runtimeVersion;
+  private final long timestamp;
+  private final String version;
+  private final List<String> references;
+
+  public FxCopAssemblyMetadata(String mvid, String runtimeVersion, long timestamp) {
+    this(mvid, runtimeVersion, timestamp, null, ImmutableList.<String>of());
+  }
+
+  public FxCopAssemblyMetadata(String mvid, String runtimeVersion, long timestamp, @Nullable String version, List<String> references) {
+    this.mvid = mvid;
+    this.runtimeVersion = runtimeVersion;
+    this.timestamp = timestamp;
+    this.version = version;
+    this.references = ImmutableList.copyOf(references);
+  }
+
+  /**
+   * @return The module version identifier, which changes each time the assembly is compiled
+   */
+  public String mvid() {
+    return mvid;
+  }
+
+  /**
+   * @return The version of the runtime the assembly was built against, such as "v4.0.30319"
+   */
+  public String runtimeVersion() {
+    return runtimeVersion;
+  }
+
+  /**
+   * @return The time stamp of the PE file header
+   */
+  public long timestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return The version of the assembly, such as "1.0.0.0", or null if the module is not an assembly manifest
+   */
+  @Nullable
+  public String version() {
+    return version;
+  }
+
+  /**
+   * @return The names of the referenced assemblies, such as "mscorlib"
+   */
+  public List<String> references() {
+    return references;
+  }
+
+  /**
+   * @return A key which changes whenever the assembly is rebuilt
+   */
+  public String key() {
+    return mvid + "|" + runtimeVersion + "|" + timestamp;
+  }
+
+  /**
+   * @return The metadata of the given assembly, or null if it is not a valid .NET assembly
+   */
+  @Nullable
+  public static FxCopAssemblyMetadata read(File assembly) {
+    RandomAccessFile randomAccessFile = null;
+    try {
+      randomAccessFile = new RandomAccessFile(assembly, "r");
+      return read(new PagedReader(randomAccessFile.getChannel()));
+    } catch (InvalidFormatException e) {
+      return null;
+    } catch (IndexOutOfBoundsException e) {
+      return null;
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(randomAccessFile);
+    }
+  }
+
+  private static FxCopAssemblyMetadata read(PagedReader reader) {
+    check(unsignedShort(reader, 0) == DOS_SIGNATURE);
+    int peHeader = reader.getInt(0x3C);
+    check(reader.getInt(peHeader) == PE_SIGNATURE);
+
+    int fileHeader = peHeader + 4;
+    int sections = unsignedShort(reader, fileHeader + 2);
+    long timestamp = reader.getInt(fileHeader + 4) & 0xFFFFFFFFL;
+    int optionalHeaderSize = unsignedShort(reader, fileHeader + 16);
+
+    int optionalHeader = fileHeader + 20;
+    int magic = unsignedShort(reader, optionalHeader);
+    check(magic == PE32_MAGIC || magic == PE32_PLUS_MAGIC);
+    int dataDirectories = optionalHeader + (magic == PE32_PLUS_MAGIC ? 112 : 96);
+    int cliHeaderRva = reader.getInt(dataDirectories + CLI_HEADER_DIRECTORY * 8);
+    check(cliHeaderRva != 0);
+
+    int sectionTable = optionalHeader + optionalHeaderSize;
+    int cliHeader = fileOffset(reader, sectionTable, sections, cliHeaderRva);
+    int metadata = fileOffset(reader, sectionTable, sections, reader.getInt(cliHeader + 8));
+    check(reader.getInt(metadata) == METADATA_SIGNATURE);
+
+    int versionLength = reader.getInt(metadata + 12);
+    String runtimeVersion = nullTerminatedString(reader, metadata + 16, versionLength);
+
+    int position = metadata + 16 + versionLength;
+    int streams = unsignedShort(reader, position + 2);
+    position += 4;
+
+    int tablesStream = -1;
+    int stringsStream = -1;
+    int guidStream = -1;
+    for (int i = 0; i < streams; i++) {
+      int offset = reader.getInt(position);
+      String name = nullTerminatedString(reader, position + 8, 32);
+      if ("#~".equals(name)) {
+        tablesStream = metadata + offset;
+      } else if ("#Strings".equals(name)) {
+        stringsStream = metadata + offset;
+      } else if ("#GUID".equals(name)) {
+        guidStream = metadata + offset;
+      }
+      position += 8 + ((name.length() + 4) & ~3);
+    }
+    check(tablesStream != -1 && guidStream != -1);
+
+    MetadataTables tables = new MetadataTables(reader, tablesStream);
+    check(tables.rows(MODULE_TABLE) > 0);
+
+    // Module: Generation, Name, Mvid, EncId, EncBaseId
+    int mvidIndex = tables.guidIndex(tables.rowPosition(MODULE_TABLE, 0) + 2 + tables.stringIndexSize());
+    check(mvidIndex > 0);
+    String mvid = guid(reader, guidStream + (mvidIndex - 1) * GUID_SIZE);
+
+    // Assembly: HashAlgId, MajorVersion, MinorVersion, BuildNumber, RevisionNumber, Flags, PublicKey, Name, Culture
+    String version = null;
+    if (tables.rows(ASSEMBLY_TABLE) > 0) {
+      int row = tables.rowPosition(ASSEMBLY_TABLE, 0);
+      version = unsignedShort(reader, row + 4) + "." + unsignedShort(reader, row + 6) + "." + unsignedShort(reader, row + 8) + "." + unsignedShort(reader, row + 10);
+    }
+
+    // AssemblyRef: MajorVersion, MinorVersion, BuildNumber, RevisionNumber, Flags, PublicKeyOrToken, Name, Culture, HashValue
+    ImmutableList.Builder<String> references = ImmutableList.builder();
+    if (stringsStream != -1) {
+      for (int i = 0; i < tables.rows(ASSEMBLY_REF_TABLE); i++) {
+        int nameIndex = tables.stringIndex(tables.rowPosition(ASSEMBLY_REF_TABLE, i) + 12 + tables.blobIndexSize());
+        references.add(nullTerminatedString(reader, stringsStream + nameIndex, Integer.MAX_VALUE));
+      }
+    }
+
+    return new FxCopAssemblyMetadata(mvid, runtimeVersion, timestamp, version, references.build());
+  }
+
+  private static int fileOffset(PagedReader reader, int sectionTable, int sections, int rva) {
+    for (int i = 0; i < sections; i++) {
+      int section = sectionTable + i * SECTION_HEADER_SIZE;
+      int virtualSize = reader.getInt(section + 8);
+      int virtualAddress = reader.getInt(section + 12);
+      int rawDataSize = reader.getInt(section + 16);
+      int rawDataPointer = reader.getInt(section + 20);
+
+      if (rva >= virtualAddress && rva < virtualAddress + Math.max(virtualSize, rawDataSize)) {
+        return rva - virtualAddress + rawDataPointer;
+      }
+    }
+
+    throw new InvalidFormatException();
+  }
+
+  /**
+   * Formats the GUID as in .NET, its first three groups being little-endian.
+   */
+  private static String guid(PagedReader reader, int position) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%08x-%04x-%04x-", reader.getInt(position), unsignedShort(reader, position + 4), unsignedShort(reader, position + 6)));
+    for (int i = 8; i < GUID_SIZE; i++) {
+      if (i == 10) {
+        sb.append('-');
+      }
+      sb.append(String.format("%02x", reader.get(position + i) & 0xFF));
+    }
+    return sb.toString();
+  }
+
+  private static String nullTerminatedString(PagedReader reader, int position, int maxLength) {
+    int length = 0;
+    while (length < maxLength && reader.get(position + length) != 0) {
+      length++;
+    }
+
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = reader.get(position + i);
+    }
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private static int unsignedShort(PagedReader reader, int position) {
+    return reader.getShort(position) & 0xFFFF;
+  }
+
+  private static void check(boolean condition) {
+    if (!condition) {
+      throw new InvalidFormatException();
+    }
+  }
+
+  /**
+   * Locates the rows of the "#~" stream tables, whose sizes depend on the number of rows of the tables they reference and on the heap sizes.
+   * Only the schema of the tables preceding the assembly reference one is needed, as tables are stored in order.
+   */
+  private static class MetadataTables {
+
+    private static final int STRING = -1;
+    private static final int GUID = -2;
+    private static final int BLOB = -3;
+    private static final int TABLE = 0x100;
+    private static final int CODED = 0x200;
+
+    private static final int[][] CODED_INDEXES = {
+      // TypeDefOrRef
+      {0x02, 0x01, 0x1B},
+      // HasConstant
+      {0x04, 0x08, 0x17},
+      // HasCustomAttribute
+      {0x06, 0x04, 0x01, 0x02, 0x08, 0x09, 0x0A, 0x00, 0x0E, 0x17, 0x14, 0x11, 0x1A, 0x1B, 0x20, 0x23, 0x26, 0x27, 0x28, 0x2A, 0x2C, 0x2B},
+      // HasFieldMarshal
+      {0x04, 0x08},
+      // HasDeclSecurity
+      {0x02, 0x06, 0x20},
+      // MemberRefParent
+      {0x02, 0x01, 0x1A, 0x06, 0x1B},
+      // HasSemantics
+      {0x14, 0x17},
+      // MethodDefOrRef
+      {0x06, 0x0A},
+      // MemberForwarded
+      {0x04, 0x06},
+      // ResolutionScope
+      {0x00, 0x1A, 0x23, 0x01},
+      // CustomAttributeType
+      {-1, -1, 0x06, 0x0A, -1}
+    };
+
+    private static final int TYPE_DEF_OR_REF = CODED;
+    private static final int HAS_CONSTANT = CODED + 1;
+    private static final int HAS_CUSTOM_ATTRIBUTE = CODED + 2;
+    private static final int HAS_FIELD_MARSHAL = CODED + 3;
+    private static final int HAS_DECL_SECURITY = CODED + 4;
+    private static final int MEMBER_REF_PARENT = CODED + 5;
+    private static final int HAS_SEMANTICS = CODED + 6;
+    private static final int METHOD_DEF_OR_REF = CODED + 7;
+    private static final int MEMBER_FORWARDED = CODED + 8;
+    private static final int RESOLUTION_SCOPE = CODED + 9;
+    private static final int CUSTOM_ATTRIBUTE_TYPE = CODED + 10;
+
+    private static final int[][] SCHEMA = {
+      // 0x00 Module
+      {2, STRING, GUID, GUID, GUID},
+      // 0x01 TypeRef
+      {RESOLUTION_SCOPE, STRING, STRING},
+      // 0x02 TypeDef
+      {4, STRING, STRING, TYPE_DEF_OR_REF, TABLE + 0x04, TABLE + 0x06},
+      // 0x03 FieldPtr
+      {TABLE + 0x04},
+      // 0x04 Field
+      {2, STRING, BLOB},
+      // 0x05 MethodPtr
+      {TABLE + 0x06},
+      // 0x06 MethodDef
+      {4, 2, 2, STRING, BLOB, TABLE + 0x08},
+      // 0x07 ParamPtr
+      {TABLE + 0x08},
+      // 0x08 Param
+      {2, 2, STRING},
+      // 0x09 InterfaceImpl
+      {TABLE + 0x02, TYPE_DEF_OR_REF},
+      // 0x0A MemberRef
+      {MEMBER_REF_PARENT, STRING, BLOB},
+      // 0x0B Constant
+      {2, HAS_CONSTANT, BLOB},
+      // 0x0C CustomAttribute
+      {HAS_CUSTOM_ATTRIBUTE, CUSTOM_ATTRIBUTE_TYPE, BLOB},
+      // 0x0D FieldMarshal
+      {HAS_FIELD_MARSHAL, BLOB},
+      // 0x0E DeclSecurity
+      {2, HAS_DECL_SECURITY, BLOB},
+      // 0x0F ClassLayout
+      {2, 4, TABLE + 0x02},
+      // 0x10 FieldLayout
+      {4, TABLE + 0x04},
+      // 0x11 StandAloneSig
+      {BLOB},
+      // 0x12 EventMap
+      {TABLE + 0x02, TABLE + 0x14},
+      // 0x13 EventPtr
+      {TABLE + 0x14},
+      // 0x14 Event
+      {2, STRING, TYPE_DEF_OR_REF},
+      // 0x15 PropertyMap
+      {TABLE + 0x02, TABLE + 0x17},
+      // 0x16 PropertyPtr
+      {TABLE + 0x17},
+      // 0x17 Property
+      {2, STRING, BLOB},
+      // 0x18 MethodSemantics
+      {2, TABLE + 0x06, HAS_SEMANTICS},
+      // 0x19 MethodImpl
+      {TABLE + 0x02, METHOD_DEF_OR_REF, METHOD_DEF_OR_REF},
+      // 0x1A ModuleRef
+      {STRING},
+      // 0x1B TypeSpec
+      {BLOB},
+      // 0x1C ImplMap
+      {2, MEMBER_FORWARDED, STRING, TABLE + 0x1A},
+      // 0x1D FieldRVA
+      {4, TABLE + 0x04},
+      // 0x1E EncLog
+      {4, 4},
+      // 0x1F EncMap
+      {4},
+      // 0x20 Assembly
+      {4, 2, 2, 2, 2, 4, BLOB, STRING, STRING},
+      // 0x21 AssemblyProcessor
+      {4},
+      // 0x22 AssemblyOS
+      {4, 4, 4},
+      // 0x23 AssemblyRef
+      {2, 2, 2, 2, 4, BLOB, STRING, STRING, BLOB}
+    };
+
+    private final PagedReader reader;
+    private final int heapSizes;
+    private final int[] rows = new int[64];
+    private final int[] tablePositions = new int[SCHEMA.length];
+    private final int[] rowSizes = new int[SCHEMA.length];
+
+    public MetadataTables(PagedReader reader, int position) {
+      this.reader = reader;
+      this.heapSizes = reader.get(position + 6);
+      long validTables = reader.getLong(position + 8);
+
+      int rowCountPosition = position + 24;
+      for (int table = 0; table < rows.length; table++) {
+        if ((validTables & (1L << table)) != 0) {
+          rows[table] = reader.getInt(rowCountPosition);
+          rowCountPosition += 4;
+        }
+      }
+      if ((heapSizes & 0x40) != 0) {
+        // Extra data, only found in edit and continue metadata
+        rowCountPosition += 4;
+      }
+
+      int tablePosition = rowCountPosition;
+      for (int table = 0; table < SCHEMA.length; table++) {
+        tablePositions[table] = tablePosition;
+        rowSizes[table] = rowSize(SCHEMA[table]);
+        tablePosition += rows[table] * rowSizes[table];
+      }
+    }
+
+    public int rows(int table) {
+      return rows[table];
+    }
+
+    public int rowPosition(int table, int row) {
+      return tablePositions[table] + row * rowSizes[table];
+    }
+
+    public int stringIndexSize() {
+      return (heapSizes & 0x01) != 0 ? 4 : 2;
+    }
+
+    public int blobIndexSize() {
+      return (heapSizes & 0x04) != 0 ? 4 : 2;
+    }
+
+    public int stringIndex(int position) {
+      return index(position, stringIndexSize());
+    }
+
+    public int guidIndex(int position) {
+      return index(position, (heapSizes & 0x02) != 0 ? 4 : 2);
+    }
+
+    private int index(int position, int size) {
+      return size == 4 ? reader.getInt(position) : unsignedShort(reader, position);
+    }
+
+    private int rowSize(int[] columns) {
+      int size = 0;
+      for (int column : columns) {
+        size += columnSize(column);
+      }
+      return size;
+    }
+
+    private int columnSize(int column) {
+      int size;
+
+      if (column == STRING) {
+        size = stringIndexSize();
+      } else if (column == GUID) {
+        size = (heapSizes & 0x02) != 0 ? 4 : 2;
+      } else if (column == BLOB) {
+        size = blobIndexSize();
+      } else if (column >= CODED) {
+        size = codedIndexSize(CODED_INDEXES[column - CODED]);
+      } else if (column >= TABLE) {
+        size = rows[column - TABLE] < 0x10000 ? 2 : 4;
+      } else {
+        size = column;
+      }
+
+      return size;
+    }
+
+    private int codedIndexSize(int[] tables) {
+      int tagBits = 32 - Integer.numberOfLeadingZeros(tables.length - 1);
+      int maxRows = 0;
+      for (int table : tables) {
+        if (table != -1) {
+          maxRows = Math.max(maxRows, rows[table]);
+        }
+      }
+      return maxRows < (1 << (16 - tagBits)) ? 2 : 4;
+    }
+
+  }
+
+  /**
+   * Little-endian random access to a file, through positional reads of one page at a time into a heap buffer.
+   * Reads beyond the end of the file throw an {@link IndexOutOfBoundsException}, as an invalid offset of a mapped buffer would.
+   */
+  private static class PagedReader {
+
+    private static final int PAGE_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long pageStart = 0;
+    private int pageLength = 0;
+
+    public PagedReader(FileChannel channel) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+    }
+
+    public byte get(int position) {
+      return page.get(offset(position, 1));
+    }
+
+    public short getShort(int position) {
+      return page.getShort(offset(position, 2));
+    }
+
+    public int getInt(int position) {
+      return page.getInt(offset(position, 4));
+    }
+
+    public long getLong(int position) {
+      return page.getLong(offset(position, 8));
+    }
+
+    /**
+     * @return The offset in the page of the given bytes, after reading the page holding them if needed
+     */
+    private int offset(int position, int length) {
+      if (position < 0 || position + (long) length > size) {
+        throw new IndexOutOfBoundsException("Position " + position + " is beyond the end of the file.");
+      }
+
+      if (position < pageStart || position + length > pageStart + pageLength) {
+        long start = position - position % PAGE_SIZE;
+        if (position + length > start + PAGE_SIZE) {
+          start = position;
+        }
+        read(start);
+      }
+      return (int) (position - pageStart);
+    }
+
+    private void read(long start) {
+      page.clear();
+      page.limit((int) Math.min(PAGE_SIZE, size - start));
+      try {
+        while (page.hasRemaining()) {
+          if (channel.read(page, start + page.position()) == -1) {
+            break;
+          }
+        }
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+      pageStart = start;
+      pageLength = page.position();
+    }
+
+  }
+
+  private static class InvalidFormatException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+  }
+
+}
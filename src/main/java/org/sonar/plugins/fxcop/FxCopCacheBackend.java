@@ -0,0 +1,42 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Storage of the {@link FxCopResultCache} entries, such as a local directory or a remote server.
+ */
+public interface FxCopCacheBackend {
+
+  /**
+   * Writes the value stored under the given key to the given file.
+   *
+   * @return false if there is none
+   */
+  boolean get(String key, File file) throws IOException;
+
+  /**
+   * Stores the content of the given file under the given key.
+   */
+  void put(String key, File file) throws IOException;
+
+}
@@ -0,0 +1,90 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Journal of the assemblies whose report was completed by the current analysis, saved atomically in the working directory after each one,
+ * so that an analysis which is killed or times out resumes with the remaining assemblies only, reusing the completed reports.
+ * It is deleted once the analysis succeeds.
+ */
+public class FxCopCheckpointJournal {
+
+  public static final String FILE_NAME = "fxcop-checkpoint.properties";
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopCheckpointJournal.class);
+
+  private final File file;
+  private final FxCopManifest completed;
+  private final Map<File, String[]> expected = Maps.newHashMap();
+
+  private FxCopCheckpointJournal(File file, FxCopManifest completed) {
+    this.file = file;
+    this.completed = completed;
+  }
+
+  /**
+   * @return The journal left by an interrupted analysis in the given file, or an empty one
+   */
+  public static FxCopCheckpointJournal open(File file) {
+    return new FxCopCheckpointJournal(file, FxCopManifest.load(file));
+  }
+
+  /**
+   * @return Whether the report of the given assembly was completed by an interrupted analysis with the same inputs, and still exists
+   */
+  public synchronized boolean isCompleted(String assembly, String fingerprint, File reportFile) {
+    return completed.isUnchanged(assembly, fingerprint) && reportFile.isFile();
+  }
+
+  /**
+   * Declares the fingerprint under which the assembly analyzed into the given report will be recorded once completed.
+   */
+  public synchronized void expect(String assembly, String fingerprint, File reportFile) {
+    expected.put(reportFile, new String[] {assembly, fingerprint});
+  }
+
+  /**
+   * Records that the given report is complete, which is saved before returning. Unexpected reports are ignored.
+   */
+  public synchronized void complete(File reportFile) {
+    String[] assemblyAndFingerprint = expected.remove(reportFile);
+    if (assemblyAndFingerprint != null) {
+      completed.put(assemblyAndFingerprint[0], assemblyAndFingerprint[1]);
+      completed.save(file, "FxCop assemblies completed by the current analysis");
+    }
+  }
+
+  /**
+   * Deletes the journal, once all the reports were parsed and their issues saved.
+   */
+  public synchronized void delete() {
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Could not delete the FxCop checkpoint journal \"" + file.getAbsolutePath() + "\".");
+    }
+  }
+
+}
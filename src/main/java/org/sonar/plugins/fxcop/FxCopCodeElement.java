@@ -0,0 +1,94 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import javax.annotation.Nullable;
+
+/**
+ * Element of the code hierarchy of a FxCop report, i.e. a target, module, namespace, type, member or accessor, in which issues are reported.
+ * <p>
+ * Elements are created once per occurrence in the report and shared by all the issues and child elements they contain.
+ */
+public class FxCopCodeElement {
+
+  public enum Kind {
+    TARGET("Target"), MODULE("Module"), NAMESPACE("Namespace"), TYPE("Type"), MEMBER("Member"), ACCESSOR("Accessor");
+
+    private final String tagName;
+
+    private Kind(String tagName) {
+      this.tagName = tagName;
+    }
+
+    /**
+     * @return The kind of element for the given report tag, or null if the tag is not a code element
+     */
+    @Nullable
+    public static Kind fromTagName(String tagName) {
+      for (Kind kind : values()) {
+        if (kind.tagName.equals(tagName)) {
+          return kind;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final Kind kind;
+  private final String name;
+  private final FxCopCodeElement parent;
+
+  public FxCopCodeElement(Kind kind, String name, @Nullable FxCopCodeElement parent) {
+    this.kind = kind;
+    this.name = name;
+    this.parent = parent;
+  }
+
+  public Kind kind() {
+    return kind;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  @Nullable
+  public FxCopCodeElement parent() {
+    return parent;
+  }
+
+  /**
+   * @return This element or its closest ancestor of the given kind, or null if there is none
+   */
+  @Nullable
+  public FxCopCodeElement enclosing(Kind kind) {
+    FxCopCodeElement element = this;
+    while (element != null && element.kind != kind) {
+      element = element.parent;
+    }
+    return element;
+  }
+
+  @Override
+  public String toString() {
+    return parent == null ? name : parent.toString() + "/" + name;
+  }
+
+}
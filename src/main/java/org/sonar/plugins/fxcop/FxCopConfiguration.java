@@ -19,15 +19,153 @@
  */
 package org.sonar.plugins.fxcop;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.sonar.api.config.Settings;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class FxCopConfiguration {
 
-  private static final String DEPRECATED_FXCOPCMD_PATH_PROPERTY_KEY = "sonar.fxcop.installDirectory";
-  private static final String DEPRECATED_TIMEOUT_MINUTES_PROPERTY_KEY = "sonar.fxcop.timeoutMinutes";
+  /**
+   * Maximum number of bytes of parsed issues kept in memory, beyond which they are spilled to the working directory.
+   */
+  public static final String MEMORY_BUDGET_PROPERTY_KEY = "sonar.fxcop.memoryBudgetBytes";
+
+  /**
+   * Whether to locate the issues reported without any file, such as type-level ones, from the declarations found in the sources. Disabled by default.
+   */
+  public static final String LOCATE_FROM_SOURCES_PROPERTY_KEY = "sonar.fxcop.locateIssuesFromSources";
+
+  /**
+   * Comma separated list of existing FxCop reports to replay instead of executing FxCopCmd, to profile the sensor on any platform.
+   * The assembly and FxCopCmd properties are then ignored.
+   */
+  public static final String REPLAY_REPORTS_PROPERTY_KEY = "sonar.fxcop.replay.reports";
+
+  /**
+   * Number of times the replayed reports are parsed, only the last iteration saving the issues. 1 by default.
+   */
+  public static final String REPLAY_ITERATIONS_PROPERTY_KEY = "sonar.fxcop.replay.iterations";
+
+  /**
+   * Whether to parse the FxCop reports while FxCopCmd writes them, instead of once it exits. Ignored with a queue directory,
+   * and the reports are then never compressed. Disabled by default.
+   */
+  public static final String STREAM_REPORTS_PROPERTY_KEY = "sonar.fxcop.streamReports";
+
+  /**
+   * Whether to gzip-compress the FxCop reports right after their generation, to save space in the working directory. Disabled by default.
+   */
+  public static final String COMPRESS_REPORTS_PROPERTY_KEY = "sonar.fxcop.compressReports";
+
+  /**
+   * Whether to skip the execution of FxCop on the assemblies which did not change since the last successful run, and to reuse their report.
+   * Assemblies are compared using the identifiers in their metadata header. Disabled by default.
+   */
+  public static final String SKIP_UNCHANGED_ASSEMBLIES_PROPERTY_KEY = "sonar.fxcop.skipUnchangedAssemblies";
+
+  /**
+   * Whether to journal the assemblies whose report is complete, so that an interrupted analysis resumes with the remaining ones only.
+   * See {@link FxCopCheckpointJournal}. Disabled by default.
+   */
+  public static final String CHECKPOINT_PROPERTY_KEY = "sonar.fxcop.checkpoint";
+
+  /**
+   * Whether to write the issues grouped by source file to the {@link FxCopIssueIndex} of the working directory after each analysis.
+   * Failures to write it are only logged. Disabled by default.
+   */
+  public static final String ISSUE_INDEX_PROPERTY_KEY = "sonar.fxcop.issueIndex";
+
+  /**
+   * Maximum number of assemblies analyzed concurrently, each by its own FxCopCmd process. 1 by default.
+   */
+  public static final String MAX_CONCURRENT_ASSEMBLIES_PROPERTY_KEY = "sonar.fxcop.maxConcurrentAssemblies";
+
+  /**
+   * Whether to analyze the assemblies of all the modules with a single FxCopCmd execution, whose report is shared by the modules,
+   * each importing the issues of the source files it owns. The plugin must then register {@link FxCopProjectAnalysis}. Disabled by default.
+   */
+  public static final String PROJECT_LEVEL_PROPERTY_KEY = "sonar.fxcop.projectLevel";
+
+  /**
+   * Whether to govern the local FxCopCmd processes with {@link FxCopGovernor}: learned per-assembly timeouts, bounded by the configured one,
+   * and a concurrency capped by the free physical memory. Disabled by default.
+   */
+  public static final String GOVERNOR_PROPERTY_KEY = "sonar.fxcop.governor";
+
+  /**
+   * Physical memory in bytes budgeted for each FxCopCmd process by {@link FxCopGovernor}. 512 MB by default.
+   */
+  public static final String PROCESS_MEMORY_PROPERTY_KEY = "sonar.fxcop.governor.processMemoryBytes";
+
+  /**
+   * Directory shared with {@link FxCopWorker}s, through which the assemblies are analyzed. Assemblies are analyzed locally when not set.
+   */
+  public static final String QUEUE_DIRECTORY_PROPERTY_KEY = "sonar.fxcop.queueDirectory";
+
+  /**
+   * Local directory in which the FxCop reports are cached, shared by all the analyses of the machine. No local cache is used when not set.
+   */
+  public static final String CACHE_DIRECTORY_PROPERTY_KEY = "sonar.fxcop.cache.directory";
+
+  /**
+   * Maximum size in bytes of the local cache, beyond which the least recently used reports are evicted. 1 GB by default.
+   */
+  public static final String CACHE_MAX_SIZE_PROPERTY_KEY = "sonar.fxcop.cache.maxSizeBytes";
+
+  /**
+   * Base URL of a remote cache of FxCop reports, shared by several machines, on which they are retrieved with GET and stored with PUT.
+   */
+  public static final String CACHE_URL_PROPERTY_KEY = "sonar.fxcop.cache.url";
+
+  /**
+   * Minimum certainty, between 0 and 100, of the issues to import. Issues of a lower certainty are skipped while parsing the report.
+   */
+  public static final String MINIMUM_CERTAINTY_PROPERTY_KEY = "sonar.fxcop.minimumCertainty";
+
+  /**
+   * Comma separated globs of the source files whose issues are excluded, such as "**&#47;*.Designer.cs" or "**&#47;obj/**".
+   */
+  public static final String EXCLUSIONS_PROPERTY_KEY = "sonar.fxcop.exclusions";
+
+  /**
+   * Regular expression of the source file paths, with forward slashes, whose issues are excluded.
+   */
+  public static final String EXCLUSION_REGEX_PROPERTY_KEY = "sonar.fxcop.exclusionRegex";
+
+  /**
+   * Whether to exclude the issues of generated code: the files matching {@link FxCopPathExclusions#GENERATED_CODE_GLOBS} are excluded,
+   * and FxCopCmd skips the code marked as generated. Disabled by default.
+   */
+  public static final String EXCLUDE_GENERATED_CODE_PROPERTY_KEY = "sonar.fxcop.excludeGeneratedCode";
+
+  /**
+   * Comma separated levels of the issues to import, among {@link #LEVELS}. All levels are imported by default.
+   */
+  public static final String LEVELS_PROPERTY_KEY = "sonar.fxcop.levels";
+
+  /**
+   * Whether to derive the severity of the issues from their FxCop level instead of using the severity of their active rule. Disabled by default.
+   */
+  public static final String SEVERITY_FROM_LEVEL_PROPERTY_KEY = "sonar.fxcop.severityFromLevel";
+
+  /**
+   * FxCop issue levels, from the most to the least severe.
+   */
+  public static final List<String> LEVELS = ImmutableList.of("CriticalError", "Error", "CriticalWarning", "Warning", "Informational");
+
+  static final String DEPRECATED_FXCOPCMD_PATH_PROPERTY_KEY = "sonar.fxcop.installDirectory";
+  static final String DEPRECATED_TIMEOUT_MINUTES_PROPERTY_KEY = "sonar.fxcop.timeoutMinutes";
 
   private final String languageKey;
   private final String repositoryKey;
@@ -63,47 +201,127 @@ public class FxCopConfiguration {
     return timeoutPropertyKey;
   }
 
+  /**
+   * Validates the settings, and switches to the deprecated properties when only them are set.
+   */
   public void checkProperties(Settings settings) {
-    checkAssemblyProperty(settings);
-    checkFxCopCmdPathProperty(settings);
-    checkTimeoutProeprty(settings);
+    FxCopResolvedConfiguration resolved = FxCopResolvedConfiguration.resolve(this, settings);
+    check(resolved);
+    fxCopCmdPropertyKey = resolved.fxCopCmdPropertyKey();
+    timeoutPropertyKey = resolved.timeoutPropertyKey();
   }
 
-  private void checkTimeoutProeprty(Settings settings) {
-    if (!settings.hasKey(timeoutPropertyKey) && settings.hasKey(DEPRECATED_TIMEOUT_MINUTES_PROPERTY_KEY)) {
-      timeoutPropertyKey = DEPRECATED_TIMEOUT_MINUTES_PROPERTY_KEY;
+  /**
+   * Validates a resolved configuration, using the status of the assemblies and .pdb files stated when it was resolved.
+   */
+  public void check(FxCopResolvedConfiguration conf) {
+    if (conf.isReplay()) {
+      checkReplay(conf);
+    } else if (!conf.isProjectLevel() || conf.isAssembliesSet()) {
+      // At project level, the assemblies may be set on other modules only
+      checkAssemblies(conf);
     }
+    checkMaxConcurrentAssemblies(conf);
+    checkProcessMemory(conf);
+    checkMinimumCertainty(conf);
+    checkLevels(conf);
+    checkExclusionRegex(conf);
+  }
+
+  /**
+   * @return Whether existing reports are replayed instead of executing FxCopCmd
+   */
+  public static boolean isReplay(Settings settings) {
+    return settings.hasKey(REPLAY_REPORTS_PROPERTY_KEY);
   }
 
-  private void checkFxCopCmdPathProperty(Settings settings) {
-    if (!settings.hasKey(fxCopCmdPropertyKey) && settings.hasKey(DEPRECATED_FXCOPCMD_PATH_PROPERTY_KEY)) {
-      fxCopCmdPropertyKey = DEPRECATED_FXCOPCMD_PATH_PROPERTY_KEY;
+  private static void checkReplay(FxCopResolvedConfiguration conf) {
+    for (File reportFile : conf.replayReports()) {
+      Preconditions.checkArgument(
+        reportFile.isFile(),
+        "Cannot find the FxCop report \"" + reportFile.getAbsolutePath() + "\" provided in the property \"" + REPLAY_REPORTS_PROPERTY_KEY + "\".");
     }
+
+    Preconditions.checkArgument(
+      conf.replayIterations() >= 1,
+      "The property \"" + REPLAY_ITERATIONS_PROPERTY_KEY + "\" must be at least 1, but was " + conf.replayIterations() + ".");
   }
 
-  private void checkAssemblyProperty(Settings settings) {
-    checkProperty(settings, assemblyPropertyKey);
+  private static void checkExclusionRegex(FxCopResolvedConfiguration conf) {
+    if (conf.exclusionRegex() != null) {
+      try {
+        Pattern.compile(conf.exclusionRegex());
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException("The property \"" + EXCLUSION_REGEX_PROPERTY_KEY + "\" is not a valid regular expression: " + e.getDescription(), e);
+      }
+    }
+  }
 
-    String assemblyPath = settings.getString(assemblyPropertyKey);
+  private static void checkMaxConcurrentAssemblies(FxCopResolvedConfiguration conf) {
+    Preconditions.checkArgument(
+      conf.maxConcurrentAssemblies() >= 1,
+      "The property \"" + MAX_CONCURRENT_ASSEMBLIES_PROPERTY_KEY + "\" must be at least 1, but was " + conf.maxConcurrentAssemblies() + ".");
+  }
 
-    File assemblyFile = new File(assemblyPath);
+  private static void checkProcessMemory(FxCopResolvedConfiguration conf) {
     Preconditions.checkArgument(
-      assemblyFile.isFile(),
-      "Cannot find the assembly \"" + assemblyFile.getAbsolutePath() + "\" provided in the property \"" + assemblyPropertyKey + "\".");
+      conf.processMemory() > 0,
+      "The property \"" + PROCESS_MEMORY_PROPERTY_KEY + "\" must be positive, but was " + conf.processMemory() + ".");
+  }
 
-    File pdbFile = new File(pdbPath(assemblyPath));
+  private static void checkMinimumCertainty(FxCopResolvedConfiguration conf) {
     Preconditions.checkArgument(
-      pdbFile.isFile(),
-      "Cannot find the .pdb file \"" + pdbFile.getAbsolutePath() + "\" inferred from the property \"" + assemblyPropertyKey + "\".");
+      conf.minimumCertainty() >= 0 && conf.minimumCertainty() <= 100,
+      "The property \"" + MINIMUM_CERTAINTY_PROPERTY_KEY + "\" must be between 0 and 100, but was " + conf.minimumCertainty() + ".");
   }
 
-  private static void checkProperty(Settings settings, String property) {
-    if (!settings.hasKey(property)) {
-      throw new IllegalArgumentException("The property \"" + property + "\" must be set.");
+  private static void checkLevels(FxCopResolvedConfiguration conf) {
+    for (String level : conf.levels()) {
+      Preconditions.checkArgument(
+        LEVELS.contains(level),
+        "Unknown level \"" + level + "\" in the property \"" + LEVELS_PROPERTY_KEY + "\", expected one of: " + Joiner.on(", ").join(LEVELS));
     }
   }
 
-  private static String pdbPath(String assemblyPath) {
+  public static Set<String> splitLevels(@Nullable String levels) {
+    return levels == null ? ImmutableSet.<String>of() : ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(levels));
+  }
+
+  private static void checkAssemblies(FxCopResolvedConfiguration conf) {
+    if (!conf.isAssembliesSet()) {
+      throw new IllegalArgumentException("The property \"" + conf.assemblyPropertyKey() + "\" must be set.");
+    }
+
+    for (String assemblyPath : conf.assemblies()) {
+      Preconditions.checkArgument(
+        conf.fileStatus(assemblyPath).exists(),
+        "Cannot find the assembly \"" + new File(assemblyPath).getAbsolutePath() + "\" provided in the property \"" + conf.assemblyPropertyKey() + "\".");
+
+      String pdbPath = pdbPath(assemblyPath);
+      Preconditions.checkArgument(
+        conf.fileStatus(pdbPath).exists(),
+        "Cannot find the .pdb file \"" + new File(pdbPath).getAbsolutePath() + "\" inferred from the property \"" + conf.assemblyPropertyKey() + "\".");
+    }
+  }
+
+  /**
+   * The assembly property may list several, comma separated, assemblies.
+   */
+  public static List<String> splitAssemblies(String assemblies) {
+    return splitList(assemblies);
+  }
+
+  /**
+   * @return The trimmed items of the given comma separated list, such as report paths or globs, ignoring the empty ones
+   */
+  public static List<String> splitList(String list) {
+    return ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(list));
+  }
+
+  /**
+   * @return The path of the .pdb file of the given assembly
+   */
+  public static String pdbPath(String assemblyPath) {
     int i = assemblyPath.lastIndexOf('.');
     if (i == -1) {
       i = assemblyPath.length();
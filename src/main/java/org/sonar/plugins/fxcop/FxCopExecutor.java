@@ -20,10 +20,14 @@
 package org.sonar.plugins.fxcop;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import org.sonar.api.utils.command.Command;
 import org.sonar.api.utils.command.CommandExecutor;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class FxCopExecutor {
@@ -32,23 +36,71 @@ public class FxCopExecutor {
   private static final int EXIT_CODE_SUCCESS_SHOULD_BREAK_BUILD = 1024;
 
   public void execute(String executable, String assemblies, File rulesetFile, File reportFile, int timeout) {
-    int exitCode = CommandExecutor.create().execute(
-      Command.create(getExecutable(executable))
-        .addArgument("/file:" + assemblies)
-        .addArgument("/ruleset:=" + rulesetFile.getAbsolutePath())
-        .addArgument("/out:" + reportFile.getAbsolutePath())
-        .addArgument("/outxsl:none")
-        .addArgument("/forceoutput")
-        .addArgument("/searchgac"),
-      TimeUnit.MINUTES.toMillis(timeout));
+    execute(executable, assemblies, rulesetFile, reportFile, timeout, false, false);
+  }
+
+  /**
+   * Analyzes several assemblies with a single FxCopCmd execution, which then writes a single report.
+   *
+   * @param ignoreGeneratedCode Whether FxCopCmd should skip the code marked with GeneratedCodeAttribute, which it can do itself unlike path exclusions
+   */
+  public void execute(String executable, List<String> assemblies, File rulesetFile, File reportFile, int timeout, boolean ignoreGeneratedCode) {
+    executeWithin(executable, assemblies, rulesetFile, reportFile, TimeUnit.MINUTES.toMillis(timeout), ignoreGeneratedCode);
+  }
+
+  /**
+   * Executes FxCopCmd with a timeout in milliseconds, such as the one of {@link FxCopGovernor}, after which it is killed
+   * and a {@link org.sonar.api.utils.command.CommandException} caused by a {@link java.util.concurrent.TimeoutException} is thrown.
+   */
+  public void executeWithin(String executable, String assembly, File rulesetFile, File reportFile, long timeoutMillis, boolean compressReport,
+    boolean ignoreGeneratedCode) {
+    executeWithin(executable, Collections.singletonList(assembly), rulesetFile, reportFile, timeoutMillis, ignoreGeneratedCode);
+    if (compressReport) {
+      compress(reportFile);
+    }
+  }
+
+  private static void executeWithin(String executable, List<String> assemblies, File rulesetFile, File reportFile, long timeoutMillis,
+    boolean ignoreGeneratedCode) {
+    Command command = Command.create(getExecutable(executable));
+    for (String assembly : assemblies) {
+      command.addArgument("/file:" + assembly);
+    }
+    command
+      .addArgument("/ruleset:=" + rulesetFile.getAbsolutePath())
+      .addArgument("/out:" + reportFile.getAbsolutePath())
+      .addArgument("/outxsl:none")
+      .addArgument("/forceoutput")
+      .addArgument("/searchgac");
+    if (ignoreGeneratedCode) {
+      command.addArgument("/ignoregeneratedcode");
+    }
+
+    int exitCode = CommandExecutor.create().execute(command, timeoutMillis);
     Preconditions.checkState(exitCode == EXIT_CODE_SUCCESS || exitCode == EXIT_CODE_SUCCESS_SHOULD_BREAK_BUILD,
       "The execution of \"" + executable + "\" failed and returned " + exitCode + " as exit code.");
   }
 
+  /**
+   * Executes FxCopCmd and then, if requested, replaces its report by its gzip-compressed content, which the parser reads transparently.
+   */
+  public void execute(String executable, String assemblies, File rulesetFile, File reportFile, int timeout, boolean compressReport,
+    boolean ignoreGeneratedCode) {
+    executeWithin(executable, assemblies, rulesetFile, reportFile, TimeUnit.MINUTES.toMillis(timeout), compressReport, ignoreGeneratedCode);
+  }
+
+  private static void compress(File reportFile) {
+    try {
+      FxCopReportCompression.compress(reportFile);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
   /**
    * Handles deprecated property: "installDirectory", which gives the path to the directory only.
    */
-  private static String getExecutable(String propertyValue) {
+  static String getExecutable(String propertyValue) {
     String execName = "FxCopCmd.exe";
 
     if (!propertyValue.endsWith(execName)) {
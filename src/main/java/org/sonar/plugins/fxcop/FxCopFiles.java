@@ -0,0 +1,87 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * File operations shared by the queue, the caches and the report handling.
+ */
+public class FxCopFiles {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopFiles.class);
+
+  private FxCopFiles() {
+  }
+
+  /**
+   * Moves the file, falling back on a copy when renaming is not possible, for instance across file systems.
+   */
+  public static void move(File from, File to) {
+    if (!from.renameTo(to)) {
+      try {
+        Files.move(from, to);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+  }
+
+  /**
+   * Replaces the file by the complete temporary one, so that readers see either the previous content or the new one.
+   */
+  public static void replace(File temporaryFile, File file) {
+    // Renaming over an existing file fails on Windows
+    if (file.exists() && !file.delete()) {
+      throw new IllegalStateException("Could not replace \"" + file.getAbsolutePath() + "\".");
+    }
+    if (!temporaryFile.renameTo(file)) {
+      throw new IllegalStateException("Could not rename \"" + temporaryFile.getAbsolutePath() + "\" to \"" + file.getAbsolutePath() + "\".");
+    }
+  }
+
+  /**
+   * Deletes the file, or the directory and its content, logging the files which could not be deleted.
+   *
+   * @return false if anything could not be deleted
+   */
+  public static boolean deleteRecursively(File file) {
+    boolean deleted = true;
+    File[] children = file.isDirectory() ? file.listFiles() : null;
+    if (children != null) {
+      for (File child : children) {
+        deleted &= deleteRecursively(child);
+      }
+    }
+
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Could not delete \"" + file.getAbsolutePath() + "\".");
+      return false;
+    }
+    return deleted;
+  }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Governs the FxCopCmd processes of an analysis:
+ * <ul>
+ *   <li>Caps their number by the free physical memory, each process being budgeted a fixed amount of memory.</li>
+ *   <li>Gives each job a timeout of {@link #TIMEOUT_FACTOR} times its expected duration, learned from the previous runs
+ *   of the same assembly and scaled by its current size, and never longer than the configured timeout.</li>
+ *   <li>Retries once, with the configured timeout, the jobs killed because they exceeded their learned timeout.</li>
+ *   <li>Reports the duration, timeout and attempts of each job in "fxcop-jobs.csv" in the working directory.</li>
+ * </ul>
+ * The memory used by each FxCopCmd process cannot be measured from Java 6, so only the free physical memory at the start of each job is reported.
+ */
+public class FxCopGovernor {
+
+  public static final String HISTORY_FILE_NAME = "fxcop-durations.properties";
+  public static final String REPORT_FILE_NAME = "fxcop-jobs.csv";
+
+  /**
+   * Memory budgeted for each FxCopCmd process when not configured.
+   */
+  public static final long DEFAULT_PROCESS_MEMORY = 512L * 1024 * 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopGovernor.class);
+
+  private static final long TIMEOUT_FACTOR = 3;
+  private static final long MIN_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final File workingDir;
+  private final long maxTimeoutMillis;
+  private final long processMemory;
+  private final FxCopManifest history;
+  private final List<String> report = Lists.newArrayList();
+
+  /**
+   * @param maxTimeoutMillis The configured timeout, which bounds the learned ones
+   */
+  public FxCopGovernor(File workingDir, long maxTimeoutMillis, long processMemory) {
+    this.workingDir = workingDir;
+    this.maxTimeoutMillis = maxTimeoutMillis;
+    this.processMemory = processMemory;
+    this.history = FxCopManifest.load(new File(workingDir, HISTORY_FILE_NAME));
+  }
+
+  public interface Execution {
+
+    void execute(FxCopScheduler.Job job, long timeoutMillis);
+
+  }
+
+  /**
+   * @return The requested number of concurrent processes, lowered so that each one has its budgeted memory, but at least 1
+   */
+  public int concurrency(int requested) {
+    return concurrency(requested, freePhysicalMemory());
+  }
+
+  int concurrency(int requested, long freePhysicalMemory) {
+    if (freePhysicalMemory < 0) {
+      return requested;
+    }
+
+    int concurrency = (int) Math.max(1, Math.min(requested, freePhysicalMemory / processMemory));
+    if (concurrency < requested) {
+      LOG.info("Running at most " + concurrency + " FxCop processes concurrently instead of " + requested + ", as only " + freePhysicalMemory
+        + " bytes of physical memory are free.");
+    }
+    return concurrency;
+  }
+
+  /**
+   * @return The duration expected from the last run of the same assembly, scaled by its size, or -1 if it never ran
+   *   or if its history entry is invalid
+   */
+  public long expectedMillis(FxCopScheduler.Job job) {
+    String previous = history.get(job.assembly());
+    if (previous == null) {
+      return -1;
+    }
+
+    List<String> values = Lists.newArrayList(Splitter.on(',').trimResults().split(previous));
+    try {
+      if (values.size() == 2) {
+        long previousSize = Long.parseLong(values.get(0));
+        long previousMillis = Long.parseLong(values.get(1));
+        if (previousMillis >= 0) {
+          return previousSize <= 0 ? previousMillis : (long) (previousMillis * ((double) job.size() / previousSize));
+        }
+      }
+    } catch (NumberFormatException e) {
+      // Handled as any other invalid entry
+    }
+
+    LOG.debug("Ignoring the invalid FxCop duration history entry \"" + previous + "\" of the assembly \"" + job.assembly() + "\".");
+    return -1;
+  }
+
+  /**
+   * @return The timeout of the first attempt of the given job
+   */
+  public long timeoutMillis(FxCopScheduler.Job job) {
+    long expectedMillis = expectedMillis(job);
+    if (expectedMillis < 0) {
+      return maxTimeoutMillis;
+    }
+    return Math.min(maxTimeoutMillis, Math.max(MIN_TIMEOUT_MILLIS, TIMEOUT_FACTOR * expectedMillis));
+  }
+
+  /**
+   * Runs the job within its timeout and, if requested, once more within the configured timeout if it was killed before.
+   * Jobs whose report is read while being written must not be retried.
+   */
+  public void run(FxCopScheduler.Job job, boolean retryOnTimeout, Execution execution) {
+    long expectedMillis = expectedMillis(job);
+    long timeoutMillis = timeoutMillis(job);
+    long freePhysicalMemory = freePhysicalMemory();
+    long start = System.nanoTime();
+    int attempts = 1;
+    String outcome = "failed";
+
+    try {
+      try {
+        execution.execute(job, timeoutMillis);
+      } catch (RuntimeException e) {
+        if (!retryOnTimeout || !isTimeout(e) || timeoutMillis >= maxTimeoutMillis) {
+          throw e;
+        }
+        LOG.warn("Killed the FxCop analysis of \"" + job.assembly() + "\" after its expected timeout of " + timeoutMillis
+          + " ms, retrying it with the configured timeout of " + maxTimeoutMillis + " ms.");
+        attempts++;
+        execution.execute(job, maxTimeoutMillis);
+      }
+      outcome = "success";
+    } catch (RuntimeException e) {
+      outcome = isTimeout(e) ? "timeout" : "failed";
+      throw e;
+    } finally {
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      record(job, expectedMillis, timeoutMillis, millis, attempts, outcome, freePhysicalMemory);
+    }
+  }
+
+  private synchronized void record(FxCopScheduler.Job job, long expectedMillis, long timeoutMillis, long millis, int attempts, String outcome,
+    long freePhysicalMemory) {
+    // Only the durations of complete single attempts are representative
+    if ("success".equals(outcome) && attempts == 1) {
+      history.put(job.assembly(), job.size() + "," + millis);
+    }
+    report.add(csv(job.assembly()) + "," + job.size() + "," + expectedMillis + "," + timeoutMillis + "," + millis + "," + attempts + "," + outcome + ","
+      + freePhysicalMemory);
+  }
+
+  /**
+   * Saves the learned durations and the report of the jobs run so far. Failures are only logged, as they must not fail the analysis.
+   */
+  public synchronized void save() {
+    File historyFile = new File(workingDir, HISTORY_FILE_NAME);
+    try {
+      history.save(historyFile, "Sizes and durations of the last successful FxCop analysis of each assembly");
+    } catch (RuntimeException e) {
+      LOG.warn("Could not save the FxCop durations \"" + historyFile.getAbsolutePath() + "\": " + e.getMessage());
+    }
+
+    StringBuilder sb = new StringBuilder("assembly,bytes,expectedMillis,timeoutMillis,millis,attempts,outcome,freePhysicalMemoryBytes\n");
+    for (String line : report) {
+      sb.append(line).append('\n');
+    }
+    File reportFile = new File(workingDir, REPORT_FILE_NAME);
+    try {
+      Files.write(sb.toString(), reportFile, Charsets.UTF_8);
+    } catch (IOException e) {
+      LOG.warn("Could not save the FxCop governor report \"" + reportFile.getAbsolutePath() + "\": " + e.getMessage());
+    }
+  }
+
+  static boolean isTimeout(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String csv(String value) {
+    return value.indexOf(',') == -1 && value.indexOf('"') == -1 ? value : "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * @return The free physical memory of the machine, or -1 if the JVM does not expose it
+   */
+  private static long freePhysicalMemory() {
+    try {
+      Object size = ManagementFactory.getPlatformMBeanServer().getAttribute(
+        new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME), "FreePhysicalMemorySize");
+      return size instanceof Long ? (Long) size : -1;
+    } catch (JMException e) {
+      return -1;
+    }
+  }
+
+}
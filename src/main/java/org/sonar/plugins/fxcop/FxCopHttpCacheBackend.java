@@ -0,0 +1,111 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Cache entries stored on a remote HTTP server, for instance shared by several build agents, as the resources "&lt;base URL&gt;/&lt;key&gt;".
+ * Entries are retrieved with GET, 404 meaning that there is none, and stored with PUT. Eviction is left to the server.
+ */
+public class FxCopHttpCacheBackend implements FxCopCacheBackend {
+
+  private static final int TIMEOUT_MILLIS = 10000;
+
+  private final String baseUrl;
+
+  public FxCopHttpCacheBackend(String baseUrl) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl : (baseUrl + "/");
+  }
+
+  @Override
+  public boolean get(String key, File file) throws IOException {
+    HttpURLConnection connection = open(key);
+    try {
+      int responseCode = connection.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+        Closeables.closeQuietly(connection.getErrorStream());
+        return false;
+      }
+      checkResponseCode(key, responseCode);
+
+      InputStream stream = connection.getInputStream();
+      OutputStream output = null;
+      try {
+        output = new FileOutputStream(file);
+        ByteStreams.copy(stream, output);
+      } finally {
+        Closeables.closeQuietly(stream);
+        Closeables.close(output, false);
+      }
+      return true;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Override
+  public void put(String key, File file) throws IOException {
+    HttpURLConnection connection = open(key);
+    try {
+      connection.setRequestMethod("PUT");
+      connection.setDoOutput(true);
+      long length = file.length();
+      if (length <= Integer.MAX_VALUE) {
+        connection.setFixedLengthStreamingMode((int) length);
+      } else {
+        connection.setChunkedStreamingMode(0);
+      }
+      OutputStream stream = connection.getOutputStream();
+      try {
+        Files.copy(file, stream);
+      } finally {
+        Closeables.closeQuietly(stream);
+      }
+      checkResponseCode(key, connection.getResponseCode());
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private HttpURLConnection open(String key) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + key).openConnection();
+    connection.setConnectTimeout(TIMEOUT_MILLIS);
+    connection.setReadTimeout(TIMEOUT_MILLIS);
+    return connection;
+  }
+
+  private void checkResponseCode(String key, int responseCode) throws IOException {
+    if (responseCode < 200 || responseCode >= 300) {
+      throw new IOException("Unexpected HTTP response code " + responseCode + " for \"" + baseUrl + key + "\".");
+    }
+  }
+
+}
@@ -25,18 +25,33 @@ public class FxCopIssue {
 
   private final int reportLine;
   private final String ruleKey;
+  private final String checkId;
+  private final String category;
   private final String path;
   private final String file;
   private final Integer line;
   private final String message;
+  private final Integer certainty;
+  private final String level;
+  private final FxCopCodeElement context;
 
   public FxCopIssue(int reportLine, String ruleKey, @Nullable String path, @Nullable String file, @Nullable Integer line, String message) {
+    this(reportLine, ruleKey, null, null, path, file, line, message, null, null, null);
+  }
+
+  public FxCopIssue(int reportLine, String ruleKey, @Nullable String checkId, @Nullable String category, @Nullable String path, @Nullable String file,
+    @Nullable Integer line, String message, @Nullable Integer certainty, @Nullable String level, @Nullable FxCopCodeElement context) {
     this.reportLine = reportLine;
     this.ruleKey = ruleKey;
+    this.checkId = checkId;
+    this.category = category;
     this.path = path;
     this.file = file;
     this.line = line;
     this.message = message;
+    this.certainty = certainty;
+    this.level = level;
+    this.context = context;
   }
 
   public int reportLine() {
@@ -47,6 +62,16 @@ public class FxCopIssue {
     return ruleKey;
   }
 
+  @Nullable
+  public String checkId() {
+    return checkId;
+  }
+
+  @Nullable
+  public String category() {
+    return category;
+  }
+
   @Nullable
   public String path() {
     return path;
@@ -66,4 +91,28 @@ public class FxCopIssue {
     return message;
   }
 
+  /**
+   * @return The certainty, between 0 and 100, with which FxCop reported the issue
+   */
+  @Nullable
+  public Integer certainty() {
+    return certainty;
+  }
+
+  /**
+   * @return The FxCop level of the issue, such as "CriticalError" or "Warning"
+   */
+  @Nullable
+  public String level() {
+    return level;
+  }
+
+  /**
+   * @return The innermost code element in which the issue is reported, from which the enclosing module, namespace, type and member are available
+   */
+  @Nullable
+  public FxCopCodeElement context() {
+    return context;
+  }
+
 }
@@ -0,0 +1,175 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.resources.Resource;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the saved issues per file and for the whole module, by category, rule and certainty, in a single pass.
+ * <p>
+ * Distinct categories, rules and certainties are interned once and counted in primitive arrays,
+ * so that adding an issue does not allocate.
+ */
+public class FxCopIssueAggregator {
+
+  private static final String UNKNOWN = "unknown";
+
+  private final FxCopMetrics metrics;
+  private final Keys categories = new Keys();
+  private final Keys rules = new Keys();
+  private final Keys certainties = new Keys();
+  private final Map<Resource<?>, Counters> files = Maps.newLinkedHashMap();
+  private final Counters total = new Counters();
+  private Resource<?> lastFile;
+  private Counters lastCounters;
+
+  public FxCopIssueAggregator(FxCopMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param certainty The certainty of the issue, or {@link FxCopIssueTable#NO_CERTAINTY}
+   */
+  public void add(Resource<?> file, String rule, @Nullable String category, int certainty) {
+    int categoryId = categories.id(category == null ? UNKNOWN : category);
+    int ruleId = rules.id(rule);
+    int certaintyId = certainties.id(certainty == FxCopIssueTable.NO_CERTAINTY ? UNKNOWN : Integer.toString(certainty));
+
+    countersOf(file).add(categoryId, ruleId, certaintyId);
+    total.add(categoryId, ruleId, certaintyId);
+  }
+
+  public int issues() {
+    return total.issues;
+  }
+
+  /**
+   * Saves the measures of each file which has issues, and those of the module.
+   */
+  public void save(SensorContext context) {
+    for (Map.Entry<Resource<?>, Counters> entry : files.entrySet()) {
+      for (Measure measure : entry.getValue().measures()) {
+        context.saveMeasure(entry.getKey(), measure);
+      }
+    }
+    for (Measure measure : total.measures()) {
+      context.saveMeasure(measure);
+    }
+  }
+
+  private Counters countersOf(Resource<?> file) {
+    // Issues are mostly grouped by file in the reports
+    if (file.equals(lastFile)) {
+      return lastCounters;
+    }
+
+    Counters counters = files.get(file);
+    if (counters == null) {
+      counters = new Counters();
+      files.put(file, counters);
+    }
+    lastFile = file;
+    lastCounters = counters;
+    return counters;
+  }
+
+  private class Counters {
+
+    private int issues;
+    private int[] byCategory = new int[0];
+    private int[] byRule = new int[0];
+    private int[] byCertainty = new int[0];
+
+    public void add(int categoryId, int ruleId, int certaintyId) {
+      issues++;
+      byCategory = increment(byCategory, categoryId);
+      byRule = increment(byRule, ruleId);
+      byCertainty = increment(byCertainty, certaintyId);
+    }
+
+    public Measure[] measures() {
+      return new Measure[] {
+        new Measure(metrics.issues(), (double) issues),
+        new Measure(metrics.issuesByCategory(), categories.format(byCategory)),
+        new Measure(metrics.issuesByRule(), rules.format(byRule)),
+        new Measure(metrics.issuesByCertainty(), certainties.format(byCertainty))
+      };
+    }
+
+  }
+
+  private static int[] increment(int[] counts, int id) {
+    int[] result = counts;
+    if (id >= result.length) {
+      result = Arrays.copyOf(result, Math.max(id + 1, result.length * 2));
+    }
+    result[id]++;
+    return result;
+  }
+
+  private static class Keys {
+
+    private final Map<String, Integer> ids = Maps.newHashMap();
+    private final List<String> values = Lists.newArrayList();
+
+    public int id(String value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = values.size();
+        ids.put(value, id);
+        values.add(value);
+      }
+      return id;
+    }
+
+    /**
+     * @return The non-zero counts, in the "key1=count1;key2=count2" format of the SonarQube data measures, sorted by key
+     */
+    public String format(int[] counts) {
+      Map<String, Integer> sorted = Maps.newTreeMap();
+      for (int id = 0; id < counts.length; id++) {
+        if (counts[id] > 0) {
+          sorted.put(values.get(id), counts[id]);
+        }
+      }
+
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, Integer> entry : sorted.entrySet()) {
+        if (sb.length() > 0) {
+          sb.append(';');
+        }
+        sb.append(entry.getKey()).append('=').append(entry.getValue());
+      }
+      return sb.toString();
+    }
+
+  }
+
+}
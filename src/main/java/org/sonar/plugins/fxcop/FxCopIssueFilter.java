@@ -0,0 +1,113 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Describes which issues the {@link FxCopReportReader}s should keep.
+ * Issues rejected by the filter are skipped without reading their message.
+ * By default, all issues are accepted.
+ */
+public class FxCopIssueFilter {
+
+  private Set<String> ruleKeys = null;
+  private boolean locationRequired = false;
+  private int minimumCertainty = 0;
+  private Set<String> levels = null;
+  private FxCopPathExclusions exclusions = null;
+  private FxCopModuleOwnership ownership = null;
+  private File moduleBaseDir = null;
+
+  /**
+   * Only keep the issues of the given rules.
+   *
+   * @param ruleKeys FxCop TypeNames and/or CheckIds
+   */
+  public FxCopIssueFilter setRuleKeys(Set<String> ruleKeys) {
+    this.ruleKeys = ImmutableSet.copyOf(ruleKeys);
+    return this;
+  }
+
+  /**
+   * Only keep the issues which have a path, file and line.
+   */
+  public FxCopIssueFilter setLocationRequired(boolean locationRequired) {
+    this.locationRequired = locationRequired;
+    return this;
+  }
+
+  /**
+   * Only keep the issues whose certainty is at least the given one. Issues without certainty are kept.
+   */
+  public FxCopIssueFilter setMinimumCertainty(int minimumCertainty) {
+    this.minimumCertainty = minimumCertainty;
+    return this;
+  }
+
+  /**
+   * Only keep the issues of the given levels, such as "CriticalError" or "Warning". Issues without level are kept.
+   */
+  public FxCopIssueFilter setLevels(Set<String> levels) {
+    this.levels = ImmutableSet.copyOf(levels);
+    return this;
+  }
+
+  /**
+   * Skip the issues of the excluded source files, based on the Path and File attributes in the report.
+   */
+  public FxCopIssueFilter setExclusions(FxCopPathExclusions exclusions) {
+    this.exclusions = exclusions;
+    return this;
+  }
+
+  /**
+   * Only keep the issues of the source files owned by the module of the given base directory, which implies that they have a path and file.
+   */
+  public FxCopIssueFilter setOwnership(FxCopModuleOwnership ownership, File moduleBaseDir) {
+    this.ownership = ownership;
+    this.moduleBaseDir = moduleBaseDir;
+    return this;
+  }
+
+  public boolean isLocationRequired() {
+    return locationRequired;
+  }
+
+  public boolean acceptRule(String typeName, @Nullable String checkId) {
+    return ruleKeys == null || ruleKeys.contains(typeName) || (checkId != null && ruleKeys.contains(checkId));
+  }
+
+  public boolean acceptIssue(@Nullable Integer certainty, @Nullable String level) {
+    return (certainty == null || certainty >= minimumCertainty) && (levels == null || level == null || levels.contains(level));
+  }
+
+  public boolean acceptLocation(@Nullable String path, @Nullable String file, @Nullable Integer line) {
+    return (!locationRequired || (path != null && file != null && line != null)) &&
+      (exclusions == null || !exclusions.isExcluded(path, file)) &&
+      (ownership == null || ownership.owns(moduleBaseDir, path, file));
+  }
+
+}
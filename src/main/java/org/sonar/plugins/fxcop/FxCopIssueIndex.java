@@ -0,0 +1,390 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Issues grouped by source file, written to "fxcop-issues.idx" in the working directory after each analysis when enabled,
+ * from which the issues of one file are looked up without parsing the report again.
+ *
+ * <p>The file starts with a header (magic, version, number of files), followed by an offset table sorted by normalized file path
+ * (path offset, path length, issues offset, issue count), the paths, and finally the issues of each file in report order.
+ * It is memory-mapped, and looked up by binary search on the offset table.</p>
+ */
+public class FxCopIssueIndex {
+
+  public static final String FILE_NAME = "fxcop-issues.idx";
+
+  private static final int MAGIC = 0x46584349;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 12;
+  private static final int ENTRY_SIZE = 16;
+  private static final int NULL_LENGTH = -1;
+  private static final Pattern REPEATED_SLASHES = Pattern.compile("/{2,}");
+
+  private final MappedByteBuffer buffer;
+  private final int size;
+
+  private FxCopIssueIndex(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+    Preconditions.checkArgument(buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION, "Unsupported FxCop issue index.");
+    this.size = buffer.getInt(8);
+  }
+
+  public static FxCopIssueIndex open(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return new FxCopIssueIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      Closeables.closeQuietly(randomAccessFile);
+    }
+  }
+
+  /**
+   * @return The key of a source file: its path with single forward slashes and in lower case, as Windows paths are case insensitive
+   */
+  public static String normalize(String path) {
+    return REPEATED_SLASHES.matcher(path.replace('\\', '/')).replaceAll("/").toLowerCase(Locale.ENGLISH);
+  }
+
+  /**
+   * @return The number of source files having issues
+   */
+  public int files() {
+    return size;
+  }
+
+  /**
+   * @return The issues of the given source file, in report order, or an empty list if it has none
+   */
+  public List<FxCopIssue> issues(String path) {
+    String key = normalize(path);
+
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = HEADER_SIZE + middle * ENTRY_SIZE;
+      int comparison = readString(buffer.getInt(entry), buffer.getInt(entry + 4)).compareTo(key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return readIssues(buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+      }
+    }
+
+    return ImmutableList.of();
+  }
+
+  private List<FxCopIssue> readIssues(int offset, int count) {
+    ByteBuffer records = buffer.duplicate();
+    records.position(offset);
+
+    ImmutableList.Builder<FxCopIssue> builder = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      int reportLine = records.getInt();
+      int line = records.getInt();
+      int certainty = records.getInt();
+      String ruleKey = readString(records);
+      String checkId = readString(records);
+      String category = readString(records);
+      String issuePath = readString(records);
+      String file = readString(records);
+      String level = readString(records);
+      String message = readString(records);
+      builder.add(new FxCopIssue(reportLine, ruleKey, checkId, category, issuePath, file, line, message,
+        certainty == FxCopIssueTable.NO_CERTAINTY ? null : certainty, level, null));
+    }
+    return builder.build();
+  }
+
+  private String readString(int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(offset);
+    slice.get(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  @Nullable
+  private static String readString(ByteBuffer records) {
+    int length = records.getInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    records.get(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  /**
+   * Writes the index of the located issues of the table: a first pass sizes the issues of each file, and a second one writes them in place,
+   * so that only the sizes of the files are kept in memory. The index is written to a temporary file, which then replaces the previous one.
+   */
+  public static void write(FxCopIssueTable issues, File file) throws IOException {
+    Map<String, Entry> entries = Maps.newTreeMap();
+    KeyCache keys = new KeyCache();
+    FxCopIssueTable.Cursor issue = issues.cursor();
+    while (issue.next()) {
+      String key = keys.key(issue);
+      if (key != null) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+          entry = new Entry(key.getBytes(Charsets.UTF_8));
+          entries.put(key, entry);
+        }
+        entry.count++;
+        entry.bytes += recordSize(issue);
+      }
+    }
+
+    long position = HEADER_SIZE + (long) entries.size() * ENTRY_SIZE;
+    for (Entry entry : entries.values()) {
+      entry.keyOffset = position;
+      position += entry.key.length;
+    }
+    for (Entry entry : entries.values()) {
+      entry.recordsOffset = position;
+      entry.position = position;
+      position += entry.bytes;
+    }
+    Preconditions.checkState(position <= Integer.MAX_VALUE, "The FxCop issue index would exceed 2 GB.");
+
+    File temporaryFile = new File(file.getPath() + ".tmp");
+    Files.createParentDirs(file);
+    RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw");
+    try {
+      randomAccessFile.setLength(position);
+      FileChannel channel = randomAccessFile.getChannel();
+      PositionalWriter writer = new PositionalWriter(channel);
+
+      writer.reserve(0, HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+      for (Entry entry : entries.values()) {
+        writer.reserve(writer.position(), ENTRY_SIZE)
+          .putInt((int) entry.keyOffset).putInt(entry.key.length).putInt((int) entry.recordsOffset).putInt(entry.count);
+      }
+      for (Entry entry : entries.values()) {
+        writer.reserve(entry.keyOffset, entry.key.length).put(entry.key);
+      }
+
+      CharsetEncoder encoder = Charsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      issue = issues.cursor();
+      while (issue.next()) {
+        String key = keys.key(issue);
+        if (key != null) {
+          Entry entry = entries.get(key);
+          int size = recordSize(issue);
+          writeRecord(writer.reserve(entry.position, size), encoder, issue);
+          entry.position += size;
+        }
+      }
+
+      writer.flush();
+      channel.force(true);
+    } finally {
+      Closeables.closeQuietly(randomAccessFile);
+    }
+
+    FxCopFiles.replace(temporaryFile, file);
+  }
+
+  private static int recordSize(FxCopIssueTable.Cursor issue) {
+    return 3 * 4
+      + stringSize(issue.ruleKey())
+      + stringSize(issue.checkId())
+      + stringSize(issue.category())
+      + stringSize(issue.path())
+      + stringSize(issue.file())
+      + stringSize(issue.level())
+      + stringSize(issue.message());
+  }
+
+  private static int stringSize(@Nullable String value) {
+    return 4 + (value == null ? 0 : utf8Length(value));
+  }
+
+  /**
+   * @return The number of bytes of the UTF-8 encoding of the given string, computed without encoding it
+   */
+  static int utf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        // Unpaired surrogates are replaced by '?', as String.getBytes() does
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private static void writeRecord(ByteBuffer buffer, CharsetEncoder encoder, FxCopIssueTable.Cursor issue) {
+    buffer.putInt(issue.reportLine()).putInt(issue.line()).putInt(issue.certainty());
+    writeString(buffer, encoder, issue.ruleKey());
+    writeString(buffer, encoder, issue.checkId());
+    writeString(buffer, encoder, issue.category());
+    writeString(buffer, encoder, issue.path());
+    writeString(buffer, encoder, issue.file());
+    writeString(buffer, encoder, issue.level());
+    writeString(buffer, encoder, issue.message());
+  }
+
+  /**
+   * Encodes the string directly into the buffer, its length being known beforehand.
+   */
+  private static void writeString(ByteBuffer buffer, CharsetEncoder encoder, @Nullable String value) {
+    if (value == null) {
+      buffer.putInt(NULL_LENGTH);
+    } else {
+      buffer.putInt(utf8Length(value));
+      encoder.reset();
+      encoder.encode(CharBuffer.wrap(value), buffer, true);
+      encoder.flush(buffer);
+    }
+  }
+
+  /**
+   * Coalesces the consecutive writes into a heap buffer, written at its position in the file whenever the next write is elsewhere:
+   * as most issues of a report are grouped by file, most records are written contiguously.
+   */
+  private static class PositionalWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long bufferPosition;
+
+    PositionalWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * @return The position in the file following the buffered bytes
+     */
+    long position() {
+      return bufferPosition + buffer.position();
+    }
+
+    /**
+     * @return The buffer, into which the given number of bytes must then be put, to be written at the given position of the file
+     */
+    ByteBuffer reserve(long position, int size) throws IOException {
+      if (position != position() || buffer.remaining() < size) {
+        flush();
+        bufferPosition = position;
+        if (buffer.capacity() < size) {
+          buffer = ByteBuffer.allocate(size);
+        }
+      }
+      return buffer;
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      long position = bufferPosition;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      buffer.clear();
+      bufferPosition = position;
+    }
+
+  }
+
+  /**
+   * Normalizes the file of each issue, reusing the key of the previous issue as most issues of a report are grouped by file.
+   */
+  private static class KeyCache {
+
+    private String path;
+    private String file;
+    private String key;
+
+    @Nullable
+    String key(FxCopIssueTable.Cursor issue) {
+      String issuePath = issue.path();
+      String issueFile = issue.file();
+      if (issuePath == null || issueFile == null || !issue.hasLine()) {
+        return null;
+      }
+
+      if (!issuePath.equals(path) || !issueFile.equals(file)) {
+        path = issuePath;
+        file = issueFile;
+        key = normalize(issuePath + "/" + issueFile);
+      }
+      return key;
+    }
+
+  }
+
+  private static class Entry {
+
+    private final byte[] key;
+    private int count;
+    private long bytes;
+    private long keyOffset;
+    private long recordsOffset;
+    private long position;
+
+    public Entry(byte[] key) {
+      this.key = key;
+    }
+
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import javax.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Merges the issues of several reports, forwarding only the first occurrence of each issue to the delegate handler.
+ * <p>
+ * Issues are identified by a 64 bits fingerprint of their rule, normalized path, file, line and message.
+ * The output order is stable: reports are expected to be merged in a deterministic order, and issues are forwarded in the order in which they are received.
+ */
+public class FxCopIssueMerger implements FxCopIssueHandler {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final char FIELD_SEPARATOR = '\u0000';
+  private static final int NO_LINE = -1;
+
+  private final FxCopIssueHandler delegate;
+  private final LongHashSet fingerprints;
+  private int duplicates;
+
+  public FxCopIssueMerger(FxCopIssueHandler delegate) {
+    this(delegate, 1024);
+  }
+
+  public FxCopIssueMerger(FxCopIssueHandler delegate, int expectedIssues) {
+    this.delegate = delegate;
+    this.fingerprints = new LongHashSet(expectedIssues);
+  }
+
+  @Override
+  public void handle(FxCopIssue issue) {
+    if (fingerprints.add(fingerprint(issue.ruleKey(), issue.path(), issue.file(), issue.line(), issue.message()))) {
+      delegate.handle(issue);
+    } else {
+      duplicates++;
+    }
+  }
+
+  public int duplicates() {
+    return duplicates;
+  }
+
+  public static long fingerprint(String ruleKey, @Nullable String path, @Nullable String file, @Nullable Integer line, String message) {
+    long h = FNV_OFFSET_BASIS;
+    h = hash(h, ruleKey, false);
+    h = hash(h, normalizePath(path), true);
+    h = hash(h, file, true);
+    h = hash(h, line == null ? NO_LINE : line);
+    h = hash(h, message, false);
+    return avalanche(h);
+  }
+
+  @Nullable
+  private static String normalizePath(@Nullable String path) {
+    if (path == null) {
+      return null;
+    }
+
+    String normalized = path.replace('/', '\\');
+    int end = normalized.length();
+    while (end > 0 && normalized.charAt(end - 1) == '\\') {
+      end--;
+    }
+    return normalized.substring(0, end);
+  }
+
+  private static long hash(long h, @Nullable String s, boolean ignoreCase) {
+    long result = h;
+    if (s != null) {
+      String value = ignoreCase ? s.toLowerCase(Locale.ENGLISH) : s;
+      for (int i = 0; i < value.length(); i++) {
+        result = (result ^ value.charAt(i)) * FNV_PRIME;
+      }
+    }
+    return (result ^ FIELD_SEPARATOR) * FNV_PRIME;
+  }
+
+  private static long hash(long h, int value) {
+    long result = h;
+    for (int i = 0; i < 4; i++) {
+      result = (result ^ ((value >>> (8 * i)) & 0xff)) * FNV_PRIME;
+    }
+    return result;
+  }
+
+  private static long avalanche(long h) {
+    long result = h;
+    result ^= result >>> 33;
+    result *= 0xff51afd7ed558ccdL;
+    result ^= result >>> 33;
+    result *= 0xc4ceb9fe1a85ec53L;
+    result ^= result >>> 33;
+    return result;
+  }
+
+}
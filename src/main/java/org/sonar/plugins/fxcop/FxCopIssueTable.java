@@ -0,0 +1,644 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store of issues.
+ * <p>
+ * Lines and certainties are kept in primitive arrays, rule keys, check ids, categories, paths, files, levels and code elements
+ * are interned and referenced by their id, and messages are stored UTF-8 encoded in a single buffer.
+ * Use {@link #cursor()} to iterate over the issues without allocating an {@link FxCopIssue} per issue.
+ * <p>
+ * When a spill directory and a memory budget are given, the in-memory issues are written to a temporary
+ * segment file each time their rows exceed the budget, a segment holding at least a block of rows. Spilled segments are read back
+ * by blocks of rows into a single shared buffer and iterated over transparently, in insertion order.
+ * Call {@link #close()} to delete the segment files.
+ * Interned values always stay in memory, outside of the budget: spilling would not reduce them.
+ */
+public class FxCopIssueTable implements FxCopIssueHandler, Closeable {
+
+  public static final int NO_LINE = Integer.MIN_VALUE;
+  public static final int NO_CERTAINTY = Integer.MIN_VALUE;
+  public static final long UNLIMITED_MEMORY = Long.MAX_VALUE;
+
+  private static final int NO_ID = -1;
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * Approximate number of bytes of an interned string, besides its characters: the String and its array, the boxed id, the map entry and the list slot.
+   */
+  private static final int INTERNED_VALUE_OVERHEAD = 112;
+  private static final int CODE_ELEMENT_OVERHEAD = 24;
+
+  private static final int REPORT_LINE = 0;
+  private static final int LINE = 1;
+  private static final int RULE_KEY = 2;
+  private static final int CHECK_ID = 3;
+  private static final int CATEGORY = 4;
+  private static final int PATH = 5;
+  private static final int FILE = 6;
+  private static final int CONTEXT = 7;
+  private static final int CERTAINTY = 8;
+  private static final int LEVEL = 9;
+  private static final int COLUMNS = 10;
+
+  private final File spillDirectory;
+  private final long memoryBudget;
+  private final int minSegmentRows;
+
+  private final Dictionary ruleKeys = new Dictionary();
+  private final Dictionary checkIds = new Dictionary();
+  private final Dictionary categories = new Dictionary();
+  private final Dictionary paths = new Dictionary();
+  private final Dictionary files = new Dictionary();
+  private final Dictionary levels = new Dictionary();
+  private final ContextDictionary contexts = new ContextDictionary();
+
+  private final List<FileSegment> spilledSegments = Lists.newArrayList();
+  private final BlockBuffer blockBuffer = new BlockBuffer();
+  private HeapSegment heapSegment = new HeapSegment();
+  private final int[] row = new int[COLUMNS];
+  private int size;
+
+  public FxCopIssueTable() {
+    this(null, UNLIMITED_MEMORY);
+  }
+
+  /**
+   * @param spillDirectory Directory in which the segments exceeding the memory budget are written
+   * @param memoryBudget Maximum number of bytes used by the rows of the in-memory issues
+   */
+  public FxCopIssueTable(@Nullable File spillDirectory, long memoryBudget) {
+    this(spillDirectory, memoryBudget, FileSegment.BLOCK_ROWS);
+  }
+
+  @VisibleForTesting
+  FxCopIssueTable(@Nullable File spillDirectory, long memoryBudget, int minSegmentRows) {
+    this.spillDirectory = spillDirectory;
+    this.memoryBudget = memoryBudget;
+    this.minSegmentRows = minSegmentRows;
+  }
+
+  @Override
+  public void handle(FxCopIssue issue) {
+    row[REPORT_LINE] = issue.reportLine();
+    row[LINE] = issue.line() == null ? NO_LINE : issue.line();
+    row[RULE_KEY] = ruleKeys.id(issue.ruleKey());
+    row[CHECK_ID] = checkIds.id(issue.checkId());
+    row[CATEGORY] = categories.id(issue.category());
+    row[PATH] = paths.id(issue.path());
+    row[FILE] = files.id(issue.file());
+    row[CONTEXT] = contexts.id(issue.context());
+    row[CERTAINTY] = issue.certainty() == null ? NO_CERTAINTY : issue.certainty();
+    row[LEVEL] = levels.id(issue.level());
+    heapSegment.add(row, issue.message().getBytes(Charsets.UTF_8));
+    size++;
+
+    if (spillDirectory != null && heapSegment.size() >= minSegmentRows && heapSegment.memoryUsage() > memoryBudget) {
+      spill();
+    }
+  }
+
+  public void add(int reportLine, String ruleKey, @Nullable String path, @Nullable String file, @Nullable Integer line, String message) {
+    handle(new FxCopIssue(reportLine, ruleKey, path, file, line, message));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return The approximate number of bytes used by the in-memory issues and the interned values
+   */
+  long memoryUsage() {
+    return heapSegment.memoryUsage() + ruleKeys.memoryUsage() + checkIds.memoryUsage() + categories.memoryUsage() + paths.memoryUsage()
+      + files.memoryUsage() + levels.memoryUsage() + contexts.memoryUsage();
+  }
+
+  public int spilledSegments() {
+    return spilledSegments.size();
+  }
+
+  /**
+   * @return A new {@link FxCopIssue} view of the issue at the given index
+   */
+  public FxCopIssue get(int index) {
+    int remaining = index;
+    for (Segment segment : segments()) {
+      if (remaining < segment.size()) {
+        return new Cursor(segment, remaining).issue();
+      }
+      remaining -= segment.size();
+    }
+    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+  }
+
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  @Override
+  public void close() {
+    for (FileSegment segment : spilledSegments) {
+      segment.delete();
+    }
+    spilledSegments.clear();
+    blockBuffer.release();
+    heapSegment = new HeapSegment();
+    size = 0;
+  }
+
+  private List<Segment> segments() {
+    List<Segment> segments = Lists.<Segment>newArrayList(spilledSegments);
+    segments.add(heapSegment);
+    return segments;
+  }
+
+  private void spill() {
+    try {
+      File segmentFile = File.createTempFile("fxcop-issues-", ".bin", spillDirectory);
+      segmentFile.deleteOnExit();
+      spilledSegments.add(heapSegment.writeTo(segmentFile, blockBuffer));
+      heapSegment = new HeapSegment();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Forward only iterator over the issues of the table, which initially points before the first issue.
+   */
+  public class Cursor {
+
+    private final List<Segment> segments;
+    private int segmentIndex;
+    private Segment segment;
+    private int row;
+
+    private Cursor() {
+      this.segments = segments();
+      this.segmentIndex = 0;
+      this.segment = segments.get(0);
+      this.row = -1;
+    }
+
+    private Cursor(Segment segment, int row) {
+      this.segments = null;
+      this.segment = segment;
+      this.row = row;
+    }
+
+    public boolean next() {
+      row++;
+      while (row >= segment.size()) {
+        if (segmentIndex + 1 >= segments.size()) {
+          row = segment.size();
+          return false;
+        }
+        segment.release();
+        segmentIndex++;
+        segment = segments.get(segmentIndex);
+        row = 0;
+      }
+      return true;
+    }
+
+    public int reportLine() {
+      return segment.get(REPORT_LINE, row);
+    }
+
+    public String ruleKey() {
+      return ruleKeys.value(segment.get(RULE_KEY, row));
+    }
+
+    @Nullable
+    public String checkId() {
+      return checkIds.value(segment.get(CHECK_ID, row));
+    }
+
+    @Nullable
+    public String category() {
+      return categories.value(segment.get(CATEGORY, row));
+    }
+
+    @Nullable
+    public String path() {
+      return paths.value(segment.get(PATH, row));
+    }
+
+    @Nullable
+    public String file() {
+      return files.value(segment.get(FILE, row));
+    }
+
+    public boolean hasLine() {
+      return line() != NO_LINE;
+    }
+
+    /**
+     * @return The line of the issue, or {@link FxCopIssueTable#NO_LINE}
+     */
+    public int line() {
+      return segment.get(LINE, row);
+    }
+
+    public String message() {
+      return segment.message(row);
+    }
+
+    /**
+     * @return The certainty of the issue, or {@link FxCopIssueTable#NO_CERTAINTY}
+     */
+    public int certainty() {
+      return segment.get(CERTAINTY, row);
+    }
+
+    @Nullable
+    public String level() {
+      return levels.value(segment.get(LEVEL, row));
+    }
+
+    @Nullable
+    public FxCopCodeElement context() {
+      return contexts.value(segment.get(CONTEXT, row));
+    }
+
+    public FxCopIssue issue() {
+      return new FxCopIssue(reportLine(), ruleKey(), checkId(), category(), path(), file(), hasLine() ? line() : null, message(),
+        certainty() == NO_CERTAINTY ? null : certainty(), level(), context());
+    }
+
+  }
+
+  private interface Segment {
+
+    int size();
+
+    int get(int column, int row);
+
+    String message(int row);
+
+    /**
+     * Gives up the rows read so far, which are read again if needed.
+     */
+    void release();
+
+  }
+
+  private static class HeapSegment implements Segment {
+
+    private int size;
+    private int[][] columns = new int[COLUMNS][INITIAL_CAPACITY];
+    private int[] messageOffsets = new int[INITIAL_CAPACITY + 1];
+    private byte[] messages = new byte[INITIAL_CAPACITY * 64];
+
+    public void add(int[] row, byte[] message) {
+      ensureCapacity(size + 1);
+
+      for (int column = 0; column < COLUMNS; column++) {
+        columns[column][size] = row[column];
+      }
+
+      int offset = messageOffsets[size];
+      if (offset + message.length > messages.length) {
+        messages = Arrays.copyOf(messages, Math.max(messages.length * 2, offset + message.length));
+      }
+      System.arraycopy(message, 0, messages, offset, message.length);
+      messageOffsets[size + 1] = offset + message.length;
+
+      size++;
+    }
+
+    /**
+     * @return The bytes allocated by the arrays, whatever the number of issues stored in them
+     */
+    public long memoryUsage() {
+      return (long) columns[0].length * COLUMNS * 4 + (long) messageOffsets.length * 4 + messages.length;
+    }
+
+    public FileSegment writeTo(File file, BlockBuffer blockBuffer) throws IOException {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      try {
+        FileChannel channel = randomAccessFile.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate(8 + (COLUMNS * size + size + 1) * 4);
+        buffer.putInt(size);
+        buffer.putInt(messageOffsets[size]);
+        IntBuffer intBuffer = buffer.asIntBuffer();
+        for (int[] column : columns) {
+          intBuffer.put(column, 0, size);
+        }
+        intBuffer.put(messageOffsets, 0, size + 1);
+        buffer.rewind();
+        writeFully(channel, buffer);
+        writeFully(channel, ByteBuffer.wrap(messages, 0, messageOffsets[size]));
+
+        randomAccessFile.close();
+        return new FileSegment(file, size, blockBuffer);
+      } finally {
+        Closeables.closeQuietly(randomAccessFile);
+      }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > messageOffsets.length - 1) {
+        int newCapacity = Math.max(capacity, (messageOffsets.length - 1) * 2);
+        for (int column = 0; column < COLUMNS; column++) {
+          columns[column] = Arrays.copyOf(columns[column], newCapacity);
+        }
+        messageOffsets = Arrays.copyOf(messageOffsets, newCapacity + 1);
+      }
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public int get(int column, int row) {
+      return columns[column][row];
+    }
+
+    @Override
+    public String message(int row) {
+      int offset = messageOffsets[row];
+      return new String(messages, offset, messageOffsets[row + 1] - offset, Charsets.UTF_8);
+    }
+
+    @Override
+    public void release() {
+      // Nothing to release, the issues being the segment itself
+    }
+
+  }
+
+  /**
+   * Block of rows read from a spilled segment, shared by all the segments of a table so that reading them allocates a single block.
+   */
+  private static class BlockBuffer {
+
+    private FileSegment owner;
+    private int blockStart;
+    private int blockSize;
+    private int[][] columns;
+    private int[] messageOffsets;
+    private byte[] messages;
+    private ByteBuffer buffer;
+
+    public boolean holds(FileSegment segment, int row) {
+      return owner == segment && row >= blockStart && row < blockStart + blockSize;
+    }
+
+    public void release() {
+      owner = null;
+      columns = null;
+      messageOffsets = null;
+      messages = null;
+      buffer = null;
+    }
+
+  }
+
+  /**
+   * Spilled segment, laid out as: the number of issues, the length of the messages, each int column in turn, the number of issues + 1
+   * message offsets, and finally the UTF-8 encoded messages.
+   * <p>
+   * Rows are read by blocks with positional reads, the file being only open while reading a block, so that it can always be deleted.
+   */
+  private static class FileSegment implements Segment {
+
+    private static final int BLOCK_ROWS = 4096;
+
+    private final File file;
+    private final int size;
+    private final int messagesPosition;
+    private final BlockBuffer block;
+
+    public FileSegment(File file, int size, BlockBuffer block) {
+      this.file = file;
+      this.size = size;
+      this.messagesPosition = position(COLUMNS, size + 1);
+      this.block = block;
+    }
+
+    private int position(int column, int row) {
+      return 8 + (column * size + row) * 4;
+    }
+
+    public void delete() {
+      release();
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public int get(int column, int row) {
+      load(row);
+      return block.columns[column][row - block.blockStart];
+    }
+
+    @Override
+    public String message(int row) {
+      load(row);
+      int[] messageOffsets = block.messageOffsets;
+      int offset = messageOffsets[row - block.blockStart] - messageOffsets[0];
+      int length = messageOffsets[row - block.blockStart + 1] - messageOffsets[row - block.blockStart];
+      return new String(block.messages, offset, length, Charsets.UTF_8);
+    }
+
+    @Override
+    public void release() {
+      if (block.owner == this) {
+        block.owner = null;
+      }
+    }
+
+    private void load(int row) {
+      if (block.holds(this, row)) {
+        return;
+      }
+
+      int start = row - row % BLOCK_ROWS;
+      int rows = Math.min(BLOCK_ROWS, size - start);
+      if (block.columns == null) {
+        block.columns = new int[COLUMNS][BLOCK_ROWS];
+        block.messageOffsets = new int[BLOCK_ROWS + 1];
+        block.messages = new byte[0];
+        block.buffer = ByteBuffer.allocate((BLOCK_ROWS + 1) * 4);
+      }
+      block.owner = null;
+
+      RandomAccessFile randomAccessFile = null;
+      try {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel();
+        for (int column = 0; column < COLUMNS; column++) {
+          readInts(channel, block.buffer, position(column, start), block.columns[column], rows);
+        }
+        readInts(channel, block.buffer, position(COLUMNS, start), block.messageOffsets, rows + 1);
+
+        int length = block.messageOffsets[rows] - block.messageOffsets[0];
+        if (block.messages.length < length) {
+          block.messages = new byte[length];
+        }
+        readFully(channel, ByteBuffer.wrap(block.messages, 0, length), messagesPosition + block.messageOffsets[0]);
+        randomAccessFile.close();
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      } finally {
+        Closeables.closeQuietly(randomAccessFile);
+      }
+
+      block.owner = this;
+      block.blockStart = start;
+      block.blockSize = rows;
+    }
+
+    private void readInts(FileChannel channel, ByteBuffer buffer, long position, int[] destination, int count) throws IOException {
+      buffer.clear();
+      buffer.limit(count * 4);
+      readFully(channel, buffer, position);
+      buffer.flip();
+      buffer.asIntBuffer().get(destination, 0, count);
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+      long current = position;
+      while (buffer.hasRemaining()) {
+        int n = channel.read(buffer, current);
+        if (n == -1) {
+          throw new IOException("Unexpected end of the spilled FxCop issues \"" + file.getAbsolutePath() + "\".");
+        }
+        current += n;
+      }
+    }
+
+  }
+
+  private static class Dictionary {
+
+    private final Map<String, Integer> ids = Maps.newHashMap();
+    private final List<String> values = Lists.newArrayList();
+    private long memoryUsage = 0;
+
+    public int id(@Nullable String value) {
+      if (value == null) {
+        return NO_ID;
+      }
+
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = values.size();
+        ids.put(value, id);
+        values.add(value);
+        memoryUsage += INTERNED_VALUE_OVERHEAD + 2L * value.length();
+      }
+      return id;
+    }
+
+    public long memoryUsage() {
+      return memoryUsage;
+    }
+
+    @Nullable
+    public String value(int id) {
+      return id == NO_ID ? null : values.get(id);
+    }
+
+  }
+
+  /**
+   * Code elements are shared by consecutive issues, so they are identified by reference and the last lookup is cached.
+   */
+  private static class ContextDictionary {
+
+    private final Map<FxCopCodeElement, Integer> ids = Maps.newIdentityHashMap();
+    private final List<FxCopCodeElement> values = Lists.newArrayList();
+    private FxCopCodeElement lastValue;
+    private int lastId = NO_ID;
+    private long memoryUsage = 0;
+
+    public int id(@Nullable FxCopCodeElement value) {
+      if (value == null) {
+        return NO_ID;
+      }
+      if (value == lastValue) {
+        return lastId;
+      }
+
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = values.size();
+        ids.put(value, id);
+        values.add(value);
+        memoryUsage += CODE_ELEMENT_OVERHEAD + INTERNED_VALUE_OVERHEAD + 2L * value.name().length();
+      }
+      lastValue = value;
+      lastId = id;
+      return id;
+    }
+
+    /**
+     * @return The approximate memory retained by the elements, their parents being counted when they are themselves the context of an issue
+     */
+    public long memoryUsage() {
+      return memoryUsage;
+    }
+
+    @Nullable
+    public FxCopCodeElement value(int id) {
+      return id == NO_ID ? null : values.get(id);
+    }
+
+  }
+
+}
@@ -0,0 +1,519 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of FxCop analyses shared through a directory, which may be on a network share, by coordinators and any number of workers.
+ * <p>
+ * Each coordinator publishes the jobs of its run in a directory named after its run id, by atomically moving their descriptor
+ * into its "pending" directory. Jobs are claimed by atomically renaming their descriptor into the "claimed" one, so that each job
+ * is claimed by a single worker, under a name unique to the claim. Workers then move the report into the "done" directory, or describe
+ * the failure in the "failed" one, unless their claim expired meanwhile.
+ * The assembly paths must be valid for every worker.
+ * <p>
+ * Claims and runs are leases, renewed by touching the claimed descriptor and the run "lease" file: a job whose worker stopped
+ * renewing its claim is pending again, and the run of a coordinator which stopped renewing its lease is deleted.
+ * The clocks of the agents sharing the queue are therefore expected to be roughly synchronized.
+ */
+public class FxCopJobQueue implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopJobQueue.class);
+
+  private static final long DEFAULT_LEASE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final int HEARTBEATS_PER_LEASE = 5;
+
+  private static final String JOB_EXTENSION = ".job";
+  private static final String ENDED_CLAIM_EXTENSION = ".ended";
+  private static final String LEASE_FILE_NAME = "lease";
+  private static final String ASSEMBLY_KEY = "assembly";
+  private static final String RULESET_KEY = "ruleset";
+  private static final String IGNORE_GENERATED_CODE_KEY = "ignoreGeneratedCode";
+
+  private final File directory;
+  private final long leaseMillis;
+  private final String runId = UUID.randomUUID().toString();
+  private final Run run;
+  private Timer heartbeats;
+  private int published;
+
+  public FxCopJobQueue(File directory) {
+    this(directory, DEFAULT_LEASE_MILLIS);
+  }
+
+  @VisibleForTesting
+  FxCopJobQueue(File directory, long leaseMillis) {
+    this.directory = mkdirs(directory);
+    this.leaseMillis = leaseMillis;
+    this.run = new Run(new File(directory, runId));
+  }
+
+  public interface ReportHandler {
+
+    void handle(String id, File reportFile);
+
+  }
+
+  public static class Job {
+
+    private final String id;
+    private final String claim;
+    private final String assembly;
+    private final File rulesetFile;
+    private final boolean ignoreGeneratedCode;
+    private final Run run;
+    private TimerTask heartbeat;
+    private boolean claimEnded;
+
+    private Job(String id, String claim, String assembly, File rulesetFile, boolean ignoreGeneratedCode, Run run) {
+      this.id = id;
+      this.claim = claim;
+      this.assembly = assembly;
+      this.rulesetFile = rulesetFile;
+      this.ignoreGeneratedCode = ignoreGeneratedCode;
+      this.run = run;
+    }
+
+    public String id() {
+      return id;
+    }
+
+    public String assembly() {
+      return assembly;
+    }
+
+    public File rulesetFile() {
+      return rulesetFile;
+    }
+
+    public boolean ignoreGeneratedCode() {
+      return ignoreGeneratedCode;
+    }
+
+    /**
+     * @return The file to which the report should be written, which is specific to this claim of the job
+     */
+    public File reportFile() {
+      return new File(run.claimedDirectory, claim + ".xml");
+    }
+
+    private File claimedFile() {
+      return new File(run.claimedDirectory, claim + JOB_EXTENSION);
+    }
+
+    private File endedClaimFile() {
+      return new File(run.claimedDirectory, claim + ENDED_CLAIM_EXTENSION);
+    }
+
+  }
+
+  private static class Run {
+
+    private final File directory;
+    private final File leaseFile;
+    private final File tmpDirectory;
+    private final File pendingDirectory;
+    private final File claimedDirectory;
+    private final File doneDirectory;
+    private final File failedDirectory;
+
+    Run(File directory) {
+      this.directory = directory;
+      this.leaseFile = new File(directory, LEASE_FILE_NAME);
+      this.tmpDirectory = new File(directory, "tmp");
+      this.pendingDirectory = new File(directory, "pending");
+      this.claimedDirectory = new File(directory, "claimed");
+      this.doneDirectory = new File(directory, "done");
+      this.failedDirectory = new File(directory, "failed");
+    }
+
+    /**
+     * @return The time of the last renewal of the lease of the run, which is also the creation time of its directory
+     */
+    long lastHeartbeat() {
+      return Math.max(directory.lastModified(), leaseFile.lastModified());
+    }
+
+  }
+
+  /**
+   * @return The id of the run of this coordinator, which prefixes the ids of the jobs it publishes
+   */
+  public String runId() {
+    return runId;
+  }
+
+  public String publish(String assembly, File rulesetFile) {
+    return publish(assembly, rulesetFile, false);
+  }
+
+  /**
+   * Publishes the analysis of the given assembly with the given ruleset, which is copied into the queue.
+   * Jobs are claimed in their publication order. The lease of the run is renewed until the queue is closed.
+   *
+   * @param ignoreGeneratedCode Whether the worker should make FxCopCmd skip the generated code
+   * @return The job id
+   */
+  public synchronized String publish(String assembly, File rulesetFile, boolean ignoreGeneratedCode) {
+    if (published == 0) {
+      start();
+    }
+    published++;
+    String id = runId + "-" + String.format("%04d", published);
+
+    try {
+      File rulesetCopy = new File(run.directory, id + ".ruleset");
+      Files.copy(rulesetFile, rulesetCopy);
+
+      Properties properties = new Properties();
+      properties.setProperty(ASSEMBLY_KEY, assembly);
+      properties.setProperty(RULESET_KEY, rulesetCopy.getName());
+      properties.setProperty(IGNORE_GENERATED_CODE_KEY, Boolean.toString(ignoreGeneratedCode));
+
+      File tmpFile = new File(run.tmpDirectory, id + JOB_EXTENSION);
+      OutputStream stream = new FileOutputStream(tmpFile);
+      try {
+        properties.store(stream, null);
+      } finally {
+        Closeables.closeQuietly(stream);
+      }
+      FxCopFiles.move(tmpFile, new File(run.pendingDirectory, id + JOB_EXTENSION));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+
+    return id;
+  }
+
+  private void start() {
+    mkdirs(run.directory);
+    for (File subdirectory : Arrays.asList(run.tmpDirectory, run.pendingDirectory, run.claimedDirectory, run.doneDirectory, run.failedDirectory)) {
+      mkdirs(subdirectory);
+    }
+    touch(run.leaseFile);
+
+    schedule(new TimerTask() {
+      @Override
+      public void run() {
+        touch(run.leaseFile);
+      }
+    });
+  }
+
+  /**
+   * @return The oldest pending job of any run, now claimed by the caller, or null if there is none
+   */
+  @Nullable
+  public Job claim() {
+    for (File runDirectory : sortedFiles(directory, null)) {
+      Run candidate = new Run(runDirectory);
+      if (isAbandoned(candidate)) {
+        LOG.info("Deleting the FxCop jobs of the abandoned run " + runDirectory.getName() + ".");
+        FxCopFiles.deleteRecursively(runDirectory);
+        continue;
+      }
+
+      Job job = claim(candidate);
+      if (job != null) {
+        return job;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @return The oldest pending job of the run of this coordinator, now claimed by the caller, or null if there is none
+   */
+  @Nullable
+  public Job claimOwn() {
+    return claim(run);
+  }
+
+  @Nullable
+  private Job claim(Run candidate) {
+    reclaimExpiredClaims(candidate);
+
+    for (File pendingFile : sortedFiles(candidate.pendingDirectory, JOB_EXTENSION)) {
+      String id = jobId(pendingFile);
+      // Unique, so that a former worker whose claim expired never writes or deletes the files of the current one
+      String claim = id + "." + UUID.randomUUID();
+      File claimedFile = new File(candidate.claimedDirectory, claim + JOB_EXTENSION);
+      // Renaming keeps the modification time, which must be the start of the claim
+      pendingFile.setLastModified(System.currentTimeMillis());
+      // Only one of the concurrent renames of the same file succeeds
+      if (pendingFile.renameTo(claimedFile)) {
+        Job job = readJob(candidate, id, claim, claimedFile);
+        renewClaim(job);
+        return job;
+      }
+    }
+
+    return null;
+  }
+
+  private boolean isAbandoned(Run candidate) {
+    return !candidate.directory.equals(run.directory) && candidate.directory.isDirectory()
+      && System.currentTimeMillis() - candidate.lastHeartbeat() > leaseMillis;
+  }
+
+  private void reclaimExpiredClaims(Run candidate) {
+    for (File claimedFile : sortedFiles(candidate.claimedDirectory, JOB_EXTENSION)) {
+      long lastHeartbeat = claimedFile.lastModified();
+      if (lastHeartbeat != 0 && System.currentTimeMillis() - lastHeartbeat > leaseMillis
+        && claimedFile.renameTo(new File(candidate.pendingDirectory, jobId(claimedFile) + JOB_EXTENSION))) {
+        LOG.info("The claim of the FxCop job " + jobId(claimedFile) + " expired, it is pending again.");
+      }
+    }
+  }
+
+  private void renewClaim(final Job job) {
+    job.heartbeat = new TimerTask() {
+      @Override
+      public void run() {
+        if (!job.claimedFile().setLastModified(System.currentTimeMillis())) {
+          LOG.warn("Could not renew the claim of the FxCop job " + job.id() + ", it may be run by another worker.");
+          cancel();
+        }
+      }
+    };
+    schedule(job.heartbeat);
+  }
+
+  public boolean hasPendingJobs() {
+    return !sortedFiles(run.pendingDirectory, JOB_EXTENSION).isEmpty();
+  }
+
+  /**
+   * Hands the report of the job over to its coordinator, or discards it if the claim expired and the job may be run by another worker.
+   */
+  public void complete(Job job) {
+    if (!endClaim(job)) {
+      LOG.warn("The claim of the FxCop job " + job.id() + " expired before its completion, its report is discarded.");
+      delete(job.reportFile());
+      return;
+    }
+
+    try {
+      FxCopFiles.move(job.reportFile(), new File(job.run.doneDirectory, job.id() + ".xml"));
+    } finally {
+      delete(job.endedClaimFile());
+    }
+  }
+
+  /**
+   * Reports the failure of the job to its coordinator, unless the claim expired and the job may be run by another worker.
+   */
+  public void fail(Job job, String message) {
+    if (!endClaim(job)) {
+      LOG.warn("The claim of the FxCop job " + job.id() + " expired before its failure, which is discarded.");
+      delete(job.reportFile());
+      return;
+    }
+
+    try {
+      File tmpFile = new File(job.run.tmpDirectory, job.claim + ".txt");
+      Files.write(message, tmpFile, Charsets.UTF_8);
+      FxCopFiles.move(tmpFile, new File(job.run.failedDirectory, job.id() + ".txt"));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      delete(job.endedClaimFile());
+    }
+  }
+
+  /**
+   * Waits for the reports of the given jobs and hands each of them over as soon as it is available, in their completion order.
+   * While jobs are pending, the local worker claims and runs them, so that the coordinator never waits for idle workers.
+   *
+   * @param timeoutMillis Maximum time to wait for the reports of the jobs claimed by other workers, without any progress
+   * @throws IllegalStateException if any job failed, or if the timeout is reached
+   */
+  public void await(Collection<String> ids, FxCopWorker localWorker, long timeoutMillis, long pollMillis, ReportHandler handler) {
+    Set<String> remaining = Sets.newLinkedHashSet(ids);
+    long lastProgress = System.currentTimeMillis();
+
+    while (!remaining.isEmpty()) {
+      for (String id : Lists.newArrayList(remaining)) {
+        // A job reclaimed from a late worker may both succeed and fail
+        File doneFile = new File(run.doneDirectory, id + ".xml");
+        if (doneFile.isFile()) {
+          handler.handle(id, doneFile);
+          remaining.remove(id);
+          lastProgress = System.currentTimeMillis();
+          continue;
+        }
+
+        File failedFile = new File(run.failedDirectory, id + ".txt");
+        if (failedFile.isFile()) {
+          throw new IllegalStateException("The FxCop analysis of the job " + id + " failed: " + read(failedFile));
+        }
+      }
+
+      if (!remaining.isEmpty() && !localWorker.runOne()) {
+        if (System.currentTimeMillis() - lastProgress > timeoutMillis) {
+          throw new IllegalStateException("Timeout while waiting for the FxCop workers to complete " + remaining.size() + " jobs.");
+        }
+        sleep(pollMillis);
+      }
+    }
+  }
+
+  /**
+   * Stops renewing the leases, and deletes the run of this coordinator with all its jobs, whether they completed or not.
+   */
+  @Override
+  public synchronized void close() {
+    if (heartbeats != null) {
+      heartbeats.cancel();
+      heartbeats = null;
+    }
+    if (run.directory.exists() && !FxCopFiles.deleteRecursively(run.directory)) {
+      LOG.warn("Could not delete all the FxCop jobs of the run " + runId + ".");
+    }
+  }
+
+  private synchronized void schedule(TimerTask task) {
+    if (heartbeats == null) {
+      heartbeats = new Timer("FxCop job queue heartbeats", true);
+    }
+    long period = Math.max(1, leaseMillis / HEARTBEATS_PER_LEASE);
+    heartbeats.schedule(task, period, period);
+  }
+
+  private static List<File> sortedFiles(File directory, @Nullable String extension) {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return Lists.newArrayList();
+    }
+
+    Arrays.sort(files);
+    List<File> result = Lists.newArrayList();
+    for (File file : files) {
+      if (extension == null ? file.isDirectory() : file.getName().endsWith(extension)) {
+        result.add(file);
+      }
+    }
+    return result;
+  }
+
+  private static String jobId(File jobFile) {
+    String name = jobFile.getName();
+    return name.substring(0, name.indexOf('.'));
+  }
+
+  private static Job readJob(Run run, String id, String claim, File claimedFile) {
+    Properties properties = new Properties();
+    InputStream stream = null;
+    try {
+      stream = new FileInputStream(claimedFile);
+      properties.load(stream);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(stream);
+    }
+
+    return new Job(id, claim, properties.getProperty(ASSEMBLY_KEY), new File(run.directory, properties.getProperty(RULESET_KEY)),
+      Boolean.parseBoolean(properties.getProperty(IGNORE_GENERATED_CODE_KEY)), run);
+  }
+
+  /**
+   * Stops renewing the claim, and atomically renames its descriptor so that it can no longer expire and be reclaimed.
+   * The ruleset copy is kept until the run is deleted, as a reclaimed job may still be run by its former worker.
+   *
+   * @return Whether the job was still claimed by the caller, which then owns its outcome
+   */
+  private static boolean endClaim(Job job) {
+    if (job.heartbeat != null) {
+      job.heartbeat.cancel();
+    }
+    if (!job.claimEnded) {
+      job.claimEnded = job.claimedFile().renameTo(job.endedClaimFile());
+    }
+    return job.claimEnded;
+  }
+
+  private static void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Could not delete the file \"" + file.getAbsolutePath() + "\".");
+    }
+  }
+
+  private static String read(File file) {
+    try {
+      return Files.toString(file, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static void touch(File file) {
+    try {
+      Files.touch(file);
+    } catch (IOException e) {
+      LOG.warn("Could not renew the lease \"" + file.getAbsolutePath() + "\".", e);
+    }
+  }
+
+  private static File mkdirs(File directory) {
+    Preconditions.checkState(directory.isDirectory() || directory.mkdirs(), "Could not create the directory \"" + directory.getAbsolutePath() + "\".");
+    return directory;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    }
+  }
+
+}
@@ -0,0 +1,436 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Throwables;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Pull parser of JSON documents: the values are read one token at a time, and the skipped ones are never decoded,
+ * so that arbitrarily large documents are read in constant memory.
+ * The syntax errors are reported as {@link IllegalStateException}s, with the line at which they occur.
+ */
+public class FxCopJsonReader implements Closeable {
+
+  public enum Token {
+    BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+  }
+
+  private static final int EMPTY_DOCUMENT = 0;
+  private static final int NONEMPTY_DOCUMENT = 1;
+  private static final int EMPTY_ARRAY = 2;
+  private static final int NONEMPTY_ARRAY = 3;
+  private static final int EMPTY_OBJECT = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int DANGLING_NAME = 6;
+
+  private final Reader reader;
+  private final char[] buffer = new char[8192];
+  private int pos = 0;
+  private int limit = 0;
+  private int line = 1;
+  private final StringBuilder builder = new StringBuilder();
+
+  private int[] scopes = new int[32];
+  private int depth = 1;
+
+  /**
+   * The next token, once peeked. The content of a peeked name or string is not read yet, contrary to numbers and literals.
+   */
+  private Token peeked = null;
+  private String literal = null;
+
+  public FxCopJsonReader(Reader reader) {
+    this.reader = reader;
+    scopes[0] = EMPTY_DOCUMENT;
+  }
+
+  /**
+   * @return The line of the next token, once peeked, or of the last consumed one
+   */
+  public int line() {
+    return line;
+  }
+
+  public Token peek() {
+    if (peeked == null) {
+      peeked = doPeek();
+    }
+    return peeked;
+  }
+
+  public boolean hasNext() {
+    Token token = peek();
+    return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+  }
+
+  public void beginObject() {
+    expect(Token.BEGIN_OBJECT);
+    push(EMPTY_OBJECT);
+  }
+
+  public void endObject() {
+    expect(Token.END_OBJECT);
+    depth--;
+  }
+
+  public void beginArray() {
+    expect(Token.BEGIN_ARRAY);
+    push(EMPTY_ARRAY);
+  }
+
+  public void endArray() {
+    expect(Token.END_ARRAY);
+    depth--;
+  }
+
+  public String nextName() {
+    expect(Token.NAME);
+    String name = readString();
+    consumeColon();
+    return name;
+  }
+
+  public String nextString() {
+    expect(Token.STRING);
+    return readString();
+  }
+
+  public int nextInt() {
+    expect(Token.NUMBER);
+    try {
+      return Integer.parseInt(literal);
+    } catch (NumberFormatException e) {
+      double value = Double.parseDouble(literal);
+      if (value != (int) value) {
+        throw syntaxError("Expected an integer instead of " + literal);
+      }
+      return (int) value;
+    }
+  }
+
+  public double nextDouble() {
+    expect(Token.NUMBER);
+    return Double.parseDouble(literal);
+  }
+
+  public boolean nextBoolean() {
+    expect(Token.BOOLEAN);
+    return "true".equals(literal);
+  }
+
+  public void nextNull() {
+    expect(Token.NULL);
+  }
+
+  /**
+   * Skips the next value, including all the nested ones of an object or array, without decoding any of its strings.
+   */
+  public void skipValue() {
+    int count = 0;
+    do {
+      Token token = peek();
+      switch (token) {
+        case BEGIN_OBJECT:
+          beginObject();
+          count++;
+          break;
+        case BEGIN_ARRAY:
+          beginArray();
+          count++;
+          break;
+        case END_OBJECT:
+          endObject();
+          count--;
+          break;
+        case END_ARRAY:
+          endArray();
+          count--;
+          break;
+        case NAME:
+          peeked = null;
+          skipString();
+          consumeColon();
+          break;
+        case STRING:
+          peeked = null;
+          skipString();
+          break;
+        case END_DOCUMENT:
+          throw syntaxError("Unexpected end of document");
+        default:
+          peeked = null;
+          break;
+      }
+    } while (count > 0);
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  private void expect(Token expected) {
+    Token token = peek();
+    if (token != expected) {
+      throw syntaxError("Expected " + expected + " but was " + token);
+    }
+    peeked = null;
+  }
+
+  private void push(int scope) {
+    if (depth == scopes.length) {
+      scopes = Arrays.copyOf(scopes, 2 * depth);
+    }
+    scopes[depth++] = scope;
+  }
+
+  private Token doPeek() {
+    int scope = scopes[depth - 1];
+    int c;
+
+    switch (scope) {
+      case EMPTY_ARRAY:
+        scopes[depth - 1] = NONEMPTY_ARRAY;
+        c = nextNonWhitespace();
+        if (c == ']') {
+          return Token.END_ARRAY;
+        }
+        return readValue(c);
+      case NONEMPTY_ARRAY:
+        c = nextNonWhitespace();
+        if (c == ']') {
+          return Token.END_ARRAY;
+        } else if (c != ',') {
+          throw syntaxError("Expected ',' or ']'");
+        }
+        return readValue(nextNonWhitespace());
+      case EMPTY_OBJECT:
+      case NONEMPTY_OBJECT:
+        c = nextNonWhitespace();
+        if (c == '}') {
+          return Token.END_OBJECT;
+        }
+        if (scope == NONEMPTY_OBJECT) {
+          if (c != ',') {
+            throw syntaxError("Expected ',' or '}'");
+          }
+          c = nextNonWhitespace();
+        }
+        if (c != '"') {
+          throw syntaxError("Expected a name");
+        }
+        scopes[depth - 1] = DANGLING_NAME;
+        return Token.NAME;
+      case DANGLING_NAME:
+        scopes[depth - 1] = NONEMPTY_OBJECT;
+        return readValue(nextNonWhitespace());
+      case EMPTY_DOCUMENT:
+        scopes[depth - 1] = NONEMPTY_DOCUMENT;
+        c = nextNonWhitespace();
+        if (c == '\uFEFF') {
+          c = nextNonWhitespace();
+        }
+        return readValue(c);
+      default:
+        c = nextNonWhitespace();
+        if (c != -1) {
+          throw syntaxError("Expected the end of the document");
+        }
+        return Token.END_DOCUMENT;
+    }
+  }
+
+  private Token readValue(int c) {
+    switch (c) {
+      case '{':
+        return Token.BEGIN_OBJECT;
+      case '[':
+        return Token.BEGIN_ARRAY;
+      case '"':
+        return Token.STRING;
+      case 't':
+        readLiteral("true");
+        return Token.BOOLEAN;
+      case 'f':
+        readLiteral("false");
+        return Token.BOOLEAN;
+      case 'n':
+        readLiteral("null");
+        return Token.NULL;
+      case -1:
+        throw syntaxError("Unexpected end of document");
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          readNumber((char) c);
+          return Token.NUMBER;
+        }
+        throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+  }
+
+  private void readLiteral(String expected) {
+    for (int i = 1; i < expected.length(); i++) {
+      if (read() != expected.charAt(i)) {
+        throw syntaxError("Expected " + expected);
+      }
+    }
+    literal = expected;
+  }
+
+  private void readNumber(char first) {
+    builder.setLength(0);
+    builder.append(first);
+    while (pos < limit || fill()) {
+      char c = buffer[pos];
+      if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+        builder.append(c);
+        pos++;
+      } else {
+        break;
+      }
+    }
+    literal = builder.toString();
+  }
+
+  private void consumeColon() {
+    if (nextNonWhitespace() != ':') {
+      throw syntaxError("Expected ':'");
+    }
+  }
+
+  /**
+   * Reads the content of a string whose opening quote was consumed, without copy when it has no escape and is in the buffer.
+   */
+  private String readString() {
+    int start = pos;
+    while (pos < limit) {
+      char c = buffer[pos];
+      if (c == '"') {
+        pos++;
+        return new String(buffer, start, pos - 1 - start);
+      } else if (c == '\\') {
+        break;
+      }
+      pos++;
+    }
+
+    builder.setLength(0);
+    builder.append(buffer, start, pos - start);
+    while (true) {
+      int c = read();
+      if (c == '"') {
+        return builder.toString();
+      } else if (c == '\\') {
+        builder.append(readEscape());
+      } else if (c == -1) {
+        throw syntaxError("Unterminated string");
+      } else {
+        builder.append((char) c);
+      }
+    }
+  }
+
+  private void skipString() {
+    while (true) {
+      int c = read();
+      if (c == '"') {
+        return;
+      } else if (c == '\\') {
+        readEscape();
+      } else if (c == -1) {
+        throw syntaxError("Unterminated string");
+      }
+    }
+  }
+
+  private char readEscape() {
+    int c = read();
+    switch (c) {
+      case '"':
+      case '\\':
+      case '/':
+        return (char) c;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(read(), 16);
+          if (digit == -1) {
+            throw syntaxError("Invalid unicode escape");
+          }
+          value = (value << 4) | digit;
+        }
+        return (char) value;
+      default:
+        throw syntaxError("Invalid escape sequence");
+    }
+  }
+
+  private int nextNonWhitespace() {
+    while (true) {
+      int c = read();
+      if (c == '\n') {
+        line++;
+      } else if (c != ' ' && c != '\t' && c != '\r') {
+        return c;
+      }
+    }
+  }
+
+  private int read() {
+    if (pos == limit && !fill()) {
+      return -1;
+    }
+    return buffer[pos++];
+  }
+
+  private boolean fill() {
+    try {
+      int n;
+      do {
+        n = reader.read(buffer, 0, buffer.length);
+      } while (n == 0);
+      pos = 0;
+      limit = Math.max(n, 0);
+      return n > 0;
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private IllegalStateException syntaxError(String message) {
+    return new IllegalStateException(message + " at line " + line);
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Cache entries stored as files of a local directory, whose total size is bounded by evicting the least recently used entries.
+ * The last modification time of the files is used as their last access time.
+ */
+public class FxCopLocalCacheBackend implements FxCopCacheBackend {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopLocalCacheBackend.class);
+
+  private static final String EXTENSION = ".gz";
+
+  private final File directory;
+  private final long maxSize;
+
+  public FxCopLocalCacheBackend(File directory, long maxSize) {
+    Preconditions.checkState(directory.isDirectory() || directory.mkdirs(), "Could not create the directory \"" + directory.getAbsolutePath() + "\".");
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public boolean get(String key, File file) throws IOException {
+    File entryFile = new File(directory, key + EXTENSION);
+    if (!entryFile.isFile()) {
+      return false;
+    }
+
+    Files.copy(entryFile, file);
+    if (!entryFile.setLastModified(System.currentTimeMillis())) {
+      LOG.debug("Could not update the last access time of the FxCop cache entry \"" + entryFile.getAbsolutePath() + "\".");
+    }
+    return true;
+  }
+
+  @Override
+  public void put(String key, File file) throws IOException {
+    File tmpFile = File.createTempFile("fxcop-cache", ".tmp", directory);
+    Files.copy(file, tmpFile);
+    FxCopFiles.move(tmpFile, new File(directory, key + EXTENSION));
+
+    evict();
+  }
+
+  /**
+   * Deletes the least recently used entries until the total size of the entries fits in the maximum size.
+   */
+  private void evict() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    if (size <= maxSize) {
+      return;
+    }
+
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return a.lastModified() < b.lastModified() ? -1 : (a.lastModified() == b.lastModified() ? 0 : 1);
+      }
+    });
+    for (File file : files) {
+      if (size <= maxSize) {
+        break;
+      }
+      if (file.getName().endsWith(EXTENSION)) {
+        long length = file.length();
+        if (file.delete()) {
+          size -= length;
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Fingerprints of the assemblies analyzed by the last successful run, from which unchanged assemblies are detected.
+ */
+public class FxCopManifest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopManifest.class);
+
+  private final Properties fingerprints = new Properties();
+
+  /**
+   * @return The manifest stored in the given file, or an empty one if it does not exist or cannot be read
+   */
+  public static FxCopManifest load(File file) {
+    FxCopManifest manifest = new FxCopManifest();
+
+    // A complete temporary file without the file itself means that the last save was interrupted right before its rename
+    File temporaryFile = temporaryFile(file);
+    if (!file.isFile() && temporaryFile.isFile()) {
+      file = temporaryFile;
+    }
+
+    if (file.isFile()) {
+      InputStream stream = null;
+      try {
+        stream = new FileInputStream(file);
+        manifest.fingerprints.load(stream);
+      } catch (IOException e) {
+        LOG.warn("Ignoring the unreadable FxCop manifest \"" + file.getAbsolutePath() + "\": " + e.getMessage());
+        manifest.fingerprints.clear();
+      } catch (IllegalArgumentException e) {
+        LOG.warn("Ignoring the invalid FxCop manifest \"" + file.getAbsolutePath() + "\": " + e.getMessage());
+        manifest.fingerprints.clear();
+      } finally {
+        Closeables.closeQuietly(stream);
+      }
+    }
+
+    return manifest;
+  }
+
+  @Nullable
+  public String get(String assembly) {
+    return fingerprints.getProperty(assembly);
+  }
+
+  public void put(String assembly, String fingerprint) {
+    fingerprints.setProperty(assembly, fingerprint);
+  }
+
+  public boolean isUnchanged(String assembly, String fingerprint) {
+    return fingerprint.equals(get(assembly));
+  }
+
+  public void save(File file) {
+    save(file, "FxCop assemblies of the last successful run");
+  }
+
+  /**
+   * Saves atomically: the fingerprints are written and synced to a temporary file, which then replaces the given one,
+   * so that an interrupted save leaves either the previous or the new content, but never a truncated file.
+   */
+  void save(File file, String comments) {
+    File temporaryFile = temporaryFile(file);
+    FileOutputStream stream = null;
+    try {
+      stream = new FileOutputStream(temporaryFile);
+      fingerprints.store(stream, comments);
+      stream.getFD().sync();
+      stream.close();
+    } catch (IOException e) {
+      Closeables.closeQuietly(stream);
+      throw Throwables.propagate(e);
+    }
+
+    FxCopFiles.replace(temporaryFile, file);
+  }
+
+  private static File temporaryFile(File file) {
+    return new File(file.getPath() + ".tmp");
+  }
+
+}
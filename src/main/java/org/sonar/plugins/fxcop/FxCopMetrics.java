@@ -0,0 +1,85 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.Metrics;
+
+import java.util.List;
+
+/**
+ * Aggregate measures computed from the FxCop issues, prefixed by the language key so that several languages can register them.
+ */
+public class FxCopMetrics implements Metrics {
+
+  private final Metric issues;
+  private final Metric issuesByCategory;
+  private final Metric issuesByRule;
+  private final Metric issuesByCertainty;
+
+  public FxCopMetrics(FxCopConfiguration fxCopConf) {
+    String prefix = fxCopConf.languageKey() + "_fxcop_";
+
+    this.issues = new Metric.Builder(prefix + "issues", "FxCop issues", Metric.ValueType.INT)
+      .setDescription("Number of FxCop issues")
+      .setDirection(Metric.DIRECTION_WORST)
+      .setQualitative(false)
+      .setDomain(CoreMetrics.DOMAIN_ISSUES)
+      .setBestValue(0.0)
+      .create();
+    this.issuesByCategory = dataMetric(prefix + "issues_by_category", "FxCop issues by category");
+    this.issuesByRule = dataMetric(prefix + "issues_by_rule", "FxCop issues by rule");
+    this.issuesByCertainty = dataMetric(prefix + "issues_by_certainty", "FxCop issues by certainty");
+  }
+
+  private static Metric dataMetric(String key, String name) {
+    return new Metric.Builder(key, name, Metric.ValueType.DATA)
+      .setDescription(name)
+      .setDirection(Metric.DIRECTION_NONE)
+      .setQualitative(false)
+      .setDomain(CoreMetrics.DOMAIN_ISSUES)
+      .setHidden(true)
+      .create();
+  }
+
+  public Metric issues() {
+    return issues;
+  }
+
+  public Metric issuesByCategory() {
+    return issuesByCategory;
+  }
+
+  public Metric issuesByRule() {
+    return issuesByRule;
+  }
+
+  public Metric issuesByCertainty() {
+    return issuesByCertainty;
+  }
+
+  @Override
+  public List<Metric> getMetrics() {
+    return ImmutableList.of(issues, issuesByCategory, issuesByRule, issuesByCertainty);
+  }
+
+}
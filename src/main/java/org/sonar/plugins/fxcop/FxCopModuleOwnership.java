@@ -0,0 +1,98 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each source file of a project-level FxCop report to the module owning it: the deepest module whose base directory contains it.
+ * Paths are compared once normalized with {@link FxCopIssueIndex#normalize(String)}, as Windows paths are case insensitive.
+ */
+public class FxCopModuleOwnership {
+
+  private final List<String> baseDirs = Lists.newArrayList();
+  private final Map<String, String> ownerByDirectory = Maps.newHashMap();
+
+  public FxCopModuleOwnership(Collection<File> baseDirs) {
+    for (File baseDir : baseDirs) {
+      this.baseDirs.add(key(baseDir));
+    }
+    // The deepest modules first, so that the first match is the owner
+    Collections.sort(this.baseDirs, new Comparator<String>() {
+      @Override
+      public int compare(String a, String b) {
+        return b.length() - a.length();
+      }
+    });
+  }
+
+  /**
+   * @return Whether the source file of the given report Path and File attributes is owned by the module of the given base directory
+   */
+  public boolean owns(File baseDir, @Nullable String path, @Nullable String file) {
+    if (path == null || file == null) {
+      return false;
+    }
+
+    String owner = owner(new File(path, file).getPath());
+    return owner != null && owner.equals(key(baseDir));
+  }
+
+  /**
+   * @return The normalized base directory of the module owning the given source file, or null if no module contains it
+   */
+  @Nullable
+  public synchronized String owner(String path) {
+    String normalized = FxCopIssueIndex.normalize(path);
+    int i = normalized.lastIndexOf('/');
+    String directory = i == -1 ? "" : normalized.substring(0, i + 1);
+
+    // Most issues share their directory with many others
+    if (ownerByDirectory.containsKey(directory)) {
+      return ownerByDirectory.get(directory);
+    }
+
+    String owner = null;
+    for (String baseDir : baseDirs) {
+      if (directory.startsWith(baseDir)) {
+        owner = baseDir;
+        break;
+      }
+    }
+    ownerByDirectory.put(directory, owner);
+    return owner;
+  }
+
+  private static String key(File baseDir) {
+    String key = FxCopIssueIndex.normalize(baseDir.getAbsolutePath());
+    return key.endsWith("/") ? key : key + "/";
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Source files whose issues are excluded, matched by path against globs and regular expressions,
+ * all compiled into a single case insensitive pattern so that each path is matched once.
+ *
+ * <p>Paths are matched with forward slashes. In globs, "**&#47;" matches any number of directories, "*" any characters but "/"
+ * and "?" one character but "/".</p>
+ */
+public class FxCopPathExclusions {
+
+  /**
+   * Globs of the source files generated by Visual Studio: designers, build outputs and service or web references.
+   */
+  public static final List<String> GENERATED_CODE_GLOBS = ImmutableList.of(
+    "**/*.Designer.cs",
+    "**/*.Designer.vb",
+    "**/*.g.cs",
+    "**/*.g.i.cs",
+    "**/*.g.vb",
+    "**/obj/**",
+    "**/Service References/**",
+    "**/Web References/**");
+
+  private final Pattern pattern;
+
+  public FxCopPathExclusions(List<String> globs, List<String> regexes) {
+    List<String> alternatives = Lists.newArrayList();
+    for (String glob : globs) {
+      alternatives.add("(?:" + globToRegex(glob) + ")");
+    }
+    for (String regex : regexes) {
+      try {
+        Pattern.compile(regex);
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException("Invalid FxCop exclusion regular expression \"" + regex + "\": " + e.getDescription(), e);
+      }
+      alternatives.add("(?:" + regex + ")");
+    }
+
+    this.pattern = alternatives.isEmpty() ? null : Pattern.compile(Joiner.on('|').join(alternatives), Pattern.CASE_INSENSITIVE);
+  }
+
+  public boolean isEmpty() {
+    return pattern == null;
+  }
+
+  /**
+   * @param path The Path attribute of an FxCop issue, that is to say a directory
+   * @param file The File attribute of an FxCop issue
+   */
+  public boolean isExcluded(@Nullable String path, @Nullable String file) {
+    if (pattern == null || file == null) {
+      return false;
+    }
+
+    String fullPath = path == null ? file : (path + "/" + file);
+    return pattern.matcher(fullPath.replace('\\', '/')).matches();
+  }
+
+  static String globToRegex(String glob) {
+    StringBuilder sb = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    String normalized = glob.trim().replace('\\', '/');
+    int i = 0;
+    while (i < normalized.length()) {
+      String wildcard;
+      int length = 1;
+      if (normalized.startsWith("**/", i)) {
+        wildcard = "(?:.*/)?";
+        length = 3;
+      } else if (normalized.startsWith("**", i)) {
+        wildcard = ".*";
+        length = 2;
+      } else if (normalized.charAt(i) == '*') {
+        wildcard = "[^/]*";
+      } else if (normalized.charAt(i) == '?') {
+        wildcard = "[^/]";
+      } else {
+        wildcard = null;
+        literal.append(normalized.charAt(i));
+      }
+
+      if (wildcard != null) {
+        appendLiteral(sb, literal);
+        sb.append(wildcard);
+      }
+      i += length;
+    }
+    appendLiteral(sb, literal);
+    return sb.toString();
+  }
+
+  private static void appendLiteral(StringBuilder sb, StringBuilder literal) {
+    if (literal.length() > 0) {
+      sb.append(Pattern.quote(literal.toString()));
+      literal.setLength(0);
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared by the {@link FxCopSensor}s of all the modules of a batch when {@link FxCopConfiguration#PROJECT_LEVEL_PROPERTY_KEY} is enabled:
+ * the first module to be analyzed executes FxCopCmd once on the assemblies of all the modules, and all of them then parse the resulting report,
+ * keeping only the issues of the source files they own according to {@link #ownership()}.
+ *
+ * <p>Plugins must register this class as an extension, next to their sensor, which then receives it through its constructor.</p>
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class FxCopProjectAnalysis implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopProjectAnalysis.class);
+
+  private final ProjectReactor reactor;
+  private final Map<String, File> reportFiles = Maps.newHashMap();
+  private final Map<String, RuntimeException> failures = Maps.newHashMap();
+  private FxCopModuleOwnership ownership;
+
+  public FxCopProjectAnalysis(ProjectReactor reactor) {
+    this.reactor = reactor;
+  }
+
+  /**
+   * @return The assemblies set in the given property on any module, inherited from the parent modules, without duplicates and in module order
+   */
+  public List<String> assemblies(String assemblyPropertyKey) {
+    Set<String> assemblies = Sets.newLinkedHashSet();
+    for (ProjectDefinition module : reactor.getProjects()) {
+      String value = property(module, assemblyPropertyKey);
+      if (value != null) {
+        assemblies.addAll(FxCopConfiguration.splitList(value));
+      }
+    }
+    return ImmutableList.copyOf(assemblies);
+  }
+
+  @Nullable
+  private static String property(ProjectDefinition module, String key) {
+    for (ProjectDefinition definition = module; definition != null; definition = definition.getParent()) {
+      String value = definition.getProperties().getProperty(key);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  public synchronized FxCopModuleOwnership ownership() {
+    if (ownership == null) {
+      List<File> baseDirs = Lists.newArrayList();
+      for (ProjectDefinition module : reactor.getProjects()) {
+        baseDirs.add(module.getBaseDir());
+      }
+      ownership = new FxCopModuleOwnership(baseDirs);
+    }
+    return ownership;
+  }
+
+  /**
+   * Executes FxCopCmd on the assemblies of all the modules the first time it is called for the assembly property of the given configuration,
+   * and returns the same report to the next modules. A failed execution fails all of them.
+   *
+   * @return The report of all the assemblies, in the working directory of the root module
+   */
+  public synchronized File report(FxCopResolvedConfiguration conf, List<String> ruleConfigKeys, FxCopRulesetWriter writer, FxCopExecutor executor) {
+    String key = conf.assemblyPropertyKey();
+    if (failures.containsKey(key)) {
+      throw failures.get(key);
+    }
+
+    File reportFile = reportFiles.get(key);
+    if (reportFile == null) {
+      try {
+        reportFile = execute(conf, ruleConfigKeys, writer, executor);
+      } catch (RuntimeException e) {
+        failures.put(key, e);
+        throw e;
+      }
+      reportFiles.put(key, reportFile);
+    }
+    return reportFile;
+  }
+
+  private File execute(FxCopResolvedConfiguration conf, List<String> ruleConfigKeys, FxCopRulesetWriter writer, FxCopExecutor executor) {
+    List<String> assemblies = assemblies(conf.assemblyPropertyKey());
+    Preconditions.checkArgument(!assemblies.isEmpty(), "The property \"" + conf.assemblyPropertyKey() + "\" must be set on at least one module.");
+
+    File workDir = reactor.getRoot().getWorkDir();
+    File rulesetFile = new File(workDir, "fxcop-project-" + conf.repositoryKey() + ".ruleset");
+    File reportFile = new File(workDir, "fxcop-project-" + conf.repositoryKey() + "-report.xml");
+    try {
+      Files.createParentDirs(rulesetFile);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    writer.write(ruleConfigKeys, rulesetFile);
+
+    LOG.info("Analyzing the " + assemblies.size() + " assemblies of the " + reactor.getProjects().size() + " modules with a single FxCop execution.");
+    executor.execute(conf.fxCopCmdPath(), assemblies, rulesetFile, reportFile, conf.timeout(), conf.excludeGeneratedCode());
+    return reportFile;
+  }
+
+}
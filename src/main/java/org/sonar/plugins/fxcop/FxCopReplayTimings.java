@@ -0,0 +1,151 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of the iterations of a replay, logged and saved as CSV to compare the throughput of successive builds.
+ */
+public class FxCopReplayTimings {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopReplayTimings.class);
+
+  private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+  private final long reportBytes;
+  private final List<Iteration> iterations = Lists.newArrayList();
+
+  public FxCopReplayTimings(long reportBytes) {
+    this.reportBytes = reportBytes;
+  }
+
+  /**
+   * @return The total time spent in garbage collections by this JVM so far, to be subtracted around an iteration
+   */
+  public static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  public void add(long parseNanos, long saveNanos, long gcMillis, int issues) {
+    iterations.add(new Iteration(parseNanos, saveNanos, gcMillis, issues));
+  }
+
+  public int iterations() {
+    return iterations.size();
+  }
+
+  public void log() {
+    for (int i = 0; i < iterations.size(); i++) {
+      LOG.info("FxCop replay iteration " + (i + 1) + ": " + iterations.get(i).toLogString(reportBytes));
+    }
+
+    List<Long> parseNanos = Lists.newArrayList();
+    for (Iteration iteration : iterations) {
+      parseNanos.add(iteration.parseNanos);
+    }
+    Collections.sort(parseNanos);
+    if (!parseNanos.isEmpty()) {
+      LOG.info("FxCop replay of " + reportBytes + " bytes, parsing times in ms: min " + millis(parseNanos.get(0))
+        + ", median " + millis(parseNanos.get(parseNanos.size() / 2))
+        + ", max " + millis(parseNanos.get(parseNanos.size() - 1)) + ".");
+    }
+  }
+
+  public void save(File file) {
+    StringBuilder sb = new StringBuilder("iteration,parseMillis,saveMillis,gcMillis,issues,issuesPerSecond,megabytesPerSecond\n");
+    for (int i = 0; i < iterations.size(); i++) {
+      Iteration iteration = iterations.get(i);
+      sb.append(i + 1).append(',')
+        .append(millis(iteration.parseNanos)).append(',')
+        .append(millis(iteration.saveNanos)).append(',')
+        .append(iteration.gcMillis).append(',')
+        .append(iteration.issues).append(',')
+        .append(format(iteration.issuesPerSecond())).append(',')
+        .append(format(iteration.megabytesPerSecond(reportBytes))).append('\n');
+    }
+
+    try {
+      Files.write(sb, file, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.ENGLISH, "%.1f", value);
+  }
+
+  private static class Iteration {
+
+    private final long parseNanos;
+    private final long saveNanos;
+    private final long gcMillis;
+    private final int issues;
+
+    public Iteration(long parseNanos, long saveNanos, long gcMillis, int issues) {
+      this.parseNanos = parseNanos;
+      this.saveNanos = saveNanos;
+      this.gcMillis = gcMillis;
+      this.issues = issues;
+    }
+
+    private double seconds() {
+      return Math.max(parseNanos, 1) / 1e9;
+    }
+
+    public double issuesPerSecond() {
+      return issues / seconds();
+    }
+
+    public double megabytesPerSecond(long reportBytes) {
+      return reportBytes / BYTES_PER_MEGABYTE / seconds();
+    }
+
+    public String toLogString(long reportBytes) {
+      return "parsed " + issues + " issues in " + millis(parseNanos) + " ms (" + format(issuesPerSecond()) + " issues/s, "
+        + format(megabytesPerSecond(reportBytes)) + " MB/s), saved in " + millis(saveNanos) + " ms, " + gcMillis + " ms of GC";
+    }
+
+  }
+
+}
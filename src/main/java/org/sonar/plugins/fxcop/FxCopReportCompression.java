@@ -0,0 +1,110 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed FxCop reports, detected from their first bytes whatever their file name.
+ * Only gzip is supported: zstd-compressed reports are recognized, but must be decompressed beforehand, as the JDK has no zstd codec.
+ */
+public class FxCopReportCompression {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAGIC_LENGTH = 4;
+
+  private static final byte[] GZIP_MAGIC = {(byte) 0x1F, (byte) 0x8B};
+  private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD};
+
+  private FxCopReportCompression() {
+  }
+
+  /**
+   * @return A stream of the uncompressed content of the given report, be it compressed or not
+   */
+  public static InputStream open(File file) throws IOException {
+    InputStream stream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+    try {
+      byte[] magic = new byte[MAGIC_LENGTH];
+      stream.mark(MAGIC_LENGTH);
+      int length = ByteStreams.read(stream, magic, 0, MAGIC_LENGTH);
+      stream.reset();
+
+      if (startsWith(magic, length, GZIP_MAGIC)) {
+        return new GZIPInputStream(stream, BUFFER_SIZE);
+      }
+      Preconditions.checkArgument(!startsWith(magic, length, ZSTD_MAGIC),
+        "The zstd-compressed FxCop report \"" + file.getAbsolutePath() + "\" is not supported, decompress it first or use gzip.");
+      return stream;
+    } catch (IOException e) {
+      Closeables.closeQuietly(stream);
+      throw e;
+    } catch (RuntimeException e) {
+      Closeables.closeQuietly(stream);
+      throw e;
+    }
+  }
+
+  /**
+   * Replaces the given report by its gzip-compressed content.
+   */
+  public static void compress(File file) throws IOException {
+    File tmpFile = new File(file.getParentFile(), file.getName() + ".gz.tmp");
+
+    InputStream input = null;
+    OutputStream output = null;
+    try {
+      input = new FileInputStream(file);
+      output = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE), BUFFER_SIZE);
+      ByteStreams.copy(input, output);
+    } finally {
+      Closeables.closeQuietly(input);
+      Closeables.close(output, false);
+    }
+
+    FxCopFiles.move(tmpFile, file);
+  }
+
+  private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+    if (length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -30,56 +30,148 @@ import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.List;
 
-public class FxCopReportParser {
+/**
+ * Reads the FxCop XML reports, and delegates the SARIF ones to {@link FxCopSarifReportReader}, the format being detected from the first character.
+ */
+public class FxCopReportParser implements FxCopReportReader {
+
+  /**
+   * Maximum number of leading bytes, such as a byte order mark and whitespaces, inspected to detect the format.
+   */
+  private static final int DETECTION_LIMIT = 4096;
+
+  private final FxCopReportReader sarifReader = new FxCopSarifReportReader();
 
   public List<FxCopIssue> parse(File file) {
-    return new Parser().parse(file);
+    return parse(file, new FxCopIssueFilter());
+  }
+
+  public List<FxCopIssue> parse(File file, FxCopIssueFilter filter) {
+    final ImmutableList.Builder<FxCopIssue> issuesBuilder = ImmutableList.builder();
+    parse(file, filter, new FxCopIssueHandler() {
+      @Override
+      public void handle(FxCopIssue issue) {
+        issuesBuilder.add(issue);
+      }
+    });
+    return issuesBuilder.build();
+  }
+
+  /**
+   * Streams the issues of the report to the given handler, in the order in which they appear in the report.
+   */
+  public void parse(File file, FxCopIssueFilter filter, FxCopIssueHandler handler) {
+    parse(file, filter, null, handler);
+  }
+
+  /**
+   * Same as {@link #parse(File, FxCopIssueFilter, FxCopIssueHandler)}, but the issues without path, file or line are located
+   * using the source index, based on their enclosing namespace, type and member in the report.
+   */
+  public void parse(File file, FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex, FxCopIssueHandler handler) {
+    InputStream input;
+    try {
+      input = FxCopReportCompression.open(file);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    parse(file, input, filter, sourceIndex, handler);
+  }
+
+  /**
+   * Same as {@link #parse(File, FxCopIssueFilter, FxCopSourceIndex, FxCopIssueHandler)}, but the report is read from the given stream,
+   * for instance while FxCopCmd is still writing it, which is closed once parsed. The file is only used in the error messages.
+   */
+  @Override
+  public void parse(File file, InputStream input, FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex, FxCopIssueHandler handler) {
+    BufferedInputStream buffered = new BufferedInputStream(input);
+    try {
+      if (isJson(buffered)) {
+        sarifReader.parse(file, buffered, filter, sourceIndex, handler);
+      } else {
+        new Parser(filter, sourceIndex, handler).parse(file, buffered);
+      }
+    } finally {
+      // Already closed by the readers once parsed, but not when the detection fails
+      Closeables.closeQuietly(buffered);
+    }
+  }
+
+  /**
+   * @return Whether the first character after the byte order mark and whitespaces opens a JSON object, the stream being reset to its start
+   */
+  private static boolean isJson(BufferedInputStream input) {
+    try {
+      input.mark(DETECTION_LIMIT);
+      int c;
+      int n = 0;
+      do {
+        c = input.read();
+        n++;
+      } while (n < DETECTION_LIMIT && (c == 0xEF || c == 0xBB || c == 0xBF || c == ' ' || c == '\t' || c == '\r' || c == '\n'));
+      input.reset();
+      return c == '{';
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
   }
 
   private static class Parser {
 
+    private final FxCopIssueFilter filter;
+    private final FxCopSourceIndex sourceIndex;
+    private final FxCopIssueHandler handler;
     private File file;
     private XMLStreamReader stream;
-    private final ImmutableList.Builder<FxCopIssue> filesBuilder = ImmutableList.builder();
     private String ruleKey;
+    private String checkId;
+    private String category;
+    private FxCopCodeElement context;
+
+    public Parser(FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex, FxCopIssueHandler handler) {
+      this.filter = filter;
+      this.sourceIndex = sourceIndex;
+      this.handler = handler;
+    }
 
-    public List<FxCopIssue> parse(File file) {
+    public void parse(File file, InputStream input) {
       this.file = file;
 
-      InputStreamReader reader = null;
+      InputStreamReader reader = new InputStreamReader(input, Charsets.UTF_8);
       XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
 
       try {
-        reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
         stream = xmlFactory.createXMLStreamReader(reader);
 
         while (stream.hasNext()) {
-          if (stream.next() == XMLStreamConstants.START_ELEMENT) {
+          int event = stream.next();
+          if (event == XMLStreamConstants.START_ELEMENT) {
             String tagName = stream.getLocalName();
 
             if ("Message".equals(tagName)) {
               handleMessageTag();
             } else if ("Issue".equals(tagName)) {
               handleIssueTag();
+            } else {
+              handleCodeElementStart(tagName);
             }
+          } else if (event == XMLStreamConstants.END_ELEMENT) {
+            handleCodeElementEnd(stream.getLocalName());
           }
         }
-      } catch (IOException e) {
-        throw Throwables.propagate(e);
       } catch (XMLStreamException e) {
         throw Throwables.propagate(e);
       } finally {
         closeXmlStream();
         Closeables.closeQuietly(reader);
       }
-
-      return filesBuilder.build();
     }
 
     private void closeXmlStream() {
@@ -92,16 +184,92 @@ public class FxCopReportParser {
       }
     }
 
-    private void handleMessageTag() {
+    /**
+     * Keeps track of the enclosing target, module, namespace, type, member and accessor, using a stack of shared elements.
+     */
+    private void handleCodeElementStart(String tagName) {
+      FxCopCodeElement.Kind kind = FxCopCodeElement.Kind.fromTagName(tagName);
+      if (kind != null) {
+        String name = getAttribute("Name");
+        context = new FxCopCodeElement(kind, name == null ? "" : name, context);
+      }
+    }
+
+    private void handleCodeElementEnd(String tagName) {
+      if (context != null && FxCopCodeElement.Kind.fromTagName(tagName) == context.kind()) {
+        context = context.parent();
+      }
+    }
+
+    private void handleMessageTag() throws XMLStreamException {
       this.ruleKey = getRequiredAttribute("TypeName");
+      this.checkId = getAttribute("CheckId");
+      this.category = getAttribute("Category");
+
+      if (!filter.acceptRule(ruleKey, checkId)) {
+        skipElement();
+      }
     }
 
     private void handleIssueTag() throws XMLStreamException {
+      Integer certainty = getIntAttribute("Certainty");
+      String level = getAttribute("Level");
+      if (!filter.acceptIssue(certainty, level)) {
+        skipElement();
+        return;
+      }
+
       String path = getAttribute("Path");
       String fileAttribute = getAttribute("File");
       Integer line = getIntAttribute("Line");
+
+      if ((path == null || fileAttribute == null || line == null) && sourceIndex != null) {
+        FxCopSourceIndex.Location location = locate();
+        if (location != null) {
+          path = location.path();
+          fileAttribute = location.fileName();
+          line = location.line();
+        }
+      }
+
+      if (!filter.acceptLocation(path, fileAttribute, line)) {
+        skipElement();
+        return;
+      }
+
       String message = stream.getElementText();
-      filesBuilder.add(new FxCopIssue(stream.getLocation().getLineNumber(), ruleKey, path, fileAttribute, line, message));
+      handler.handle(new FxCopIssue(stream.getLocation().getLineNumber(), ruleKey, checkId, category, path, fileAttribute, line, message, certainty, level, context));
+    }
+
+    @Nullable
+    private FxCopSourceIndex.Location locate() {
+      FxCopCodeElement namespace = context == null ? null : context.enclosing(FxCopCodeElement.Kind.NAMESPACE);
+      FxCopCodeElement type = context == null ? null : context.enclosing(FxCopCodeElement.Kind.TYPE);
+      if (namespace == null || type == null) {
+        return null;
+      }
+
+      FxCopCodeElement member = context.enclosing(FxCopCodeElement.Kind.ACCESSOR);
+      if (member == null) {
+        member = context.enclosing(FxCopCodeElement.Kind.MEMBER);
+      }
+
+      return member == null ? sourceIndex.locateType(namespace.name(), type.name()) : sourceIndex.locateMember(namespace.name(), type.name(), member.name());
+    }
+
+    /**
+     * Moves the stream to the end of the current element, without decoding any of its text or attributes.
+     */
+    private void skipElement() throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0) {
+        int event = stream.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
     }
 
     private String getRequiredAttribute(String name) {
@@ -0,0 +1,40 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Streams the issues of a report in a given format, such as the FxCop XML one or SARIF, without loading the whole report in memory.
+ */
+public interface FxCopReportReader {
+
+  /**
+   * Reads the report from the given stream, which is closed once read, and passes each issue accepted by the filter to the handler,
+   * in the order in which they appear in the report. The file is only used in the error messages.
+   *
+   * @param sourceIndex Used to locate the issues without path, file or line, if the format describes their enclosing code elements
+   */
+  void parse(File file, InputStream input, FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex, FxCopIssueHandler handler);
+
+}
@@ -0,0 +1,370 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the FxCop settings of a module, with deprecated properties, defaults and paths resolved,
+ * and the assemblies and .pdb files stated once. It is resolved once per analysis, and can be shared by concurrent threads.
+ */
+public final class FxCopResolvedConfiguration {
+
+  private static final long DEFAULT_CACHE_MAX_SIZE = 1024L * 1024 * 1024;
+
+  private final String languageKey;
+  private final String repositoryKey;
+  private final String assemblyPropertyKey;
+  private final String fxCopCmdPropertyKey;
+  private final String timeoutPropertyKey;
+  private final boolean assembliesSet;
+  private final List<String> assemblies;
+  private final Map<String, FileStatus> files;
+  private final String fxCopCmdPath;
+  private final int timeout;
+  private final boolean replay;
+  private final List<File> replayReports;
+  private final int replayIterations;
+  private final int maxConcurrentAssemblies;
+  private final boolean governor;
+  private final long processMemory;
+  private final int minimumCertainty;
+  private final Set<String> levels;
+  private final boolean severityFromLevel;
+  private final long memoryBudget;
+  private final boolean locateFromSources;
+  private final boolean skipUnchangedAssemblies;
+  private final boolean checkpoint;
+  private final boolean issueIndex;
+  private final boolean compressReports;
+  private final boolean streamReports;
+  private final File queueDirectory;
+  private final boolean projectLevel;
+  private final File cacheDirectory;
+  private final long cacheMaxSize;
+  private final String cacheUrl;
+  private final List<String> exclusions;
+  private final String exclusionRegex;
+  private final boolean excludeGeneratedCode;
+
+  private FxCopResolvedConfiguration(FxCopConfiguration conf, Settings settings) {
+    languageKey = conf.languageKey();
+    repositoryKey = conf.repositoryKey();
+    assemblyPropertyKey = conf.assemblyPropertyKey();
+    fxCopCmdPropertyKey = resolveKey(settings, conf.fxCopCmdPropertyKey(), FxCopConfiguration.DEPRECATED_FXCOPCMD_PATH_PROPERTY_KEY);
+    timeoutPropertyKey = resolveKey(settings, conf.timeoutPropertyKey(), FxCopConfiguration.DEPRECATED_TIMEOUT_MINUTES_PROPERTY_KEY);
+
+    assembliesSet = settings.hasKey(assemblyPropertyKey);
+    String assembliesValue = settings.getString(assemblyPropertyKey);
+    assemblies = assembliesValue == null ? ImmutableList.<String>of() : FxCopConfiguration.splitAssemblies(assembliesValue);
+    ImmutableMap.Builder<String, FileStatus> filesBuilder = ImmutableMap.builder();
+    for (String assembly : ImmutableSet.copyOf(assemblies)) {
+      filesBuilder.put(assembly, FileStatus.of(new File(assembly)));
+      String pdbPath = FxCopConfiguration.pdbPath(assembly);
+      if (!assemblies.contains(pdbPath)) {
+        filesBuilder.put(pdbPath, FileStatus.of(new File(pdbPath)));
+      }
+    }
+    files = filesBuilder.build();
+
+    fxCopCmdPath = settings.getString(fxCopCmdPropertyKey);
+    timeout = settings.getInt(timeoutPropertyKey);
+
+    replay = FxCopConfiguration.isReplay(settings);
+    ImmutableList.Builder<File> replayReportsBuilder = ImmutableList.builder();
+    if (replay) {
+      for (String reportPath : FxCopConfiguration.splitList(settings.getString(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY))) {
+        replayReportsBuilder.add(new File(reportPath));
+      }
+    }
+    replayReports = replayReportsBuilder.build();
+    replayIterations = intOrDefault(settings, FxCopConfiguration.REPLAY_ITERATIONS_PROPERTY_KEY, 1);
+
+    maxConcurrentAssemblies = intOrDefault(settings, FxCopConfiguration.MAX_CONCURRENT_ASSEMBLIES_PROPERTY_KEY, 1);
+    governor = booleanOrDefault(settings, FxCopConfiguration.GOVERNOR_PROPERTY_KEY, false);
+    processMemory = settings.hasKey(FxCopConfiguration.PROCESS_MEMORY_PROPERTY_KEY) ?
+      settings.getLong(FxCopConfiguration.PROCESS_MEMORY_PROPERTY_KEY) :
+      FxCopGovernor.DEFAULT_PROCESS_MEMORY;
+    minimumCertainty = intOrDefault(settings, FxCopConfiguration.MINIMUM_CERTAINTY_PROPERTY_KEY, 0);
+    levels = FxCopConfiguration.splitLevels(settings.getString(FxCopConfiguration.LEVELS_PROPERTY_KEY));
+    severityFromLevel = booleanOrDefault(settings, FxCopConfiguration.SEVERITY_FROM_LEVEL_PROPERTY_KEY, false);
+    memoryBudget = settings.hasKey(FxCopConfiguration.MEMORY_BUDGET_PROPERTY_KEY) ?
+      settings.getLong(FxCopConfiguration.MEMORY_BUDGET_PROPERTY_KEY) :
+      FxCopIssueTable.UNLIMITED_MEMORY;
+    locateFromSources = booleanOrDefault(settings, FxCopConfiguration.LOCATE_FROM_SOURCES_PROPERTY_KEY, false);
+    skipUnchangedAssemblies = booleanOrDefault(settings, FxCopConfiguration.SKIP_UNCHANGED_ASSEMBLIES_PROPERTY_KEY, false);
+    checkpoint = booleanOrDefault(settings, FxCopConfiguration.CHECKPOINT_PROPERTY_KEY, false);
+    issueIndex = booleanOrDefault(settings, FxCopConfiguration.ISSUE_INDEX_PROPERTY_KEY, false);
+    compressReports = booleanOrDefault(settings, FxCopConfiguration.COMPRESS_REPORTS_PROPERTY_KEY, false);
+    streamReports = booleanOrDefault(settings, FxCopConfiguration.STREAM_REPORTS_PROPERTY_KEY, false);
+    queueDirectory = fileOrNull(settings, FxCopConfiguration.QUEUE_DIRECTORY_PROPERTY_KEY);
+    projectLevel = booleanOrDefault(settings, FxCopConfiguration.PROJECT_LEVEL_PROPERTY_KEY, false);
+
+    cacheDirectory = fileOrNull(settings, FxCopConfiguration.CACHE_DIRECTORY_PROPERTY_KEY);
+    cacheMaxSize = settings.hasKey(FxCopConfiguration.CACHE_MAX_SIZE_PROPERTY_KEY) ?
+      settings.getLong(FxCopConfiguration.CACHE_MAX_SIZE_PROPERTY_KEY) :
+      DEFAULT_CACHE_MAX_SIZE;
+    cacheUrl = settings.hasKey(FxCopConfiguration.CACHE_URL_PROPERTY_KEY) ? settings.getString(FxCopConfiguration.CACHE_URL_PROPERTY_KEY) : null;
+
+    exclusions = settings.hasKey(FxCopConfiguration.EXCLUSIONS_PROPERTY_KEY) ?
+      FxCopConfiguration.splitList(settings.getString(FxCopConfiguration.EXCLUSIONS_PROPERTY_KEY)) :
+      ImmutableList.<String>of();
+    exclusionRegex = settings.hasKey(FxCopConfiguration.EXCLUSION_REGEX_PROPERTY_KEY) ? settings.getString(FxCopConfiguration.EXCLUSION_REGEX_PROPERTY_KEY) : null;
+    excludeGeneratedCode = booleanOrDefault(settings, FxCopConfiguration.EXCLUDE_GENERATED_CODE_PROPERTY_KEY, false);
+  }
+
+  /**
+   * Resolves the settings, without validating them: see {@link FxCopConfiguration#check(FxCopResolvedConfiguration)}.
+   */
+  public static FxCopResolvedConfiguration resolve(FxCopConfiguration conf, Settings settings) {
+    return new FxCopResolvedConfiguration(conf, settings);
+  }
+
+  private static String resolveKey(Settings settings, String key, String deprecatedKey) {
+    return !settings.hasKey(key) && settings.hasKey(deprecatedKey) ? deprecatedKey : key;
+  }
+
+  private static int intOrDefault(Settings settings, String key, int defaultValue) {
+    return settings.hasKey(key) ? settings.getInt(key) : defaultValue;
+  }
+
+  private static boolean booleanOrDefault(Settings settings, String key, boolean defaultValue) {
+    return settings.hasKey(key) ? settings.getBoolean(key) : defaultValue;
+  }
+
+  @Nullable
+  private static File fileOrNull(Settings settings, String key) {
+    return settings.hasKey(key) ? new File(settings.getString(key)) : null;
+  }
+
+  public String languageKey() {
+    return languageKey;
+  }
+
+  public String repositoryKey() {
+    return repositoryKey;
+  }
+
+  public String assemblyPropertyKey() {
+    return assemblyPropertyKey;
+  }
+
+  /**
+   * @return The property giving the path to FxCopCmd, which may be the deprecated one
+   */
+  public String fxCopCmdPropertyKey() {
+    return fxCopCmdPropertyKey;
+  }
+
+  /**
+   * @return The property giving the timeout, which may be the deprecated one
+   */
+  public String timeoutPropertyKey() {
+    return timeoutPropertyKey;
+  }
+
+  public boolean isAssembliesSet() {
+    return assembliesSet;
+  }
+
+  public List<String> assemblies() {
+    return assemblies;
+  }
+
+  /**
+   * @return The status, when resolved, of the given assembly or of the .pdb file of an assembly
+   */
+  public FileStatus fileStatus(String path) {
+    FileStatus status = files.get(path);
+    return status == null ? FileStatus.of(new File(path)) : status;
+  }
+
+  /**
+   * @return The path to FxCopCmd as set, which may be its directory only: see {@link #executable()}
+   */
+  @Nullable
+  public String fxCopCmdPath() {
+    return fxCopCmdPath;
+  }
+
+  @Nullable
+  public String executable() {
+    return fxCopCmdPath == null ? null : FxCopExecutor.getExecutable(fxCopCmdPath);
+  }
+
+  public int timeout() {
+    return timeout;
+  }
+
+  public boolean isReplay() {
+    return replay;
+  }
+
+  public List<File> replayReports() {
+    return replayReports;
+  }
+
+  public int replayIterations() {
+    return replayIterations;
+  }
+
+  public int maxConcurrentAssemblies() {
+    return maxConcurrentAssemblies;
+  }
+
+  public boolean governor() {
+    return governor;
+  }
+
+  public long processMemory() {
+    return processMemory;
+  }
+
+  public int minimumCertainty() {
+    return minimumCertainty;
+  }
+
+  /**
+   * @return The levels of the issues to import, or an empty set to import all of them
+   */
+  public Set<String> levels() {
+    return levels;
+  }
+
+  public boolean severityFromLevel() {
+    return severityFromLevel;
+  }
+
+  public long memoryBudget() {
+    return memoryBudget;
+  }
+
+  public boolean locateFromSources() {
+    return locateFromSources;
+  }
+
+  public boolean skipUnchangedAssemblies() {
+    return skipUnchangedAssemblies;
+  }
+
+  public boolean checkpoint() {
+    return checkpoint;
+  }
+
+  public boolean issueIndex() {
+    return issueIndex;
+  }
+
+  public boolean compressReports() {
+    return compressReports;
+  }
+
+  public boolean streamReports() {
+    return streamReports;
+  }
+
+  @Nullable
+  public File queueDirectory() {
+    return queueDirectory;
+  }
+
+  public boolean isProjectLevel() {
+    return projectLevel;
+  }
+
+  @Nullable
+  public File cacheDirectory() {
+    return cacheDirectory;
+  }
+
+  public long cacheMaxSize() {
+    return cacheMaxSize;
+  }
+
+  @Nullable
+  public String cacheUrl() {
+    return cacheUrl;
+  }
+
+  public List<String> exclusions() {
+    return exclusions;
+  }
+
+  @Nullable
+  public String exclusionRegex() {
+    return exclusionRegex;
+  }
+
+  public boolean excludeGeneratedCode() {
+    return excludeGeneratedCode;
+  }
+
+  /**
+   * Existence, size and modification time of a file, as stated when the configuration was resolved.
+   */
+  public static final class FileStatus {
+
+    private final boolean exists;
+    private final long length;
+    private final long lastModified;
+
+    private FileStatus(boolean exists, long length, long lastModified) {
+      this.exists = exists;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+
+    static FileStatus of(File file) {
+      boolean exists = file.isFile();
+      return new FileStatus(exists, exists ? file.length() : 0, exists ? file.lastModified() : 0);
+    }
+
+    public boolean exists() {
+      return exists;
+    }
+
+    public long length() {
+      return length;
+    }
+
+    public long lastModified() {
+      return lastModified;
+    }
+
+    /**
+     * @return A cheap fingerprint, which changes whenever the file is rewritten
+     */
+    public String fingerprint() {
+      return exists ? (length + "@" + lastModified) : "missing";
+    }
+
+  }
+
+}
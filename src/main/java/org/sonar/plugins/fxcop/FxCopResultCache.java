@@ -0,0 +1,212 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed cache of FxCop reports, shared by every build of the same assembly with the same ruleset and FxCop version.
+ * <p>
+ * Reports are stored gzip compressed, under the hash of the assembly, its .pdb file, the ruleset and the FxCopCmd executable.
+ * Backends are looked up in order, and a hit in a later one, typically remote, is copied to the earlier ones.
+ * Cache failures are logged and handled as misses, as they must never fail the analysis.
+ */
+public class FxCopResultCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopResultCache.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final List<FxCopCacheBackend> backends;
+
+  public FxCopResultCache(List<FxCopCacheBackend> backends) {
+    this.backends = ImmutableList.copyOf(backends);
+  }
+
+  /**
+   * @param rulesetSha1 SHA-1 of the ruleset, computed once per analysis with {@link #sha1(File)}
+   * @param executableDigest Digest of FxCopCmd.exe, computed once per analysis with {@link #executableDigest(File)}
+   * @param ignoreGeneratedCode Whether FxCopCmd skips the generated code, which changes its report
+   */
+  public static String key(File assembly, File pdbFile, String rulesetSha1, String executableDigest, boolean ignoreGeneratedCode) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(sha1(assembly)).append('|');
+    sb.append(pdbFile.isFile() ? sha1(pdbFile) : "").append('|');
+    sb.append(rulesetSha1).append('|');
+    sb.append(executableDigest).append('|');
+    sb.append(ignoreGeneratedCode);
+    return hex(digest().digest(sb.toString().getBytes(Charsets.UTF_8)));
+  }
+
+  /**
+   * @param executable Path to FxCopCmd.exe, whose content identifies the FxCop version
+   */
+  public static String executableDigest(File executable) {
+    return executable.isFile() ? sha1(executable) : executable.getPath();
+  }
+
+  public static String sha1(File file) {
+    try {
+      return hex(Files.getDigest(file, digest()));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Writes the report cached under the given key, if any, to the given file.
+   *
+   * @return false on cache miss
+   */
+  public boolean restore(String key, File reportFile) {
+    File entryFile = entryFile(reportFile);
+    try {
+      for (int i = 0; i < backends.size(); i++) {
+        if (get(backends.get(i), key, entryFile) && decompress(entryFile, reportFile)) {
+          for (int j = 0; j < i; j++) {
+            put(backends.get(j), key, entryFile);
+          }
+          return true;
+        }
+      }
+
+      return false;
+    } finally {
+      delete(entryFile);
+    }
+  }
+
+  public void store(String key, File reportFile) {
+    File entryFile = entryFile(reportFile);
+    try {
+      try {
+        compress(reportFile, entryFile);
+      } catch (IOException e) {
+        LOG.warn("Could not compress the FxCop report \"" + reportFile.getAbsolutePath() + "\" to cache it: " + e.getMessage());
+        return;
+      }
+
+      for (FxCopCacheBackend backend : backends) {
+        put(backend, key, entryFile);
+      }
+    } finally {
+      delete(entryFile);
+    }
+  }
+
+  private static boolean get(FxCopCacheBackend backend, String key, File entryFile) {
+    try {
+      return backend.get(key, entryFile);
+    } catch (IOException e) {
+      LOG.warn("Could not read the FxCop cache entry " + key + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  private static void put(FxCopCacheBackend backend, String key, File entryFile) {
+    try {
+      backend.put(key, entryFile);
+    } catch (IOException e) {
+      LOG.warn("Could not write the FxCop cache entry " + key + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * @return The temporary file holding the compressed entry of the given report, next to it
+   */
+  private static File entryFile(File reportFile) {
+    return new File(reportFile.getPath() + ".cache.gz");
+  }
+
+  private static void compress(File reportFile, File entryFile) throws IOException {
+    // Reports already compressed by the executor are normalized, so that restored reports are always uncompressed
+    InputStream input = FxCopReportCompression.open(reportFile);
+    OutputStream output = null;
+    try {
+      output = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(entryFile), BUFFER_SIZE), BUFFER_SIZE);
+      ByteStreams.copy(input, output);
+    } finally {
+      Closeables.closeQuietly(input);
+      Closeables.close(output, false);
+    }
+  }
+
+  private static boolean decompress(File entryFile, File reportFile) {
+    try {
+      InputStream input = null;
+      OutputStream output = null;
+      try {
+        input = new GZIPInputStream(new FileInputStream(entryFile), BUFFER_SIZE);
+        output = new BufferedOutputStream(new FileOutputStream(reportFile), BUFFER_SIZE);
+        ByteStreams.copy(input, output);
+      } finally {
+        Closeables.closeQuietly(input);
+        Closeables.close(output, false);
+      }
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Ignoring the corrupted FxCop cache entry for \"" + reportFile.getAbsolutePath() + "\": " + e.getMessage());
+      return false;
+    }
+  }
+
+  private static void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Could not delete the file \"" + file.getAbsolutePath() + "\".");
+    }
+  }
+
+  private static MessageDigest digest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : bytes) {
+      sb.append(String.format("%02x", b & 0xFF));
+    }
+    return sb.toString();
+  }
+
+}
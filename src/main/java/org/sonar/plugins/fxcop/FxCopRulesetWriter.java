@@ -20,42 +20,140 @@
 package org.sonar.plugins.fxcop;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 import org.apache.commons.io.IOUtils;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Writes the ruleset given to FxCopCmd. Rules are streamed to a buffered writer as they are iterated,
+ * so that the memory used does not depend on the number of rules.
+ */
 public class FxCopRulesetWriter {
 
+  public static final String MANAGED_CODE_ANALYZER_ID = "Microsoft.Analyzers.ManagedCodeAnalysis";
+  public static final String MANAGED_RULE_NAMESPACE = "Microsoft.Rules.Managed";
+
+  /**
+   * Actions of the rules supported by rulesets, from the most to the least severe.
+   */
+  public static final Set<String> ACTIONS = ImmutableSet.of("Error", "Warning", "Info", "Hidden", "None");
+
+  /**
+   * Writes a ruleset enabling, as errors, the given FxCop rules.
+   */
   public void write(List<String> ruleConfigKeys, File file) {
-    StringBuilder sb = new StringBuilder();
+    write(ImmutableList.of(new Rules(MANAGED_CODE_ANALYZER_ID, MANAGED_RULE_NAMESPACE, ruleConfigKeys, "Error")), file);
+  }
 
-    appendLine(sb, "<?xml version=\"1.0\" encoding=\"utf-8\"?>");
-    appendLine(sb, "<RuleSet Name=\"SonarQube\" Description=\"Rule set generated by SonarQube\" ToolsVersion=\"12.0\">");
+  /**
+   * Writes a ruleset made of several groups of rules, such as the FxCop ones and those of Roslyn analyzers.
+   */
+  public void write(Iterable<Rules> groups, File file) {
+    Writer writer = null;
+    try {
+      writer = Files.newWriter(file, Charsets.UTF_8);
 
-    appendLine(sb, "  <Rules AnalyzerId=\"Microsoft.Analyzers.ManagedCodeAnalysis\" RuleNamespace=\"Microsoft.Rules.Managed\">");
+      appendLine(writer, "<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+      appendLine(writer, "<RuleSet Name=\"SonarQube\" Description=\"Rule set generated by SonarQube\" ToolsVersion=\"12.0\">");
+      for (Rules group : groups) {
+        write(writer, group);
+      }
+      appendLine(writer, "</RuleSet>");
+
+      writer.close();
+    } catch (IOException e) {
+      Closeables.closeQuietly(writer);
+      throw Throwables.propagate(e);
+    }
+  }
 
-    for (String ruleConfigKey : ruleConfigKeys) {
-      appendLine(sb, "    <Rule Id=\"" + ruleConfigKey + "\" Action=\"Error\" />");
+  private static void write(Writer writer, Rules group) throws IOException {
+    writer.write("  <Rules AnalyzerId=\"");
+    appendEscaped(writer, group.analyzerId);
+    writer.write('"');
+    if (group.ruleNamespace != null) {
+      writer.write(" RuleNamespace=\"");
+      appendEscaped(writer, group.ruleNamespace);
+      writer.write('"');
     }
+    appendLine(writer, ">");
 
-    appendLine(sb, "  </Rules>");
+    for (String ruleId : group.ruleIds) {
+      writer.write("    <Rule Id=\"");
+      appendEscaped(writer, ruleId);
+      writer.write("\" Action=\"");
+      writer.write(group.action);
+      appendLine(writer, "\" />");
+    }
 
-    appendLine(sb, "</RuleSet>");
+    appendLine(writer, "  </Rules>");
+  }
 
-    try {
-      Files.write(sb.toString().getBytes(Charsets.UTF_8), file);
-    } catch (IOException e) {
-      throw Throwables.propagate(e);
+  private static void appendEscaped(Writer writer, String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '&':
+          writer.write("&amp;");
+          break;
+        case '<':
+          writer.write("&lt;");
+          break;
+        case '>':
+          writer.write("&gt;");
+          break;
+        case '"':
+          writer.write("&quot;");
+          break;
+        case '\'':
+          writer.write("&apos;");
+          break;
+        default:
+          writer.write(c);
+          break;
+      }
     }
   }
 
-  private static void appendLine(StringBuilder sb, String s) {
-    sb.append(s);
-    sb.append(IOUtils.LINE_SEPARATOR);
+  private static void appendLine(Writer writer, String s) throws IOException {
+    writer.write(s);
+    writer.write(IOUtils.LINE_SEPARATOR);
+  }
+
+  /**
+   * A &lt;Rules&gt; element: the rules of an analyzer, all having the same action.
+   */
+  public static final class Rules {
+
+    private final String analyzerId;
+    private final String ruleNamespace;
+    private final Iterable<String> ruleIds;
+    private final String action;
+
+    /**
+     * @param ruleIds Iterated once, while writing, and therefore possibly lazy
+     * @param action One of {@link FxCopRulesetWriter#ACTIONS}
+     */
+    public Rules(String analyzerId, @Nullable String ruleNamespace, Iterable<String> ruleIds, String action) {
+      Preconditions.checkArgument(ACTIONS.contains(action), "Unsupported ruleset action \"" + action + "\", expected one of: " + ACTIONS);
+      this.analyzerId = analyzerId;
+      this.ruleNamespace = ruleNamespace;
+      this.ruleIds = ruleIds;
+      this.action = action;
+    }
+
   }
 
 }
@@ -0,0 +1,426 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the issues of a SARIF report, as emitted by the Roslyn analyzers or converted from FxCop, in the versions 1 and 2.
+ * Only the current run and the current result are kept in memory: the rules of a run must therefore precede its results
+ * to provide their TypeName and category, otherwise the CheckId is used as rule key.
+ * Each result is located at the start line of its first physical location. Since SARIF does not nest the results in their
+ * enclosing code elements, the source index is not used.
+ */
+public class FxCopSarifReportReader implements FxCopReportReader {
+
+  private static final Map<String, String> LEVELS = ImmutableMap.of(
+    "error", "Error",
+    "warning", "Warning",
+    "note", "Information");
+
+  @Override
+  public void parse(File file, InputStream input, FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex, FxCopIssueHandler handler) {
+    FxCopJsonReader reader = new FxCopJsonReader(new InputStreamReader(input, Charsets.UTF_8));
+    try {
+      new Parser(reader, filter, handler).parse();
+    } catch (IllegalStateException e) {
+      throw new IllegalStateException("Unable to read the SARIF report " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+    } finally {
+      Closeables.closeQuietly(reader);
+    }
+  }
+
+  private static class Rule {
+
+    private String id;
+    private String name;
+    private String category;
+
+  }
+
+  private static class Result {
+
+    private int reportLine;
+    private String ruleId;
+    private int ruleIndex = -1;
+    private String level;
+    private String kind;
+    private String message;
+    private Integer certainty;
+    private String uri;
+    private Integer line;
+    private boolean hasLocation;
+    private boolean suppressed;
+
+  }
+
+  private static class Parser {
+
+    private final FxCopJsonReader reader;
+    private final FxCopIssueFilter filter;
+    private final FxCopIssueHandler handler;
+    private final Map<String, Rule> rulesById = Maps.newHashMap();
+    private final List<Rule> rules = Lists.newArrayList();
+
+    public Parser(FxCopJsonReader reader, FxCopIssueFilter filter, FxCopIssueHandler handler) {
+      this.reader = reader;
+      this.filter = filter;
+      this.handler = handler;
+    }
+
+    public void parse() {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("runs".equals(reader.nextName())) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            parseRun();
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    private void parseRun() {
+      rulesById.clear();
+      rules.clear();
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("tool".equals(name)) {
+          parseTool();
+        } else if ("rules".equals(name) && reader.peek() == FxCopJsonReader.Token.BEGIN_OBJECT) {
+          // SARIF 1: rules keyed by their id
+          reader.beginObject();
+          while (reader.hasNext()) {
+            reader.nextName();
+            addRule(parseRule());
+          }
+          reader.endObject();
+        } else if ("results".equals(name)) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            handle(parseResult());
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    private void parseTool() {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("driver".equals(reader.nextName())) {
+          reader.beginObject();
+          while (reader.hasNext()) {
+            if ("rules".equals(reader.nextName())) {
+              reader.beginArray();
+              while (reader.hasNext()) {
+                addRule(parseRule());
+              }
+              reader.endArray();
+            } else {
+              reader.skipValue();
+            }
+          }
+          reader.endObject();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    private void addRule(Rule rule) {
+      rules.add(rule);
+      if (rule.id != null) {
+        rulesById.put(rule.id, rule);
+      }
+    }
+
+    private Rule parseRule() {
+      Rule rule = new Rule();
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("id".equals(name)) {
+          rule.id = nextString();
+        } else if ("name".equals(name) && reader.peek() == FxCopJsonReader.Token.STRING) {
+          rule.name = reader.nextString();
+        } else if ("properties".equals(name)) {
+          rule.category = parseProperty("category");
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return rule;
+    }
+
+    @Nullable
+    private String parseProperty(String key) {
+      String value = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (key.equals(reader.nextName())) {
+          value = nextString();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return value;
+    }
+
+    private Result parseResult() {
+      Result result = new Result();
+      result.reportLine = reader.line();
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("ruleId".equals(name)) {
+          result.ruleId = nextString();
+        } else if ("ruleIndex".equals(name)) {
+          result.ruleIndex = reader.nextInt();
+        } else if ("rule".equals(name)) {
+          parseRuleReference(result);
+        } else if ("level".equals(name)) {
+          result.level = nextString();
+        } else if ("kind".equals(name)) {
+          result.kind = nextString();
+        } else if ("message".equals(name)) {
+          result.message = parseMessage();
+        } else if ("rank".equals(name)) {
+          double rank = reader.nextDouble();
+          result.certainty = rank < 0 ? null : (int) Math.round(rank);
+        } else if ("locations".equals(name)) {
+          parseLocations(result);
+        } else if ("suppressions".equals(name) || "suppressionStates".equals(name)) {
+          result.suppressed = parseSuppressions();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+
+      return result;
+    }
+
+    private void parseRuleReference(Result result) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("id".equals(name)) {
+          result.ruleId = nextString();
+        } else if ("index".equals(name)) {
+          result.ruleIndex = reader.nextInt();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    @Nullable
+    private String parseMessage() {
+      if (reader.peek() == FxCopJsonReader.Token.STRING) {
+        // SARIF 1
+        return reader.nextString();
+      }
+      return parseProperty("text");
+    }
+
+    private void parseLocations(Result result) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        if (result.hasLocation) {
+          reader.skipValue();
+        } else {
+          result.hasLocation = true;
+          reader.beginObject();
+          while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("physicalLocation".equals(name) || "resultFile".equals(name)) {
+              parsePhysicalLocation(result);
+            } else {
+              reader.skipValue();
+            }
+          }
+          reader.endObject();
+        }
+      }
+      reader.endArray();
+    }
+
+    /**
+     * The SARIF 2 "physicalLocation" nests the URI in an "artifactLocation" (or "fileLocation" in its drafts), whereas the SARIF 1 "resultFile" holds it.
+     */
+    private void parsePhysicalLocation(Result result) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("uri".equals(name)) {
+          result.uri = nextString();
+        } else if ("artifactLocation".equals(name) || "fileLocation".equals(name)) {
+          result.uri = parseProperty("uri");
+        } else if ("region".equals(name)) {
+          parseRegion(result);
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    private void parseRegion(Result result) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("startLine".equals(reader.nextName())) {
+          result.line = reader.nextInt();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    /**
+     * @return Whether one of the suppressions is accepted, or, in SARIF 1, whether there is any suppression state
+     */
+    private boolean parseSuppressions() {
+      boolean suppressed = false;
+      reader.beginArray();
+      while (reader.hasNext()) {
+        if (reader.peek() == FxCopJsonReader.Token.BEGIN_OBJECT) {
+          String status = parseProperty("status");
+          suppressed |= status == null || "accepted".equals(status);
+        } else {
+          reader.skipValue();
+          suppressed = true;
+        }
+      }
+      reader.endArray();
+      return suppressed;
+    }
+
+    @Nullable
+    private String nextString() {
+      if (reader.peek() == FxCopJsonReader.Token.NULL) {
+        reader.nextNull();
+        return null;
+      }
+      return reader.nextString();
+    }
+
+    private void handle(Result result) {
+      if (result.suppressed || (result.kind != null && !"fail".equals(result.kind))) {
+        return;
+      }
+
+      Rule rule = rule(result);
+      String checkId = result.ruleId != null ? result.ruleId : rule == null ? null : rule.id;
+      if (checkId == null) {
+        throw new IllegalStateException("Missing \"ruleId\" in the result at line " + result.reportLine);
+      }
+      String ruleKey = rule == null || rule.name == null ? checkId : rule.name;
+      String category = rule == null ? null : rule.category;
+      String level = result.level == null ? null : LEVELS.get(result.level);
+
+      if (!filter.acceptRule(ruleKey, checkId) || !filter.acceptIssue(result.certainty, level)) {
+        return;
+      }
+
+      String path = null;
+      String fileName = null;
+      if (result.uri != null) {
+        String localPath = localPath(result.uri);
+        int separator = Math.max(localPath.lastIndexOf('/'), localPath.lastIndexOf('\\'));
+        path = separator == -1 ? null : localPath.substring(0, separator);
+        fileName = localPath.substring(separator + 1);
+      }
+
+      if (!filter.acceptLocation(path, fileName, result.line)) {
+        return;
+      }
+
+      String message = result.message == null ? "" : result.message;
+      handler.handle(new FxCopIssue(result.reportLine, ruleKey, checkId, category, path, fileName, result.line, message, result.certainty, level, null));
+    }
+
+    @Nullable
+    private Rule rule(Result result) {
+      if (result.ruleId != null) {
+        Rule rule = rulesById.get(result.ruleId);
+        if (rule != null) {
+          return rule;
+        }
+      }
+      return result.ruleIndex >= 0 && result.ruleIndex < rules.size() ? rules.get(result.ruleIndex) : null;
+    }
+
+  }
+
+  /**
+   * @return The decoded local path of a "file:" URI, without the leading slash before a Windows drive letter, or the given URI as is otherwise
+   */
+  static String localPath(String uri) {
+    if (!uri.startsWith("file:")) {
+      return uri;
+    }
+
+    String path;
+    try {
+      path = new URI(uri).getPath();
+    } catch (URISyntaxException e) {
+      path = null;
+    }
+    if (path == null) {
+      path = uri.substring("file:".length());
+      while (path.startsWith("//")) {
+        path = path.substring(1);
+      }
+    }
+
+    return path.length() >= 3 && path.charAt(0) == '/' && path.charAt(2) == ':' && Character.isLetter(path.charAt(1)) ? path.substring(1) : path;
+  }
+
+}
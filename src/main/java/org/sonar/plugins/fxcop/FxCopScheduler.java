@@ -0,0 +1,246 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders and runs the FxCop analyses of several assemblies, on at most a given number of threads.
+ * <p>
+ * Jobs are ordered longest processing time first, using the assembly size as cost, so that the largest assemblies
+ * do not end up running alone at the end. Among jobs of a similar size, the one sharing the most references with the previous job
+ * is preferred, so that consecutive FxCopCmd runs resolve the same assemblies.
+ * Planned and actual durations are logged, to tune the estimates.
+ */
+public class FxCopScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopScheduler.class);
+
+  /**
+   * Jobs whose size is at least this ratio of the largest remaining one are considered of a similar size.
+   */
+  private static final double SIMILAR_SIZE_RATIO = 0.9;
+
+  /**
+   * Rough FxCopCmd cost model, only used to log the plan: a fixed startup time plus a throughput in bytes of assembly per millisecond.
+   */
+  private static final long STARTUP_MILLIS = 2000;
+  private static final long BYTES_PER_MILLI = 100;
+
+  private final int concurrency;
+
+  public FxCopScheduler(int concurrency) {
+    this.concurrency = concurrency;
+  }
+
+  public interface JobRunner {
+
+    void run(Job job);
+
+  }
+
+  public static class Job {
+
+    private final String assembly;
+    private final File reportFile;
+    private final long size;
+    private final Set<String> references;
+
+    public Job(String assembly, File reportFile, long size, List<String> references) {
+      this.assembly = assembly;
+      this.reportFile = reportFile;
+      this.size = size;
+      this.references = ImmutableSet.copyOf(references);
+    }
+
+    /**
+     * Reads the size and references of the given assembly, if it exists and is a valid .NET assembly.
+     */
+    public static Job of(String assembly, File reportFile) {
+      File file = new File(assembly);
+      FxCopAssemblyMetadata metadata = file.isFile() ? FxCopAssemblyMetadata.read(file) : null;
+      return new Job(assembly, reportFile, file.length(), metadata == null ? ImmutableList.<String>of() : metadata.references());
+    }
+
+    public String assembly() {
+      return assembly;
+    }
+
+    public File reportFile() {
+      return reportFile;
+    }
+
+    public long size() {
+      return size;
+    }
+
+    public Set<String> references() {
+      return references;
+    }
+
+    public long plannedMillis() {
+      return STARTUP_MILLIS + size / BYTES_PER_MILLI;
+    }
+
+  }
+
+  /**
+   * @return The jobs in the order in which they should be started
+   */
+  public static List<Job> order(List<Job> jobs) {
+    List<Job> remaining = Lists.newLinkedList(jobs);
+    Collections.sort(remaining, new Comparator<Job>() {
+      @Override
+      public int compare(Job a, Job b) {
+        return a.size() < b.size() ? 1 : (a.size() == b.size() ? 0 : -1);
+      }
+    });
+
+    List<Job> result = Lists.newArrayList();
+    Job last = null;
+    while (!remaining.isEmpty()) {
+      Job largest = remaining.get(0);
+      Job chosen = largest;
+
+      if (last != null) {
+        int mostShared = sharedReferences(last, largest);
+        for (Job job : remaining) {
+          if (job.size() < largest.size() * SIMILAR_SIZE_RATIO) {
+            break;
+          }
+          int shared = sharedReferences(last, job);
+          if (shared > mostShared) {
+            mostShared = shared;
+            chosen = job;
+          }
+        }
+      }
+
+      remaining.remove(chosen);
+      result.add(chosen);
+      last = chosen;
+    }
+
+    return result;
+  }
+
+  private static int sharedReferences(Job a, Job b) {
+    int shared = 0;
+    for (String reference : a.references()) {
+      if (b.references().contains(reference)) {
+        shared++;
+      }
+    }
+    return shared;
+  }
+
+  public void run(List<Job> jobs, JobRunner runner) {
+    List<Job> orderedJobs = order(jobs);
+    logPlan(orderedJobs);
+
+    if (concurrency <= 1 || orderedJobs.size() <= 1) {
+      for (Job job : orderedJobs) {
+        runAndLog(job, runner);
+      }
+    } else {
+      runConcurrently(orderedJobs, runner);
+    }
+  }
+
+  private void runConcurrently(List<Job> orderedJobs, final JobRunner runner) {
+    ExecutorService executorService = Executors.newFixedThreadPool(
+      Math.min(concurrency, orderedJobs.size()),
+      new ThreadFactoryBuilder().setNameFormat("fxcop-%d").setDaemon(true).build());
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (final Job job : orderedJobs) {
+        futures.add(executorService.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            runAndLog(job, runner);
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static void runAndLog(Job job, JobRunner runner) {
+    long start = System.nanoTime();
+    runner.run(job);
+    long actualMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    LOG.info("FxCop analyzed the assembly \"" + job.assembly() + "\" in " + actualMillis + " ms, planned " + job.plannedMillis() + " ms.");
+  }
+
+  private void logPlan(List<Job> orderedJobs) {
+    int slots = Math.max(1, Math.min(concurrency, orderedJobs.size()));
+    long[] slotEnds = new long[slots];
+
+    for (Job job : orderedJobs) {
+      int slot = 0;
+      for (int i = 1; i < slots; i++) {
+        if (slotEnds[i] < slotEnds[slot]) {
+          slot = i;
+        }
+      }
+      LOG.debug("Planned the FxCop analysis of \"" + job.assembly() + "\" (" + job.size() + " bytes) on slot " + (slot + 1) +
+        " at +" + slotEnds[slot] + " ms for " + job.plannedMillis() + " ms.");
+      slotEnds[slot] += job.plannedMillis();
+    }
+
+    long makespan = 0;
+    for (long slotEnd : slotEnds) {
+      makespan = Math.max(makespan, slotEnd);
+    }
+    if (!orderedJobs.isEmpty()) {
+      LOG.info("Planned the FxCop analysis of " + orderedJobs.size() + " assemblies on " + slots + " threads in " + makespan + " ms.");
+    }
+  }
+
+}
@@ -20,7 +20,12 @@
 package org.sonar.plugins.fxcop;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor;
@@ -30,30 +35,65 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issuable;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rule.Severity;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class FxCopSensor implements Sensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(FxCopSensor.class);
 
+  private static final long QUEUE_POLL_MILLIS = 500;
+  private static final long TAIL_POLL_MILLIS = 100;
+
   private final FxCopConfiguration fxCopConf;
   private final Settings settings;
   private final RulesProfile profile;
   private final ModuleFileSystem fileSystem;
   private final ResourcePerspectives perspectives;
+  private final FxCopMetrics metrics;
+  private final FxCopProjectAnalysis projectAnalysis;
 
   public FxCopSensor(FxCopConfiguration fxCopConf, Settings settings, RulesProfile profile, ModuleFileSystem fileSystem, ResourcePerspectives perspectives) {
+    this(fxCopConf, settings, profile, fileSystem, perspectives, null);
+  }
+
+  /**
+   * @param metrics Metrics for which the aggregate measures of the issues are saved, which must be registered by the plugin
+   */
+  public FxCopSensor(FxCopConfiguration fxCopConf, Settings settings, RulesProfile profile, ModuleFileSystem fileSystem, ResourcePerspectives perspectives,
+    @Nullable FxCopMetrics metrics) {
+    this(fxCopConf, settings, profile, fileSystem, perspectives, metrics, null);
+  }
+
+  /**
+   * @param projectAnalysis Shared by the sensors of all the modules, which must be registered by the plugin to enable
+   *   {@link FxCopConfiguration#PROJECT_LEVEL_PROPERTY_KEY}
+   */
+  public FxCopSensor(FxCopConfiguration fxCopConf, Settings settings, RulesProfile profile, ModuleFileSystem fileSystem, ResourcePerspectives perspectives,
+    @Nullable FxCopMetrics metrics, @Nullable FxCopProjectAnalysis projectAnalysis) {
     this.fxCopConf = fxCopConf;
     this.settings = settings;
     this.profile = profile;
     this.fileSystem = fileSystem;
     this.perspectives = perspectives;
+    this.metrics = metrics;
+    this.projectAnalysis = projectAnalysis;
   }
 
   @Override
@@ -83,60 +123,564 @@ public class FxCopSensor implements Sensor {
 
   @VisibleForTesting
   void analyse(SensorContext context, FileProvider fileProvider, FxCopRulesetWriter writer, FxCopReportParser parser, FxCopExecutor executor) {
-    fxCopConf.checkProperties(settings);
+    FxCopResolvedConfiguration conf = FxCopResolvedConfiguration.resolve(fxCopConf, settings);
+    fxCopConf.check(conf);
+
+    FxCopActiveRules activeRules = new FxCopActiveRules(conf.repositoryKey(), profile.getActiveRulesByRepository(conf.repositoryKey()));
+    if (conf.isReplay()) {
+      replay(conf, context, fileProvider, activeRules, parser);
+      return;
+    }
+    if (conf.isProjectLevel()) {
+      analyseProjectLevel(conf, context, fileProvider, activeRules, writer, parser, executor);
+      return;
+    }
 
     File rulesetFile = new File(fileSystem.workingDir(), "fxcop-sonarqube.ruleset");
-    writer.write(enabledRuleConfigKeys(), rulesetFile);
+    writer.write(activeRules.ruleConfigKeys(), rulesetFile);
 
-    File reportFile = new File(fileSystem.workingDir(), "fxcop-report.xml");
+    List<String> assemblies = conf.assemblies();
+    File manifestFile = new File(fileSystem.workingDir(), "fxcop-manifest.properties");
+    FxCopManifest previousManifest = conf.skipUnchangedAssemblies() ? FxCopManifest.load(manifestFile) : null;
+    FxCopManifest manifest = new FxCopManifest();
+    FxCopCheckpointJournal journal = conf.checkpoint() ? FxCopCheckpointJournal.open(new File(fileSystem.workingDir(), FxCopCheckpointJournal.FILE_NAME)) : null;
+    FxCopResultCache cache = resultCache(conf);
+    // Hashed once per analysis, and only when the fingerprints, the checkpoints or the cache keys need it
+    String rulesetSha1 = previousManifest != null || journal != null || cache != null ? FxCopResultCache.sha1(rulesetFile) : null;
+    List<File> reportFiles = Lists.newArrayList();
+    List<FxCopScheduler.Job> jobs = Lists.newArrayList();
+    for (int i = 0; i < assemblies.size(); i++) {
+      String assembly = assemblies.get(i);
+      File reportFile = new File(fileSystem.workingDir(), assemblies.size() == 1 ? "fxcop-report.xml" : "fxcop-report-" + (i + 1) + ".xml");
+      String fingerprint = previousManifest == null ? null : fingerprint(conf, assembly, rulesetSha1, reportFile);
+      String checkpoint = journal == null ? null : checkpoint(conf, assembly, rulesetSha1, reportFile);
+
+      if (fingerprint != null && previousManifest.isUnchanged(assembly, fingerprint) && reportFile.isFile()) {
+        LOG.info("Skipping the FxCop analysis of the unchanged assembly \"" + assembly + "\", reusing the report \"" + reportFile.getAbsolutePath() + "\".");
+      } else if (checkpoint != null && journal.isCompleted(assembly, checkpoint, reportFile)) {
+        LOG.info("Resuming the interrupted FxCop analysis, reusing the completed report of the assembly \"" + assembly + "\".");
+      } else {
+        jobs.add(FxCopScheduler.Job.of(assembly, reportFile));
+        if (checkpoint != null) {
+          journal.expect(assembly, checkpoint, reportFile);
+        }
+      }
+
+      if (fingerprint != null) {
+        manifest.put(assembly, fingerprint);
+      }
+      reportFiles.add(reportFile);
+    }
+
+    FxCopIssueFilter filter = filter(conf, activeRules);
+    FxCopSourceIndex sourceIndex = sourceIndex(conf);
+
+    Map<File, String> cacheKeys = Maps.newHashMap();
+    if (cache != null) {
+      restoreCachedReports(conf, cache, rulesetSha1, jobs, cacheKeys);
+    }
+
+    // The previous reports are about to be overwritten: they must not be reused if this run fails
+    if (!jobs.isEmpty() && previousManifest != null && manifestFile.exists() && !manifestFile.delete()) {
+      LOG.warn("Could not delete the FxCop manifest \"" + manifestFile.getAbsolutePath() + "\".");
+    }
+
+    FxCopIssueTable issues = new FxCopIssueTable(fileSystem.workingDir(), conf.memoryBudget());
+    try {
+      FxCopIssueMerger merger = new FxCopIssueMerger(issues);
+      FxCopGovernor governor = conf.governor() && conf.queueDirectory() == null ?
+        new FxCopGovernor(fileSystem.workingDir(), TimeUnit.MINUTES.toMillis(conf.timeout()), conf.processMemory()) :
+        null;
+      try {
+        if (conf.queueDirectory() != null) {
+          distributeAndParse(conf, executor, rulesetFile, jobs, reportFiles, parser, filter, sourceIndex, merger, journal);
+        } else if (conf.streamReports()) {
+          executeAndStream(conf, executor, rulesetFile, jobs, reportFiles, parser, filter, sourceIndex, merger, journal, governor);
+        } else {
+          executeAndParse(conf, executor, rulesetFile, jobs, reportFiles, parser, filter, sourceIndex, merger, journal, governor);
+        }
+      } finally {
+        if (governor != null) {
+          governor.save();
+        }
+      }
+      if (merger.duplicates() > 0) {
+        LOG.info("Skipped " + merger.duplicates() + " FxCop issues reported by several assemblies.");
+      }
+      if (issues.spilledSegments() > 0) {
+        LOG.info("Spilled the FxCop issues to " + issues.spilledSegments() + " temporary files to stay within the memory budget.");
+      }
+
+      save(conf, context, fileProvider, activeRules, issues);
+    } finally {
+      issues.close();
+    }
+
+    for (Map.Entry<File, String> entry : cacheKeys.entrySet()) {
+      cache.store(entry.getValue(), entry.getKey());
+    }
+
+    if (previousManifest != null) {
+      manifest.save(manifestFile);
+    }
+    if (journal != null) {
+      journal.delete();
+    }
+  }
+
+  /**
+   * Parses the report of the single FxCop execution shared by all the modules, keeping only the issues of the source files owned by this module.
+   */
+  private void analyseProjectLevel(FxCopResolvedConfiguration conf, SensorContext context, FileProvider fileProvider, FxCopActiveRules activeRules,
+    FxCopRulesetWriter writer, FxCopReportParser parser, FxCopExecutor executor) {
+    Preconditions.checkState(projectAnalysis != null,
+      "The property \"" + FxCopConfiguration.PROJECT_LEVEL_PROPERTY_KEY + "\" requires the plugin to register " + FxCopProjectAnalysis.class.getName() + ".");
+
+    File reportFile = projectAnalysis.report(conf, activeRules.ruleConfigKeys(), writer, executor);
+    FxCopIssueFilter filter = filter(conf, activeRules).setOwnership(projectAnalysis.ownership(), fileSystem.baseDir());
+
+    FxCopIssueTable issues = new FxCopIssueTable(fileSystem.workingDir(), conf.memoryBudget());
+    try {
+      parser.parse(reportFile, filter, sourceIndex(conf), issues);
+      save(conf, context, fileProvider, activeRules, issues);
+    } finally {
+      issues.close();
+    }
+  }
+
+  private static FxCopIssueFilter filter(FxCopResolvedConfiguration conf, FxCopActiveRules activeRules) {
+    FxCopIssueFilter filter = new FxCopIssueFilter()
+      .setRuleKeys(activeRules.keys())
+      .setLocationRequired(true)
+      .setMinimumCertainty(conf.minimumCertainty());
+    if (!conf.levels().isEmpty()) {
+      filter.setLevels(conf.levels());
+    }
+    FxCopPathExclusions exclusions = exclusions(conf);
+    if (!exclusions.isEmpty()) {
+      filter.setExclusions(exclusions);
+    }
+    return filter;
+  }
+
+  private static FxCopPathExclusions exclusions(FxCopResolvedConfiguration conf) {
+    List<String> globs = Lists.newArrayList(conf.exclusions());
+    if (conf.excludeGeneratedCode()) {
+      globs.addAll(FxCopPathExclusions.GENERATED_CODE_GLOBS);
+    }
+
+    List<String> regexes = Lists.newArrayList();
+    if (conf.exclusionRegex() != null) {
+      regexes.add(conf.exclusionRegex());
+    }
+
+    return new FxCopPathExclusions(globs, regexes);
+  }
+
+  private void save(FxCopResolvedConfiguration conf, SensorContext context, FileProvider fileProvider, FxCopActiveRules activeRules, FxCopIssueTable issues) {
+    if (conf.issueIndex()) {
+      writeIssueIndex(issues);
+    }
+
+    FxCopIssueAggregator aggregator = metrics == null ? null : new FxCopIssueAggregator(metrics);
+    saveIssues(conf, fileProvider, activeRules, issues, aggregator);
+    if (aggregator != null) {
+      aggregator.save(context);
+    }
+  }
+
+  /**
+   * The index is a by-product of the analysis, which must not fail because of it.
+   */
+  private void writeIssueIndex(FxCopIssueTable issues) {
+    File file = new File(fileSystem.workingDir(), FxCopIssueIndex.FILE_NAME);
+    try {
+      FxCopIssueIndex.write(issues, file);
+    } catch (IOException e) {
+      LOG.warn("Could not write the FxCop issue index \"" + file.getAbsolutePath() + "\": " + e.getMessage());
+    } catch (IllegalStateException e) {
+      LOG.warn("Could not write the FxCop issue index \"" + file.getAbsolutePath() + "\": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Parses the existing reports to replay as many times as requested, without executing FxCopCmd, and saves the issues of the last iteration only.
+   * The timings of each iteration are logged and saved to "fxcop-replay-timings.csv" in the working directory.
+   */
+  private void replay(FxCopResolvedConfiguration conf, SensorContext context, FileProvider fileProvider, FxCopActiveRules activeRules, FxCopReportParser parser) {
+    List<File> reportFiles = conf.replayReports();
+    long reportBytes = 0;
+    for (File reportFile : reportFiles) {
+      reportBytes += reportFile.length();
+    }
+    int iterations = conf.replayIterations();
+
+    FxCopIssueFilter filter = filter(conf, activeRules);
+    FxCopSourceIndex sourceIndex = sourceIndex(conf);
+    FxCopReplayTimings timings = new FxCopReplayTimings(reportBytes);
+    for (int i = 1; i <= iterations; i++) {
+      long gcMillis = FxCopReplayTimings.gcMillis();
+      FxCopIssueTable issues = new FxCopIssueTable(fileSystem.workingDir(), conf.memoryBudget());
+      try {
+        long start = System.nanoTime();
+        FxCopIssueMerger merger = new FxCopIssueMerger(issues);
+        for (File reportFile : reportFiles) {
+          parser.parse(reportFile, filter, sourceIndex, merger);
+        }
+        long parseNanos = System.nanoTime() - start;
+
+        long saveNanos = 0;
+        if (i == iterations) {
+          start = System.nanoTime();
+          save(conf, context, fileProvider, activeRules, issues);
+          saveNanos = System.nanoTime() - start;
+        }
+
+        timings.add(parseNanos, saveNanos, FxCopReplayTimings.gcMillis() - gcMillis, issues.size());
+      } finally {
+        issues.close();
+      }
+    }
+
+    timings.log();
+    timings.save(new File(fileSystem.workingDir(), "fxcop-replay-timings.csv"));
+  }
 
-    executor.execute(settings.getString(fxCopConf.fxCopCmdPropertyKey()), settings.getString(fxCopConf.assemblyPropertyKey()),
-      rulesetFile, reportFile, settings.getInt(fxCopConf.timeoutPropertyKey()));
+  /**
+   * Restores the reports of the cached jobs, which are removed, and computes the cache keys of the other jobs.
+   */
+  private static void restoreCachedReports(FxCopResolvedConfiguration conf, FxCopResultCache cache, String rulesetSha1, List<FxCopScheduler.Job> jobs,
+    Map<File, String> cacheKeys) {
+    String executableDigest = FxCopResultCache.executableDigest(new File(conf.executable()));
+
+    Iterator<FxCopScheduler.Job> iterator = jobs.iterator();
+    while (iterator.hasNext()) {
+      FxCopScheduler.Job job = iterator.next();
+      String key = FxCopResultCache.key(new File(job.assembly()), new File(FxCopConfiguration.pdbPath(job.assembly())), rulesetSha1, executableDigest,
+        conf.excludeGeneratedCode());
+
+      if (cache.restore(key, job.reportFile())) {
+        LOG.info("Reusing the cached FxCop report of the assembly \"" + job.assembly() + "\".");
+        iterator.remove();
+      } else {
+        cacheKeys.put(job.reportFile(), key);
+      }
+    }
+  }
+
+  @Nullable
+  private static FxCopResultCache resultCache(FxCopResolvedConfiguration conf) {
+    List<FxCopCacheBackend> backends = Lists.newArrayList();
+    if (conf.cacheDirectory() != null) {
+      // The cache only saves time, so an unusable directory must not fail the analysis
+      try {
+        backends.add(new FxCopLocalCacheBackend(conf.cacheDirectory(), conf.cacheMaxSize()));
+      } catch (IllegalStateException e) {
+        LOG.warn("The local FxCop result cache is disabled: " + e.getMessage());
+      }
+    }
+    if (conf.cacheUrl() != null) {
+      backends.add(new FxCopHttpCacheBackend(conf.cacheUrl()));
+    }
+
+    return backends.isEmpty() ? null : new FxCopResultCache(backends);
+  }
+
+  /**
+   * Executes the jobs, and then parses all the reports in the order of the assemblies, journaling each one once parsed.
+   * When an execution fails, the reports of the other executions are journaled if they can be parsed, so that the analysis resumes with
+   * the failed assemblies only.
+   */
+  private static void executeAndParse(FxCopResolvedConfiguration conf, FxCopExecutor executor, File rulesetFile, List<FxCopScheduler.Job> jobs,
+    List<File> reportFiles, FxCopReportParser parser, FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex, FxCopIssueHandler handler,
+    @Nullable FxCopCheckpointJournal journal, @Nullable FxCopGovernor governor) {
+    Set<File> executedReportFiles = Collections.synchronizedSet(Sets.<File>newHashSet());
+    try {
+      execute(conf, executor, rulesetFile, jobs, executedReportFiles, governor);
+    } catch (RuntimeException e) {
+      if (journal != null) {
+        for (File reportFile : reportFiles) {
+          if (executedReportFiles.contains(reportFile)) {
+            journalIfParsed(reportFile, parser, filter, sourceIndex, journal);
+          }
+        }
+      }
+      throw e;
+    }
+
+    for (File reportFile : reportFiles) {
+      parser.parse(reportFile, filter, sourceIndex, handler);
+      if (journal != null) {
+        journal.complete(reportFile);
+      }
+    }
+  }
+
+  private static void journalIfParsed(File reportFile, FxCopReportParser parser, FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex,
+    FxCopCheckpointJournal journal) {
+    try {
+      parser.parse(reportFile, filter, sourceIndex, new FxCopIssueHandler() {
+        @Override
+        public void handle(FxCopIssue issue) {
+          // Only the readability of the report matters
+        }
+      });
+    } catch (RuntimeException e) {
+      LOG.warn("Could not parse the FxCop report \"" + reportFile.getAbsolutePath() + "\", it will be produced again: " + e.getMessage());
+      return;
+    }
+    journal.complete(reportFile);
+  }
+
+  private static void execute(FxCopResolvedConfiguration conf, final FxCopExecutor executor, final File rulesetFile, List<FxCopScheduler.Job> jobs,
+    final Set<File> executedReportFiles, @Nullable final FxCopGovernor governor) {
+    final String fxCopCmdPath = conf.fxCopCmdPath();
+    final int timeout = conf.timeout();
+    final boolean compressReports = conf.compressReports();
+    final boolean ignoreGeneratedCode = conf.excludeGeneratedCode();
+
+    int concurrency = governor == null ? conf.maxConcurrentAssemblies() : governor.concurrency(conf.maxConcurrentAssemblies());
+    new FxCopScheduler(concurrency).run(jobs, new FxCopScheduler.JobRunner() {
+      @Override
+      public void run(FxCopScheduler.Job job) {
+        if (governor != null) {
+          governor.run(job, true, new FxCopGovernor.Execution() {
+            @Override
+            public void execute(FxCopScheduler.Job governedJob, long timeoutMillis) {
+              executor.executeWithin(fxCopCmdPath, governedJob.assembly(), rulesetFile, governedJob.reportFile(), timeoutMillis, compressReports,
+                ignoreGeneratedCode);
+            }
+          });
+        } else {
+          executor.execute(fxCopCmdPath, job.assembly(), rulesetFile, job.reportFile(), timeout, compressReports, ignoreGeneratedCode);
+        }
+        executedReportFiles.add(job.reportFile());
+      }
+    });
+  }
+
+  /**
+   * Executes the jobs in background threads, and parses their reports while FxCopCmd writes them, in the order of the assemblies.
+   */
+  private static void executeAndStream(FxCopResolvedConfiguration conf, final FxCopExecutor executor, final File rulesetFile, List<FxCopScheduler.Job> jobs,
+    List<File> reportFiles, FxCopReportParser parser, FxCopIssueFilter filter, @Nullable FxCopSourceIndex sourceIndex, FxCopIssueHandler handler,
+    @Nullable FxCopCheckpointJournal journal, @Nullable final FxCopGovernor governor) {
+    final String fxCopCmdPath = conf.fxCopCmdPath();
+    final int timeout = conf.timeout();
+    final boolean ignoreGeneratedCode = conf.excludeGeneratedCode();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(
+      governor == null ? conf.maxConcurrentAssemblies() : governor.concurrency(conf.maxConcurrentAssemblies()),
+      new ThreadFactoryBuilder().setNameFormat("fxcop-%d").setDaemon(true).build());
+    try {
+      Map<File, Future<?>> executions = Maps.newHashMap();
+      for (final FxCopScheduler.Job job : FxCopScheduler.order(jobs)) {
+        // The previous report must not be read instead of the one being produced
+        Preconditions.checkState(!job.reportFile().exists() || job.reportFile().delete(),
+          "Could not delete the previous FxCop report \"" + job.reportFile().getAbsolutePath() + "\".");
+        executions.put(job.reportFile(), executorService.submit(new Runnable() {
+          @Override
+          public void run() {
+            if (governor == null) {
+              executor.execute(fxCopCmdPath, job.assembly(), rulesetFile, job.reportFile(), timeout, false, ignoreGeneratedCode);
+            } else {
+              // The report being parsed while written, it cannot be rewritten by a retry
+              governor.run(job, false, new FxCopGovernor.Execution() {
+                @Override
+                public void execute(FxCopScheduler.Job governedJob, long timeoutMillis) {
+                  executor.executeWithin(fxCopCmdPath, governedJob.assembly(), rulesetFile, governedJob.reportFile(), timeoutMillis, false,
+                    ignoreGeneratedCode);
+                }
+              });
+            }
+          }
+        }));
+      }
+
+      for (File reportFile : reportFiles) {
+        Future<?> execution = executions.get(reportFile);
+        if (execution == null) {
+          parser.parse(reportFile, filter, sourceIndex, handler);
+        } else {
+          try {
+            parser.parse(reportFile, new FxCopTailInputStream(reportFile, execution, TAIL_POLL_MILLIS), filter, sourceIndex, handler);
+          } catch (RuntimeException e) {
+            // A failed execution explains an incomplete report better
+            await(execution);
+            throw e;
+          }
+          await(execution);
+          if (journal != null) {
+            journal.complete(reportFile);
+          }
+        }
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static void await(Future<?> execution) {
+    try {
+      execution.get();
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Publishes the jobs to the shared queue, and parses the reports of the unchanged assemblies and then those of the jobs,
+   * as soon as they are completed by any worker, including a local one which only claims the jobs of this analysis.
+   * The jobs are deleted from the queue whatever the outcome.
+   */
+  private static void distributeAndParse(FxCopResolvedConfiguration conf, FxCopExecutor executor, File rulesetFile, List<FxCopScheduler.Job> jobs,
+    List<File> reportFiles, final FxCopReportParser parser, final FxCopIssueFilter filter, @Nullable final FxCopSourceIndex sourceIndex,
+    final FxCopIssueHandler handler, @Nullable final FxCopCheckpointJournal journal) {
+    FxCopJobQueue queue = new FxCopJobQueue(conf.queueDirectory());
+    try {
+      final Map<String, File> jobReportFiles = Maps.newLinkedHashMap();
+      for (FxCopScheduler.Job job : FxCopScheduler.order(jobs)) {
+        jobReportFiles.put(queue.publish(new File(job.assembly()).getAbsolutePath(), rulesetFile, conf.excludeGeneratedCode()), job.reportFile());
+      }
+
+      for (File reportFile : reportFiles) {
+        if (!jobReportFiles.containsValue(reportFile)) {
+          parser.parse(reportFile, filter, sourceIndex, handler);
+        }
+      }
+
+      int timeout = conf.timeout();
+      FxCopWorker localWorker = new FxCopWorker(queue, executor, conf.fxCopCmdPath(), timeout, true);
+      queue.await(jobReportFiles.keySet(), localWorker, timeout > 0 ? TimeUnit.MINUTES.toMillis(timeout) : Long.MAX_VALUE, QUEUE_POLL_MILLIS,
+        new FxCopJobQueue.ReportHandler() {
+          @Override
+          public void handle(String id, File queueReportFile) {
+            File reportFile = jobReportFiles.get(id);
+            if (reportFile.exists() && !reportFile.delete()) {
+              throw new IllegalStateException("Could not delete the previous report \"" + reportFile.getAbsolutePath() + "\".");
+            }
+            FxCopFiles.move(queueReportFile, reportFile);
+            parser.parse(reportFile, filter, sourceIndex, handler);
+            if (journal != null) {
+              journal.complete(reportFile);
+            }
+          }
+        });
+    } finally {
+      queue.close();
+    }
+  }
+
+  /**
+   * @return A fingerprint of the inputs of the FxCop analysis of the given assembly, or null if it cannot be computed
+   */
+  @Nullable
+  private static String fingerprint(FxCopResolvedConfiguration conf, String assembly, String rulesetSha1, File reportFile) {
+    FxCopAssemblyMetadata metadata = FxCopAssemblyMetadata.read(new File(assembly));
+    if (metadata == null) {
+      LOG.info("Could not read the metadata of the assembly \"" + assembly + "\", it will be analyzed.");
+      return null;
+    }
+
+    return metadata.key() + "|" + conf.fileStatus(FxCopConfiguration.pdbPath(assembly)).fingerprint() + "|" + rulesetSha1 + "|"
+      + conf.fxCopCmdPath() + "|" + conf.excludeGeneratedCode() + "|" + reportFile.getName();
+  }
+
+  /**
+   * @return A fingerprint of the files analyzed into the given report, as stated when the analysis started, under which it is journaled
+   */
+  private static String checkpoint(FxCopResolvedConfiguration conf, String assembly, String rulesetSha1, File reportFile) {
+    return conf.fileStatus(assembly).fingerprint() + "|" + conf.fileStatus(FxCopConfiguration.pdbPath(assembly)).fingerprint() + "|" + rulesetSha1 + "|"
+      + conf.fxCopCmdPath() + "|" + conf.excludeGeneratedCode() + "|" + reportFile.getName();
+  }
+
+  @Nullable
+  private FxCopSourceIndex sourceIndex(FxCopResolvedConfiguration conf) {
+    if (!conf.locateFromSources()) {
+      return null;
+    }
+
+    return new FxCopSourceIndex(
+      conf.languageKey(),
+      fileSystem.files(FileQuery.onSource().onLanguage(conf.languageKey())),
+      fileSystem.sourceCharset());
+  }
+
+  private void saveIssues(FxCopResolvedConfiguration conf, FileProvider fileProvider, FxCopActiveRules activeRules, FxCopIssueTable issues,
+    @Nullable FxCopIssueAggregator aggregator) {
+    boolean severityFromLevel = conf.severityFromLevel();
+    FxCopIssueTable.Cursor issue = issues.cursor();
+    while (issue.next()) {
+      FxCopActiveRules.Entry rule = activeRules.get(issue.ruleKey());
+      if (rule == null) {
+        logSkippedIssue(issue.reportLine(), "whose rule \"" + issue.ruleKey() + "\" is not enabled.");
+        continue;
+      }
 
-    for (FxCopIssue issue : parser.parse(reportFile)) {
       if (!hasFileAndLine(issue)) {
-        logSkippedIssue(issue, "which has no associated file.");
+        logSkippedIssue(issue.reportLine(), "which has no associated file.");
         continue;
       }
 
       File file = new File(new File(issue.path()), issue.file());
       org.sonar.api.resources.File sonarFile = fileProvider.fromIOFile(file);
       if (sonarFile == null) {
-        logSkippedIssueOutsideOfSonarQube(issue, file);
-      } else if (fxCopConf.languageKey().equals(sonarFile.getLanguage().getKey())) {
+        logSkippedIssueOutsideOfSonarQube(issue.reportLine(), file);
+      } else if (conf.languageKey().equals(sonarFile.getLanguage().getKey())) {
         Issuable issuable = perspectives.as(Issuable.class, sonarFile);
         if (issuable == null) {
-          logSkippedIssueOutsideOfSonarQube(issue, file);
+          logSkippedIssueOutsideOfSonarQube(issue.reportLine(), file);
         } else {
           issuable.addIssue(
             issuable.newIssueBuilder()
-              .ruleKey(RuleKey.of(fxCopConf.repositoryKey(), issue.ruleKey()))
+              .ruleKey(rule.ruleKey())
+              .severity(severityFromLevel ? severity(issue.level(), rule.severity()) : rule.severity())
               .line(issue.line())
               .message(issue.message())
               .build());
+
+          if (aggregator != null) {
+            aggregator.add(sonarFile, issue.checkId() == null ? issue.ruleKey() : issue.checkId(), issue.category(), issue.certainty());
+          }
         }
       }
     }
   }
 
-  private static boolean hasFileAndLine(FxCopIssue issue) {
-    return issue.path() != null && issue.file() != null && issue.line() != null;
+  @Nullable
+  private static String severity(@Nullable String level, @Nullable String defaultSeverity) {
+    String severity;
+
+    if ("CriticalError".equals(level)) {
+      severity = Severity.BLOCKER;
+    } else if ("Error".equals(level)) {
+      severity = Severity.CRITICAL;
+    } else if ("CriticalWarning".equals(level)) {
+      severity = Severity.MAJOR;
+    } else if ("Warning".equals(level)) {
+      severity = Severity.MINOR;
+    } else if ("Informational".equals(level)) {
+      severity = Severity.INFO;
+    } else {
+      severity = defaultSeverity;
+    }
+
+    return severity;
   }
 
-  private static void logSkippedIssueOutsideOfSonarQube(FxCopIssue issue, File file) {
-    logSkippedIssue(issue, "whose file \"" + file.getAbsolutePath() + "\" is not in SonarQube.");
+  private static boolean hasFileAndLine(FxCopIssueTable.Cursor issue) {
+    return issue.path() != null && issue.file() != null && issue.hasLine();
   }
 
-  private static void logSkippedIssue(FxCopIssue issue, String reason) {
-    LOG.info("Skipping the FxCop issue at line " + issue.reportLine() + " " + reason);
+  private static void logSkippedIssueOutsideOfSonarQube(int reportLine, File file) {
+    logSkippedIssue(reportLine, "whose file \"" + file.getAbsolutePath() + "\" is not in SonarQube.");
   }
 
-  private List<String> enabledRuleConfigKeys() {
-    ImmutableList.Builder<String> builder = ImmutableList.builder();
-    for (ActiveRule activeRule : profile.getActiveRulesByRepository(fxCopConf.repositoryKey())) {
-      builder.add(activeRule.getConfigKey());
-    }
-    return builder.build();
+  private static void logSkippedIssue(int reportLine, String reason) {
+    LOG.info("Skipping the FxCop issue at line " + reportLine + " " + reason);
   }
 
 }
@@ -0,0 +1,649 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index from fully qualified type and member names, as they appear in FxCop reports, to their declaration in the sources.
+ * <p>
+ * The index is built lazily, on the first lookup, from a lightweight scan of the C# or VB.NET source files.
+ * It is used to locate the type-level and member-level issues which FxCop reports without any Path, File or Line.
+ * Nested types are named "Outer+Inner", generic types "Name`arity", and constructors ".ctor" as in FxCop reports.
+ */
+public class FxCopSourceIndex {
+
+  private static final String CONSTRUCTOR = ".ctor";
+  private static final String STATIC_CONSTRUCTOR = ".cctor";
+  private static final String FINALIZER = "Finalize";
+  private static final String[] ACCESSOR_PREFIXES = {"get_", "set_", "add_", "remove_"};
+
+  private final String languageKey;
+  private final List<File> files;
+  private final Charset charset;
+  private Map<String, Location> locations;
+
+  public FxCopSourceIndex(String languageKey, List<File> files, @Nullable Charset charset) {
+    this.languageKey = languageKey;
+    this.files = files;
+    this.charset = charset == null ? Charsets.UTF_8 : charset;
+  }
+
+  /**
+   * @param namespace Namespace name, possibly empty, as found in the report
+   * @param type Type name, as found in the report
+   */
+  @Nullable
+  public Location locateType(String namespace, String type) {
+    return locations().get(resolveTypeKey(namespace, type));
+  }
+
+  /**
+   * @param member Member name as found in the report, i.e. "#Add(System.Int32,System.Int32)"
+   * @return The location of the member, or the one of its type if the member is not found
+   */
+  @Nullable
+  public Location locateMember(String namespace, String type, String member) {
+    String typeKey = resolveTypeKey(namespace, type);
+    String memberName = memberName(member);
+
+    Location location = locations().get(typeKey + "." + memberName);
+    if (location == null) {
+      for (String prefix : ACCESSOR_PREFIXES) {
+        if (memberName.startsWith(prefix)) {
+          location = locations().get(typeKey + "." + memberName.substring(prefix.length()));
+          break;
+        }
+      }
+    }
+
+    return location == null ? locations().get(typeKey) : location;
+  }
+
+  public int size() {
+    return locations().size();
+  }
+
+  private synchronized Map<String, Location> locations() {
+    if (locations == null) {
+      Map<String, Location> builder = Maps.newHashMap();
+      for (File file : files) {
+        scan(file, builder);
+      }
+      locations = builder;
+    }
+    return locations;
+  }
+
+  private void scan(File file, Map<String, Location> builder) {
+    String contents;
+    try {
+      contents = Files.toString(file, charset);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+
+    if ("vbnet".equals(languageKey)) {
+      new VbNetScanner(file, builder).scan(contents);
+    } else {
+      new CSharpScanner(file, builder).scan(contents);
+    }
+  }
+
+  /**
+   * VB.NET prefixes the namespaces declared in the sources with the RootNamespace of the project, which only appears in the project file:
+   * the leading namespaces of the report are dropped one at a time, until the type is found or no namespace is left.
+   */
+  private String resolveTypeKey(String namespace, String type) {
+    String typeKey = typeKey(namespace, type);
+    if ("vbnet".equals(languageKey)) {
+      String remaining = namespace;
+      while (!remaining.isEmpty() && !locations().containsKey(typeKey)) {
+        int dot = remaining.indexOf('.');
+        remaining = dot == -1 ? "" : remaining.substring(dot + 1);
+        typeKey = typeKey(remaining, type);
+      }
+    }
+    return typeKey;
+  }
+
+  private static String typeKey(String namespace, String type) {
+    return namespace.isEmpty() ? type : namespace + "." + type;
+  }
+
+  /**
+   * "#Add(System.Int32,System.Int32)" becomes "Add", "#System.IDisposable.Dispose()" becomes "Dispose", and "#Foo`1(!!0)" becomes "Foo".
+   */
+  private static String memberName(String member) {
+    String name = member.startsWith("#") ? member.substring(1) : member;
+
+    int i = name.indexOf('(');
+    if (i != -1) {
+      name = name.substring(0, i);
+    }
+    i = name.indexOf('`');
+    if (i != -1) {
+      name = name.substring(0, i);
+    }
+    if (!CONSTRUCTOR.equals(name) && !STATIC_CONSTRUCTOR.equals(name)) {
+      name = name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    return name;
+  }
+
+  public static class Location {
+
+    private final File file;
+    private final int line;
+
+    public Location(File file, int line) {
+      this.file = file;
+      this.line = line;
+    }
+
+    public String path() {
+      return file.getAbsoluteFile().getParent();
+    }
+
+    public String fileName() {
+      return file.getName();
+    }
+
+    public int line() {
+      return line;
+    }
+
+  }
+
+  private abstract static class Scanner {
+
+    private final File file;
+    private final Map<String, Location> locations;
+
+    public Scanner(File file, Map<String, Location> locations) {
+      this.file = file;
+      this.locations = locations;
+    }
+
+    protected void register(String key, int line) {
+      if (!locations.containsKey(key)) {
+        locations.put(key, new Location(file, line));
+      }
+    }
+
+    protected static String nestedTypeKey(@Nullable Scope enclosing, String namespace, String typeName) {
+      return enclosing != null && enclosing.kind == ScopeKind.TYPE ? enclosing.key + "+" + typeName : typeKey(namespace, typeName);
+    }
+
+  }
+
+  private enum ScopeKind {
+    NAMESPACE, TYPE, OTHER
+  }
+
+  private static class Scope {
+
+    private final ScopeKind kind;
+    private final String key;
+    private final String simpleName;
+
+    public Scope(ScopeKind kind, String key, String simpleName) {
+      this.kind = kind;
+      this.key = key;
+      this.simpleName = simpleName;
+    }
+
+  }
+
+  private static class CSharpScanner extends Scanner {
+
+    private static final Set<String> TYPE_KEYWORDS = ImmutableSet.of("class", "struct", "interface", "enum", "record");
+    private static final Set<String> NON_MEMBER_KEYWORDS = ImmutableSet.of(
+      "if", "for", "foreach", "while", "switch", "catch", "using", "lock", "return", "new", "typeof", "sizeof", "nameof", "default", "base", "this", "when",
+      "operator", "where");
+    private static final Scope OTHER = new Scope(ScopeKind.OTHER, "", "");
+
+    private final LinkedList<Scope> scopes = Lists.newLinkedList();
+    private List<Token> tokens;
+    private Scope pending;
+    private boolean statementHasEquals;
+    private boolean statementHasParenthesis;
+    private boolean statementHasStatic;
+    private int bracketDepth;
+
+    public CSharpScanner(File file, Map<String, Location> locations) {
+      super(file, locations);
+    }
+
+    public void scan(String contents) {
+      tokens = tokenize(contents);
+
+      for (int i = 0; i < tokens.size(); i++) {
+        Token token = tokens.get(i);
+
+        if (token.isIdentifier()) {
+          i = handleIdentifier(i);
+        } else if ("{".equals(token.text)) {
+          handleOpeningBrace(i);
+        } else if ("}".equals(token.text)) {
+          if (!scopes.isEmpty()) {
+            scopes.pop();
+          }
+          endStatement();
+        } else if (";".equals(token.text)) {
+          if (pending != null && pending.kind == ScopeKind.NAMESPACE) {
+            scopes.push(pending);
+          }
+          pending = null;
+          endStatement();
+        } else if ("(".equals(token.text)) {
+          handleOpeningParenthesis(i);
+        } else if ("=>".equals(token.text) && bracketDepth == 0) {
+          if (isTypeLevel() && !statementHasParenthesis && !statementHasEquals && previousIsIdentifier(i)) {
+            register(currentType().key + "." + tokens.get(i - 1).text, tokens.get(i - 1).line);
+          }
+          statementHasEquals = true;
+        } else if ("=".equals(token.text) && bracketDepth == 0) {
+          // Named arguments of attributes, such as [TestCase(Category = "slow")], do not make the member a field
+          statementHasEquals = true;
+        } else if ("[".equals(token.text)) {
+          bracketDepth++;
+        } else if ("]".equals(token.text)) {
+          bracketDepth--;
+        }
+      }
+    }
+
+    private int handleIdentifier(int i) {
+      Token token = tokens.get(i);
+
+      if ("namespace".equals(token.text)) {
+        StringBuilder name = new StringBuilder();
+        int j = i + 1;
+        while (j < tokens.size() && (tokens.get(j).isIdentifier() || ".".equals(tokens.get(j).text))) {
+          name.append(tokens.get(j).text);
+          j++;
+        }
+        String namespace = currentNamespace();
+        String key = namespace.isEmpty() ? name.toString() : namespace + "." + name;
+        pending = new Scope(ScopeKind.NAMESPACE, key, key);
+        return j - 1;
+      }
+
+      if ("static".equals(token.text)) {
+        statementHasStatic = true;
+      }
+
+      if (TYPE_KEYWORDS.contains(token.text) && !previousIs(i, ".")) {
+        int j = i + 1;
+        if (j < tokens.size() && ("class".equals(tokens.get(j).text) || "struct".equals(tokens.get(j).text))) {
+          j++;
+        }
+        if (j < tokens.size() && tokens.get(j).isIdentifier() && !"where".equals(tokens.get(j).text)) {
+          Token name = tokens.get(j);
+          int arity = 0;
+          if (j + 1 < tokens.size() && "<".equals(tokens.get(j + 1).text)) {
+            arity = 1;
+            int depth = 0;
+            for (int k = j + 1; k < tokens.size(); k++) {
+              String text = tokens.get(k).text;
+              if ("<".equals(text)) {
+                depth++;
+              } else if (">".equals(text)) {
+                depth--;
+              } else if (",".equals(text) && depth == 1) {
+                arity++;
+              }
+              if (depth == 0) {
+                break;
+              }
+            }
+          }
+
+          String typeName = arity == 0 ? name.text : name.text + "`" + arity;
+          String key = nestedTypeKey(scopes.peek(), currentNamespace(), typeName);
+          register(key, name.line);
+          pending = new Scope(ScopeKind.TYPE, key, name.text);
+          return j;
+        }
+      }
+
+      return i;
+    }
+
+    private void handleOpeningBrace(int i) {
+      if (pending != null) {
+        scopes.push(pending);
+        pending = null;
+      } else {
+        if (isTypeLevel() && !statementHasParenthesis && !statementHasEquals && previousIsIdentifier(i)) {
+          register(currentType().key + "." + tokens.get(i - 1).text, tokens.get(i - 1).line);
+        }
+        scopes.push(OTHER);
+      }
+      endStatement();
+    }
+
+    private void handleOpeningParenthesis(int i) {
+      if (bracketDepth > 0) {
+        return;
+      }
+
+      if (pending == null && isTypeLevel() && !statementHasEquals && !statementHasParenthesis) {
+        int nameIndex = methodNameIndex(i);
+        if (nameIndex != -1 && !NON_MEMBER_KEYWORDS.contains(tokens.get(nameIndex).text)) {
+          Token name = tokens.get(nameIndex);
+          Scope type = currentType();
+          String memberName;
+          if (previousIs(nameIndex, "~")) {
+            memberName = FINALIZER;
+          } else if (name.text.equals(type.simpleName)) {
+            memberName = statementHasStatic ? STATIC_CONSTRUCTOR : CONSTRUCTOR;
+          } else {
+            memberName = name.text;
+          }
+          register(type.key + "." + memberName, name.line);
+        }
+      }
+      statementHasParenthesis = true;
+    }
+
+    /**
+     * @return The index of the identifier before the given opening parenthesis, skipping any generic type parameters, or -1
+     */
+    private int methodNameIndex(int parenthesis) {
+      int i = parenthesis - 1;
+      if (i >= 0 && ">".equals(tokens.get(i).text)) {
+        int depth = 0;
+        while (i >= 0) {
+          String text = tokens.get(i).text;
+          if (">".equals(text)) {
+            depth++;
+          } else if ("<".equals(text)) {
+            depth--;
+          }
+          i--;
+          if (depth == 0) {
+            break;
+          }
+        }
+      }
+      return i >= 0 && tokens.get(i).isIdentifier() ? i : -1;
+    }
+
+    private void endStatement() {
+      statementHasEquals = false;
+      statementHasParenthesis = false;
+      statementHasStatic = false;
+      bracketDepth = 0;
+    }
+
+    private boolean isTypeLevel() {
+      return !scopes.isEmpty() && scopes.peek().kind == ScopeKind.TYPE;
+    }
+
+    private Scope currentType() {
+      return scopes.peek();
+    }
+
+    private String currentNamespace() {
+      for (Scope scope : scopes) {
+        if (scope.kind == ScopeKind.NAMESPACE) {
+          return scope.key;
+        }
+      }
+      return "";
+    }
+
+    private boolean previousIsIdentifier(int i) {
+      return i > 0 && tokens.get(i - 1).isIdentifier();
+    }
+
+    private boolean previousIs(int i, String text) {
+      return i > 0 && text.equals(tokens.get(i - 1).text);
+    }
+
+    private static List<Token> tokenize(String contents) {
+      List<Token> tokens = Lists.newArrayList();
+      int line = 1;
+      boolean lineStart = true;
+      int i = 0;
+
+      while (i < contents.length()) {
+        char c = contents.charAt(i);
+
+        if (c == '\n') {
+          line++;
+          lineStart = true;
+          i++;
+        } else if (Character.isWhitespace(c)) {
+          i++;
+        } else if (c == '#' && lineStart) {
+          i = skipUntil(contents, i, '\n');
+        } else if (c == '/' && next(contents, i) == '/') {
+          i = skipUntil(contents, i, '\n');
+        } else if (c == '/' && next(contents, i) == '*') {
+          int end = contents.indexOf("*/", i + 2);
+          end = end == -1 ? contents.length() : end + 2;
+          line += countLines(contents, i, end);
+          i = end;
+        } else if (c == '"' || c == '\'' || ((c == '@' || c == '$') && (next(contents, i) == '"' || next(contents, i) == '@' || next(contents, i) == '$'))) {
+          int end = skipLiteral(contents, i);
+          line += countLines(contents, i, end);
+          i = end;
+          lineStart = false;
+        } else if (Character.isJavaIdentifierStart(c) || c == '@') {
+          int start = c == '@' ? i + 1 : i;
+          int end = start;
+          while (end < contents.length() && Character.isJavaIdentifierPart(contents.charAt(end))) {
+            end++;
+          }
+          tokens.add(new Token(contents.substring(start, end), line, true));
+          i = Math.max(end, i + 1);
+          lineStart = false;
+        } else {
+          int length = isOperator(contents, i) ? 2 : 1;
+          tokens.add(new Token(contents.substring(i, i + length), line, false));
+          i += length;
+          lineStart = false;
+        }
+      }
+
+      return tokens;
+    }
+
+    private static boolean isOperator(String contents, int i) {
+      char c = contents.charAt(i);
+      char next = next(contents, i);
+      return (c == '=' && (next == '>' || next == '=')) || ((c == '!' || c == '<' || c == '>') && next == '=');
+    }
+
+    private static int skipLiteral(String contents, int start) {
+      int i = start;
+      boolean verbatim = false;
+      while (contents.charAt(i) == '@' || contents.charAt(i) == '$') {
+        verbatim |= contents.charAt(i) == '@';
+        i++;
+      }
+
+      char quote = contents.charAt(i);
+      i++;
+      while (i < contents.length()) {
+        char c = contents.charAt(i);
+        if (c == '\\' && !verbatim) {
+          i += 2;
+        } else if (c == quote) {
+          if (verbatim && next(contents, i) == quote) {
+            i += 2;
+          } else {
+            return i + 1;
+          }
+        } else if (c == '\n' && !verbatim) {
+          return i;
+        } else {
+          i++;
+        }
+      }
+      return contents.length();
+    }
+
+    private static int skipUntil(String contents, int start, char c) {
+      int end = contents.indexOf(c, start);
+      return end == -1 ? contents.length() : end;
+    }
+
+    private static int countLines(String contents, int start, int end) {
+      int lines = 0;
+      for (int i = start; i < end; i++) {
+        if (contents.charAt(i) == '\n') {
+          lines++;
+        }
+      }
+      return lines;
+    }
+
+    private static char next(String contents, int i) {
+      return i + 1 < contents.length() ? contents.charAt(i + 1) : '\0';
+    }
+
+  }
+
+  private static class Token {
+
+    private final String text;
+    private final int line;
+    private final boolean identifier;
+
+    public Token(String text, int line, boolean identifier) {
+      this.text = text;
+      this.line = line;
+      this.identifier = identifier;
+    }
+
+    public boolean isIdentifier() {
+      return identifier;
+    }
+
+  }
+
+  private static class VbNetScanner extends Scanner {
+
+    private static final String MODIFIERS = "(?:(?:Public|Private|Friend|Protected|Partial|Shadows|MustInherit|NotInheritable|Shared|Overrides|Overridable|" +
+      "MustOverride|NotOverridable|Overloads|ReadOnly|WriteOnly|Default|Async|Iterator|WithEvents|Custom)\\s+)*";
+    private static final Pattern NAMESPACE = Pattern.compile("^\\s*Namespace\\s+([\\w.]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TYPE = Pattern.compile("^\\s*(?:<.*>\\s*)?" + MODIFIERS + "(?:Class|Structure|Interface|Module|Enum)\\s+(\\w+)(?:\\s*\\(\\s*Of\\s+([^)]*)\\))?",
+      Pattern.CASE_INSENSITIVE);
+    private static final Pattern MEMBER = Pattern.compile("^\\s*(?:<.*>\\s*)?" + MODIFIERS + "(?:Sub|Function|Property|Event)\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern END = Pattern.compile("^\\s*End\\s+(Namespace|Class|Structure|Interface|Module|Enum)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final LinkedList<Scope> scopes = Lists.newLinkedList();
+
+    public VbNetScanner(File file, Map<String, Location> locations) {
+      super(file, locations);
+    }
+
+    public void scan(String contents) {
+      String[] lines = contents.split("\r?\n", -1);
+      for (int i = 0; i < lines.length; i++) {
+        scanLine(stripComment(lines[i]), i + 1);
+      }
+    }
+
+    private void scanLine(String line, int lineNumber) {
+      Matcher matcher = END.matcher(line);
+      if (matcher.find()) {
+        if (!scopes.isEmpty()) {
+          scopes.pop();
+        }
+        return;
+      }
+
+      matcher = NAMESPACE.matcher(line);
+      if (matcher.find()) {
+        String namespace = currentNamespace();
+        String key = namespace.isEmpty() ? matcher.group(1) : namespace + "." + matcher.group(1);
+        scopes.push(new Scope(ScopeKind.NAMESPACE, key, key));
+        return;
+      }
+
+      matcher = TYPE.matcher(line);
+      if (matcher.find()) {
+        String name = matcher.group(1);
+        String typeName = matcher.group(2) == null ? name : name + "`" + matcher.group(2).split(",").length;
+        String key = nestedTypeKey(scopes.peek(), currentNamespace(), typeName);
+        register(key, lineNumber);
+        scopes.push(new Scope(ScopeKind.TYPE, key, name));
+        return;
+      }
+
+      matcher = MEMBER.matcher(line);
+      if (matcher.find() && !scopes.isEmpty() && scopes.peek().kind == ScopeKind.TYPE) {
+        String name = matcher.group(1);
+        if ("New".equalsIgnoreCase(name)) {
+          name = line.toLowerCase(Locale.ENGLISH).contains("shared ") ? STATIC_CONSTRUCTOR : CONSTRUCTOR;
+        }
+        register(scopes.peek().key + "." + name, lineNumber);
+      }
+    }
+
+    private String currentNamespace() {
+      for (Scope scope : scopes) {
+        if (scope.kind == ScopeKind.NAMESPACE) {
+          return scope.key;
+        }
+      }
+      return "";
+    }
+
+    private static String stripComment(String line) {
+      boolean inString = false;
+      for (int i = 0; i < line.length(); i++) {
+        char c = line.charAt(i);
+        if (c == '"') {
+          inString = !inString;
+        } else if (c == '\'' && !inString) {
+          return line.substring(0, i);
+        }
+      }
+      return line;
+    }
+
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file while it is being written by another process, such as the report of a running FxCopCmd:
+ * waits for the file to be created, and at its end for more content, until the producer completes.
+ */
+public class FxCopTailInputStream extends InputStream {
+
+  private final File file;
+  private final Future<?> producer;
+  private final long pollMillis;
+  private InputStream stream;
+
+  public FxCopTailInputStream(File file, Future<?> producer, long pollMillis) {
+    this.file = file;
+    this.producer = producer;
+    this.pollMillis = pollMillis;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int n = read(b, 0, 1);
+    return n == -1 ? -1 : (b[0] & 0xFF);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+
+    while (true) {
+      // Checked before reading, so that once the producer is done, reaching the end means that everything was read
+      boolean done = producer.isDone();
+
+      if (stream == null && file.isFile()) {
+        stream = new FileInputStream(file);
+      }
+
+      if (stream != null) {
+        int n = stream.read(b, off, len);
+        if (n > 0) {
+          return n;
+        }
+        if (done) {
+          return -1;
+        }
+      } else if (done) {
+        throw new IOException("The file \"" + file.getAbsolutePath() + "\" was not produced.");
+      }
+
+      sleep();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (stream != null) {
+      stream.close();
+    }
+  }
+
+  private void sleep() throws InterruptedIOException {
+    try {
+      Thread.sleep(pollMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for more content in \"" + file.getAbsolutePath() + "\".");
+    }
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * Claims and runs the jobs of a {@link FxCopJobQueue}.
+ * <p>
+ * Besides the sensor, which runs a worker on its own jobs while it waits for its reports, workers can be started on other agents sharing
+ * the queue directory with: <code>java -cp &lt;this library, sonar-plugin-api and their dependencies&gt; org.sonar.plugins.fxcop.FxCopWorker
+ * &lt;queue directory&gt; &lt;FxCopCmd.exe path&gt; &lt;timeout in minutes&gt;</code>
+ */
+public class FxCopWorker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FxCopWorker.class);
+
+  private static final long IDLE_POLL_MILLIS = 1000;
+  private static final String USAGE = "Usage: FxCopWorker <queue directory> <FxCopCmd.exe path> <timeout in minutes>";
+
+  private final FxCopJobQueue queue;
+  private final FxCopExecutor executor;
+  private final String fxCopCmdPath;
+  private final int timeout;
+  private final boolean ownJobsOnly;
+
+  public FxCopWorker(FxCopJobQueue queue, FxCopExecutor executor, String fxCopCmdPath, int timeout) {
+    this(queue, executor, fxCopCmdPath, timeout, false);
+  }
+
+  /**
+   * @param ownJobsOnly Whether only the jobs published through the given queue, rather than by any coordinator, are claimed
+   */
+  public FxCopWorker(FxCopJobQueue queue, FxCopExecutor executor, String fxCopCmdPath, int timeout, boolean ownJobsOnly) {
+    this.queue = queue;
+    this.executor = executor;
+    this.fxCopCmdPath = fxCopCmdPath;
+    this.timeout = timeout;
+    this.ownJobsOnly = ownJobsOnly;
+  }
+
+  /**
+   * Claims and runs a single job. Failures are reported through the queue.
+   *
+   * @return false if there was no job to claim
+   */
+  public boolean runOne() {
+    FxCopJobQueue.Job job = ownJobsOnly ? queue.claimOwn() : queue.claim();
+    if (job == null) {
+      return false;
+    }
+
+    LOG.info("Running the FxCop job " + job.id() + " on the assembly \"" + job.assembly() + "\".");
+    try {
+      executor.execute(fxCopCmdPath, job.assembly(), job.rulesetFile(), job.reportFile(), timeout, false, job.ignoreGeneratedCode());
+      queue.complete(job);
+    } catch (RuntimeException e) {
+      LOG.error("The FxCop job " + job.id() + " failed.", e);
+      queue.fail(job, String.valueOf(e.getMessage()));
+    }
+    return true;
+  }
+
+  public static void main(String[] args) {
+    System.exit(run(args, new FxCopExecutor()));
+  }
+
+  /**
+   * Runs the jobs of the queue given by the command line arguments until the current thread is interrupted.
+   *
+   * @return The exit code: 0 once interrupted, 1 if the arguments are invalid
+   */
+  @VisibleForTesting
+  static int run(String[] args, FxCopExecutor executor) {
+    if (args.length != 3) {
+      LOG.error(USAGE);
+      return 1;
+    }
+
+    int timeout;
+    FxCopJobQueue queue;
+    try {
+      timeout = Integer.parseInt(args[2]);
+      queue = new FxCopJobQueue(new File(args[0]));
+    } catch (NumberFormatException e) {
+      LOG.error(USAGE);
+      return 1;
+    } catch (IllegalStateException e) {
+      LOG.error(e.getMessage());
+      return 1;
+    }
+
+    FxCopWorker worker = new FxCopWorker(queue, executor, args[1], timeout);
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        if (!runOneQuietly(worker)) {
+          Thread.sleep(IDLE_POLL_MILLIS);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      queue.close();
+    }
+    return 0;
+  }
+
+  /**
+   * The run of a job may be deleted while it is running, if its coordinator was stopped.
+   */
+  private static boolean runOneQuietly(FxCopWorker worker) {
+    try {
+      return worker.runOne();
+    } catch (RuntimeException e) {
+      LOG.error("Could not report the result of the FxCop job.", e);
+      return true;
+    }
+  }
+
+}
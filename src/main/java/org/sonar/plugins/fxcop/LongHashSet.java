@@ -0,0 +1,129 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+/**
+ * Open addressing hash set of primitive longs, using linear probing.
+ * Requires 8 bytes per slot and no allocation per element.
+ */
+public class LongHashSet {
+
+  private static final int MIN_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+  private static final long EMPTY = 0L;
+
+  private long[] slots;
+  private int size;
+  private int threshold;
+  private boolean containsEmpty;
+
+  public LongHashSet() {
+    this(MIN_CAPACITY);
+  }
+
+  public LongHashSet(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * @return true if the value was not already present
+   */
+  public boolean add(long value) {
+    if (value == EMPTY) {
+      boolean added = !containsEmpty;
+      containsEmpty = true;
+      return added;
+    }
+
+    int mask = slots.length - 1;
+    int i = mix(value) & mask;
+    while (slots[i] != EMPTY) {
+      if (slots[i] == value) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+
+    slots[i] = value;
+    size++;
+    if (size > threshold) {
+      rehash(slots.length * 2);
+    }
+    return true;
+  }
+
+  public boolean contains(long value) {
+    if (value == EMPTY) {
+      return containsEmpty;
+    }
+
+    int mask = slots.length - 1;
+    int i = mix(value) & mask;
+    while (slots[i] != EMPTY) {
+      if (slots[i] == value) {
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return containsEmpty ? size + 1 : size;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldSlots = slots;
+    allocate(capacity);
+
+    int mask = slots.length - 1;
+    for (long value : oldSlots) {
+      if (value != EMPTY) {
+        int i = mix(value) & mask;
+        while (slots[i] != EMPTY) {
+          i = (i + 1) & mask;
+        }
+        slots[i] = value;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    slots = new long[capacity];
+    threshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private static int capacityFor(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static int mix(long value) {
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.RulePriority;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FxCopActiveRulesTest {
+
+  @Test
+  public void test() {
+    ActiveRule strongNames = mockActiveRule("AssembliesShouldHaveValidStrongNames", "CA2210", RulePriority.CRITICAL);
+    ActiveRule spelling = mockActiveRule("IdentifiersShouldBeSpelledCorrectly", "CA1704", null);
+
+    FxCopActiveRules activeRules = new FxCopActiveRules("cs-fxcop", ImmutableList.of(strongNames, spelling));
+    assertThat(activeRules.isEmpty()).isFalse();
+    assertThat(activeRules.ruleConfigKeys()).containsExactly("CA2210", "CA1704");
+
+    FxCopActiveRules.Entry entry = activeRules.get("AssembliesShouldHaveValidStrongNames");
+    assertThat(entry.ruleKey()).isEqualTo(RuleKey.of("cs-fxcop", "AssembliesShouldHaveValidStrongNames"));
+    assertThat(entry.activeRule()).isSameAs(strongNames);
+    assertThat(entry.severity()).isEqualTo("CRITICAL");
+    assertThat(activeRules.get("CA2210")).isSameAs(entry);
+
+    entry = activeRules.get("CA1704");
+    assertThat(entry.ruleKey()).isEqualTo(RuleKey.of("cs-fxcop", "IdentifiersShouldBeSpelledCorrectly"));
+    assertThat(entry.severity()).isNull();
+
+    assertThat(activeRules.get("MarkMembersAsStatic")).isNull();
+    assertThat(activeRules.isActive("CA1822")).isFalse();
+    assertThat(activeRules.isActive("CA1704")).isTrue();
+  }
+
+  @Test
+  public void empty() {
+    FxCopActiveRules activeRules = new FxCopActiveRules("cs-fxcop", ImmutableList.<ActiveRule>of());
+    assertThat(activeRules.isEmpty()).isTrue();
+    assertThat(activeRules.ruleConfigKeys()).isEmpty();
+  }
+
+  private static ActiveRule mockActiveRule(String ruleKey, String configKey, RulePriority severity) {
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRuleKey()).thenReturn(ruleKey);
+    when(activeRule.getConfigKey()).thenReturn(configKey);
+    when(activeRule.getSeverity()).thenReturn(severity);
+    return activeRule;
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopAssemblyMetadataTest {
+
+  private static final byte[] MVID = {0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0a, 0x0b, 0x0c, 0x0d, 0x0e, 0x0f};
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void read() throws Exception {
+    File assembly = tmp.newFile("MyLibrary.dll");
+    writeAssembly(assembly, MVID, 0x53000000, true, "mscorlib", "System.Xml");
+
+    FxCopAssemblyMetadata metadata = FxCopAssemblyMetadata.read(assembly);
+    assertThat(metadata.mvid()).isEqualTo("03020100-0504-0706-0809-0a0b0c0d0e0f");
+    assertThat(metadata.runtimeVersion()).isEqualTo("v4.0.30319");
+    assertThat(metadata.timestamp()).isEqualTo(0x53000000L);
+    assertThat(metadata.version()).isEqualTo("1.2.3.4");
+    assertThat(metadata.references()).containsExactly("mscorlib", "System.Xml");
+    assertThat(metadata.key()).isEqualTo("03020100-0504-0706-0809-0a0b0c0d0e0f|v4.0.30319|1392508928");
+
+    byte[] otherMvid = MVID.clone();
+    otherMvid[15] = 0x42;
+    writeAssembly(assembly, otherMvid, 0x53000000, true);
+    assertThat(FxCopAssemblyMetadata.read(assembly).key()).isNotEqualTo(metadata.key());
+  }
+
+  @Test
+  public void not_an_assembly() throws Exception {
+    assertThat(FxCopAssemblyMetadata.read(new File("src/test/resources/FxCopConfigurationTest/MyLibrary.dll"))).isNull();
+
+    File text = tmp.newFile("text.dll");
+    Files.write("Hello, world!", text, Charsets.UTF_8);
+    assertThat(FxCopAssemblyMetadata.read(text)).isNull();
+
+    File nativeLibrary = tmp.newFile("native.dll");
+    writeAssembly(nativeLibrary, MVID, 0, false);
+    assertThat(FxCopAssemblyMetadata.read(nativeLibrary)).isNull();
+  }
+
+  @Test
+  public void truncated() throws Exception {
+    File assembly = tmp.newFile("MyLibrary.dll");
+    writeAssembly(assembly, MVID, 0x53000000, true, "mscorlib");
+    RandomAccessFile randomAccessFile = new RandomAccessFile(assembly, "rw");
+    randomAccessFile.setLength(0x500);
+    randomAccessFile.close();
+
+    assertThat(FxCopAssemblyMetadata.read(assembly)).isNull();
+    assertThat(assembly.delete()).isTrue();
+  }
+
+  /**
+   * Writes a minimal PE32 file, with a single section holding the CLI header and metadata, whose module table references the given MVID
+   * and assembly reference table the given assemblies.
+   */
+  static void writeAssembly(File file, byte[] mvid, int timestamp, boolean managed, String... references) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(0x1200).order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.putShort(0, (short) 0x5A4D);
+    buffer.putInt(0x3C, 0x80);
+
+    buffer.putInt(0x80, 0x00004550);
+    buffer.putShort(0x84, (short) 0x14C);
+    buffer.putShort(0x86, (short) 1);
+    buffer.putInt(0x88, timestamp);
+    buffer.putShort(0x94, (short) 0xE0);
+
+    buffer.putShort(0x98, (short) 0x10B);
+    if (managed) {
+      buffer.putInt(0x98 + 96 + 14 * 8, 0x2000);
+      buffer.putInt(0x98 + 96 + 14 * 8 + 4, 72);
+    }
+
+    int section = 0x98 + 0xE0;
+    buffer.position(section);
+    buffer.put(".text\0\0\0".getBytes(Charsets.US_ASCII));
+    buffer.putInt(0x1000).putInt(0x2000).putInt(0x1000).putInt(0x200);
+
+    buffer.putInt(0x200, 72);
+    buffer.putInt(0x200 + 8, 0x2050);
+    buffer.putInt(0x200 + 12, 0x400);
+
+    int metadata = 0x250;
+    buffer.position(metadata);
+    buffer.putInt(0x424A5342).putShort((short) 1).putShort((short) 1).putInt(0).putInt(12);
+    buffer.put("v4.0.30319\0\0".getBytes(Charsets.US_ASCII));
+    buffer.putShort((short) 0).putShort((short) 3);
+    buffer.putInt(0x100).putInt(0x100).put("#~\0\0".getBytes(Charsets.US_ASCII));
+    buffer.putInt(0x200).putInt(0x100).put("#Strings\0\0\0\0".getBytes(Charsets.US_ASCII));
+    buffer.putInt(0x300).putInt(16).put("#GUID\0\0\0".getBytes(Charsets.US_ASCII));
+
+    // Strings heap: the empty string, the assembly name, then the referenced assembly names
+    buffer.position(metadata + 0x200);
+    buffer.put((byte) 0).put("MyLibrary\0".getBytes(Charsets.US_ASCII));
+    short[] referenceNames = new short[references.length];
+    for (int i = 0; i < references.length; i++) {
+      referenceNames[i] = (short) (buffer.position() - metadata - 0x200);
+      buffer.put((references[i] + "\0").getBytes(Charsets.US_ASCII));
+    }
+
+    // Module, TypeRef, TypeDef, Assembly and AssemblyRef tables
+    buffer.position(metadata + 0x100);
+    buffer.putInt(0).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 1).putLong(0x7 | (1L << 0x20) | (1L << 0x23)).putLong(0);
+    buffer.putInt(1).putInt(0).putInt(0).putInt(1).putInt(references.length);
+    buffer.putShort((short) 0).putShort((short) 1).putShort((short) 1).putShort((short) 0).putShort((short) 0);
+    buffer.putInt(0x8004).putShort((short) 1).putShort((short) 2).putShort((short) 3).putShort((short) 4).putInt(0)
+      .putShort((short) 0).putShort((short) 1).putShort((short) 0);
+    for (short referenceName : referenceNames) {
+      buffer.putShort((short) 4).putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0)
+        .putShort((short) 0).putShort(referenceName).putShort((short) 0).putShort((short) 0);
+    }
+
+    buffer.position(metadata + 0x300);
+    buffer.put(mvid);
+
+    Files.write(buffer.array(), file);
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopCheckpointJournalTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void complete_and_resume() throws Exception {
+    File file = new File(tmp.getRoot(), FxCopCheckpointJournal.FILE_NAME);
+    File reportFile1 = tmp.newFile("fxcop-report-1.xml");
+    File reportFile2 = tmp.newFile("fxcop-report-2.xml");
+
+    FxCopCheckpointJournal journal = FxCopCheckpointJournal.open(file);
+    assertThat(journal.isCompleted("MyLibrary.dll", "foo", reportFile1)).isFalse();
+    journal.expect("MyLibrary.dll", "foo", reportFile1);
+    journal.expect("MyOtherLibrary.dll", "bar", reportFile2);
+    assertThat(file.exists()).isFalse();
+
+    journal.complete(reportFile1);
+    journal.complete(tmp.newFile("unexpected.xml"));
+    assertThat(file.isFile()).isTrue();
+
+    journal = FxCopCheckpointJournal.open(file);
+    assertThat(journal.isCompleted("MyLibrary.dll", "foo", reportFile1)).isTrue();
+    assertThat(journal.isCompleted("MyLibrary.dll", "changed", reportFile1)).isFalse();
+    assertThat(journal.isCompleted("MyOtherLibrary.dll", "bar", reportFile2)).isFalse();
+
+    reportFile1.delete();
+    assertThat(journal.isCompleted("MyLibrary.dll", "foo", reportFile1)).isFalse();
+
+    journal.delete();
+    assertThat(file.exists()).isFalse();
+    assertThat(FxCopCheckpointJournal.open(file).isCompleted("MyLibrary.dll", "foo", reportFile2)).isFalse();
+  }
+
+}
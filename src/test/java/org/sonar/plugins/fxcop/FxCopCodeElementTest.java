@@ -0,0 +1,53 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopCodeElementTest {
+
+  @Test
+  public void test() {
+    FxCopCodeElement module = new FxCopCodeElement(FxCopCodeElement.Kind.MODULE, "mylibrary.dll", null);
+    FxCopCodeElement namespace = new FxCopCodeElement(FxCopCodeElement.Kind.NAMESPACE, "MyLibrary", module);
+    FxCopCodeElement type = new FxCopCodeElement(FxCopCodeElement.Kind.TYPE, "Class1", namespace);
+
+    assertThat(type.kind()).isEqualTo(FxCopCodeElement.Kind.TYPE);
+    assertThat(type.name()).isEqualTo("Class1");
+    assertThat(type.parent()).isSameAs(namespace);
+    assertThat(module.parent()).isNull();
+
+    assertThat(type.enclosing(FxCopCodeElement.Kind.TYPE)).isSameAs(type);
+    assertThat(type.enclosing(FxCopCodeElement.Kind.MODULE)).isSameAs(module);
+    assertThat(type.enclosing(FxCopCodeElement.Kind.MEMBER)).isNull();
+
+    assertThat(type.toString()).isEqualTo("mylibrary.dll/MyLibrary/Class1");
+  }
+
+  @Test
+  public void kind_from_tag_name() {
+    assertThat(FxCopCodeElement.Kind.fromTagName("Target")).isEqualTo(FxCopCodeElement.Kind.TARGET);
+    assertThat(FxCopCodeElement.Kind.fromTagName("Accessor")).isEqualTo(FxCopCodeElement.Kind.ACCESSOR);
+    assertThat(FxCopCodeElement.Kind.fromTagName("Members")).isNull();
+  }
+
+}
@@ -76,6 +76,134 @@ public class FxCopConfigurationTest {
     new FxCopConfiguration("", "", "fooAssemblyKey", "fooFxCopCmdPathKey", "").checkProperties(settings);
   }
 
+  @Test
+  public void check_properties_multiple_assemblies() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Cannot find the assembly");
+    thrown.expectMessage(new File("src/test/resources/FxCopConfigurationTest/MyLibraryNotFound.dll").getAbsolutePath());
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey("fooAssemblyKey")).thenReturn(true);
+    when(settings.getString("fooAssemblyKey")).thenReturn(
+      new File(ASSEMBLY_PATH).getAbsolutePath() + ", " + new File("src/test/resources/FxCopConfigurationTest/MyLibraryNotFound.dll").getAbsolutePath());
+
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
+  @Test
+  public void split_assemblies() {
+    assertThat(FxCopConfiguration.splitAssemblies("MyLibrary.dll")).containsExactly("MyLibrary.dll");
+    assertThat(FxCopConfiguration.splitAssemblies(" a.dll, b.dll ,,c.dll")).containsExactly("a.dll", "b.dll", "c.dll");
+    assertThat(FxCopConfiguration.splitAssemblies("")).isEmpty();
+  }
+
+  @Test
+  public void split_list() {
+    assertThat(FxCopConfiguration.splitList("**/*.Designer.cs, ,Generated/**")).containsExactly("**/*.Designer.cs", "Generated/**");
+    assertThat(FxCopConfiguration.splitList(" ")).isEmpty();
+  }
+
+  @Test
+  public void split_levels() {
+    assertThat(FxCopConfiguration.splitLevels(null)).isEmpty();
+    assertThat(FxCopConfiguration.splitLevels("CriticalError, Error,")).containsOnly("CriticalError", "Error");
+  }
+
+  @Test
+  public void check_properties_minimum_certainty_out_of_range() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The property \"sonar.fxcop.minimumCertainty\" must be between 0 and 100, but was 101.");
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey("fooAssemblyKey")).thenReturn(true);
+    when(settings.getString("fooAssemblyKey")).thenReturn(new File(ASSEMBLY_PATH).getAbsolutePath());
+    when(settings.hasKey(FxCopConfiguration.MINIMUM_CERTAINTY_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getInt(FxCopConfiguration.MINIMUM_CERTAINTY_PROPERTY_KEY)).thenReturn(101);
+
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
+  @Test
+  public void check_properties_replay() {
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn("src/test/resources/FxCopReportParserTest/valid.xml, "
+      + "src/test/resources/FxCopReportParserTest/without_location.xml");
+    when(settings.hasKey(FxCopConfiguration.REPLAY_ITERATIONS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getInt(FxCopConfiguration.REPLAY_ITERATIONS_PROPERTY_KEY)).thenReturn(3);
+
+    assertThat(FxCopConfiguration.isReplay(settings)).isTrue();
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
+  @Test
+  public void check_properties_replay_missing_report() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Cannot find the FxCop report \"" + new File("missing.xml").getAbsolutePath()
+      + "\" provided in the property \"sonar.fxcop.replay.reports\".");
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn("missing.xml");
+
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
+  @Test
+  public void check_properties_replay_iterations() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The property \"sonar.fxcop.replay.iterations\" must be at least 1, but was 0.");
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn("src/test/resources/FxCopReportParserTest/valid.xml");
+    when(settings.hasKey(FxCopConfiguration.REPLAY_ITERATIONS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getInt(FxCopConfiguration.REPLAY_ITERATIONS_PROPERTY_KEY)).thenReturn(0);
+
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
+  @Test
+  public void check_properties_invalid_exclusion_regex() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The property \"sonar.fxcop.exclusionRegex\" is not a valid regular expression: Unclosed group");
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey("fooAssemblyKey")).thenReturn(true);
+    when(settings.getString("fooAssemblyKey")).thenReturn(new File(ASSEMBLY_PATH).getAbsolutePath());
+    when(settings.hasKey(FxCopConfiguration.EXCLUSION_REGEX_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.EXCLUSION_REGEX_PROPERTY_KEY)).thenReturn(".*/(obj|bin/.*");
+
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
+  @Test
+  public void check_properties_max_concurrent_assemblies() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The property \"sonar.fxcop.maxConcurrentAssemblies\" must be at least 1, but was 0.");
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey("fooAssemblyKey")).thenReturn(true);
+    when(settings.getString("fooAssemblyKey")).thenReturn(new File(ASSEMBLY_PATH).getAbsolutePath());
+    when(settings.hasKey(FxCopConfiguration.MAX_CONCURRENT_ASSEMBLIES_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getInt(FxCopConfiguration.MAX_CONCURRENT_ASSEMBLIES_PROPERTY_KEY)).thenReturn(0);
+
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
+  @Test
+  public void check_properties_unknown_level() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unknown level \"Critical\" in the property \"sonar.fxcop.levels\", expected one of: CriticalError, Error, CriticalWarning, Warning, Informational");
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey("fooAssemblyKey")).thenReturn(true);
+    when(settings.getString("fooAssemblyKey")).thenReturn(new File(ASSEMBLY_PATH).getAbsolutePath());
+    when(settings.getString(FxCopConfiguration.LEVELS_PROPERTY_KEY)).thenReturn("Error, Critical");
+
+    new FxCopConfiguration("", "", "fooAssemblyKey", "", "").checkProperties(settings);
+  }
+
   @Test
   public void check_properties_assembly_property_not_set() {
     thrown.expect(IllegalArgumentException.class);
@@ -129,4 +257,13 @@ public class FxCopConfigurationTest {
     assertThat(settings.getString(conf.fxCopCmdPropertyKey())).isEqualTo("fake/path/FxCopCmd.exe");
   }
 
+  @Test
+  public void check_project_level_without_assemblies() {
+    Settings settings = new Settings();
+    settings.setProperty(FxCopConfiguration.PROJECT_LEVEL_PROPERTY_KEY, "true");
+    FxCopConfiguration conf = new FxCopConfiguration("", "", "assembly.prop", "cmd.prop", "");
+
+    conf.check(FxCopResolvedConfiguration.resolve(conf, settings));
+  }
+
 }
@@ -0,0 +1,61 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopFilesTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void move() throws Exception {
+    File from = tmp.newFile("from.txt");
+    Files.write("foo", from, Charsets.UTF_8);
+    File to = new File(tmp.newFolder("directory"), "to.txt");
+
+    FxCopFiles.move(from, to);
+    assertThat(from.exists()).isFalse();
+    assertThat(Files.toString(to, Charsets.UTF_8)).isEqualTo("foo");
+  }
+
+  @Test
+  public void delete_recursively() throws Exception {
+    File directory = tmp.newFolder("directory");
+    Files.write("foo", new File(directory, "foo.txt"), Charsets.UTF_8);
+    File subdirectory = new File(directory, "subdirectory");
+    assertThat(subdirectory.mkdir()).isTrue();
+    Files.write("bar", new File(subdirectory, "bar.txt"), Charsets.UTF_8);
+
+    assertThat(FxCopFiles.deleteRecursively(directory)).isTrue();
+    assertThat(directory.exists()).isFalse();
+    assertThat(FxCopFiles.deleteRecursively(directory)).isTrue();
+  }
+
+}
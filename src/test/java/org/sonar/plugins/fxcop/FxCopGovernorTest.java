@@ -0,0 +1,201 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.command.Command;
+import org.sonar.api.utils.command.CommandException;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FxCopGovernorTest {
+
+  private static final long MAX_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(60);
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void concurrency() {
+    FxCopGovernor governor = new FxCopGovernor(tmp.getRoot(), MAX_TIMEOUT_MILLIS, 1000);
+    assertThat(governor.concurrency(4, 10000)).isEqualTo(4);
+    assertThat(governor.concurrency(4, 2500)).isEqualTo(2);
+    assertThat(governor.concurrency(4, 10)).isEqualTo(1);
+    assertThat(governor.concurrency(4, -1)).isEqualTo(4);
+  }
+
+  @Test
+  public void learned_timeouts() {
+    FxCopScheduler.Job job = job("MyLibrary.dll", 1000);
+    FxCopGovernor governor = new FxCopGovernor(tmp.getRoot(), MAX_TIMEOUT_MILLIS, FxCopGovernor.DEFAULT_PROCESS_MEMORY);
+    assertThat(governor.expectedMillis(job)).isEqualTo(-1);
+    assertThat(governor.timeoutMillis(job)).isEqualTo(MAX_TIMEOUT_MILLIS);
+
+    governor.run(job, true, sleeping(50));
+    governor.save();
+
+    governor = new FxCopGovernor(tmp.getRoot(), MAX_TIMEOUT_MILLIS, FxCopGovernor.DEFAULT_PROCESS_MEMORY);
+    long expectedMillis = governor.expectedMillis(job);
+    assertThat(expectedMillis).isGreaterThanOrEqualTo(50);
+    assertThat(governor.expectedMillis(job("MyLibrary.dll", 2000))).isEqualTo(2 * expectedMillis);
+    assertThat(governor.timeoutMillis(job)).isEqualTo(TimeUnit.MINUTES.toMillis(1));
+    assertThat(governor.timeoutMillis(job("MyLibrary.dll", 1000 * 1000 * 1000))).isEqualTo(MAX_TIMEOUT_MILLIS);
+    assertThat(governor.expectedMillis(job("MyOtherLibrary.dll", 1000))).isEqualTo(-1);
+  }
+
+  @Test
+  public void invalid_history_entries() throws Exception {
+    Files.write("A.dll=1000\nB.dll=foo,10\nC.dll=1000,\nD.dll=1000,10,5\nE.dll=1000,-10\nF.dll= 1000 , 10 \n",
+      new File(tmp.getRoot(), FxCopGovernor.HISTORY_FILE_NAME), Charsets.ISO_8859_1);
+    FxCopGovernor governor = new FxCopGovernor(tmp.getRoot(), MAX_TIMEOUT_MILLIS, FxCopGovernor.DEFAULT_PROCESS_MEMORY);
+
+    for (String assembly : new String[] {"A.dll", "B.dll", "C.dll", "D.dll", "E.dll"}) {
+      assertThat(governor.expectedMillis(job(assembly, 1000))).as(assembly).isEqualTo(-1);
+      assertThat(governor.timeoutMillis(job(assembly, 1000))).as(assembly).isEqualTo(MAX_TIMEOUT_MILLIS);
+    }
+    assertThat(governor.expectedMillis(job("F.dll", 1000))).isEqualTo(10);
+
+    final List<Long> timeouts = Lists.newArrayList();
+    governor.run(job("B.dll", 1000), true, new FxCopGovernor.Execution() {
+      @Override
+      public void execute(FxCopScheduler.Job job, long timeoutMillis) {
+        timeouts.add(timeoutMillis);
+      }
+    });
+    assertThat(timeouts).containsExactly(MAX_TIMEOUT_MILLIS);
+  }
+
+  @Test
+  public void save_failure_is_logged() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    FxCopGovernor governor = new FxCopGovernor(workingDir, MAX_TIMEOUT_MILLIS, FxCopGovernor.DEFAULT_PROCESS_MEMORY);
+    // Directories where the files should be written
+    assertThat(new File(workingDir, FxCopGovernor.REPORT_FILE_NAME).mkdir()).isTrue();
+    assertThat(new File(workingDir, FxCopGovernor.HISTORY_FILE_NAME + ".tmp").mkdir()).isTrue();
+
+    governor.save();
+  }
+
+  @Test
+  public void retry_after_timeout() throws Exception {
+    Files.write("MyLibrary.dll=1000,10\n", new File(tmp.getRoot(), FxCopGovernor.HISTORY_FILE_NAME), Charsets.ISO_8859_1);
+    FxCopGovernor governor = new FxCopGovernor(tmp.getRoot(), MAX_TIMEOUT_MILLIS, FxCopGovernor.DEFAULT_PROCESS_MEMORY);
+
+    final List<Long> timeouts = Lists.newArrayList();
+    governor.run(job("MyLibrary.dll", 1000), true, new FxCopGovernor.Execution() {
+      @Override
+      public void execute(FxCopScheduler.Job job, long timeoutMillis) {
+        timeouts.add(timeoutMillis);
+        if (timeouts.size() == 1) {
+          throw timeout();
+        }
+      }
+    });
+    governor.save();
+
+    assertThat(timeouts).containsExactly(TimeUnit.MINUTES.toMillis(1), MAX_TIMEOUT_MILLIS);
+    List<String> report = Files.readLines(new File(tmp.getRoot(), FxCopGovernor.REPORT_FILE_NAME), Charsets.UTF_8);
+    assertThat(report.get(0)).isEqualTo("assembly,bytes,expectedMillis,timeoutMillis,millis,attempts,outcome,freePhysicalMemoryBytes");
+    assertThat(report.get(1)).startsWith("MyLibrary.dll,1000,10,60000,");
+    assertThat(report.get(1)).contains(",2,success,");
+    assertThat(Files.toString(new File(tmp.getRoot(), FxCopGovernor.HISTORY_FILE_NAME), Charsets.ISO_8859_1)).contains("MyLibrary.dll=1000,10");
+  }
+
+  @Test
+  public void no_retry() throws Exception {
+    Files.write("MyLibrary.dll=1000,10\n", new File(tmp.getRoot(), FxCopGovernor.HISTORY_FILE_NAME), Charsets.ISO_8859_1);
+    FxCopGovernor governor = new FxCopGovernor(tmp.getRoot(), MAX_TIMEOUT_MILLIS, FxCopGovernor.DEFAULT_PROCESS_MEMORY);
+
+    final List<Long> timeouts = Lists.newArrayList();
+    try {
+      governor.run(job("MyLibrary.dll", 1000), false, new FxCopGovernor.Execution() {
+        @Override
+        public void execute(FxCopScheduler.Job job, long timeoutMillis) {
+          timeouts.add(timeoutMillis);
+          throw timeout();
+        }
+      });
+      fail();
+    } catch (CommandException e) {
+      assertThat(timeouts).hasSize(1);
+    }
+  }
+
+  @Test
+  public void failure_is_not_retried() throws Exception {
+    FxCopGovernor governor = new FxCopGovernor(tmp.getRoot(), MAX_TIMEOUT_MILLIS, FxCopGovernor.DEFAULT_PROCESS_MEMORY);
+    final List<Long> timeouts = Lists.newArrayList();
+    try {
+      governor.run(job("MyLibrary.dll", 1000), true, new FxCopGovernor.Execution() {
+        @Override
+        public void execute(FxCopScheduler.Job job, long timeoutMillis) {
+          timeouts.add(timeoutMillis);
+          throw new IllegalStateException("exit code 1");
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(timeouts).hasSize(1);
+    }
+
+    governor.save();
+    assertThat(Files.toString(new File(tmp.getRoot(), FxCopGovernor.REPORT_FILE_NAME), Charsets.UTF_8)).contains(",1,failed,");
+  }
+
+  @Test
+  public void is_timeout() {
+    assertThat(FxCopGovernor.isTimeout(timeout())).isTrue();
+    assertThat(FxCopGovernor.isTimeout(new IllegalStateException())).isFalse();
+  }
+
+  private static CommandException timeout() {
+    return new CommandException(Command.create("FxCopCmd.exe"), "Timeout exceeded", new TimeoutException());
+  }
+
+  private static FxCopGovernor.Execution sleeping(final long millis) {
+    return new FxCopGovernor.Execution() {
+      @Override
+      public void execute(FxCopScheduler.Job job, long timeoutMillis) {
+        try {
+          Thread.sleep(millis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  private static FxCopScheduler.Job job(String assembly, long size) {
+    return new FxCopScheduler.Job(assembly, new File("report.xml"), size, ImmutableList.<String>of());
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopHttpCacheBackendTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final Map<String, byte[]> entries = Maps.newHashMap();
+  private HttpServer server;
+  private String baseUrl;
+
+  @Before
+  public void start() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/cache/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String key = exchange.getRequestURI().getPath().substring("/cache/".length());
+        try {
+          // The request body must always be consumed for the connection to be kept alive
+          byte[] body = ByteStreams.toByteArray(exchange.getRequestBody());
+          if ("PUT".equals(exchange.getRequestMethod())) {
+            if (key.startsWith("forbidden")) {
+              exchange.sendResponseHeaders(403, -1);
+            } else {
+              entries.put(key, body);
+              exchange.sendResponseHeaders(201, -1);
+            }
+          } else if (entries.containsKey(key)) {
+            byte[] value = entries.get(key);
+            exchange.sendResponseHeaders(200, value.length);
+            exchange.getResponseBody().write(value);
+          } else {
+            exchange.sendResponseHeaders(404, -1);
+          }
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+    baseUrl = "http://localhost:" + server.getAddress().getPort() + "/cache";
+  }
+
+  @After
+  public void stop() {
+    server.stop(0);
+  }
+
+  @Test
+  public void get_and_put() throws Exception {
+    FxCopHttpCacheBackend backend = new FxCopHttpCacheBackend(baseUrl);
+    File file = new File(tmp.getRoot(), "entry");
+
+    assertThat(backend.get("foo", file)).isFalse();
+    backend.put("foo", write(new byte[] {1, 2, 3}));
+    assertThat(entries.get("foo")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(backend.get("foo", file)).isTrue();
+    assertThat(Files.toByteArray(file)).isEqualTo(new byte[] {1, 2, 3});
+    file.delete();
+    assertThat(new FxCopHttpCacheBackend(baseUrl + "/").get("foo", file)).isTrue();
+    assertThat(Files.toByteArray(file)).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test(expected = IOException.class)
+  public void put_rejected() throws Exception {
+    new FxCopHttpCacheBackend(baseUrl).put("forbidden", write(new byte[] {1}));
+  }
+
+  @Test
+  public void through_result_cache() throws Exception {
+    FxCopResultCacheTest.MemoryBackend local = new FxCopResultCacheTest.MemoryBackend();
+    FxCopResultCache cache = new FxCopResultCache(Arrays.<FxCopCacheBackend>asList(local, new FxCopHttpCacheBackend(baseUrl)));
+
+    entries.put("bar", FxCopResultCacheTest.gzip("<FxCopReport/>"));
+    File reportFile = new File(tmp.getRoot(), "fxcop-report.xml");
+    assertThat(cache.restore("bar", reportFile)).isTrue();
+    assertThat(Files.toString(reportFile, Charsets.UTF_8)).isEqualTo("<FxCopReport/>");
+    assertThat(local.entries.containsKey("bar")).isTrue();
+  }
+
+  private File write(byte[] value) throws IOException {
+    File file = new File(tmp.getRoot(), "value");
+    Files.write(value, file);
+    return file;
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.resources.Resource;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class FxCopIssueAggregatorTest {
+
+  @Test
+  public void test() {
+    FxCopMetrics metrics = new FxCopMetrics(new FxCopConfiguration("cs", "fxcop", "", "", ""));
+    FxCopIssueAggregator aggregator = new FxCopIssueAggregator(metrics);
+
+    Resource file1 = mock(Resource.class);
+    Resource file2 = mock(Resource.class);
+    aggregator.add(file1, "CA1704", "Microsoft.Naming", 75);
+    aggregator.add(file1, "CA1822", "Microsoft.Performance", 95);
+    aggregator.add(file2, "CA1704", "Microsoft.Naming", 75);
+    aggregator.add(file1, "CA1704", null, FxCopIssueTable.NO_CERTAINTY);
+    assertThat(aggregator.issues()).isEqualTo(4);
+
+    SensorContext context = mock(SensorContext.class);
+    aggregator.save(context);
+
+    List<Measure> measures = captureMeasures(context, file1);
+    assertThat(measures.get(0).getMetric()).isSameAs(metrics.issues());
+    assertThat(measures.get(0).getValue()).isEqualTo(3.0);
+    assertThat(measures.get(1).getMetric()).isSameAs(metrics.issuesByCategory());
+    assertThat(measures.get(1).getData()).isEqualTo("Microsoft.Naming=1;Microsoft.Performance=1;unknown=1");
+    assertThat(measures.get(2).getMetric()).isSameAs(metrics.issuesByRule());
+    assertThat(measures.get(2).getData()).isEqualTo("CA1704=2;CA1822=1");
+    assertThat(measures.get(3).getMetric()).isSameAs(metrics.issuesByCertainty());
+    assertThat(measures.get(3).getData()).isEqualTo("75=1;95=1;unknown=1");
+
+    measures = captureMeasures(context, file2);
+    assertThat(measures.get(0).getValue()).isEqualTo(1.0);
+    assertThat(measures.get(1).getData()).isEqualTo("Microsoft.Naming=1");
+    assertThat(measures.get(2).getData()).isEqualTo("CA1704=1");
+    assertThat(measures.get(3).getData()).isEqualTo("75=1");
+
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(context, Mockito.times(4)).saveMeasure(captor.capture());
+    measures = captor.getAllValues();
+    assertThat(measures.get(0).getValue()).isEqualTo(4.0);
+    assertThat(measures.get(1).getData()).isEqualTo("Microsoft.Naming=2;Microsoft.Performance=1;unknown=1");
+    assertThat(measures.get(2).getData()).isEqualTo("CA1704=3;CA1822=1");
+    assertThat(measures.get(3).getData()).isEqualTo("75=2;95=1;unknown=1");
+  }
+
+  @Test
+  public void no_issues() {
+    FxCopIssueAggregator aggregator = new FxCopIssueAggregator(new FxCopMetrics(new FxCopConfiguration("cs", "fxcop", "", "", "")));
+    SensorContext context = mock(SensorContext.class);
+    aggregator.save(context);
+
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(context, Mockito.times(4)).saveMeasure(captor.capture());
+    assertThat(captor.getAllValues().get(0).getValue()).isEqualTo(0.0);
+    assertThat(captor.getAllValues().get(1).getData()).isEmpty();
+  }
+
+  private static List<Measure> captureMeasures(SensorContext context, Resource file) {
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(context, Mockito.times(4)).saveMeasure(Mockito.eq(file), captor.capture());
+    return captor.getAllValues();
+  }
+
+}
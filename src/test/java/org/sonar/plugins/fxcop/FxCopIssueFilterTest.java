@@ -0,0 +1,96 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopIssueFilterTest {
+
+  @Test
+  public void accept_all_by_default() {
+    FxCopIssueFilter filter = new FxCopIssueFilter();
+    assertThat(filter.isLocationRequired()).isFalse();
+    assertThat(filter.acceptRule("Foo", null)).isTrue();
+    assertThat(filter.acceptRule("Foo", "CA0000")).isTrue();
+    assertThat(filter.acceptLocation(null, null, null)).isTrue();
+    assertThat(filter.acceptIssue(0, "Informational")).isTrue();
+    assertThat(filter.acceptIssue(null, null)).isTrue();
+  }
+
+  @Test
+  public void certainty_and_level() {
+    FxCopIssueFilter filter = new FxCopIssueFilter().setMinimumCertainty(80);
+    assertThat(filter.acceptIssue(95, "Warning")).isTrue();
+    assertThat(filter.acceptIssue(80, "Warning")).isTrue();
+    assertThat(filter.acceptIssue(75, "Error")).isFalse();
+    assertThat(filter.acceptIssue(null, "Error")).isTrue();
+
+    filter.setLevels(ImmutableSet.of("CriticalError", "Error"));
+    assertThat(filter.acceptIssue(95, "Error")).isTrue();
+    assertThat(filter.acceptIssue(95, "Warning")).isFalse();
+    assertThat(filter.acceptIssue(95, null)).isTrue();
+  }
+
+  @Test
+  public void exclusions() {
+    FxCopIssueFilter filter = new FxCopIssueFilter()
+      .setExclusions(new FxCopPathExclusions(ImmutableList.of("**/*.Designer.cs"), ImmutableList.<String>of()));
+    assertThat(filter.acceptLocation("c:\\MyLibrary", "Form1.Designer.cs", 1)).isFalse();
+    assertThat(filter.acceptLocation("c:\\MyLibrary", "Form1.cs", 1)).isTrue();
+    assertThat(filter.acceptLocation(null, null, null)).isTrue();
+  }
+
+  @Test
+  public void ownership() {
+    File module = new File("Project/Module");
+    FxCopModuleOwnership ownership = new FxCopModuleOwnership(ImmutableList.of(new File("Project"), module));
+    FxCopIssueFilter filter = new FxCopIssueFilter().setOwnership(ownership, module);
+    assertThat(filter.acceptLocation(new File(module, "Sub").getAbsolutePath(), "Class1.cs", 1)).isTrue();
+    assertThat(filter.acceptLocation(new File("Project/Other").getAbsolutePath(), "Class1.cs", 1)).isFalse();
+    assertThat(filter.acceptLocation(null, null, null)).isFalse();
+  }
+
+  @Test
+  public void rules() {
+    FxCopIssueFilter filter = new FxCopIssueFilter().setRuleKeys(ImmutableSet.of("Foo", "CA1000"));
+    assertThat(filter.acceptRule("Foo", null)).isTrue();
+    assertThat(filter.acceptRule("Foo", "CA0000")).isTrue();
+    assertThat(filter.acceptRule("Bar", "CA1000")).isTrue();
+    assertThat(filter.acceptRule("Bar", "CA0000")).isFalse();
+    assertThat(filter.acceptRule("Bar", null)).isFalse();
+  }
+
+  @Test
+  public void location() {
+    FxCopIssueFilter filter = new FxCopIssueFilter().setLocationRequired(true);
+    assertThat(filter.isLocationRequired()).isTrue();
+    assertThat(filter.acceptLocation("path", "file", 1)).isTrue();
+    assertThat(filter.acceptLocation(null, "file", 1)).isFalse();
+    assertThat(filter.acceptLocation("path", null, 1)).isFalse();
+    assertThat(filter.acceptLocation("path", "file", null)).isFalse();
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopIssueIndexTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void write_and_query() throws Exception {
+    FxCopIssueTable table = new FxCopIssueTable(tmp.getRoot(), FxCopIssueTable.UNLIMITED_MEMORY);
+    table.handle(new FxCopIssue(10, "Rule1", "CA1000", "Microsoft.Design", "c:\\project", "Class2.cs", 3, "First", 95, "Error", null));
+    table.handle(new FxCopIssue(20, "Rule2", "c:\\project\\", "Class1.cs", 7, "Second"));
+    table.handle(new FxCopIssue(30, "Rule3", null, null, null, "Unlocated"));
+    table.handle(new FxCopIssue(40, "Rule1", "C:\\Project", "Class2.cs", 1, "Third \u00e9"));
+
+    File file = new File(tmp.getRoot(), "index/" + FxCopIssueIndex.FILE_NAME);
+    FxCopIssueIndex.write(table, file);
+    table.close();
+
+    FxCopIssueIndex index = FxCopIssueIndex.open(file);
+    assertThat(index.files()).isEqualTo(2);
+
+    List<FxCopIssue> issues = index.issues("C:/Project/class2.CS");
+    assertThat(issues).hasSize(2);
+    FxCopIssue issue = issues.get(0);
+    assertThat(issue.reportLine()).isEqualTo(10);
+    assertThat(issue.ruleKey()).isEqualTo("Rule1");
+    assertThat(issue.checkId()).isEqualTo("CA1000");
+    assertThat(issue.category()).isEqualTo("Microsoft.Design");
+    assertThat(issue.path()).isEqualTo("c:\\project");
+    assertThat(issue.file()).isEqualTo("Class2.cs");
+    assertThat(issue.line()).isEqualTo(3);
+    assertThat(issue.message()).isEqualTo("First");
+    assertThat(issue.certainty()).isEqualTo(95);
+    assertThat(issue.level()).isEqualTo("Error");
+    assertThat(issues.get(1).message()).isEqualTo("Third \u00e9");
+
+    issue = index.issues("c:\\project\\Class1.cs").get(0);
+    assertThat(issue.message()).isEqualTo("Second");
+    assertThat(issue.checkId()).isNull();
+    assertThat(issue.certainty()).isNull();
+
+    assertThat(index.issues("c:\\project\\Class3.cs")).isEmpty();
+    assertThat(index.issues("")).isEmpty();
+  }
+
+  @Test
+  public void empty() throws Exception {
+    FxCopIssueTable table = new FxCopIssueTable(tmp.getRoot(), FxCopIssueTable.UNLIMITED_MEMORY);
+    File file = new File(tmp.getRoot(), FxCopIssueIndex.FILE_NAME);
+    FxCopIssueIndex.write(table, file);
+    table.close();
+
+    FxCopIssueIndex index = FxCopIssueIndex.open(file);
+    assertThat(index.files()).isEqualTo(0);
+    assertThat(index.issues("Class1.cs")).isEmpty();
+  }
+
+  @Test
+  public void rewrite_interleaved_files() throws Exception {
+    File file = new File(tmp.getRoot(), FxCopIssueIndex.FILE_NAME);
+    Files.write("previous", file, Charsets.UTF_8);
+
+    // Larger than the write buffer, with the records of each file scattered across the report
+    FxCopIssueTable table = new FxCopIssueTable(tmp.getRoot(), FxCopIssueTable.UNLIMITED_MEMORY);
+    String message = Strings.repeat("Message ", 100);
+    for (int i = 0; i < 3000; i++) {
+      table.handle(new FxCopIssue(i, "Rule1", "c:\\project", "Class" + (i % 3) + ".cs", i, message + i));
+    }
+    FxCopIssueIndex.write(table, file);
+    table.close();
+
+    assertThat(new File(tmp.getRoot(), FxCopIssueIndex.FILE_NAME + ".tmp").exists()).isFalse();
+    FxCopIssueIndex index = FxCopIssueIndex.open(file);
+    assertThat(index.files()).isEqualTo(3);
+    List<FxCopIssue> issues = index.issues("c:\\project\\Class1.cs");
+    assertThat(issues).hasSize(1000);
+    for (int i = 0; i < issues.size(); i++) {
+      assertThat(issues.get(i).reportLine()).isEqualTo(3 * i + 1);
+      assertThat(issues.get(i).message()).isEqualTo(message + (3 * i + 1));
+    }
+  }
+
+  @Test
+  public void normalize() {
+    assertThat(FxCopIssueIndex.normalize("C:\\Project\\\\Class1.cs")).isEqualTo("c:/project/class1.cs");
+  }
+
+  @Test
+  public void utf8_length() {
+    for (String value : new String[] {"", "Class1.cs", "caf\u00e9", "\u4e2d\u6587", "\ud83d\ude00", "unpaired \ud83d", "\ude00 unpaired"}) {
+      assertThat(FxCopIssueIndex.utf8Length(value)).as(value).isEqualTo(value.getBytes(Charsets.UTF_8).length);
+    }
+  }
+
+}
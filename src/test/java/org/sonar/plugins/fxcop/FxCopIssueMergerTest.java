@@ -0,0 +1,70 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopIssueMergerTest {
+
+  @Test
+  public void merge() {
+    final List<FxCopIssue> issues = Lists.newArrayList();
+    FxCopIssueMerger merger = new FxCopIssueMerger(new FxCopIssueHandler() {
+      @Override
+      public void handle(FxCopIssue issue) {
+        issues.add(issue);
+      }
+    }, 2);
+
+    FxCopIssue first = new FxCopIssue(1, "CA1000", "c:\\src", "Class1.cs", 1, "message");
+    FxCopIssue second = new FxCopIssue(2, "CA1000", "c:\\src", "Class1.cs", 2, "message");
+    FxCopIssue third = new FxCopIssue(3, "CA1000", null, null, null, "message");
+
+    merger.handle(first);
+    merger.handle(second);
+    merger.handle(third);
+    merger.handle(new FxCopIssue(10, "CA1000", "C:/SRC/", "class1.cs", 1, "message"));
+    merger.handle(new FxCopIssue(20, "CA1000", "c:\\src", "Class1.cs", 2, "message"));
+    merger.handle(new FxCopIssue(30, "CA1000", null, null, null, "message"));
+
+    assertThat(issues).containsExactly(first, second, third);
+    assertThat(merger.duplicates()).isEqualTo(3);
+  }
+
+  @Test
+  public void fingerprint() {
+    long fingerprint = FxCopIssueMerger.fingerprint("CA1000", "c:\\src", "Class1.cs", 1, "message");
+    assertThat(FxCopIssueMerger.fingerprint("CA1000", "c:/src/", "class1.cs", 1, "message")).isEqualTo(fingerprint);
+
+    assertThat(FxCopIssueMerger.fingerprint("CA1001", "c:\\src", "Class1.cs", 1, "message")).isNotEqualTo(fingerprint);
+    assertThat(FxCopIssueMerger.fingerprint("CA1000", "c:\\src2", "Class1.cs", 1, "message")).isNotEqualTo(fingerprint);
+    assertThat(FxCopIssueMerger.fingerprint("CA1000", "c:\\src", "Class2.cs", 1, "message")).isNotEqualTo(fingerprint);
+    assertThat(FxCopIssueMerger.fingerprint("CA1000", "c:\\src", "Class1.cs", 2, "message")).isNotEqualTo(fingerprint);
+    assertThat(FxCopIssueMerger.fingerprint("CA1000", "c:\\src", "Class1.cs", null, "message")).isNotEqualTo(fingerprint);
+    assertThat(FxCopIssueMerger.fingerprint("CA1000", "c:\\src", "Class1.cs", 1, "Message")).isNotEqualTo(fingerprint);
+    assertThat(FxCopIssueMerger.fingerprint("CA1000", "c:\\srcClass1.cs", "", 1, "message")).isNotEqualTo(fingerprint);
+  }
+
+}
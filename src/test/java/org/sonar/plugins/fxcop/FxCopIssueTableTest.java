@@ -0,0 +1,255 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopIssueTableTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test() {
+    FxCopIssueTable table = new FxCopIssueTable();
+    assertThat(table.size()).isEqualTo(0);
+    assertThat(table.cursor().next()).isFalse();
+
+    table.add(1, "CA1000", "path", "file", 12, "First message");
+    table.handle(new FxCopIssue(2, "CA2000", null, null, null, "Second message é中"));
+    table.add(3, "CA1000", "path", "file", 0, "");
+    table.handle(new FxCopIssue(4, "CA1000", "CA1000", "Microsoft.Design", null, null, null, "Fourth message", 95, "Error", null));
+    assertThat(table.size()).isEqualTo(4);
+
+    FxCopIssueTable.Cursor cursor = table.cursor();
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.reportLine()).isEqualTo(1);
+    assertThat(cursor.ruleKey()).isEqualTo("CA1000");
+    assertThat(cursor.path()).isEqualTo("path");
+    assertThat(cursor.file()).isEqualTo("file");
+    assertThat(cursor.hasLine()).isTrue();
+    assertThat(cursor.line()).isEqualTo(12);
+    assertThat(cursor.message()).isEqualTo("First message");
+    assertThat(cursor.checkId()).isNull();
+    assertThat(cursor.category()).isNull();
+    assertThat(cursor.certainty()).isEqualTo(FxCopIssueTable.NO_CERTAINTY);
+    assertThat(cursor.level()).isNull();
+
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.reportLine()).isEqualTo(2);
+    assertThat(cursor.ruleKey()).isEqualTo("CA2000");
+    assertThat(cursor.path()).isNull();
+    assertThat(cursor.file()).isNull();
+    assertThat(cursor.hasLine()).isFalse();
+    assertThat(cursor.line()).isEqualTo(FxCopIssueTable.NO_LINE);
+    assertThat(cursor.message()).isEqualTo("Second message é中");
+
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.line()).isEqualTo(0);
+    assertThat(cursor.message()).isEmpty();
+
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.checkId()).isEqualTo("CA1000");
+    assertThat(cursor.category()).isEqualTo("Microsoft.Design");
+    assertThat(cursor.certainty()).isEqualTo(95);
+    assertThat(cursor.level()).isEqualTo("Error");
+    assertThat(cursor.next()).isFalse();
+    assertThat(cursor.next()).isFalse();
+
+    FxCopIssue issue = table.get(1);
+    assertThat(issue.reportLine()).isEqualTo(2);
+    assertThat(issue.ruleKey()).isEqualTo("CA2000");
+    assertThat(issue.path()).isNull();
+    assertThat(issue.line()).isNull();
+    assertThat(issue.message()).isEqualTo("Second message é中");
+
+    issue = table.get(2);
+    assertThat(issue.line()).isEqualTo(0);
+
+    issue = table.get(3);
+    assertThat(issue.checkId()).isEqualTo("CA1000");
+    assertThat(issue.category()).isEqualTo("Microsoft.Design");
+    assertThat(issue.certainty()).isEqualTo(95);
+    assertThat(issue.level()).isEqualTo("Error");
+  }
+
+  @Test
+  public void context() throws Exception {
+    FxCopCodeElement type = new FxCopCodeElement(FxCopCodeElement.Kind.TYPE, "Class1", null);
+    FxCopCodeElement member = new FxCopCodeElement(FxCopCodeElement.Kind.MEMBER, "#Add()", type);
+
+    FxCopIssueTable table = new FxCopIssueTable(tmp.newFolder(), 100, 1);
+    table.handle(new FxCopIssue(1, "CA1000", null, null, null, null, null, "First message", null, null, type));
+    table.handle(new FxCopIssue(2, "CA1000", null, null, null, null, null, "Second message", null, null, member));
+    table.handle(new FxCopIssue(3, "CA1000", null, null, null, null, null, "Third message", null, null, member));
+    table.add(4, "CA1000", null, null, null, "Fourth message");
+    assertThat(table.spilledSegments()).isGreaterThan(0);
+
+    FxCopIssueTable.Cursor cursor = table.cursor();
+    cursor.next();
+    assertThat(cursor.context()).isSameAs(type);
+    cursor.next();
+    assertThat(cursor.context()).isSameAs(member);
+    cursor.next();
+    assertThat(cursor.issue().context()).isSameAs(member);
+    cursor.next();
+    assertThat(cursor.context()).isNull();
+
+    table.close();
+  }
+
+  @Test
+  public void grow() {
+    FxCopIssueTable table = new FxCopIssueTable();
+    for (int i = 0; i < 10000; i++) {
+      table.add(i, "CA" + (i % 10), "path" + (i % 3), "File" + (i % 7) + ".cs", i, "Message number " + i);
+    }
+    assertThat(table.size()).isEqualTo(10000);
+
+    FxCopIssueTable.Cursor cursor = table.cursor();
+    for (int i = 0; i < 10000; i++) {
+      assertThat(cursor.next()).isTrue();
+      assertThat(cursor.reportLine()).isEqualTo(i);
+      assertThat(cursor.ruleKey()).isEqualTo("CA" + (i % 10));
+      assertThat(cursor.path()).isEqualTo("path" + (i % 3));
+      assertThat(cursor.file()).isEqualTo("File" + (i % 7) + ".cs");
+      assertThat(cursor.line()).isEqualTo(i);
+      assertThat(cursor.message()).isEqualTo("Message number " + i);
+    }
+    assertThat(cursor.next()).isFalse();
+  }
+
+  @Test
+  public void spill() throws Exception {
+    File spillDirectory = tmp.newFolder();
+    FxCopIssueTable table = new FxCopIssueTable(spillDirectory, 30000, 1);
+    for (int i = 0; i < 1000; i++) {
+      table.add(i, "CA" + (i % 10), i % 5 == 0 ? null : "path" + (i % 3), "File" + (i % 7) + ".cs", i % 4 == 0 ? null : i, "Message number " + i);
+    }
+    assertThat(table.size()).isEqualTo(1000);
+    assertThat(table.spilledSegments()).isGreaterThan(1);
+    assertThat(spillDirectory.listFiles()).hasSize(table.spilledSegments());
+
+    FxCopIssueTable.Cursor cursor = table.cursor();
+    for (int i = 0; i < 1000; i++) {
+      assertThat(cursor.next()).isTrue();
+      assertThat(cursor.reportLine()).isEqualTo(i);
+      assertThat(cursor.ruleKey()).isEqualTo("CA" + (i % 10));
+      assertThat(cursor.path()).isEqualTo(i % 5 == 0 ? null : "path" + (i % 3));
+      assertThat(cursor.file()).isEqualTo("File" + (i % 7) + ".cs");
+      assertThat(cursor.hasLine()).isEqualTo(i % 4 != 0);
+      assertThat(cursor.message()).isEqualTo("Message number " + i);
+    }
+    assertThat(cursor.next()).isFalse();
+
+    assertThat(table.get(0).line()).isNull();
+    assertThat(table.get(999).line()).isEqualTo(999);
+    assertThat(table.get(999).message()).isEqualTo("Message number 999");
+
+    table.close();
+    assertThat(table.size()).isEqualTo(0);
+    assertThat(spillDirectory.listFiles()).isEmpty();
+  }
+
+  @Test
+  public void spill_blocks() throws Exception {
+    File spillDirectory = tmp.newFolder();
+    FxCopIssueTable table = new FxCopIssueTable(spillDirectory, 1024 * 1024);
+    for (int i = 0; i < 30000; i++) {
+      table.add(i, "CA" + (i % 10), "path", "File" + (i % 7) + ".cs", i, "Message number " + i);
+    }
+    assertThat(table.spilledSegments()).isGreaterThan(0);
+    assertThat(table.memoryUsage()).isLessThan(1024 * 1024);
+
+    FxCopIssueTable.Cursor cursor = table.cursor();
+    for (int i = 0; i < 30000; i++) {
+      assertThat(cursor.next()).isTrue();
+      assertThat(cursor.line()).isEqualTo(i);
+      assertThat(cursor.message()).isEqualTo("Message number " + i);
+    }
+    assertThat(cursor.next()).isFalse();
+
+    assertThat(table.get(4095).message()).isEqualTo("Message number 4095");
+    assertThat(table.get(4096).message()).isEqualTo("Message number 4096");
+    assertThat(table.get(10).message()).isEqualTo("Message number 10");
+
+    table.close();
+    assertThat(spillDirectory.listFiles()).isEmpty();
+  }
+
+  @Test
+  public void spill_with_many_paths() throws Exception {
+    File spillDirectory = tmp.newFolder();
+    FxCopIssueTable table = new FxCopIssueTable(spillDirectory, 200000);
+    for (int i = 0; i < 5000; i++) {
+      table.add(i, "CA1000", "path" + i, "File" + i + ".cs", i, "Message number " + i);
+    }
+    assertThat(table.spilledSegments()).isEqualTo(1);
+    assertThat(spillDirectory.listFiles()).hasSize(1);
+
+    FxCopIssueTable.Cursor cursor = table.cursor();
+    for (int i = 0; i < 5000; i++) {
+      assertThat(cursor.next()).isTrue();
+      assertThat(cursor.path()).isEqualTo("path" + i);
+      assertThat(cursor.message()).isEqualTo("Message number " + i);
+    }
+    assertThat(cursor.next()).isFalse();
+
+    assertThat(table.get(4095).file()).isEqualTo("File4095.cs");
+    assertThat(table.get(4999).file()).isEqualTo("File4999.cs");
+    assertThat(table.get(1).file()).isEqualTo("File1.cs");
+
+    table.close();
+    assertThat(spillDirectory.listFiles()).isEmpty();
+  }
+
+  @Test
+  public void memory_usage() {
+    FxCopIssueTable table = new FxCopIssueTable();
+    long empty = table.memoryUsage();
+    assertThat(empty).isGreaterThan(0);
+
+    table.add(1, "CA1000", "path", "File.cs", 1, "Message");
+    long interned = table.memoryUsage();
+    assertThat(interned).isGreaterThan(empty);
+
+    table.add(2, "CA1000", "path", "File.cs", 2, "Message");
+    assertThat(table.memoryUsage()).isEqualTo(interned);
+
+    table.handle(new FxCopIssue(3, "CA1000", null, null, null, null, null, "Message", null, null,
+      new FxCopCodeElement(FxCopCodeElement.Kind.TYPE, "Class1", null)));
+    assertThat(table.memoryUsage()).isGreaterThan(interned);
+  }
+
+  @Test
+  public void parse_into_table() {
+    FxCopIssueTable table = new FxCopIssueTable();
+    new FxCopReportParser().parse(new File("src/test/resources/FxCopReportParserTest/valid.xml"), new FxCopIssueFilter(), table);
+    assertThat(table.size()).isEqualTo(5);
+    assertThat(table.get(2).message()).isEqualTo("In method 'Class1.Add(int, int)', consider providing a more meaningful name than parameter name 'a'.");
+  }
+
+}
@@ -42,6 +42,19 @@ public class FxCopIssueTest {
     assertThat(issue.file()).isEqualTo("foo");
     assertThat(issue.line()).isEqualTo(1);
     assertThat(issue.message()).isEqualTo("bar");
+    assertThat(issue.checkId()).isNull();
+    assertThat(issue.category()).isNull();
+    assertThat(issue.certainty()).isNull();
+    assertThat(issue.level()).isNull();
+    assertThat(issue.context()).isNull();
+
+    FxCopCodeElement context = new FxCopCodeElement(FxCopCodeElement.Kind.TYPE, "Class1", null);
+    issue = new FxCopIssue(42, "CA1000", "MyCheckId", "Microsoft.Design", null, "foo", 1, "bar", 95, "Error", context);
+    assertThat(issue.checkId()).isEqualTo("MyCheckId");
+    assertThat(issue.category()).isEqualTo("Microsoft.Design");
+    assertThat(issue.certainty()).isEqualTo(95);
+    assertThat(issue.level()).isEqualTo("Error");
+    assertThat(issue.context()).isSameAs(context);
   }
 
 }
@@ -0,0 +1,299 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FxCopJobQueueTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void publish_claim_complete() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    Files.write("<RuleSet />", rulesetFile, Charsets.UTF_8);
+
+    FxCopJobQueue queue = new FxCopJobQueue(tmp.newFolder("queue"));
+    assertThat(queue.hasPendingJobs()).isFalse();
+    assertThat(queue.claim()).isNull();
+
+    String id1 = queue.publish("MyLibrary.dll", rulesetFile);
+    String id2 = queue.publish("MyOtherLibrary.dll", rulesetFile);
+    assertThat(id1).isNotEqualTo(id2);
+    assertThat(queue.hasPendingJobs()).isTrue();
+
+    // Another queue instance on the same directory, as used by another process
+    FxCopJobQueue otherQueue = new FxCopJobQueue(new File(tmp.getRoot(), "queue"));
+    FxCopJobQueue.Job job = otherQueue.claim();
+    assertThat(job.id()).isEqualTo(id1);
+    assertThat(job.assembly()).isEqualTo("MyLibrary.dll");
+    assertThat(Files.toString(job.rulesetFile(), Charsets.UTF_8)).isEqualTo("<RuleSet />");
+
+    Files.write("<FxCopReport />", job.reportFile(), Charsets.UTF_8);
+    otherQueue.complete(job);
+
+    assertThat(queue.claim().id()).isEqualTo(id2);
+    assertThat(queue.claim()).isNull();
+    assertThat(queue.hasPendingJobs()).isFalse();
+  }
+
+  @Test
+  public void claim_own() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory);
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+    assertThat(id).startsWith(queue.runId() + "-");
+
+    FxCopJobQueue otherQueue = new FxCopJobQueue(queueDirectory);
+    otherQueue.publish("MyOtherLibrary.dll", rulesetFile);
+    assertThat(queue.claimOwn().id()).isEqualTo(id);
+    assertThat(queue.claimOwn()).isNull();
+    assertThat(otherQueue.claimOwn().assembly()).isEqualTo("MyOtherLibrary.dll");
+
+    queue.close();
+    otherQueue.close();
+  }
+
+  @Test
+  public void expired_claim() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory, 60000);
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+
+    FxCopJobQueue.Job job = queue.claim();
+    assertThat(queue.claim()).isNull();
+
+    // The worker stopped renewing its claim
+    File claimedDirectory = new File(queueDirectory, queue.runId() + "/claimed");
+    File claimedFile = claimedDirectory.listFiles()[0];
+    assertThat(claimedFile.setLastModified(System.currentTimeMillis() - 120000)).isTrue();
+    FxCopJobQueue.Job reclaimedJob = new FxCopJobQueue(queueDirectory, 60000).claim();
+    assertThat(reclaimedJob.id()).isEqualTo(id);
+    assertThat(reclaimedJob.rulesetFile()).isEqualTo(job.rulesetFile());
+    assertThat(reclaimedJob.reportFile()).isNotEqualTo(job.reportFile());
+    assertThat(claimedFile.exists()).isFalse();
+    File reclaimedFile = claimedDirectory.listFiles()[0];
+    assertThat(System.currentTimeMillis() - reclaimedFile.lastModified()).isLessThan(60000);
+
+    queue.close();
+  }
+
+  @Test
+  public void late_completion_of_expired_claim() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory, 60000);
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+
+    FxCopJobQueue.Job lateJob = queue.claim();
+    File claimedDirectory = new File(queueDirectory, queue.runId() + "/claimed");
+    assertThat(claimedDirectory.listFiles()[0].setLastModified(System.currentTimeMillis() - 120000)).isTrue();
+    FxCopJobQueue otherQueue = new FxCopJobQueue(queueDirectory, 60000);
+    FxCopJobQueue.Job job = otherQueue.claim();
+    assertThat(job.id()).isEqualTo(id);
+
+    Files.write("<FxCopReport>late</FxCopReport>", lateJob.reportFile(), Charsets.UTF_8);
+    Files.write("<FxCopReport>current</FxCopReport>", job.reportFile(), Charsets.UTF_8);
+    queue.complete(lateJob);
+    queue.fail(lateJob, "Late failure");
+    assertThat(lateJob.reportFile().exists()).isFalse();
+    assertThat(new File(queueDirectory, queue.runId() + "/done/" + id + ".xml").exists()).isFalse();
+    assertThat(new File(queueDirectory, queue.runId() + "/failed/" + id + ".txt").exists()).isFalse();
+
+    otherQueue.complete(job);
+    assertThat(Files.toString(new File(queueDirectory, queue.runId() + "/done/" + id + ".xml"), Charsets.UTF_8)).isEqualTo("<FxCopReport>current</FxCopReport>");
+    assertThat(claimedDirectory.listFiles()).isEmpty();
+
+    queue.close();
+  }
+
+  @Test
+  public void abandoned_run() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory, 60000);
+    queue.publish("MyLibrary.dll", rulesetFile);
+
+    // The coordinator stopped renewing the lease of its run
+    File runDirectory = new File(queueDirectory, queue.runId());
+    long expired = System.currentTimeMillis() - 120000;
+    assertThat(new File(runDirectory, "lease").setLastModified(expired)).isTrue();
+    assertThat(runDirectory.setLastModified(expired)).isTrue();
+
+    assertThat(new FxCopJobQueue(queueDirectory, 60000).claim()).isNull();
+    assertThat(runDirectory.exists()).isFalse();
+  }
+
+  @Test
+  public void close() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory);
+    queue.publish("MyLibrary.dll", rulesetFile);
+    queue.publish("MyOtherLibrary.dll", rulesetFile);
+    queue.claim();
+
+    queue.close();
+    assertThat(queueDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void concurrent_claims() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    final FxCopJobQueue queue = new FxCopJobQueue(tmp.newFolder("queue"));
+    for (int i = 0; i < 100; i++) {
+      queue.publish("Assembly" + i + ".dll", rulesetFile);
+    }
+
+    final List<String> claimed = Collections.synchronizedList(Lists.<String>newArrayList());
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          FxCopJobQueue workerQueue = new FxCopJobQueue(new File(tmp.getRoot(), "queue"));
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          FxCopJobQueue.Job job;
+          while ((job = workerQueue.claim()) != null) {
+            claimed.add(job.id());
+          }
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(claimed).hasSize(100);
+    assertThat(ImmutableSet.copyOf(claimed)).hasSize(100);
+  }
+
+  @Test
+  public void await() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    FxCopJobQueue queue = new FxCopJobQueue(tmp.newFolder("queue"));
+    String id1 = queue.publish("MyLibrary.dll", rulesetFile);
+    String id2 = queue.publish("MyOtherLibrary.dll", rulesetFile);
+
+    // A remote worker already completed the first job
+    FxCopJobQueue.Job job = queue.claim();
+    Files.write("<FxCopReport>1</FxCopReport>", job.reportFile(), Charsets.UTF_8);
+    queue.complete(job);
+
+    FxCopWorker localWorker = new FxCopWorker(queue, new FakeExecutor(), "FxCopCmd.exe", 0);
+    final List<String> reports = Lists.newArrayList();
+    queue.await(ImmutableList.of(id1, id2), localWorker, 1000, 10, new FxCopJobQueue.ReportHandler() {
+      @Override
+      public void handle(String id, File reportFile) {
+        try {
+          reports.add(id + ": " + Files.toString(reportFile, Charsets.UTF_8));
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    assertThat(reports).containsExactly(id1 + ": <FxCopReport>1</FxCopReport>", id2 + ": MyOtherLibrary.dll");
+  }
+
+  @Test
+  public void await_failure() throws Exception {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("failed: Cannot analyze");
+
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    FxCopJobQueue queue = new FxCopJobQueue(tmp.newFolder("queue"));
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    Mockito.doThrow(new IllegalStateException("Cannot analyze")).when(executor)
+      .execute(Mockito.anyString(), Mockito.anyString(), Mockito.any(File.class), Mockito.any(File.class), Mockito.anyInt(),
+        Mockito.anyBoolean(), Mockito.anyBoolean());
+
+    queue.await(ImmutableList.of(id), new FxCopWorker(queue, executor, "FxCopCmd.exe", 0), 1000, 10, mock(FxCopJobQueue.ReportHandler.class));
+  }
+
+  @Test
+  public void await_timeout() throws Exception {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Timeout while waiting for the FxCop workers to complete 1 jobs.");
+
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    FxCopJobQueue queue = new FxCopJobQueue(tmp.newFolder("queue"));
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+    // Claimed by a worker which never completes it
+    queue.claim();
+
+    FxCopWorker localWorker = mock(FxCopWorker.class);
+    when(localWorker.runOne()).thenReturn(false);
+    queue.await(ImmutableList.of(id), localWorker, 50, 10, mock(FxCopJobQueue.ReportHandler.class));
+  }
+
+  /**
+   * Writes the assembly name as report.
+   */
+  static class FakeExecutor extends FxCopExecutor {
+
+    @Override
+    public void execute(String executable, String assemblies, File rulesetFile, File reportFile, int timeout, boolean compressReport,
+      boolean ignoreGeneratedCode) {
+      try {
+        Files.write(assemblies, reportFile, Charsets.UTF_8);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+  }
+
+}
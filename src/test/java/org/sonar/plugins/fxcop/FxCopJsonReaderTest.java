@@ -0,0 +1,145 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.StringReader;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopJsonReaderTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void tokens() {
+    FxCopJsonReader reader = reader("{\"a\": [1, -2.5e1, true, false, null, \"x\"], \"b\": {}, \"c\": []}");
+
+    reader.beginObject();
+    assertThat(reader.nextName()).isEqualTo("a");
+    reader.beginArray();
+    assertThat(reader.nextInt()).isEqualTo(1);
+    assertThat(reader.peek()).isEqualTo(FxCopJsonReader.Token.NUMBER);
+    assertThat(reader.nextDouble()).isEqualTo(-25.0);
+    assertThat(reader.nextBoolean()).isTrue();
+    assertThat(reader.nextBoolean()).isFalse();
+    reader.nextNull();
+    assertThat(reader.nextString()).isEqualTo("x");
+    assertThat(reader.hasNext()).isFalse();
+    reader.endArray();
+    assertThat(reader.nextName()).isEqualTo("b");
+    reader.beginObject();
+    assertThat(reader.hasNext()).isFalse();
+    reader.endObject();
+    assertThat(reader.nextName()).isEqualTo("c");
+    reader.beginArray();
+    reader.endArray();
+    reader.endObject();
+    assertThat(reader.peek()).isEqualTo(FxCopJsonReader.Token.END_DOCUMENT);
+  }
+
+  @Test
+  public void escapes() {
+    FxCopJsonReader reader = reader("\uFEFF[\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\\u20AC\"]");
+    reader.beginArray();
+    assertThat(reader.nextString()).isEqualTo("a\"b\\c/d\n\t\u00e9\u20AC");
+    reader.endArray();
+  }
+
+  @Test
+  public void long_strings() {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      value.append("abc\\\"");
+    }
+    FxCopJsonReader reader = reader("[\"" + value + "\", \"" + value.toString().replace("\\\"", "") + "\"]");
+    reader.beginArray();
+    assertThat(reader.nextString()).hasSize(40000);
+    assertThat(reader.nextString()).hasSize(30000);
+    reader.endArray();
+  }
+
+  @Test
+  public void skip_value() {
+    FxCopJsonReader reader = reader("{\"skipped\": {\"a\": [1, {\"b\": \"\\\"}\"}], \"c\": null}, \"kept\": 1}");
+    reader.beginObject();
+    assertThat(reader.nextName()).isEqualTo("skipped");
+    reader.skipValue();
+    assertThat(reader.nextName()).isEqualTo("kept");
+    assertThat(reader.nextInt()).isEqualTo(1);
+    reader.endObject();
+  }
+
+  @Test
+  public void line() {
+    FxCopJsonReader reader = reader("[\n  1,\r\n  {\n  }\n]");
+    reader.beginArray();
+    reader.nextInt();
+    assertThat(reader.line()).isEqualTo(2);
+    reader.beginObject();
+    assertThat(reader.line()).isEqualTo(3);
+    reader.endObject();
+    assertThat(reader.line()).isEqualTo(4);
+  }
+
+  @Test
+  public void unexpected_token() {
+    thrown.expectMessage("Expected BEGIN_OBJECT but was BEGIN_ARRAY at line 2");
+
+    reader("\n[]").beginObject();
+  }
+
+  @Test
+  public void missing_comma() {
+    thrown.expectMessage("Expected ',' or ']' at line 1");
+
+    FxCopJsonReader reader = reader("[1 2]");
+    reader.beginArray();
+    reader.nextInt();
+    reader.nextInt();
+  }
+
+  @Test
+  public void unterminated_string() {
+    thrown.expectMessage("Unterminated string");
+
+    FxCopJsonReader reader = reader("[\"abc");
+    reader.beginArray();
+    reader.skipValue();
+  }
+
+  @Test
+  public void non_integer() {
+    thrown.expectMessage("Expected an integer instead of 1.5");
+
+    FxCopJsonReader reader = reader("[1.5]");
+    reader.beginArray();
+    reader.nextInt();
+  }
+
+  private static FxCopJsonReader reader(String json) {
+    return new FxCopJsonReader(new StringReader(json));
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopLocalCacheBackendTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void get_and_put() throws Exception {
+    FxCopLocalCacheBackend backend = new FxCopLocalCacheBackend(new File(tmp.getRoot(), "cache"), 1000);
+    File file = new File(tmp.getRoot(), "entry");
+
+    assertThat(backend.get("foo", file)).isFalse();
+    backend.put("foo", write(new byte[] {1, 2, 3}));
+    assertThat(backend.get("foo", file)).isTrue();
+    assertThat(Files.toByteArray(file)).isEqualTo(new byte[] {1, 2, 3});
+    backend.put("foo", write(new byte[] {4}));
+    assertThat(backend.get("foo", file)).isTrue();
+    assertThat(Files.toByteArray(file)).isEqualTo(new byte[] {4});
+  }
+
+  @Test
+  public void evict_least_recently_used() throws Exception {
+    File directory = tmp.newFolder("cache");
+    FxCopLocalCacheBackend backend = new FxCopLocalCacheBackend(directory, 25);
+
+    File file = new File(tmp.getRoot(), "entry");
+    backend.put("a", write(new byte[10]));
+    backend.put("b", write(new byte[10]));
+    new File(directory, "a.gz").setLastModified(System.currentTimeMillis() - 20000);
+    new File(directory, "b.gz").setLastModified(System.currentTimeMillis() - 30000);
+    assertThat(backend.get("a", file)).isTrue();
+
+    backend.put("c", write(new byte[10]));
+
+    assertThat(backend.get("a", file)).isTrue();
+    assertThat(backend.get("b", file)).isFalse();
+    assertThat(backend.get("c", file)).isTrue();
+    assertThat(directory.list()).hasSize(2);
+  }
+
+  private File write(byte[] value) throws IOException {
+    File file = new File(tmp.getRoot(), "value");
+    Files.write(value, file);
+    return file;
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopManifestTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void save_and_load() throws Exception {
+    File file = new File(tmp.getRoot(), "manifest.properties");
+
+    FxCopManifest manifest = FxCopManifest.load(file);
+    assertThat(manifest.get("c:\\MyLibrary.dll")).isNull();
+    assertThat(manifest.isUnchanged("c:\\MyLibrary.dll", "foo")).isFalse();
+
+    manifest.put("c:\\MyLibrary.dll", "foo|bar");
+    manifest.put("MyOtherLibrary.dll", "baz");
+    manifest.save(file);
+
+    manifest = FxCopManifest.load(file);
+    assertThat(manifest.get("c:\\MyLibrary.dll")).isEqualTo("foo|bar");
+    assertThat(manifest.isUnchanged("c:\\MyLibrary.dll", "foo|bar")).isTrue();
+    assertThat(manifest.isUnchanged("c:\\MyLibrary.dll", "foo")).isFalse();
+    assertThat(manifest.get("MyOtherLibrary.dll")).isEqualTo("baz");
+  }
+
+  @Test
+  public void invalid() throws Exception {
+    File file = tmp.newFile("manifest.properties");
+    Files.write("foo=\\u00", file, Charsets.ISO_8859_1);
+
+    assertThat(FxCopManifest.load(file).get("foo")).isNull();
+  }
+
+  @Test
+  public void atomic_save() throws Exception {
+    File file = new File(tmp.getRoot(), "manifest.properties");
+    FxCopManifest manifest = new FxCopManifest();
+    manifest.put("MyLibrary.dll", "foo");
+    manifest.save(file);
+    manifest.put("MyLibrary.dll", "bar");
+    manifest.save(file);
+
+    assertThat(FxCopManifest.load(file).get("MyLibrary.dll")).isEqualTo("bar");
+    assertThat(tmp.getRoot().list()).containsOnly("manifest.properties");
+  }
+
+  @Test
+  public void interrupted_before_rename() throws Exception {
+    File file = new File(tmp.getRoot(), "manifest.properties");
+    FxCopManifest manifest = new FxCopManifest();
+    manifest.put("MyLibrary.dll", "foo");
+    manifest.save(file);
+    assertThat(file.renameTo(new File(tmp.getRoot(), "manifest.properties.tmp"))).isTrue();
+
+    assertThat(FxCopManifest.load(file).get("MyLibrary.dll")).isEqualTo("foo");
+  }
+
+}
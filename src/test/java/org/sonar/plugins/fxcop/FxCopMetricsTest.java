@@ -0,0 +1,44 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import org.junit.Test;
+import org.sonar.api.measures.Metric;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopMetricsTest {
+
+  @Test
+  public void test() {
+    FxCopMetrics metrics = new FxCopMetrics(new FxCopConfiguration("cs", "fxcop", "", "", ""));
+
+    assertThat(metrics.issues().getKey()).isEqualTo("cs_fxcop_issues");
+    assertThat(metrics.issues().getType()).isEqualTo(Metric.ValueType.INT);
+    assertThat(metrics.issuesByCategory().getKey()).isEqualTo("cs_fxcop_issues_by_category");
+    assertThat(metrics.issuesByRule().getKey()).isEqualTo("cs_fxcop_issues_by_rule");
+    assertThat(metrics.issuesByCertainty().getKey()).isEqualTo("cs_fxcop_issues_by_certainty");
+    assertThat(metrics.issuesByCertainty().getType()).isEqualTo(Metric.ValueType.DATA);
+    assertThat(metrics.getMetrics()).containsOnly(metrics.issues(), metrics.issuesByCategory(), metrics.issuesByRule(), metrics.issuesByCertainty());
+
+    assertThat(new FxCopMetrics(new FxCopConfiguration("vbnet", "fxcop-vbnet", "", "", "")).issues().getKey()).isEqualTo("vbnet_fxcop_issues");
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopModuleOwnershipTest {
+
+  private final File root = new File("target/FxCopModuleOwnershipTest/Project");
+  private final File module = new File(root, "Module");
+  private final File nested = new File(module, "Nested");
+  private final FxCopModuleOwnership ownership = new FxCopModuleOwnership(ImmutableList.of(root, module, nested));
+
+  @Test
+  public void deepest_module_owns() {
+    assertThat(ownership.owns(root, root.getAbsolutePath(), "Class1.cs")).isTrue();
+    assertThat(ownership.owns(module, root.getAbsolutePath(), "Class1.cs")).isFalse();
+
+    String modulePath = new File(module, "Sub").getAbsolutePath();
+    assertThat(ownership.owns(module, modulePath, "Class1.cs")).isTrue();
+    assertThat(ownership.owns(root, modulePath, "Class1.cs")).isFalse();
+
+    assertThat(ownership.owns(nested, nested.getAbsolutePath(), "Class1.cs")).isTrue();
+    assertThat(ownership.owns(module, nested.getAbsolutePath(), "Class1.cs")).isFalse();
+  }
+
+  @Test
+  public void prefix_of_directory_name() {
+    String siblingPath = new File(root, "ModuleSibling").getAbsolutePath();
+    assertThat(ownership.owns(module, siblingPath, "Class1.cs")).isFalse();
+    assertThat(ownership.owns(root, siblingPath, "Class1.cs")).isTrue();
+  }
+
+  @Test
+  public void windows_paths() {
+    FxCopModuleOwnership windows = new FxCopModuleOwnership(ImmutableList.of(new File("/C:/Project"), new File("/C:/Project/Module")));
+    assertThat(windows.owner("/c:\\PROJECT\\Module\\\\Class1.cs")).isEqualTo("/c:/project/module/");
+    assertThat(windows.owner("/C:\\Project\\Class1.cs")).isEqualTo("/c:/project/");
+  }
+
+  @Test
+  public void outside_of_any_module() {
+    assertThat(ownership.owner(new File("target/Elsewhere/Class1.cs").getAbsolutePath())).isNull();
+    assertThat(ownership.owns(root, null, "Class1.cs")).isFalse();
+    assertThat(ownership.owns(root, root.getAbsolutePath(), null)).isFalse();
+  }
+
+}
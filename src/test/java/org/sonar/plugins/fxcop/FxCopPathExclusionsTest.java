@@ -0,0 +1,82 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopPathExclusionsTest {
+
+  private static final List<String> NONE = ImmutableList.of();
+
+  @Test
+  public void empty() {
+    FxCopPathExclusions exclusions = new FxCopPathExclusions(NONE, NONE);
+    assertThat(exclusions.isEmpty()).isTrue();
+    assertThat(exclusions.isExcluded("c:\\MyLibrary", "Class1.cs")).isFalse();
+  }
+
+  @Test
+  public void globs() {
+    FxCopPathExclusions exclusions = new FxCopPathExclusions(ImmutableList.of("**/*.Designer.cs", "**/obj/**", "c:/Legacy/Class?.cs"), NONE);
+    assertThat(exclusions.isEmpty()).isFalse();
+
+    assertThat(exclusions.isExcluded("c:\\MyLibrary\\Properties", "Resources.designer.cs")).isTrue();
+    assertThat(exclusions.isExcluded("c:\\MyLibrary\\obj\\Debug", "TemporaryGeneratedFile.cs")).isTrue();
+    assertThat(exclusions.isExcluded("C:\\Legacy", "Class1.cs")).isTrue();
+    assertThat(exclusions.isExcluded(null, "Form1.Designer.cs")).isTrue();
+
+    assertThat(exclusions.isExcluded("c:\\MyLibrary", "Class1.cs")).isFalse();
+    assertThat(exclusions.isExcluded("c:\\MyLibrary\\objects", "Class1.cs")).isFalse();
+    assertThat(exclusions.isExcluded("c:\\Legacy", "Class10.cs")).isFalse();
+    assertThat(exclusions.isExcluded("c:\\Legacy\\Sub", "Class1.cs")).isFalse();
+    assertThat(exclusions.isExcluded("c:\\MyLibrary", null)).isFalse();
+  }
+
+  @Test
+  public void regexes() {
+    FxCopPathExclusions exclusions = new FxCopPathExclusions(NONE, ImmutableList.of(".*/Generated/.*\\.cs"));
+    assertThat(exclusions.isExcluded("c:\\MyLibrary\\Generated", "Proxy.cs")).isTrue();
+    assertThat(exclusions.isExcluded("c:\\MyLibrary\\Generated", "Proxy.vb")).isFalse();
+  }
+
+  @Test
+  public void generated_code() {
+    FxCopPathExclusions exclusions = new FxCopPathExclusions(FxCopPathExclusions.GENERATED_CODE_GLOBS, NONE);
+    assertThat(exclusions.isExcluded("c:\\MyApp\\Service References\\Weather", "Reference.cs")).isTrue();
+    assertThat(exclusions.isExcluded("c:\\MyApp\\obj\\Debug", "MainWindow.g.i.cs")).isTrue();
+    assertThat(exclusions.isExcluded("c:\\MyApp", "MainWindow.xaml.cs")).isFalse();
+  }
+
+  @Test
+  public void glob_to_regex() {
+    assertThat(FxCopPathExclusions.globToRegex("**/a?*.cs")).isEqualTo("(?:.*/)?\\Qa\\E[^/][^/]*\\Q.cs\\E");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalid_regex() {
+    new FxCopPathExclusions(NONE, ImmutableList.of("("));
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Synthetic reports and measurements shared by the *PerformanceTest classes, which only run in the "performance" Maven profile.
+ */
+final class FxCopPerformance {
+
+  static final int RULES = 10;
+
+  private FxCopPerformance() {
+  }
+
+  /**
+   * Writes a report with the given number of issues, each one on its own member, spread over the given number of source files
+   * in the given directory, and reported by {@link #RULES} rules whose TypeNames are "Rule0", "Rule1"... and CheckIds "CA1000", "CA1001"...
+   */
+  static void writeReport(File file, int issues, int files, File sourceDirectory) {
+    Writer writer = null;
+    try {
+      writer = Files.newWriter(file, Charsets.UTF_8);
+      writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+      writer.write("<FxCopReport Version=\"12.0\">\n <Targets>\n  <Target Name=\"C:\\Synthetic.dll\">\n   <Modules>\n    <Module Name=\"synthetic.dll\">\n");
+      writer.write("     <Namespaces>\n      <Namespace Name=\"Synthetic\">\n       <Types>\n");
+
+      int issuesPerFile = (issues + files - 1) / files;
+      int issue = 0;
+      for (int f = 0; f < files && issue < issues; f++) {
+        writer.write("        <Type Name=\"Class" + f + "\" Kind=\"Class\" Accessibility=\"Public\" ExternallyVisible=\"True\">\n         <Members>\n");
+        for (int m = 0; m < issuesPerFile && issue < issues; m++, issue++) {
+          int rule = issue % RULES;
+          writer.write("          <Member Name=\"#Method" + m + "()\" Kind=\"Method\" Static=\"False\" Accessibility=\"Public\" ExternallyVisible=\"True\">\n");
+          writer.write("           <Messages>\n");
+          writer.write("            <Message TypeName=\"Rule" + rule + "\" Category=\"Microsoft.Design\" CheckId=\"CA" + (1000 + rule)
+            + "\" Status=\"Active\" Created=\"2014-02-26 00:22:14Z\" FixCategory=\"Breaking\" BreaksBuild=\"True\">\n");
+          writer.write("             <Issue Certainty=\"" + (50 + rule * 5) + "\" Level=\"Warning\" Path=\"" + sourceDirectory.getAbsolutePath()
+            + "\" File=\"Class" + f + ".cs\" Line=\"" + (10 + m) + "\">Method " + m + " of Class" + f + " violates rule " + rule + ".</Issue>\n");
+          writer.write("            </Message>\n           </Messages>\n          </Member>\n");
+        }
+        writer.write("         </Members>\n        </Type>\n");
+      }
+
+      writer.write("       </Types>\n      </Namespace>\n     </Namespaces>\n    </Module>\n   </Modules>\n  </Target>\n </Targets>\n</FxCopReport>\n");
+      writer.close();
+    } catch (IOException e) {
+      Closeables.closeQuietly(writer);
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Writes the SARIF 2.1 equivalent of {@link #writeReport(File, int, int, File)}, with the same issues in the same order.
+   */
+  static void writeSarifReport(File file, int issues, int files, File sourceDirectory) {
+    Writer writer = null;
+    try {
+      writer = Files.newWriter(file, Charsets.UTF_8);
+      writer.write("{\n  \"version\": \"2.1.0\",\n  \"runs\": [\n    {\n      \"tool\": {\n        \"driver\": {\n          \"name\": \"FxCop\",\n          \"rules\": [\n");
+      for (int rule = 0; rule < RULES; rule++) {
+        writer.write("            {\n              \"id\": \"CA" + (1000 + rule) + "\",\n              \"name\": \"Rule" + rule
+          + "\",\n              \"properties\": { \"category\": \"Microsoft.Design\" }\n            }" + (rule < RULES - 1 ? "," : "") + "\n");
+      }
+      writer.write("          ]\n        }\n      },\n      \"results\": [\n");
+
+      String directoryUri = sourceDirectory.getAbsoluteFile().toURI().toString();
+      int issuesPerFile = (issues + files - 1) / files;
+      int issue = 0;
+      for (int f = 0; f < files && issue < issues; f++) {
+        for (int m = 0; m < issuesPerFile && issue < issues; m++, issue++) {
+          int rule = issue % RULES;
+          writer.write(issue == 0 ? "        {\n" : "        },\n        {\n");
+          writer.write("          \"ruleId\": \"CA" + (1000 + rule) + "\",\n          \"ruleIndex\": " + rule + ",\n          \"level\": \"warning\",\n");
+          writer.write("          \"rank\": " + (50 + rule * 5) + ".0,\n");
+          writer.write("          \"message\": {\n            \"text\": \"Method " + m + " of Class" + f + " violates rule " + rule + ".\"\n          },\n");
+          writer.write("          \"locations\": [\n            {\n              \"physicalLocation\": {\n");
+          writer.write("                \"artifactLocation\": {\n                  \"uri\": \"" + directoryUri + "Class" + f + ".cs\"\n                },\n");
+          writer.write("                \"region\": {\n                  \"startLine\": " + (10 + m) + ",\n                  \"startColumn\": 5\n                }\n              },\n");
+          writer.write("              \"logicalLocations\": [\n                {\n                  \"fullyQualifiedName\": \"Synthetic.Class" + f + ".Method" + m
+            + "()\",\n                  \"kind\": \"member\"\n                }\n              ]\n            }\n          ]\n");
+        }
+      }
+
+      writer.write((issue == 0 ? "" : "        }\n") + "      ]\n    }\n  ]\n}\n");
+      writer.close();
+    } catch (IOException e) {
+      Closeables.closeQuietly(writer);
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * @return Whether the bytes allocated by the current thread can be measured, which requires a HotSpot JVM
+   */
+  static boolean isAllocationMeasurable() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    return bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+  }
+
+  /**
+   * Runs the given code on the current thread, after a garbage collection to reduce the noise.
+   */
+  static Measurement measure(Runnable runnable) {
+    System.gc();
+    long allocatedBytes = allocatedBytes();
+    long start = System.nanoTime();
+    runnable.run();
+    long nanos = System.nanoTime() - start;
+    return new Measurement(nanos, allocatedBytes() - allocatedBytes);
+  }
+
+  private static long allocatedBytes() {
+    if (!isAllocationMeasurable()) {
+      return 0;
+    }
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  static class Measurement {
+
+    private final long nanos;
+    private final long allocatedBytes;
+
+    Measurement(long nanos, long allocatedBytes) {
+      this.nanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    double issuesPerSecond(int issues) {
+      return issues * 1e9 / nanos;
+    }
+
+    double bytesPerIssue(int issues) {
+      return (double) allocatedBytes / issues;
+    }
+
+    @Override
+    public String toString() {
+      return (nanos / 1000000) + " ms, " + (allocatedBytes / (1024 * 1024)) + " MB allocated";
+    }
+
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class FxCopProjectAnalysisTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private ProjectDefinition root;
+  private ProjectDefinition module1;
+  private ProjectDefinition module2;
+  private FxCopProjectAnalysis analysis;
+
+  @Before
+  public void init() throws Exception {
+    root = ProjectDefinition.create().setKey("root").setBaseDir(tmp.getRoot()).setWorkDir(new File(tmp.getRoot(), ".sonar"));
+    module1 = ProjectDefinition.create().setKey("module1").setBaseDir(tmp.newFolder("Module1"));
+    module2 = ProjectDefinition.create().setKey("module2").setBaseDir(tmp.newFolder("Module2"));
+    root.addSubProject(module1);
+    root.addSubProject(module2);
+    analysis = new FxCopProjectAnalysis(new ProjectReactor(root));
+  }
+
+  @Test
+  public void assemblies() {
+    root.setProperty("assemblyKey", "Shared.dll");
+    module1.setProperty("assemblyKey", "Module1.dll, Shared.dll");
+
+    assertThat(analysis.assemblies("assemblyKey")).containsOnly("Shared.dll", "Module1.dll");
+    assertThat(analysis.assemblies("otherKey")).isEmpty();
+  }
+
+  @Test
+  public void ownership() {
+    FxCopModuleOwnership ownership = analysis.ownership();
+    assertThat(ownership.owns(module1.getBaseDir(), module1.getBaseDir().getAbsolutePath(), "Class1.cs")).isTrue();
+    assertThat(ownership.owns(root.getBaseDir(), module1.getBaseDir().getAbsolutePath(), "Class1.cs")).isFalse();
+    assertThat(ownership.owns(root.getBaseDir(), root.getBaseDir().getAbsolutePath(), "Class1.cs")).isTrue();
+    assertThat(analysis.ownership()).isSameAs(ownership);
+  }
+
+  @Test
+  public void single_execution() {
+    module1.setProperty("assemblyKey", "Module1.dll");
+    module2.setProperty("assemblyKey", "Module2.dll");
+    FxCopResolvedConfiguration conf = conf();
+    FxCopRulesetWriter writer = mock(FxCopRulesetWriter.class);
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    List<String> ruleConfigKeys = ImmutableList.of("CA0000");
+
+    File reportFile = analysis.report(conf, ruleConfigKeys, writer, executor);
+    assertThat(analysis.report(conf, ruleConfigKeys, writer, executor)).isEqualTo(reportFile);
+
+    File rulesetFile = new File(tmp.getRoot(), ".sonar/fxcop-project-cs-fxcop.ruleset");
+    assertThat(reportFile).isEqualTo(new File(tmp.getRoot(), ".sonar/fxcop-project-cs-fxcop-report.xml"));
+    verify(writer).write(ruleConfigKeys, rulesetFile);
+    verify(executor).execute("FxCopCmd.exe", ImmutableList.of("Module1.dll", "Module2.dll"), rulesetFile, reportFile, 0, false);
+  }
+
+  @Test
+  public void failed_execution_fails_every_module() {
+    module1.setProperty("assemblyKey", "Module1.dll");
+    FxCopResolvedConfiguration conf = conf();
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    IllegalStateException failure = new IllegalStateException("FxCopCmd failed");
+    Mockito.doThrow(failure).when(executor)
+      .execute(Mockito.anyString(), Mockito.anyListOf(String.class), Mockito.any(File.class), Mockito.any(File.class), Mockito.anyInt(),
+        Mockito.anyBoolean());
+
+    try {
+      analysis.report(conf, ImmutableList.<String>of(), mock(FxCopRulesetWriter.class), executor);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(failure);
+    }
+
+    thrown.expectMessage("FxCopCmd failed");
+    analysis.report(conf, ImmutableList.<String>of(), mock(FxCopRulesetWriter.class), executor);
+  }
+
+  @Test
+  public void no_assemblies() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The property \"assemblyKey\" must be set on at least one module.");
+
+    analysis.report(conf(), ImmutableList.<String>of(), mock(FxCopRulesetWriter.class), mock(FxCopExecutor.class));
+  }
+
+  private static FxCopResolvedConfiguration conf() {
+    Settings settings = new Settings();
+    settings.setProperty("cmdKey", "FxCopCmd.exe");
+    return FxCopResolvedConfiguration.resolve(new FxCopConfiguration("cs", "cs-fxcop", "assemblyKey", "cmdKey", "timeoutKey"), settings);
+  }
+
+}
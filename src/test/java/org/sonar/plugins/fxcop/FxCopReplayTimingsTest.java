@@ -0,0 +1,61 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopReplayTimingsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void save() throws Exception {
+    FxCopReplayTimings timings = new FxCopReplayTimings(2 * 1024 * 1024);
+    timings.add(TimeUnit.SECONDS.toNanos(2), 0, 10, 1000);
+    timings.add(TimeUnit.MILLISECONDS.toNanos(500), TimeUnit.MILLISECONDS.toNanos(300), 0, 1000);
+    assertThat(timings.iterations()).isEqualTo(2);
+    timings.log();
+
+    File file = new File(tmp.getRoot(), "timings.csv");
+    timings.save(file);
+    List<String> lines = Files.readLines(file, Charsets.UTF_8);
+    assertThat(lines).containsExactly(
+      "iteration,parseMillis,saveMillis,gcMillis,issues,issuesPerSecond,megabytesPerSecond",
+      "1,2000,0,10,1000,500.0,1.0",
+      "2,500,300,0,1000,2000.0,4.0");
+  }
+
+  @Test
+  public void gc_millis() {
+    assertThat(FxCopReplayTimings.gcMillis()).isGreaterThanOrEqualTo(0);
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopReportCompressionTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void plain() throws Exception {
+    assertThat(read(write("report.xml", "<FxCopReport />"))).isEqualTo("<FxCopReport />");
+    assertThat(read(write("short.xml", "<"))).isEqualTo("<");
+    assertThat(read(write("empty.xml", ""))).isEmpty();
+  }
+
+  @Test
+  public void gzip() throws Exception {
+    File file = write("report.xml", "<FxCopReport />");
+    FxCopReportCompression.compress(file);
+
+    byte[] bytes = Files.toByteArray(file);
+    assertThat(bytes[0]).isEqualTo((byte) 0x1F);
+    assertThat(bytes[1]).isEqualTo((byte) 0x8B);
+    assertThat(read(file)).isEqualTo("<FxCopReport />");
+    assertThat(tmp.getRoot().list()).containsOnly("report.xml");
+  }
+
+  @Test
+  public void zstd() throws Exception {
+    File file = tmp.newFile("report.xml.zst");
+    Files.write(new byte[] {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD, 0}, file);
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("zstd-compressed FxCop report");
+    thrown.expectMessage("report.xml.zst");
+    FxCopReportCompression.open(file);
+  }
+
+  private File write(String name, String content) throws Exception {
+    File file = new File(tmp.getRoot(), name);
+    Files.write(content, file, Charsets.UTF_8);
+    return file;
+  }
+
+  private static String read(File file) throws Exception {
+    InputStream stream = FxCopReportCompression.open(file);
+    try {
+      return new String(ByteStreams.toByteArray(stream), Charsets.UTF_8);
+    } finally {
+      stream.close();
+    }
+  }
+
+}
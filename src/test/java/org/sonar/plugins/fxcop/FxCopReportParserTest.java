@@ -19,20 +19,34 @@
  */
 package org.sonar.plugins.fxcop;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
 
 public class FxCopReportParserTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void valid() {
     List<FxCopIssue> issues = new FxCopReportParser().parse(new File("src/test/resources/FxCopReportParserTest/valid.xml"));
@@ -54,6 +68,123 @@ public class FxCopReportParserTest {
     assertThat(issue.file()).isEqualTo("Class1.cs");
     assertThat(issue.line()).isEqualTo(12);
     assertThat(issue.message()).isEqualTo("In method 'Class1.Add(int, int)', consider providing a more meaningful name than parameter name 'a'.");
+    assertThat(issue.checkId()).isEqualTo("CA1704");
+    assertThat(issue.category()).isEqualTo("Microsoft.Naming");
+    assertThat(issue.certainty()).isEqualTo(75);
+    assertThat(issue.level()).isEqualTo("CriticalWarning");
+  }
+
+  @Test
+  public void compressed() throws Exception {
+    File file = tmp.newFile("fxcop-report.xml");
+    Files.copy(new File("src/test/resources/FxCopReportParserTest/valid.xml"), file);
+    FxCopReportCompression.compress(file);
+
+    List<FxCopIssue> issues = new FxCopReportParser().parse(file);
+    assertThat(issues).hasSize(5);
+    assertThat(issues.get(2).reportLine()).isEqualTo(23);
+    assertThat(issues.get(2).message()).isEqualTo("In method 'Class1.Add(int, int)', consider providing a more meaningful name than parameter name 'a'.");
+  }
+
+  @Test
+  public void sarif() throws Exception {
+    File file = tmp.newFile("fxcop-report.sarif");
+    Files.copy(new File("src/test/resources/FxCopSarifReportReaderTest/sarif_1.sarif"), file);
+    FxCopReportCompression.compress(file);
+
+    List<FxCopIssue> issues = new FxCopReportParser().parse(file);
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).checkId()).isEqualTo("CA1801");
+  }
+
+  @Test
+  public void context() {
+    List<FxCopIssue> issues = new FxCopReportParser().parse(new File("src/test/resources/FxCopReportParserTest/valid.xml"));
+
+    FxCopCodeElement module = issues.get(0).context();
+    assertThat(module.kind()).isEqualTo(FxCopCodeElement.Kind.MODULE);
+    assertThat(module.name()).isEqualTo("mylibrary.dll");
+    assertThat(module.parent().kind()).isEqualTo(FxCopCodeElement.Kind.TARGET);
+    assertThat(module.parent().parent()).isNull();
+    assertThat(issues.get(1).context()).isSameAs(module);
+
+    FxCopCodeElement member = issues.get(2).context();
+    assertThat(member.kind()).isEqualTo(FxCopCodeElement.Kind.MEMBER);
+    assertThat(member.name()).isEqualTo("#Add(System.Int32,System.Int32)");
+    assertThat(member.enclosing(FxCopCodeElement.Kind.TYPE).name()).isEqualTo("Class1");
+    assertThat(member.enclosing(FxCopCodeElement.Kind.NAMESPACE).name()).isEqualTo("MyLibrary");
+    assertThat(member.enclosing(FxCopCodeElement.Kind.MODULE)).isSameAs(module);
+    assertThat(member.enclosing(FxCopCodeElement.Kind.ACCESSOR)).isNull();
+    assertThat(issues.get(3).context()).isSameAs(member);
+    assertThat(issues.get(4).context()).isSameAs(member);
+  }
+
+  @Test
+  public void filter() {
+    File file = new File("src/test/resources/FxCopReportParserTest/valid.xml");
+
+    List<FxCopIssue> issues = new FxCopReportParser().parse(file, new FxCopIssueFilter().setLocationRequired(true));
+    assertThat(issues).hasSize(3);
+    assertThat(issues.get(0).ruleKey()).isEqualTo("IdentifiersShouldBeSpelledCorrectly");
+    assertThat(issues.get(2).ruleKey()).isEqualTo("MarkMembersAsStatic");
+
+    issues = new FxCopReportParser().parse(file, new FxCopIssueFilter().setMinimumCertainty(90));
+    assertThat(issues).hasSize(3);
+    assertThat(issues.get(2).ruleKey()).isEqualTo("MarkMembersAsStatic");
+
+    issues = new FxCopReportParser().parse(file, new FxCopIssueFilter().setLevels(ImmutableSet.of("CriticalError", "CriticalWarning")));
+    assertThat(issues).hasSize(3);
+    assertThat(issues.get(0).ruleKey()).isEqualTo("AssembliesShouldHaveValidStrongNames");
+    assertThat(issues.get(1).ruleKey()).isEqualTo("IdentifiersShouldBeSpelledCorrectly");
+
+    issues = new FxCopReportParser().parse(file, new FxCopIssueFilter().setRuleKeys(ImmutableSet.of("CA1704", "MarkAssembliesWithClsCompliant")));
+    assertThat(issues).hasSize(3);
+    assertThat(issues.get(0).ruleKey()).isEqualTo("MarkAssembliesWithClsCompliant");
+    assertThat(issues.get(1).message()).endsWith("parameter name 'a'.");
+    assertThat(issues.get(2).message()).endsWith("parameter name 'b'.");
+
+    issues = new FxCopReportParser().parse(file, new FxCopIssueFilter().setRuleKeys(ImmutableSet.of("CA1704", "MarkAssembliesWithClsCompliant")).setLocationRequired(true));
+    assertThat(issues).hasSize(2);
+    assertThat(issues.get(0).reportLine()).isEqualTo(23);
+    assertThat(issues.get(1).reportLine()).isEqualTo(26);
+  }
+
+  @Test
+  public void locate_from_sources() {
+    File sourceFile = new File("src/test/resources/FxCopSourceIndexTest/Class1.cs");
+    FxCopSourceIndex sourceIndex = new FxCopSourceIndex("cs", ImmutableList.of(sourceFile), Charsets.UTF_8);
+
+    final List<FxCopIssue> issues = Lists.newArrayList();
+    new FxCopReportParser().parse(
+      new File("src/test/resources/FxCopReportParserTest/without_location.xml"),
+      new FxCopIssueFilter().setLocationRequired(true),
+      sourceIndex,
+      new FxCopIssueHandler() {
+        @Override
+        public void handle(FxCopIssue issue) {
+          issues.add(issue);
+        }
+      });
+
+    assertThat(issues).hasSize(4);
+
+    FxCopIssue issue = issues.get(0);
+    assertThat(issue.ruleKey()).isEqualTo("TypesThatOwnDisposableFieldsShouldBeDisposable");
+    assertThat(issue.path()).isEqualTo(sourceFile.getAbsoluteFile().getParent());
+    assertThat(issue.file()).isEqualTo("Class1.cs");
+    assertThat(issue.line()).isEqualTo(10);
+
+    issue = issues.get(1);
+    assertThat(issue.ruleKey()).isEqualTo("MarkMembersAsStatic");
+    assertThat(issue.line()).isEqualTo(28);
+
+    issue = issues.get(2);
+    assertThat(issue.ruleKey()).isEqualTo("PropertiesShouldNotReturnArrays");
+    assertThat(issue.line()).isEqualTo(37);
+
+    issue = issues.get(3);
+    assertThat(issue.path()).isEqualTo("c:\\src");
+    assertThat(issue.line()).isEqualTo(100);
   }
 
   @Test
@@ -80,4 +211,28 @@ public class FxCopReportParserTest {
     new FxCopReportParser().parse(new File("src/test/resources/FxCopReportParserTest/non_existing.xml"));
   }
 
+  @Test
+  public void unreadable_stream_is_closed() {
+    final AtomicBoolean closed = new AtomicBoolean();
+    InputStream input = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("Unreadable");
+      }
+
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+
+    try {
+      new FxCopReportParser().parse(new File("fxcop-report.xml"), input, new FxCopIssueFilter(), null, mock(FxCopIssueHandler.class));
+      fail();
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage()).contains("Unreadable");
+    }
+    assertThat(closed.get()).isTrue();
+  }
+
 }
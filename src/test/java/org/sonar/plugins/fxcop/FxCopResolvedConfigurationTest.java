@@ -0,0 +1,124 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopResolvedConfigurationTest {
+
+  private static final String ASSEMBLY_PATH = "src/test/resources/FxCopConfigurationTest/MyLibrary.dll";
+
+  @Test
+  public void defaults() {
+    FxCopResolvedConfiguration conf = FxCopResolvedConfiguration.resolve(newConf(), new Settings());
+
+    assertThat(conf.languageKey()).isEqualTo("cs");
+    assertThat(conf.repositoryKey()).isEqualTo("cs-fxcop");
+    assertThat(conf.isAssembliesSet()).isFalse();
+    assertThat(conf.assemblies()).isEmpty();
+    assertThat(conf.fxCopCmdPath()).isNull();
+    assertThat(conf.executable()).isNull();
+    assertThat(conf.isReplay()).isFalse();
+    assertThat(conf.replayIterations()).isEqualTo(1);
+    assertThat(conf.maxConcurrentAssemblies()).isEqualTo(1);
+    assertThat(conf.minimumCertainty()).isEqualTo(0);
+    assertThat(conf.locateFromSources()).isFalse();
+    assertThat(conf.queueDirectory()).isNull();
+    assertThat(conf.cacheMaxSize()).isEqualTo(1024L * 1024 * 1024);
+  }
+
+  @Test
+  public void deprecated_properties() {
+    Settings settings = settings(
+      "sonar.fxcop.installDirectory", "fake/path/FxCopCmd.exe",
+      "sonar.fxcop.timeoutMinutes", "42");
+    FxCopConfiguration fxCopConf = newConf();
+
+    FxCopResolvedConfiguration conf = FxCopResolvedConfiguration.resolve(fxCopConf, settings);
+
+    assertThat(conf.fxCopCmdPropertyKey()).isEqualTo("sonar.fxcop.installDirectory");
+    assertThat(conf.fxCopCmdPath()).isEqualTo("fake/path/FxCopCmd.exe");
+    assertThat(conf.timeoutPropertyKey()).isEqualTo("sonar.fxcop.timeoutMinutes");
+    assertThat(conf.timeout()).isEqualTo(42);
+    assertThat(fxCopConf.fxCopCmdPropertyKey()).isEqualTo("cmd.prop");
+    assertThat(fxCopConf.timeoutPropertyKey()).isEqualTo("timeout.prop");
+  }
+
+  @Test
+  public void new_properties_take_precedence() {
+    Settings settings = settings(
+      "cmd.prop", "new/FxCopCmd.exe",
+      "sonar.fxcop.installDirectory", "old/FxCopCmd.exe");
+
+    FxCopResolvedConfiguration conf = FxCopResolvedConfiguration.resolve(newConf(), settings);
+
+    assertThat(conf.fxCopCmdPropertyKey()).isEqualTo("cmd.prop");
+    assertThat(conf.fxCopCmdPath()).isEqualTo("new/FxCopCmd.exe");
+    assertThat(conf.executable()).isEqualTo("new/FxCopCmd.exe");
+  }
+
+  @Test
+  public void file_status() {
+    String assembly = new File(ASSEMBLY_PATH).getAbsolutePath();
+    FxCopResolvedConfiguration conf = FxCopResolvedConfiguration.resolve(newConf(), settings("assembly.prop", assembly));
+
+    assertThat(conf.isAssembliesSet()).isTrue();
+    assertThat(conf.assemblies()).containsExactly(assembly);
+
+    FxCopResolvedConfiguration.FileStatus status = conf.fileStatus(assembly);
+    assertThat(status.exists()).isTrue();
+    assertThat(status.length()).isEqualTo(new File(ASSEMBLY_PATH).length());
+    assertThat(status.fingerprint()).isEqualTo(status.length() + "@" + status.lastModified());
+
+    assertThat(conf.fileStatus(FxCopConfiguration.pdbPath(assembly)).exists()).isTrue();
+
+    FxCopResolvedConfiguration.FileStatus missing = conf.fileStatus(new File("src/test/resources/FxCopConfigurationTest/MyLibraryWithoutPdb.pdb").getAbsolutePath());
+    assertThat(missing.exists()).isFalse();
+    assertThat(missing.fingerprint()).isEqualTo("missing");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void immutable_assemblies() {
+    FxCopResolvedConfiguration conf = FxCopResolvedConfiguration.resolve(newConf(), settings("assembly.prop", ASSEMBLY_PATH));
+    conf.assemblies().clear();
+  }
+
+  private static FxCopConfiguration newConf() {
+    return new FxCopConfiguration("cs", "cs-fxcop", "assembly.prop", "cmd.prop", "timeout.prop");
+  }
+
+  private static Settings settings(String... keyValues) {
+    Map<String, String> props = Maps.newHashMap();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      props.put(keyValues[i], keyValues[i + 1]);
+    }
+    Settings settings = new Settings();
+    settings.addProperties(props);
+    return settings;
+  }
+
+}
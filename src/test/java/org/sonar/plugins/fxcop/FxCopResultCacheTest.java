@@ -0,0 +1,156 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopResultCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void key() throws Exception {
+    File assembly = write("MyLibrary.dll", "assembly");
+    File pdb = write("MyLibrary.pdb", "pdb");
+    File ruleset = write("fxcop.ruleset", "ruleset");
+    File executable = write("FxCopCmd.exe", "v1");
+
+    String key = key(assembly, pdb, ruleset, executable);
+    assertThat(key).hasSize(40);
+    assertThat(key(assembly, pdb, ruleset, executable)).isEqualTo(key);
+
+    assertThat(key(assembly, new File(tmp.getRoot(), "missing.pdb"), ruleset, executable)).isNotEqualTo(key);
+    Files.write("v2", executable, Charsets.UTF_8);
+    assertThat(key(assembly, pdb, ruleset, executable)).isNotEqualTo(key);
+    Files.write("v1", executable, Charsets.UTF_8);
+    Files.write("other ruleset", ruleset, Charsets.UTF_8);
+    assertThat(key(assembly, pdb, ruleset, executable)).isNotEqualTo(key);
+    Files.write("ruleset", ruleset, Charsets.UTF_8);
+    assertThat(key(assembly, pdb, ruleset, executable)).isEqualTo(key);
+    assertThat(FxCopResultCache.key(assembly, pdb, FxCopResultCache.sha1(ruleset), FxCopResultCache.executableDigest(executable), true)).isNotEqualTo(key);
+
+    File missingExecutable = new File(tmp.getRoot(), "missing.exe");
+    assertThat(FxCopResultCache.executableDigest(missingExecutable)).isEqualTo(missingExecutable.getPath());
+  }
+
+  private static String key(File assembly, File pdb, File ruleset, File executable) {
+    return FxCopResultCache.key(assembly, pdb, FxCopResultCache.sha1(ruleset), FxCopResultCache.executableDigest(executable), false);
+  }
+
+  @Test
+  public void store_and_restore() throws Exception {
+    MemoryBackend first = new MemoryBackend();
+    MemoryBackend second = new MemoryBackend();
+    FxCopResultCache cache = new FxCopResultCache(Arrays.<FxCopCacheBackend>asList(first, second));
+
+    File reportFile = new File(tmp.getRoot(), "fxcop-report.xml");
+    assertThat(cache.restore("foo", reportFile)).isFalse();
+    assertThat(reportFile).doesNotExist();
+
+    Files.write("<FxCopReport/>", reportFile, Charsets.UTF_8);
+    cache.store("foo", reportFile);
+    assertThat(first.entries.get("foo")).isEqualTo(second.entries.get("foo"));
+    assertThat(first.entries.get("foo").length).isGreaterThan(0);
+
+    first.entries.clear();
+    File restoredFile = new File(tmp.getRoot(), "restored.xml");
+    assertThat(cache.restore("foo", restoredFile)).isTrue();
+    assertThat(Files.toString(restoredFile, Charsets.UTF_8)).isEqualTo("<FxCopReport/>");
+    assertThat(first.entries.containsKey("foo")).isTrue();
+    // The compressed entries are not left next to the reports
+    assertThat(tmp.getRoot().list()).containsOnly("fxcop-report.xml", "restored.xml");
+  }
+
+  @Test
+  public void failures_are_misses() throws Exception {
+    MemoryBackend failing = new MemoryBackend();
+    failing.fail = true;
+    MemoryBackend backend = new MemoryBackend();
+    backend.entries.put("foo", gzip("<FxCopReport/>"));
+    backend.entries.put("corrupted", new byte[] {1, 2, 3});
+    FxCopResultCache cache = new FxCopResultCache(Arrays.<FxCopCacheBackend>asList(failing, backend));
+
+    File reportFile = new File(tmp.getRoot(), "fxcop-report.xml");
+    assertThat(cache.restore("corrupted", reportFile)).isFalse();
+    assertThat(cache.restore("foo", reportFile)).isTrue();
+    assertThat(Files.toString(reportFile, Charsets.UTF_8)).isEqualTo("<FxCopReport/>");
+
+    cache.store("bar", reportFile);
+    assertThat(backend.entries.containsKey("bar")).isTrue();
+  }
+
+  private File write(String name, String content) throws IOException {
+    File file = new File(tmp.getRoot(), name);
+    Files.write(content, file, Charsets.UTF_8);
+    return file;
+  }
+
+  static byte[] gzip(String content) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream output = new GZIPOutputStream(bytes);
+    output.write(content.getBytes(Charsets.UTF_8));
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  static class MemoryBackend implements FxCopCacheBackend {
+
+    final Map<String, byte[]> entries = Maps.newHashMap();
+    boolean fail;
+
+    @Override
+    public boolean get(String key, File file) throws IOException {
+      if (fail) {
+        throw new IOException("Unavailable");
+      }
+      byte[] value = entries.get(key);
+      if (value == null) {
+        return false;
+      }
+      Files.write(value, file);
+      return true;
+    }
+
+    @Override
+    public void put(String key, File file) throws IOException {
+      if (fail) {
+        throw new IOException("Unavailable");
+      }
+      entries.put(key, Files.toByteArray(file));
+    }
+
+  }
+
+}
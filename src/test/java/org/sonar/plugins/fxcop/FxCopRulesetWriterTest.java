@@ -20,6 +20,7 @@
 package org.sonar.plugins.fxcop;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import org.junit.Rule;
@@ -27,6 +28,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.util.Iterator;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -59,4 +62,65 @@ public class FxCopRulesetWriterTest {
       .contains("baz");
   }
 
+  @Test
+  public void escaping() throws Exception {
+    File file = tmp.newFile();
+    new FxCopRulesetWriter().write(ImmutableList.of("a&b", "<c>", "\"d'"), file);
+
+    assertThat(Files.readLines(file, Charsets.UTF_8)).contains(
+      "    <Rule Id=\"a&amp;b\" Action=\"Error\" />",
+      "    <Rule Id=\"&lt;c&gt;\" Action=\"Error\" />",
+      "    <Rule Id=\"&quot;d&apos;\" Action=\"Error\" />");
+  }
+
+  @Test
+  public void groups_and_actions() throws Exception {
+    File file = tmp.newFile();
+    new FxCopRulesetWriter().write(ImmutableList.of(
+      new FxCopRulesetWriter.Rules(FxCopRulesetWriter.MANAGED_CODE_ANALYZER_ID, FxCopRulesetWriter.MANAGED_RULE_NAMESPACE, ImmutableList.of("CA1000"), "Warning"),
+      new FxCopRulesetWriter.Rules("Microsoft.CodeAnalysis.CSharp", null, ImmutableList.of("CS1591", "IDE0005"), "Info")), file);
+
+    assertThat(Files.readLines(file, Charsets.UTF_8)).containsExactly(
+      "<?xml version=\"1.0\" encoding=\"utf-8\"?>",
+      "<RuleSet Name=\"SonarQube\" Description=\"Rule set generated by SonarQube\" ToolsVersion=\"12.0\">",
+      "  <Rules AnalyzerId=\"Microsoft.Analyzers.ManagedCodeAnalysis\" RuleNamespace=\"Microsoft.Rules.Managed\">",
+      "    <Rule Id=\"CA1000\" Action=\"Warning\" />",
+      "  </Rules>",
+      "  <Rules AnalyzerId=\"Microsoft.CodeAnalysis.CSharp\">",
+      "    <Rule Id=\"CS1591\" Action=\"Info\" />",
+      "    <Rule Id=\"IDE0005\" Action=\"Info\" />",
+      "  </Rules>",
+      "</RuleSet>");
+  }
+
+  @Test
+  public void lazy_rules() throws Exception {
+    final int size = 100000;
+    Iterable<String> ruleIds = new Iterable<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return new AbstractIterator<String>() {
+          private int i = 0;
+
+          @Override
+          protected String computeNext() {
+            return i < size ? "CA" + i++ : endOfData();
+          }
+        };
+      }
+    };
+
+    File file = tmp.newFile();
+    new FxCopRulesetWriter().write(ImmutableList.of(new FxCopRulesetWriter.Rules("Analyzer", null, ruleIds, "Error")), file);
+
+    List<String> lines = Files.readLines(file, Charsets.UTF_8);
+    assertThat(lines).hasSize(size + 5);
+    assertThat(lines.get(size + 2)).isEqualTo("    <Rule Id=\"CA" + (size - 1) + "\" Action=\"Error\" />");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupported_action() {
+    new FxCopRulesetWriter.Rules("Analyzer", null, ImmutableList.of("CA1000"), "Fatal");
+  }
+
 }
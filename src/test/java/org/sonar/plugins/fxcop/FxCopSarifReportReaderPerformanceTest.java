@@ -0,0 +1,111 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Benchmarks the SARIF reader against the XML one, on reports of the same issues.
+ */
+public class FxCopSarifReportReaderPerformanceTest {
+
+  private static final int FILES = 1000;
+
+  private static final double MAX_BYTES_PER_ISSUE = 4 * 1024;
+
+  /**
+   * Tolerated growth of the cost per issue between 100k and 1M issues, more lenient for the noisy timings than for the allocations.
+   */
+  private static final double MAX_TIME_SCALING_FACTOR = 3;
+  private static final double MAX_ALLOCATION_SCALING_FACTOR = 2;
+
+  /**
+   * Tolerated cost per issue relative to the XML parser, the SARIF reports being about twice as large per issue.
+   */
+  private static final double MAX_XML_TIME_FACTOR = 4;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void parse_100k_and_1m_issues() throws Exception {
+    File xmlReport = tmp.newFile("report-1000000.xml");
+    FxCopPerformance.writeReport(xmlReport, 1000000, FILES, tmp.getRoot());
+    FxCopPerformance.Measurement xml = parse(xmlReport, 1000000);
+
+    FxCopPerformance.Measurement small = parseSarif(100000);
+    FxCopPerformance.Measurement large = parseSarif(1000000);
+    String measurements = "100k SARIF issues: " + small + ", 1M SARIF issues: " + large + ", 1M XML issues: " + xml;
+
+    assertThat(small.issuesPerSecond(100000) / large.issuesPerSecond(1000000)).as(measurements).isLessThan(MAX_TIME_SCALING_FACTOR);
+    assertThat(xml.issuesPerSecond(1000000) / large.issuesPerSecond(1000000)).as(measurements).isLessThan(MAX_XML_TIME_FACTOR);
+
+    if (FxCopPerformance.isAllocationMeasurable()) {
+      assertThat(small.bytesPerIssue(100000)).as(measurements).isLessThan(MAX_BYTES_PER_ISSUE);
+      assertThat(large.bytesPerIssue(1000000)).as(measurements).isLessThan(MAX_BYTES_PER_ISSUE);
+      assertThat(large.bytesPerIssue(1000000) / small.bytesPerIssue(100000)).as(measurements).isLessThan(MAX_ALLOCATION_SCALING_FACTOR);
+    }
+  }
+
+  private FxCopPerformance.Measurement parseSarif(int issues) throws Exception {
+    File sarifReport = tmp.newFile("report-" + issues + ".sarif");
+    FxCopPerformance.writeSarifReport(sarifReport, issues, FILES, tmp.getRoot());
+    return parse(sarifReport, issues);
+  }
+
+  private static FxCopPerformance.Measurement parse(final File reportFile, int issues) {
+    final FxCopIssueFilter filter = new FxCopIssueFilter()
+      .setRuleKeys(ImmutableSet.of("CA1000", "CA1001", "CA1002", "CA1003", "CA1004", "CA1005", "CA1006", "CA1007", "CA1008", "CA1009"))
+      .setLocationRequired(true);
+    final CountingHandler handler = new CountingHandler();
+
+    // Warm up the JIT on the same report
+    new FxCopReportParser().parse(reportFile, filter, null, handler);
+    handler.count = 0;
+
+    FxCopPerformance.Measurement measurement = FxCopPerformance.measure(new Runnable() {
+      @Override
+      public void run() {
+        new FxCopReportParser().parse(reportFile, filter, null, handler);
+      }
+    });
+    assertThat(handler.count).isEqualTo(issues);
+    return measurement;
+  }
+
+  private static class CountingHandler implements FxCopIssueHandler {
+
+    private int count;
+
+    @Override
+    public void handle(FxCopIssue issue) {
+      count++;
+    }
+
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopSarifReportReaderTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void valid() {
+    List<FxCopIssue> issues = parse("valid.sarif", new FxCopIssueFilter());
+
+    assertThat(issues).hasSize(3);
+
+    FxCopIssue issue = issues.get(0);
+    assertThat(issue.reportLine()).isEqualTo(26);
+    assertThat(issue.ruleKey()).isEqualTo("AssembliesShouldHaveValidStrongNames");
+    assertThat(issue.checkId()).isEqualTo("CA2210");
+    assertThat(issue.category()).isEqualTo("Microsoft.Design");
+    assertThat(issue.path()).isNull();
+    assertThat(issue.file()).isNull();
+    assertThat(issue.line()).isNull();
+    assertThat(issue.message()).isEqualTo("Sign 'MyLibrary.dll' with a strong name key.");
+    assertThat(issue.level()).isEqualTo("Error");
+    assertThat(issue.certainty()).isNull();
+    assertThat(issue.context()).isNull();
+
+    issue = issues.get(1);
+    assertThat(issue.reportLine()).isEqualTo(36);
+    assertThat(issue.ruleKey()).isEqualTo("IdentifiersShouldBeSpelledCorrectly");
+    assertThat(issue.checkId()).isEqualTo("CA1704");
+    assertThat(issue.category()).isEqualTo("Microsoft.Naming");
+    assertThat(issue.path()).isEqualTo("c:/Users/SonarSource/Visual Studio 2013/MyLibrary");
+    assertThat(issue.file()).isEqualTo("Class1.cs");
+    assertThat(issue.line()).isEqualTo(12);
+    assertThat(issue.message()).isEqualTo("In method 'Class1.Add(int, int)', consider providing a more meaningful name than parameter name \"a\".");
+    assertThat(issue.level()).isEqualTo("Warning");
+    assertThat(issue.certainty()).isEqualTo(75);
+
+    issue = issues.get(2);
+    assertThat(issue.reportLine()).isEqualTo(66);
+    assertThat(issue.ruleKey()).isEqualTo("CA1822");
+    assertThat(issue.checkId()).isEqualTo("CA1822");
+    assertThat(issue.category()).isNull();
+    assertThat(issue.path()).isEqualTo("src");
+    assertThat(issue.file()).isEqualTo("Class1.cs");
+    assertThat(issue.line()).isEqualTo(20);
+    assertThat(issue.level()).isEqualTo("Information");
+  }
+
+  @Test
+  public void sarif_1() {
+    List<FxCopIssue> issues = parse("sarif_1.sarif", new FxCopIssueFilter());
+
+    assertThat(issues).hasSize(1);
+    FxCopIssue issue = issues.get(0);
+    assertThat(issue.reportLine()).isEqualTo(7);
+    assertThat(issue.ruleKey()).isEqualTo("CA1801");
+    assertThat(issue.checkId()).isEqualTo("CA1801");
+    assertThat(issue.path()).isEqualTo("C:/Projects/MyLibrary");
+    assertThat(issue.file()).isEqualTo("Class1.cs");
+    assertThat(issue.line()).isEqualTo(14);
+    assertThat(issue.message()).isEqualTo("Parameter b of method Add is never used.");
+  }
+
+  @Test
+  public void filter() {
+    List<FxCopIssue> issues = parse("valid.sarif", new FxCopIssueFilter().setLocationRequired(true));
+    assertThat(issues).hasSize(2);
+    assertThat(issues.get(0).checkId()).isEqualTo("CA1704");
+
+    issues = parse("valid.sarif", new FxCopIssueFilter().setRuleKeys(ImmutableSet.of("AssembliesShouldHaveValidStrongNames", "CA1822")));
+    assertThat(issues).hasSize(2);
+    assertThat(issues.get(0).checkId()).isEqualTo("CA2210");
+    assertThat(issues.get(1).checkId()).isEqualTo("CA1822");
+
+    issues = parse("valid.sarif", new FxCopIssueFilter().setMinimumCertainty(80));
+    assertThat(issues).hasSize(2);
+
+    issues = parse("valid.sarif", new FxCopIssueFilter().setLevels(ImmutableSet.of("Error")));
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).checkId()).isEqualTo("CA2210");
+  }
+
+  @Test
+  public void local_path() {
+    assertThat(FxCopSarifReportReader.localPath("file:///C:/src/My%20Class.cs")).isEqualTo("C:/src/My Class.cs");
+    assertThat(FxCopSarifReportReader.localPath("file:///C:\\src\\Class1.cs")).isEqualTo("C:\\src\\Class1.cs");
+    assertThat(FxCopSarifReportReader.localPath("file:///home/src/Class1.cs")).isEqualTo("/home/src/Class1.cs");
+    assertThat(FxCopSarifReportReader.localPath("src/Class1.cs")).isEqualTo("src/Class1.cs");
+  }
+
+  @Test
+  public void invalid() {
+    thrown.expectMessage("Unable to read the SARIF report");
+    thrown.expectMessage("invalid.sarif");
+    thrown.expectMessage("at line 6");
+
+    parse("invalid.sarif", new FxCopIssueFilter());
+  }
+
+  @Test
+  public void missing_rule_id() {
+    thrown.expectMessage("Missing \"ruleId\" in the result at line 5");
+
+    parse("missing_rule_id.sarif", new FxCopIssueFilter());
+  }
+
+  private static List<FxCopIssue> parse(String fileName, FxCopIssueFilter filter) {
+    // Through the XML parser, to also cover the detection of the format
+    return new FxCopReportParser().parse(new File("src/test/resources/FxCopSarifReportReaderTest/" + fileName), filter);
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopSchedulerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void job() throws Exception {
+    File assembly = tmp.newFile("MyLibrary.dll");
+    FxCopAssemblyMetadataTest.writeAssembly(assembly, new byte[16], 0, true, "mscorlib", "System");
+
+    FxCopScheduler.Job job = FxCopScheduler.Job.of(assembly.getAbsolutePath(), new File("report.xml"));
+    assertThat(job.assembly()).isEqualTo(assembly.getAbsolutePath());
+    assertThat(job.reportFile()).isEqualTo(new File("report.xml"));
+    assertThat(job.size()).isEqualTo(assembly.length());
+    assertThat(job.references()).containsOnly("mscorlib", "System");
+    assertThat(job.plannedMillis()).isGreaterThan(0);
+
+    job = FxCopScheduler.Job.of("NotFound.dll", new File("report.xml"));
+    assertThat(job.size()).isEqualTo(0);
+    assertThat(job.references()).isEmpty();
+  }
+
+  @Test
+  public void order() {
+    FxCopScheduler.Job small = job("Small.dll", 10, "mscorlib");
+    FxCopScheduler.Job large = job("Large.dll", 1000, "mscorlib", "Shared");
+    FxCopScheduler.Job medium = job("Medium.dll", 500, "mscorlib");
+    FxCopScheduler.Job similarToMedium = job("SimilarToMedium.dll", 480, "mscorlib", "Shared");
+
+    assertThat(FxCopScheduler.order(ImmutableList.of(small, medium, large))).containsExactly(large, medium, small);
+    assertThat(FxCopScheduler.order(ImmutableList.of(small, medium, similarToMedium, large))).containsExactly(large, similarToMedium, medium, small);
+    assertThat(FxCopScheduler.order(ImmutableList.<FxCopScheduler.Job>of())).isEmpty();
+  }
+
+  @Test
+  public void run_sequentially() {
+    final List<String> runs = Lists.newArrayList();
+    new FxCopScheduler(1).run(
+      ImmutableList.of(job("Small.dll", 10), job("Large.dll", 1000)),
+      new FxCopScheduler.JobRunner() {
+        @Override
+        public void run(FxCopScheduler.Job job) {
+          runs.add(job.assembly() + "@" + Thread.currentThread().getName());
+        }
+      });
+
+    String thread = Thread.currentThread().getName();
+    assertThat(runs).containsExactly("Large.dll@" + thread, "Small.dll@" + thread);
+  }
+
+  @Test
+  public void run_concurrently() {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final List<String> runs = Collections.synchronizedList(Lists.<String>newArrayList());
+
+    List<FxCopScheduler.Job> jobs = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      jobs.add(job("Assembly" + i + ".dll", i));
+    }
+
+    new FxCopScheduler(3).run(jobs, new FxCopScheduler.JobRunner() {
+      @Override
+      public void run(FxCopScheduler.Job job) {
+        int current = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), current));
+        }
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        runs.add(job.assembly());
+        running.decrementAndGet();
+      }
+    });
+
+    assertThat(runs).hasSize(10);
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+  }
+
+  @Test
+  public void run_failure() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("FxCopCmd failed");
+
+    new FxCopScheduler(2).run(
+      ImmutableList.of(job("Small.dll", 10), job("Large.dll", 1000)),
+      new FxCopScheduler.JobRunner() {
+        @Override
+        public void run(FxCopScheduler.Job job) {
+          if ("Small.dll".equals(job.assembly())) {
+            throw new IllegalStateException("FxCopCmd failed");
+          }
+        }
+      });
+  }
+
+  private static FxCopScheduler.Job job(String assembly, long size, String... references) {
+    return new FxCopScheduler.Job(assembly, new File(assembly + ".xml"), size, ImmutableList.copyOf(references));
+  }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.component.Component;
+import org.sonar.api.component.Perspective;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.AbstractLanguage;
+import org.sonar.api.resources.Language;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.RulePriority;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the whole sensor in replay mode: parsing, storing the issues in {@link FxCopIssueTable}, writing the index,
+ * and mapping each issue to its SonarQube file and rule. SonarQube is replaced by stubs, as mocks would record every call.
+ */
+public class FxCopSensorPerformanceTest {
+
+  private static final int FILES = 1000;
+
+  private static final double MAX_BYTES_PER_ISSUE = 6 * 1024;
+
+  /**
+   * Tolerated growth of the cost per issue between 100k and 1M issues, which would be 10 for a quadratic sensor.
+   * The timings being noisy, it is more lenient for the time than for the allocations.
+   */
+  private static final double MAX_TIME_SCALING_FACTOR = 3;
+  private static final double MAX_ALLOCATION_SCALING_FACTOR = 2;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void analyze_100k_and_1m_issues() throws Exception {
+    FxCopPerformance.Measurement small = analyse(100000);
+    FxCopPerformance.Measurement large = analyse(1000000);
+    String measurements = "100k issues: " + small + ", 1M issues: " + large;
+
+    assertThat(small.issuesPerSecond(100000) / large.issuesPerSecond(1000000)).as(measurements).isLessThan(MAX_TIME_SCALING_FACTOR);
+
+    if (FxCopPerformance.isAllocationMeasurable()) {
+      assertThat(small.bytesPerIssue(100000)).as(measurements).isLessThan(MAX_BYTES_PER_ISSUE);
+      assertThat(large.bytesPerIssue(1000000)).as(measurements).isLessThan(MAX_BYTES_PER_ISSUE);
+      assertThat(large.bytesPerIssue(1000000) / small.bytesPerIssue(100000)).as(measurements).isLessThan(MAX_ALLOCATION_SCALING_FACTOR);
+    }
+  }
+
+  private FxCopPerformance.Measurement analyse(int issues) throws Exception {
+    File reportFile = tmp.newFile("report-" + issues + ".xml");
+    FxCopPerformance.writeReport(reportFile, issues, FILES, tmp.getRoot());
+
+    Settings settings = new Settings();
+    settings.setProperty(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY, reportFile.getAbsolutePath());
+    settings.setProperty(FxCopConfiguration.LOCATE_FROM_SOURCES_PROPERTY_KEY, "false");
+    settings.setProperty(FxCopConfiguration.ISSUE_INDEX_PROPERTY_KEY, "true");
+
+    // The active rules are only read once per analysis
+    List<ActiveRule> activeRules = Lists.newArrayList();
+    for (int i = 0; i < FxCopPerformance.RULES; i++) {
+      ActiveRule activeRule = mock(ActiveRule.class);
+      when(activeRule.getRuleKey()).thenReturn("Rule" + i);
+      when(activeRule.getConfigKey()).thenReturn("CA" + (1000 + i));
+      when(activeRule.getSeverity()).thenReturn(RulePriority.MAJOR);
+      activeRules.add(activeRule);
+    }
+    RulesProfile profile = mock(RulesProfile.class);
+    when(profile.getActiveRulesByRepository("cs-fxcop")).thenReturn(activeRules);
+
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+    when(fileSystem.workingDir()).thenReturn(tmp.newFolder("working-dir-" + issues));
+
+    final CountingIssuable issuable = new CountingIssuable();
+    final FxCopSensor sensor = new FxCopSensor(
+      new FxCopConfiguration("cs", "cs-fxcop", "assemblyKey", "fxCopCmdKey", "timeoutKey"),
+      settings, profile, fileSystem, new StubPerspectives(issuable));
+    final SensorContext context = mock(SensorContext.class);
+    final StubFileProvider fileProvider = new StubFileProvider();
+
+    Runnable analysis = new Runnable() {
+      @Override
+      public void run() {
+        sensor.analyse(context, fileProvider, new FxCopRulesetWriter(), new FxCopReportParser(), new FxCopExecutor());
+      }
+    };
+
+    // Warm up the JIT and the file cache on the same report
+    analysis.run();
+    issuable.count = 0;
+
+    FxCopPerformance.Measurement measurement = FxCopPerformance.measure(analysis);
+    assertThat(issuable.count).isEqualTo(issues);
+    return measurement;
+  }
+
+  private static class StubFileProvider extends FileProvider {
+
+    private final Language language = new AbstractLanguage("cs") {
+      @Override
+      public String[] getFileSuffixes() {
+        return new String[] {"cs"};
+      }
+    };
+    private final Map<String, org.sonar.api.resources.File> files = Maps.newHashMap();
+
+    StubFileProvider() {
+      super(null, null);
+    }
+
+    @Override
+    public org.sonar.api.resources.File fromIOFile(File file) {
+      String path = file.getAbsolutePath();
+      org.sonar.api.resources.File sonarFile = files.get(path);
+      if (sonarFile == null) {
+        sonarFile = new org.sonar.api.resources.File(language, path);
+        files.put(path, sonarFile);
+      }
+      return sonarFile;
+    }
+
+  }
+
+  private static class StubPerspectives implements ResourcePerspectives {
+
+    private final Issuable issuable;
+
+    StubPerspectives(Issuable issuable) {
+      this.issuable = issuable;
+    }
+
+    @Override
+    public <P extends Perspective> P as(Class<P> perspectiveClass, Resource resource) {
+      return perspectiveClass.cast(issuable);
+    }
+
+    @Override
+    public <P extends Perspective> P as(Class<P> perspectiveClass, Component component) {
+      return perspectiveClass.cast(issuable);
+    }
+
+  }
+
+  private static class CountingIssuable implements Issuable, Issuable.IssueBuilder {
+
+    private int count;
+
+    @Override
+    public IssueBuilder newIssueBuilder() {
+      return this;
+    }
+
+    @Override
+    public boolean addIssue(Issue issue) {
+      count++;
+      return true;
+    }
+
+    @Override
+    public List<Issue> issues() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<Issue> resolvedIssues() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Component component() {
+      return null;
+    }
+
+    @Override
+    public IssueBuilder ruleKey(RuleKey ruleKey) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder line(Integer line) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder message(String message) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder severity(String severity) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder reporter(String reporter) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder effortToFix(Double effortToFix) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder attribute(String key, String value) {
+      return this;
+    }
+
+    @Override
+    public Issue build() {
+      return null;
+    }
+
+  }
+
+}
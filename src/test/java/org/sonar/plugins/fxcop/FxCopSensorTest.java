@@ -19,31 +19,47 @@
  */
 package org.sonar.plugins.fxcop;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issuable.IssueBuilder;
 import org.sonar.api.issue.Issue;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.RulePriority;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class FxCopSensorTest {
@@ -51,6 +67,9 @@ public class FxCopSensorTest {
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void shouldExecuteOnProject() {
     Settings settings = mock(Settings.class);
@@ -134,33 +153,634 @@ public class FxCopSensorTest {
 
     FxCopRulesetWriter writer = mock(FxCopRulesetWriter.class);
 
-    FxCopReportParser parser = mock(FxCopReportParser.class);
-    when(parser.parse(new File(workingDir, "fxcop-report.xml"))).thenReturn(
-      ImmutableList.of(
-        new FxCopIssue(100, "CA0000", null, "Class1.cs", 1, "Dummy message"),
-        new FxCopIssue(200, "CA0000", "basePath", null, 2, "Dummy message"),
-        new FxCopIssue(300, "CA0000", "basePath", "Class3.cs", null, "Dummy message"),
-        new FxCopIssue(400, "CA0000", "basePath", "Class4.cs", 4, "First message"),
-        new FxCopIssue(500, "CA0000", "basePath", "Class5.cs", 5, "Second message"),
-        new FxCopIssue(600, "CA1000", "basePath", "Class6.cs", 6, "Third message"),
-        new FxCopIssue(700, "CA0000", "basePath", "Class7.cs", 7, "Fourth message"),
-        new FxCopIssue(800, "CA0000", "basePath", "Class8.cs", 8, "Fifth message")));
+    FxCopReportParser parser = mockParser(new File(workingDir, "fxcop-report.xml"),
+      new FxCopIssue(100, "CA0000", null, "Class1.cs", 1, "Dummy message"),
+      new FxCopIssue(200, "CA0000", "basePath", null, 2, "Dummy message"),
+      new FxCopIssue(300, "CA0000", "basePath", "Class3.cs", null, "Dummy message"),
+      new FxCopIssue(400, "CA0000", "basePath", "Class4.cs", 4, "First message"),
+      new FxCopIssue(500, "CA0000", "basePath", "Class5.cs", 5, "Second message"),
+      new FxCopIssue(600, "CA1000", "basePath", "Class6.cs", 6, "Third message"),
+      new FxCopIssue(700, "CA0000", "basePath", "Class7.cs", 7, "Fourth message"),
+      new FxCopIssue(800, "CA0000", "basePath", "Class8.cs", 8, "Fifth message"),
+      new FxCopIssue(900, "CA9999", "basePath", "Class9.cs", 9, "Disabled rule message"));
 
     sensor.analyse(context, fileProvider, writer, parser, executor);
 
     verify(writer).write(ImmutableList.of("CA0000", "CA1000"), new File(workingDir, "fxcop-sonarqube.ruleset"));
-    verify(executor).execute("FxCopCmd.exe", "MyLibrary.dll", new File(workingDir, "fxcop-sonarqube.ruleset"), new File(workingDir, "fxcop-report.xml"), 0);
+    verify(executor).execute("FxCopCmd.exe", "MyLibrary.dll", new File(workingDir, "fxcop-sonarqube.ruleset"), new File(workingDir, "fxcop-report.xml"), 0,
+      false, false);
 
     verify(issuable).addIssue(issue1);
     verify(issuable).addIssue(issue2);
+    verify(fileProvider, Mockito.never()).fromIOFile(new File(new File("basePath"), "Class9.cs"));
 
+    verify(issueBuilder1).ruleKey(RuleKey.of("foo-fxcop", "CA0000"));
+    verify(issueBuilder1).severity("MAJOR");
     verify(issueBuilder1).line(5);
     verify(issueBuilder1).message("Second message");
 
+    verify(issueBuilder2).ruleKey(RuleKey.of("foo-fxcop", "CA1000"));
     verify(issueBuilder2).line(6);
     verify(issueBuilder2).message("Third message");
   }
 
+  @Test
+  public void analyze_multiple_assemblies() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+    ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, perspectives);
+
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = new File("target/FxCopSensorTest/working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    when(settings.getString("assemblyKey")).thenReturn("MyLibrary.dll, MyOtherLibrary.dll");
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.getInt("timeout")).thenReturn(42);
+
+    FileProvider fileProvider = mock(FileProvider.class);
+    org.sonar.api.resources.File sonarFile = mockSonarFile("foo");
+    when(fileProvider.fromIOFile(Mockito.any(File.class))).thenReturn(sonarFile);
+
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(Issuable.class, sonarFile)).thenReturn(issuable);
+    IssueBuilder issueBuilder = mockIssueBuilder();
+    when(issuable.newIssueBuilder()).thenReturn(issueBuilder);
+
+    FxCopReportParser parser = mock(FxCopReportParser.class);
+    mockParse(parser, new File(workingDir, "fxcop-report-1.xml"),
+      new FxCopIssue(100, "CA0000", "basePath", "Shared.cs", 1, "Shared message"),
+      new FxCopIssue(200, "CA0000", "basePath", "Class1.cs", 2, "First message"));
+    mockParse(parser, new File(workingDir, "fxcop-report-2.xml"),
+      new FxCopIssue(100, "CA0000", "basePath/", "shared.cs", 1, "Shared message"),
+      new FxCopIssue(200, "CA0000", "basePath", "Class2.cs", 2, "Second message"));
+
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    sensor.analyse(mock(SensorContext.class), fileProvider, mock(FxCopRulesetWriter.class), parser, executor);
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    verify(executor).execute("FxCopCmd.exe", "MyLibrary.dll", rulesetFile, new File(workingDir, "fxcop-report-1.xml"), 42, false, false);
+    verify(executor).execute("FxCopCmd.exe", "MyOtherLibrary.dll", rulesetFile, new File(workingDir, "fxcop-report-2.xml"), 42, false, false);
+
+    InOrder inOrder = Mockito.inOrder(issueBuilder);
+    inOrder.verify(issueBuilder).message("Shared message");
+    inOrder.verify(issueBuilder).message("First message");
+    inOrder.verify(issueBuilder).message("Second message");
+    verify(issuable, Mockito.times(3)).addIssue(Mockito.any(Issue.class));
+  }
+
+  @Test
+  public void analyze_with_metrics_and_levels() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+    ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopMetrics metrics = new FxCopMetrics(fxCopConf);
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, perspectives, metrics);
+
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = new File("target/FxCopSensorTest/working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    when(settings.getString("assemblyKey")).thenReturn("MyLibrary.dll");
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.hasKey(FxCopConfiguration.MINIMUM_CERTAINTY_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getInt(FxCopConfiguration.MINIMUM_CERTAINTY_PROPERTY_KEY)).thenReturn(50);
+    when(settings.getString(FxCopConfiguration.LEVELS_PROPERTY_KEY)).thenReturn("Error, Warning");
+    when(settings.hasKey(FxCopConfiguration.SEVERITY_FROM_LEVEL_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.SEVERITY_FROM_LEVEL_PROPERTY_KEY)).thenReturn(true);
+
+    FileProvider fileProvider = mock(FileProvider.class);
+    org.sonar.api.resources.File sonarFile = mockSonarFile("foo");
+    when(fileProvider.fromIOFile(Mockito.any(File.class))).thenReturn(sonarFile);
+
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(Issuable.class, sonarFile)).thenReturn(issuable);
+    IssueBuilder issueBuilder = mockIssueBuilder();
+    when(issuable.newIssueBuilder()).thenReturn(issueBuilder);
+
+    FxCopReportParser parser = mockParser(new File(workingDir, "fxcop-report.xml"),
+      new FxCopIssue(100, "CA0000", "CA0000", "Microsoft.Design", "basePath", "Class1.cs", 1, "First message", 95, "Error", null),
+      new FxCopIssue(200, "CA0000", "CA0000", "Microsoft.Design", "basePath", "Class1.cs", 2, "Second message", 75, "Warning", null),
+      new FxCopIssue(300, "CA0000", "CA0000", "Microsoft.Design", null, null, null, "Skipped message", 95, "Error", null));
+
+    SensorContext context = mock(SensorContext.class);
+    sensor.analyse(context, fileProvider, mock(FxCopRulesetWriter.class), parser, mock(FxCopExecutor.class));
+
+    ArgumentCaptor<FxCopIssueFilter> filter = ArgumentCaptor.forClass(FxCopIssueFilter.class);
+    verify(parser).parse(Mockito.any(File.class), filter.capture(), Mockito.any(FxCopSourceIndex.class), Mockito.any(FxCopIssueHandler.class));
+    assertThat(filter.getValue().acceptIssue(50, "Error")).isTrue();
+    assertThat(filter.getValue().acceptIssue(49, "Error")).isFalse();
+    assertThat(filter.getValue().acceptIssue(95, "CriticalError")).isFalse();
+
+    verify(issueBuilder).severity("CRITICAL");
+    verify(issueBuilder).severity("MINOR");
+
+    ArgumentCaptor<Measure> fileMeasures = ArgumentCaptor.forClass(Measure.class);
+    verify(context, Mockito.times(4)).saveMeasure(Mockito.eq(sonarFile), fileMeasures.capture());
+    assertThat(fileMeasures.getAllValues().get(0).getMetric()).isSameAs(metrics.issues());
+    assertThat(fileMeasures.getAllValues().get(0).getValue()).isEqualTo(2.0);
+    assertThat(fileMeasures.getAllValues().get(3).getData()).isEqualTo("75=1;95=1");
+
+    ArgumentCaptor<Measure> projectMeasures = ArgumentCaptor.forClass(Measure.class);
+    verify(context, Mockito.times(4)).saveMeasure(projectMeasures.capture());
+    assertThat(projectMeasures.getAllValues().get(0).getValue()).isEqualTo(2.0);
+    assertThat(projectMeasures.getAllValues().get(1).getData()).isEqualTo("Microsoft.Design=2");
+  }
+
+  @Test
+  public void analyze_skip_unchanged_assemblies() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    File assembly = tmp.newFile("MyLibrary.dll");
+    FxCopAssemblyMetadataTest.writeAssembly(assembly, new byte[16], 42, true);
+    when(settings.getString("assemblyKey")).thenReturn(assembly.getAbsolutePath());
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.hasKey(FxCopConfiguration.SKIP_UNCHANGED_ASSEMBLIES_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.SKIP_UNCHANGED_ASSEMBLIES_PROPERTY_KEY)).thenReturn(true);
+    when(settings.hasKey(FxCopConfiguration.ISSUE_INDEX_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.ISSUE_INDEX_PROPERTY_KEY)).thenReturn(true);
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    Files.write("<RuleSet />", rulesetFile, Charsets.UTF_8);
+    File reportFile = new File(workingDir, "fxcop-report.xml");
+    Files.write("<FxCopReport />", reportFile, Charsets.UTF_8);
+
+    FxCopReportParser parser = mockParser(reportFile);
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(1)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+    assertThat(new File(workingDir, "fxcop-manifest.properties").isFile()).isTrue();
+    assertThat(new File(workingDir, FxCopIssueIndex.FILE_NAME).isFile()).isTrue();
+
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(1)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+    verify(parser, Mockito.times(2)).parse(Mockito.eq(reportFile), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+
+    Files.write("<RuleSet><Rules /></RuleSet>", rulesetFile, Charsets.UTF_8);
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(2)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+
+    byte[] mvid = new byte[16];
+    mvid[0] = 1;
+    FxCopAssemblyMetadataTest.writeAssembly(assembly, mvid, 42, true);
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(3)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(3)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+
+    when(settings.hasKey(FxCopConfiguration.EXCLUDE_GENERATED_CODE_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.EXCLUDE_GENERATED_CODE_PROPERTY_KEY)).thenReturn(true);
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(1)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, true);
+  }
+
+  @Test
+  public void analyze_resume_from_checkpoint() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    String assembly1 = tmp.newFile("MyLibrary.dll").getAbsolutePath();
+    String assembly2 = tmp.newFile("MyOtherLibrary.dll").getAbsolutePath();
+    when(settings.getString("assemblyKey")).thenReturn(assembly1 + "," + assembly2);
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.hasKey(FxCopConfiguration.CHECKPOINT_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.CHECKPOINT_PROPERTY_KEY)).thenReturn(true);
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    Files.write("<RuleSet />", rulesetFile, Charsets.UTF_8);
+    final File reportFile1 = new File(workingDir, "fxcop-report-1.xml");
+    File reportFile2 = new File(workingDir, "fxcop-report-2.xml");
+    File journalFile = new File(workingDir, FxCopCheckpointJournal.FILE_NAME);
+
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Exception {
+        Files.write("<FxCopReport />", reportFile1, Charsets.UTF_8);
+        return null;
+      }
+    }).when(executor).execute("FxCopCmd.exe", assembly1, rulesetFile, reportFile1, 0, false, false);
+    Mockito.doThrow(new IllegalStateException("Timeout")).when(executor).execute("FxCopCmd.exe", assembly2, rulesetFile, reportFile2, 0, false, false);
+
+    FxCopReportParser parser = mock(FxCopReportParser.class);
+    try {
+      sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Timeout");
+    }
+    assertThat(journalFile.isFile()).isTrue();
+
+    Mockito.doNothing().when(executor).execute("FxCopCmd.exe", assembly2, rulesetFile, reportFile2, 0, false, false);
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+
+    verify(executor, Mockito.times(1)).execute("FxCopCmd.exe", assembly1, rulesetFile, reportFile1, 0, false, false);
+    verify(executor, Mockito.times(2)).execute("FxCopCmd.exe", assembly2, rulesetFile, reportFile2, 0, false, false);
+    // Checked before being journaled by the failed analysis, and then parsed by the resumed one
+    verify(parser, Mockito.times(2)).parse(Mockito.eq(reportFile1), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+    assertThat(journalFile.exists()).isFalse();
+    // Disabled by default
+    assertThat(new File(workingDir, FxCopIssueIndex.FILE_NAME).exists()).isFalse();
+  }
+
+  @Test
+  public void analyze_do_not_checkpoint_unparsable_reports() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    String assembly = tmp.newFile("MyLibrary.dll").getAbsolutePath();
+    when(settings.getString("assemblyKey")).thenReturn(assembly);
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.hasKey(FxCopConfiguration.CHECKPOINT_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.CHECKPOINT_PROPERTY_KEY)).thenReturn(true);
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    Files.write("<RuleSet />", rulesetFile, Charsets.UTF_8);
+    final File reportFile = new File(workingDir, "fxcop-report.xml");
+
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Exception {
+        Files.write("<FxCopReport", reportFile, Charsets.UTF_8);
+        return null;
+      }
+    }).when(executor).execute("FxCopCmd.exe", assembly, rulesetFile, reportFile, 0, false, false);
+
+    FxCopReportParser parser = mock(FxCopReportParser.class);
+    Mockito.doThrow(new IllegalStateException("Truncated report")).when(parser).parse(Mockito.eq(reportFile), Mockito.any(FxCopIssueFilter.class),
+      Mockito.any(FxCopSourceIndex.class), Mockito.any(FxCopIssueHandler.class));
+    try {
+      sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Truncated report");
+    }
+
+    Mockito.doNothing().when(parser).parse(Mockito.eq(reportFile), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(2)).execute("FxCopCmd.exe", assembly, rulesetFile, reportFile, 0, false, false);
+  }
+
+  @Test
+  public void analyze_with_result_cache() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    File assembly = tmp.newFile("MyLibrary.dll");
+    when(settings.getString("assemblyKey")).thenReturn(assembly.getAbsolutePath());
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    File cacheDir = new File(tmp.getRoot(), "cache");
+    when(settings.hasKey(FxCopConfiguration.CACHE_DIRECTORY_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.CACHE_DIRECTORY_PROPERTY_KEY)).thenReturn(cacheDir.getAbsolutePath());
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    Files.write("<RuleSet />", rulesetFile, Charsets.UTF_8);
+    File reportFile = new File(workingDir, "fxcop-report.xml");
+    Files.write("<FxCopReport />", reportFile, Charsets.UTF_8);
+
+    FxCopReportParser parser = mockParser(reportFile);
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(1)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+    assertThat(cacheDir.list()).hasSize(1);
+
+    reportFile.delete();
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(1)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+    assertThat(Files.toString(reportFile, Charsets.UTF_8)).isEqualTo("<FxCopReport />");
+
+    Files.write("<RuleSet><Rules /></RuleSet>", rulesetFile, Charsets.UTF_8);
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor, Mockito.times(2)).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+    assertThat(cacheDir.list()).hasSize(2);
+  }
+
+  @Test
+  public void analyze_with_unusable_cache_directory() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    File assembly = tmp.newFile("MyLibrary.dll");
+    when(settings.getString("assemblyKey")).thenReturn(assembly.getAbsolutePath());
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    // A file cannot be used as the cache directory
+    File cacheDir = tmp.newFile("cache");
+    when(settings.hasKey(FxCopConfiguration.CACHE_DIRECTORY_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.CACHE_DIRECTORY_PROPERTY_KEY)).thenReturn(cacheDir.getAbsolutePath());
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    Files.write("<RuleSet />", rulesetFile, Charsets.UTF_8);
+    File reportFile = new File(workingDir, "fxcop-report.xml");
+    Files.write("<FxCopReport />", reportFile, Charsets.UTF_8);
+
+    FxCopReportParser parser = mockParser(reportFile);
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    verify(executor).execute("FxCopCmd.exe", assembly.getAbsolutePath(), rulesetFile, reportFile, 0, false, false);
+    verify(parser).parse(Mockito.eq(reportFile), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+    assertThat(cacheDir.isFile()).isTrue();
+  }
+
+  @Test
+  public void analyze_replay() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    File reportFile = tmp.newFile("archived-report.xml");
+    Files.write("<FxCopReport />", reportFile, Charsets.UTF_8);
+    when(settings.hasKey(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.REPLAY_REPORTS_PROPERTY_KEY)).thenReturn(reportFile.getAbsolutePath());
+    when(settings.hasKey(FxCopConfiguration.REPLAY_ITERATIONS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getInt(FxCopConfiguration.REPLAY_ITERATIONS_PROPERTY_KEY)).thenReturn(3);
+
+    FxCopReportParser parser = mockParser(reportFile, new FxCopIssue(100, "CA0000", null, null, 1, "Message"));
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    FileProvider fileProvider = mock(FileProvider.class);
+
+    sensor.analyse(mock(SensorContext.class), fileProvider, mock(FxCopRulesetWriter.class), parser, executor);
+
+    verifyZeroInteractions(executor);
+    verify(parser, Mockito.times(3)).parse(Mockito.eq(reportFile), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+
+    List<String> timings = Files.readLines(new File(workingDir, "fxcop-replay-timings.csv"), Charsets.UTF_8);
+    assertThat(timings).hasSize(4);
+    assertThat(timings.get(0)).isEqualTo("iteration,parseMillis,saveMillis,gcMillis,issues,issuesPerSecond,megabytesPerSecond");
+    assertThat(timings.get(1)).startsWith("1,");
+    assertThat(timings.get(3).split(",")[4]).isEqualTo("1");
+  }
+
+  @Test
+  public void analyze_streaming() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    when(settings.getString("assemblyKey")).thenReturn("MyLibrary.dll");
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.hasKey(FxCopConfiguration.STREAM_REPORTS_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.STREAM_REPORTS_PROPERTY_KEY)).thenReturn(true);
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    final File reportFile = new File(workingDir, "fxcop-report.xml");
+    Files.write("<PreviousReport />", reportFile, Charsets.UTF_8);
+
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Exception {
+        Files.write("<FxCopReport>", reportFile, Charsets.UTF_8);
+        Thread.sleep(300);
+        Files.append("</FxCopReport>", reportFile, Charsets.UTF_8);
+        return null;
+      }
+    }).when(executor).execute("FxCopCmd.exe", "MyLibrary.dll", rulesetFile, reportFile, 0, false, false);
+
+    final List<String> parsed = Lists.newArrayList();
+    FxCopReportParser parser = mock(FxCopReportParser.class);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Exception {
+        InputStream stream = (InputStream) invocation.getArguments()[1];
+        parsed.add(new String(ByteStreams.toByteArray(stream), Charsets.UTF_8));
+        return null;
+      }
+    }).when(parser).parse(Mockito.eq(reportFile), Mockito.any(InputStream.class), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+
+    verify(executor).execute("FxCopCmd.exe", "MyLibrary.dll", rulesetFile, reportFile, 0, false, false);
+    assertThat(parsed).containsExactly("<FxCopReport></FxCopReport>");
+  }
+
+  @Test
+  public void analyze_distributed() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+    ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    FxCopSensor sensor = new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class));
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+
+    File workingDir = tmp.newFolder("working-dir");
+    when(fileSystem.workingDir()).thenReturn(workingDir);
+    when(settings.getString("assemblyKey")).thenReturn("MyLibrary.dll,MyOtherLibrary.dll");
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.hasKey(FxCopConfiguration.QUEUE_DIRECTORY_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getString(FxCopConfiguration.QUEUE_DIRECTORY_PROPERTY_KEY)).thenReturn(new File(tmp.getRoot(), "queue").getAbsolutePath());
+
+    File rulesetFile = new File(workingDir, "fxcop-sonarqube.ruleset");
+    Files.write("<RuleSet />", rulesetFile, Charsets.UTF_8);
+
+    FxCopReportParser parser = mock(FxCopReportParser.class);
+    sensor.analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, new FxCopJobQueueTest.FakeExecutor());
+
+    assertThat(Files.toString(new File(workingDir, "fxcop-report-1.xml"), Charsets.UTF_8)).isEqualTo(new File("MyLibrary.dll").getAbsolutePath());
+    assertThat(Files.toString(new File(workingDir, "fxcop-report-2.xml"), Charsets.UTF_8)).isEqualTo(new File("MyOtherLibrary.dll").getAbsolutePath());
+    verify(parser).parse(Mockito.eq(new File(workingDir, "fxcop-report-1.xml")), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+    verify(parser).parse(Mockito.eq(new File(workingDir, "fxcop-report-2.xml")), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class),
+      Mockito.any(FxCopIssueHandler.class));
+  }
+
+  @Test
+  public void analyze_project_level() throws Exception {
+    Settings settings = mock(Settings.class);
+    RulesProfile profile = mock(RulesProfile.class);
+
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.languageKey()).thenReturn("foo");
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+    when(fxCopConf.assemblyPropertyKey()).thenReturn("assemblyKey");
+    when(fxCopConf.fxCopCmdPropertyKey()).thenReturn("fxcopcmdPath");
+    when(fxCopConf.timeoutPropertyKey()).thenReturn("timeout");
+
+    List<ActiveRule> activeRules = mockActiveRules("CA0000");
+    when(profile.getActiveRulesByRepository("foo-fxcop")).thenReturn(activeRules);
+    when(settings.getString("fxcopcmdPath")).thenReturn("FxCopCmd.exe");
+    when(settings.hasKey(FxCopConfiguration.PROJECT_LEVEL_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.PROJECT_LEVEL_PROPERTY_KEY)).thenReturn(true);
+
+    ProjectDefinition root = ProjectDefinition.create().setBaseDir(tmp.getRoot()).setWorkDir(tmp.newFolder("work"));
+    ProjectDefinition module1 = ProjectDefinition.create().setBaseDir(tmp.newFolder("Module1")).setProperty("assemblyKey", "Module1.dll");
+    ProjectDefinition module2 = ProjectDefinition.create().setBaseDir(tmp.newFolder("Module2")).setProperty("assemblyKey", "Module2.dll");
+    root.addSubProject(module1);
+    root.addSubProject(module2);
+    FxCopProjectAnalysis projectAnalysis = new FxCopProjectAnalysis(new ProjectReactor(root));
+
+    FxCopReportParser parser = mock(FxCopReportParser.class);
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    for (ProjectDefinition module : ImmutableList.of(module1, module2)) {
+      ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
+      when(fileSystem.baseDir()).thenReturn(module.getBaseDir());
+      when(fileSystem.workingDir()).thenReturn(new File(module.getBaseDir(), ".sonar"));
+      new FxCopSensor(fxCopConf, settings, profile, fileSystem, mock(ResourcePerspectives.class), null, projectAnalysis)
+        .analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), parser, executor);
+    }
+
+    File reportFile = new File(root.getWorkDir(), "fxcop-project-foo-fxcop-report.xml");
+    verify(executor).execute("FxCopCmd.exe", ImmutableList.of("Module1.dll", "Module2.dll"), new File(root.getWorkDir(), "fxcop-project-foo-fxcop.ruleset"),
+      reportFile, 0, false);
+
+    ArgumentCaptor<FxCopIssueFilter> filters = ArgumentCaptor.forClass(FxCopIssueFilter.class);
+    verify(parser, Mockito.times(2)).parse(Mockito.eq(reportFile), filters.capture(), Mockito.any(FxCopSourceIndex.class), Mockito.any(FxCopIssueHandler.class));
+    String module1Path = module1.getBaseDir().getAbsolutePath();
+    String module2Path = module2.getBaseDir().getAbsolutePath();
+    assertThat(filters.getAllValues().get(0).acceptLocation(module1Path, "Class1.cs", 1)).isTrue();
+    assertThat(filters.getAllValues().get(0).acceptLocation(module2Path, "Class1.cs", 1)).isFalse();
+    assertThat(filters.getAllValues().get(1).acceptLocation(module1Path, "Class1.cs", 1)).isFalse();
+    assertThat(filters.getAllValues().get(1).acceptLocation(module2Path, "Class1.cs", 1)).isTrue();
+  }
+
+  @Test
+  public void analyze_project_level_without_project_analysis() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage(FxCopProjectAnalysis.class.getName());
+
+    Settings settings = mock(Settings.class);
+    when(settings.hasKey(FxCopConfiguration.PROJECT_LEVEL_PROPERTY_KEY)).thenReturn(true);
+    when(settings.getBoolean(FxCopConfiguration.PROJECT_LEVEL_PROPERTY_KEY)).thenReturn(true);
+    FxCopConfiguration fxCopConf = mock(FxCopConfiguration.class);
+    when(fxCopConf.repositoryKey()).thenReturn("foo-fxcop");
+
+    new FxCopSensor(fxCopConf, settings, mock(RulesProfile.class), mock(ModuleFileSystem.class), mock(ResourcePerspectives.class))
+      .analyse(mock(SensorContext.class), mock(FileProvider.class), mock(FxCopRulesetWriter.class), mock(FxCopReportParser.class), mock(FxCopExecutor.class));
+  }
+
   @Test
   public void check_properties() {
     thrown.expectMessage("fooAssemblyKey");
@@ -178,9 +798,29 @@ public class FxCopSensorTest {
     return sonarFile;
   }
 
+  private static FxCopReportParser mockParser(File reportFile, FxCopIssue... issues) {
+    FxCopReportParser parser = mock(FxCopReportParser.class);
+    mockParse(parser, reportFile, issues);
+    return parser;
+  }
+
+  private static void mockParse(FxCopReportParser parser, File reportFile, final FxCopIssue... issues) {
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        FxCopIssueHandler handler = (FxCopIssueHandler) invocation.getArguments()[3];
+        for (FxCopIssue issue : issues) {
+          handler.handle(issue);
+        }
+        return null;
+      }
+    }).when(parser).parse(Mockito.eq(reportFile), Mockito.any(FxCopIssueFilter.class), Mockito.any(FxCopSourceIndex.class), Mockito.any(FxCopIssueHandler.class));
+  }
+
   private static IssueBuilder mockIssueBuilder() {
     IssueBuilder issueBuilder = mock(IssueBuilder.class);
     when(issueBuilder.ruleKey(Mockito.any(RuleKey.class))).thenReturn(issueBuilder);
+    when(issueBuilder.severity(Mockito.anyString())).thenReturn(issueBuilder);
     when(issueBuilder.line(Mockito.anyInt())).thenReturn(issueBuilder);
     when(issueBuilder.message(Mockito.anyString())).thenReturn(issueBuilder);
     return issueBuilder;
@@ -190,7 +830,9 @@ public class FxCopSensorTest {
     ImmutableList.Builder<ActiveRule> builder = ImmutableList.builder();
     for (String activeRuleConfigKey : activeRuleConfigKeys) {
       ActiveRule activeRule = mock(ActiveRule.class);
+      when(activeRule.getRuleKey()).thenReturn(activeRuleConfigKey);
       when(activeRule.getConfigKey()).thenReturn(activeRuleConfigKey);
+      when(activeRule.getSeverity()).thenReturn(RulePriority.MAJOR);
       builder.add(activeRule);
     }
     return builder.build();
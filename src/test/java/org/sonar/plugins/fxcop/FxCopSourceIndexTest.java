@@ -0,0 +1,112 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopSourceIndexTest {
+
+  private static final File CS_FILE = new File("src/test/resources/FxCopSourceIndexTest/Class1.cs");
+  private static final File VB_FILE = new File("src/test/resources/FxCopSourceIndexTest/Module1.vb");
+
+  @Test
+  public void csharp() {
+    FxCopSourceIndex index = new FxCopSourceIndex("cs", ImmutableList.of(CS_FILE), Charsets.UTF_8);
+
+    FxCopSourceIndex.Location location = index.locateType("MyLibrary", "Class1");
+    assertThat(location.path()).isEqualTo(CS_FILE.getAbsoluteFile().getParent());
+    assertThat(location.fileName()).isEqualTo("Class1.cs");
+    assertThat(location.line()).isEqualTo(10);
+
+    assertThat(index.locateMember("MyLibrary", "Class1", "#.ctor()").line()).isEqualTo(15);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#.cctor()").line()).isEqualTo(19);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#Finalize()").line()).isEqualTo(23);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#Add(System.Int32,System.Int32)").line()).isEqualTo(28);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#Name").line()).isEqualTo(37);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#set_Name(System.String)").line()).isEqualTo(37);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#get_Length()").line()).isEqualTo(39);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#Convert`1(System.Object)").line()).isEqualTo(41);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#Compute(System.String)").line()).isEqualTo(46);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#NotAMethod()").line()).isEqualTo(10);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#field").line()).isEqualTo(10);
+
+    assertThat(index.locateType("MyLibrary", "Class1+Nested`2").line()).isEqualTo(53);
+    assertThat(index.locateMember("MyLibrary", "Class1+Nested`2", "#Run()").line()).isEqualTo(55);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#get_Title()").line()).isEqualTo(61);
+    assertThat(index.locateMember("MyLibrary", "Class1", "#Slow()").line()).isEqualTo(64);
+    assertThat(index.locateMember("MyLibrary", "IFoo", "#Bar(System.Char)").line()).isEqualTo(71);
+    assertThat(index.locateType("MyLibrary.Inner", "Color").line()).isEqualTo(76);
+
+    assertThat(index.locateType("MyLibrary", "NotAType")).isNull();
+    assertThat(index.locateType("Foo", "Bar")).isNull();
+    assertThat(index.locateMember("MyLibrary", "Unknown", "#Add()")).isNull();
+  }
+
+  @Test
+  public void vbnet() {
+    FxCopSourceIndex index = new FxCopSourceIndex("vbnet", ImmutableList.of(VB_FILE), null);
+
+    FxCopSourceIndex.Location location = index.locateType("MyLibrary", "Class2");
+    assertThat(location.fileName()).isEqualTo("Module1.vb");
+    assertThat(location.line()).isEqualTo(6);
+
+    assertThat(index.locateMember("MyLibrary", "Class2", "#.ctor()").line()).isEqualTo(8);
+    assertThat(index.locateMember("MyLibrary", "Class2", "#Add(System.Int32,System.Int32)").line()).isEqualTo(11);
+    assertThat(index.locateMember("MyLibrary", "Class2", "#get_Name()").line()).isEqualTo(15);
+    assertThat(index.locateType("MyLibrary", "Class2+Nested`1").line()).isEqualTo(17);
+    assertThat(index.locateMember("MyLibrary", "Class2+Nested`1", "#Run()").line()).isEqualTo(18);
+    assertThat(index.locateMember("MyLibrary", "Helpers", "#Log(System.String)").line()).isEqualTo(25);
+
+    assertThat(index.locateType("MyLibrary", "NotAType")).isNull();
+  }
+
+  @Test
+  public void vbnet_root_namespace() {
+    File rootFile = new File("src/test/resources/FxCopSourceIndexTest/Module2.vb");
+    FxCopSourceIndex index = new FxCopSourceIndex("vbnet", ImmutableList.of(VB_FILE, rootFile), null);
+
+    assertThat(index.locateType("MyCompany.MyProduct", "Class3").fileName()).isEqualTo("Module2.vb");
+    assertThat(index.locateMember("MyCompany.MyProduct", "Class3", "#Run()").line()).isEqualTo(3);
+    assertThat(index.locateType("MyCompany.MyProduct.MyLibrary", "Class2").fileName()).isEqualTo("Module1.vb");
+    assertThat(index.locateType("MyCompany.MyProduct", "NotAType")).isNull();
+
+    index = new FxCopSourceIndex("cs", ImmutableList.of(new File("src/test/resources/FxCopSourceIndexTest/Class1.cs")), null);
+    assertThat(index.locateType("MyCompany.MyLibrary", "Class1")).isNull();
+  }
+
+  @Test
+  public void lazy() {
+    FxCopSourceIndex index = new FxCopSourceIndex("cs", ImmutableList.of(new File("src/test/resources/FxCopSourceIndexTest/non_existing.cs")), null);
+    try {
+      index.locateType("MyLibrary", "Class1");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage()).contains("non_existing.cs");
+      return;
+    }
+    throw new AssertionError("The index should have been built on the first lookup");
+  }
+
+}
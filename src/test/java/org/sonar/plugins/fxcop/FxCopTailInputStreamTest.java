@@ -0,0 +1,125 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FxCopTailInputStreamTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+  @After
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void parse_while_written() throws Exception {
+    final byte[] report = Files.toByteArray(new File("src/test/resources/FxCopReportParserTest/valid.xml"));
+    final File file = new File(tmp.getRoot(), "fxcop-report.xml");
+
+    Future<Void> producer = executorService.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        Thread.sleep(50);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+          for (int offset = 0; offset < report.length; offset += 512) {
+            output.write(report, offset, Math.min(512, report.length - offset));
+            output.flush();
+            Thread.sleep(10);
+          }
+        } finally {
+          output.close();
+        }
+        return null;
+      }
+    });
+
+    InputStream stream = new FxCopTailInputStream(file, producer, 5);
+    final List<FxCopIssue> issues = Lists.newArrayList();
+    new FxCopReportParser().parse(file, stream, new FxCopIssueFilter(), null, new FxCopIssueHandler() {
+      @Override
+      public void handle(FxCopIssue issue) {
+        issues.add(issue);
+      }
+    });
+
+    assertThat(producer.isDone()).isTrue();
+    assertThat(issues).hasSize(5);
+  }
+
+  @Test
+  public void read_all_once_done() throws Exception {
+    File file = new File(tmp.getRoot(), "fxcop-report.xml");
+    Files.write(new byte[] {1, 2, 3}, file);
+    Future<Void> producer = executorService.submit(new Callable<Void>() {
+      @Override
+      public Void call() {
+        return null;
+      }
+    });
+    producer.get();
+
+    InputStream stream = new FxCopTailInputStream(file, producer, 5);
+    try {
+      assertThat(stream.read()).isEqualTo(1);
+      assertThat(ByteStreams.toByteArray(stream)).isEqualTo(new byte[] {2, 3});
+      assertThat(stream.read()).isEqualTo(-1);
+    } finally {
+      stream.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void not_produced() throws Exception {
+    Future<Void> producer = executorService.submit(new Callable<Void>() {
+      @Override
+      public Void call() {
+        return null;
+      }
+    });
+    producer.get();
+
+    new FxCopTailInputStream(new File(tmp.getRoot(), "missing.xml"), producer, 5).read();
+  }
+
+}
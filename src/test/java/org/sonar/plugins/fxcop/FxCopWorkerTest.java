@@ -0,0 +1,128 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class FxCopWorkerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void run_one() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory);
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+
+    FxCopWorker worker = new FxCopWorker(queue, new FxCopJobQueueTest.FakeExecutor(), "FxCopCmd.exe", 0);
+    assertThat(worker.runOne()).isTrue();
+    assertThat(worker.runOne()).isFalse();
+
+    assertThat(Files.toString(new File(queueDirectory, queue.runId() + "/done/" + id + ".xml"), Charsets.UTF_8)).isEqualTo("MyLibrary.dll");
+  }
+
+  @Test
+  public void run_one_ignoring_generated_code() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    FxCopJobQueue queue = new FxCopJobQueue(tmp.newFolder("queue"));
+    queue.publish("MyLibrary.dll", rulesetFile, true);
+
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    assertThat(new FxCopWorker(queue, executor, "FxCopCmd.exe", 42).runOne()).isTrue();
+    verify(executor).execute(Mockito.eq("FxCopCmd.exe"), Mockito.eq("MyLibrary.dll"), Mockito.any(File.class), Mockito.any(File.class), Mockito.eq(42),
+      Mockito.eq(false), Mockito.eq(true));
+  }
+
+  @Test
+  public void run_one_failure() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory);
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+
+    FxCopExecutor executor = mock(FxCopExecutor.class);
+    Mockito.doThrow(new IllegalStateException("Cannot analyze")).when(executor)
+      .execute(Mockito.eq("FxCopCmd.exe"), Mockito.eq("MyLibrary.dll"), Mockito.any(File.class), Mockito.any(File.class), Mockito.eq(42),
+        Mockito.eq(false), Mockito.eq(false));
+
+    assertThat(new FxCopWorker(queue, executor, "FxCopCmd.exe", 42, true).runOne()).isTrue();
+    assertThat(Files.toString(new File(queueDirectory, queue.runId() + "/failed/" + id + ".txt"), Charsets.UTF_8)).isEqualTo("Cannot analyze");
+  }
+
+  @Test
+  public void run_one_own_jobs_only() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    File queueDirectory = tmp.newFolder("queue");
+    new FxCopJobQueue(queueDirectory).publish("MyLibrary.dll", rulesetFile);
+
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory);
+    assertThat(new FxCopWorker(queue, new FxCopJobQueueTest.FakeExecutor(), "FxCopCmd.exe", 0, true).runOne()).isFalse();
+    assertThat(new FxCopWorker(queue, new FxCopJobQueueTest.FakeExecutor(), "FxCopCmd.exe", 0).runOne()).isTrue();
+  }
+
+  @Test
+  public void run() throws Exception {
+    File rulesetFile = tmp.newFile("fxcop.ruleset");
+    final File queueDirectory = tmp.newFolder("queue");
+    FxCopJobQueue queue = new FxCopJobQueue(queueDirectory);
+    String id = queue.publish("MyLibrary.dll", rulesetFile);
+
+    final AtomicInteger exitCode = new AtomicInteger(-1);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        exitCode.set(FxCopWorker.run(new String[] {queueDirectory.getAbsolutePath(), "FxCopCmd.exe", "0"}, new FxCopJobQueueTest.FakeExecutor()));
+      }
+    };
+    thread.start();
+
+    File doneFile = new File(queueDirectory, queue.runId() + "/done/" + id + ".xml");
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!doneFile.isFile() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    thread.interrupt();
+    thread.join();
+
+    assertThat(Files.toString(doneFile, Charsets.UTF_8)).isEqualTo("MyLibrary.dll");
+    assertThat(exitCode.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void run_usage() {
+    assertThat(FxCopWorker.run(new String[] {"queue"}, new FxCopExecutor())).isEqualTo(1);
+    assertThat(FxCopWorker.run(new String[] {"queue", "FxCopCmd.exe", "ten"}, new FxCopExecutor())).isEqualTo(1);
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SonarQube FxCop Library
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.fxcop;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LongHashSetTest {
+
+  @Test
+  public void test() {
+    LongHashSet set = new LongHashSet();
+    assertThat(set.size()).isEqualTo(0);
+    assertThat(set.contains(0)).isFalse();
+
+    assertThat(set.add(0)).isTrue();
+    assertThat(set.add(0)).isFalse();
+    assertThat(set.add(42)).isTrue();
+    assertThat(set.add(-42)).isTrue();
+    assertThat(set.add(42)).isFalse();
+    assertThat(set.size()).isEqualTo(3);
+
+    assertThat(set.contains(0)).isTrue();
+    assertThat(set.contains(42)).isTrue();
+    assertThat(set.contains(-42)).isTrue();
+    assertThat(set.contains(43)).isFalse();
+  }
+
+  @Test
+  public void rehash() {
+    LongHashSet set = new LongHashSet(1);
+    for (long i = 1; i <= 100000; i++) {
+      assertThat(set.add(i * 0x9e3779b97f4a7c15L)).isTrue();
+    }
+    assertThat(set.size()).isEqualTo(100000);
+
+    for (long i = 1; i <= 100000; i++) {
+      assertThat(set.contains(i * 0x9e3779b97f4a7c15L)).isTrue();
+      assertThat(set.add(i * 0x9e3779b97f4a7c15L)).isFalse();
+    }
+    assertThat(set.contains(0)).isFalse();
+  }
+
+}
@@ -0,0 +1,78 @@
+using System;
+using System.Collections.Generic;
+
+namespace MyLibrary
+{
+    /// <summary>
+    /// class NotAType { }
+    /// </summary>
+    [Serializable]
+    public class Class1
+    {
+        private int field = Compute("namespace Foo { class Bar }");
+        private readonly List<int> list = new List<int> { 1, 2 };
+
+        public Class1()
+        {
+        }
+
+        static Class1()
+        {
+        }
+
+        ~Class1()
+        {
+        }
+
+        [Obsolete("Do not use (really)")]
+        public int Add(int a, int b)
+        {
+            if (a > b)
+            {
+                return Compute(@"verbatim ""string"" {");
+            }
+            return a + b;
+        }
+
+        public string Name { get; set; }
+
+        public int Length => Name.Length;
+
+        public T Convert<T>(object value) where T : class
+        {
+            return value as T;
+        }
+
+        private static int Compute(string s)
+        {
+            /* a comment with
+               void NotAMethod() */
+            return s.Length;
+        }
+
+        public class Nested<TKey, TValue>
+        {
+            public void Run()
+            {
+            }
+        }
+
+        [XmlElement(ElementName = "title")]
+        public string Title { get; set; }
+
+        [TestCase(Category = "slow")]
+        public void Slow()
+        {
+        }
+    }
+
+    internal interface IFoo
+    {
+        void Bar(char c = '{');
+    }
+
+    namespace Inner
+    {
+        enum Color { Red, Green = 2 }
+    }
+}